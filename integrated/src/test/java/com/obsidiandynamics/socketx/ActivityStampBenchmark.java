@@ -0,0 +1,104 @@
+package com.obsidiandynamics.socketx;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.indigo.util.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  Measures the per-message cost of stamping an endpoint's activity time, comparing a volatile
+ *  store of {@link System#currentTimeMillis()} with a lazy store of {@link CoarseClock#now()}
+ *  that is skipped when the time hasn't moved.<p>
+ *  
+ *  Each benchmark is run with one thread, and with two threads stamping the same field,
+ *  mimicking a sender thread and an I/O thread sharing an endpoint.
+ */
+public final class ActivityStampBenchmark implements TestSupport {
+  @Test
+  public void test() throws Exception {
+    run(1_000_000, 1);
+  }
+  
+  /**
+   *  A stand-in for the activity-tracking state of an endpoint.
+   */
+  private static final class Stamp {
+    private static final AtomicLongFieldUpdater<Stamp> updater = 
+        AtomicLongFieldUpdater.newUpdater(Stamp.class, "time");
+    
+    private volatile long time;
+    
+    void touchPrecise() {
+      time = System.currentTimeMillis();
+    }
+    
+    void touchCoarse() {
+      final long now = CoarseClock.now();
+      if (time != now) {
+        updater.lazySet(this, now);
+      }
+    }
+  }
+  
+  private enum Method {
+    PRECISE {
+      @Override void touch(Stamp stamp) {
+        stamp.touchPrecise();
+      }
+    },
+    
+    COARSE {
+      @Override void touch(Stamp stamp) {
+        stamp.touchCoarse();
+      }
+    };
+    
+    abstract void touch(Stamp stamp);
+  }
+  
+  private static double measure(Method method, int threads, int messages) throws Exception {
+    final Stamp stamp = new Stamp();
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final CyclicBarrier barrier = new CyclicBarrier(threads);
+      final Callable<Long> task = () -> {
+        barrier.await();
+        final long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+          method.touch(stamp);
+        }
+        return System.nanoTime() - start;
+      };
+      
+      long took = 0;
+      for (Future<Long> future : executor.invokeAll(Collections.nCopies(threads, task))) {
+        took = Math.max(took, future.get());
+      }
+      return (double) took / messages;
+    } finally {
+      executor.shutdown();
+    }
+  }
+  
+  private static void run(int messages, int rounds) throws Exception {
+    for (int threads : new int[] { 1, 2 }) {
+      for (Method method : Method.values()) {
+        // the first round warms up the method under test
+        measure(method, threads, messages);
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+          best = Math.min(best, measure(method, threads, messages));
+        }
+        if (LOG) LOG_STREAM.format("%s: %d thread(s), %,.2f ns/message\n", method, threads, best);
+      }
+    }
+  }
+  
+  public static void main(String[] args) throws Exception {
+    run(100_000_000, 5);
+  }
+}
@@ -0,0 +1,83 @@
+package com.obsidiandynamics.socketx;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.socketx.jetty.*;
+import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.undertow.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  Tests {@link XEndpoint#sendBatch(String[], XSendCallback)} and 
+ *  {@link XEndpoint#sendBatch(ByteBuffer[], XSendCallback)} on the server and on the client.
+ */
+public final class BatchSendTest extends BaseClientServerTest {
+  private static final int BATCH_SIZE = 10;
+
+  @Test
+  public void testJtJt() throws Exception {
+    test(JettyServer.factory(), JettyClient.factory());
+  }
+
+  @Test
+  public void testUtUt() throws Exception {
+    test(UndertowServer.factory(), UndertowClient.factory());
+  }
+
+  @Test
+  public void testNtUt() throws Exception {
+    test(NettyServer.factory(), UndertowClient.factory());
+  }
+
+  private void test(XServerFactory<? extends XEndpoint> serverFactory,
+                    XClientFactory<? extends XEndpoint> clientFactory) throws Exception {
+    final String[] textBatch = new String[BATCH_SIZE];
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      textBatch[i] = "text-" + i;
+    }
+    
+    // the server responds to each text message with a batch of text and binary frames
+    final XServerConfig serverConfig = getDefaultServerConfig(false)
+        .withScanInterval(1);
+    final XSendCallback serverCallback = mock(XSendCallback.class);
+    final XEndpointListener<XEndpoint> serverListener = new XEndpointLambdaListener<>()
+        .onText((endpoint, message) -> {
+          endpoint.sendBatch(textBatch, serverCallback);
+          endpoint.sendBatch(toBuffers(textBatch), serverCallback);
+        });
+    createServer(serverFactory, serverConfig, serverListener);
+
+    final XClientConfig clientConfig = getDefaultClientConfig()
+        .withScanInterval(1);
+    createClient(clientFactory, clientConfig);
+    final XEndpointListener<XEndpoint> clientListener = createMockListener();
+    final XEndpoint endpoint = openClientEndpoint(false, serverConfig.port, clientListener);
+    
+    final XSendCallback clientCallback = mock(XSendCallback.class);
+    endpoint.sendBatch(new String[] { "go" }, clientCallback);
+    
+    SocketUtils.await().until(() -> {
+      verify(clientCallback).onComplete(eq(endpoint));
+      verify(serverCallback, times(BATCH_SIZE * 2)).onComplete(notNull());
+      for (String text : textBatch) {
+        verify(clientListener).onText(notNull(), eq(text));
+        verify(clientListener).onBinary(notNull(), eq(ByteBuffer.wrap(text.getBytes())));
+      }
+    });
+    assertEquals(0, endpoint.getBacklog());
+  }
+  
+  private static ByteBuffer[] toBuffers(String[] payloads) {
+    final ByteBuffer[] buffers = new ByteBuffer[payloads.length];
+    for (int i = 0; i < payloads.length; i++) {
+      buffers[i] = ByteBuffer.wrap(payloads[i].getBytes());
+    }
+    return buffers;
+  }
+}
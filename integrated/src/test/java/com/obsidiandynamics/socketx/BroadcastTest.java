@@ -0,0 +1,136 @@
+package com.obsidiandynamics.socketx;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.socketx.jetty.*;
+import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.undertow.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  Tests {@link XEndpointManager#broadcast}, verifying that every recipient receives each
+ *  message exactly once, and that a recipient whose backlog is at the high-water mark is
+ *  skipped without holding back the others.<p>
+ *
+ *  One of the clients suspends its receives, so that the server's backlog for that client
+ *  builds up once the socket buffers fill. The server broadcasts one message at a time,
+ *  waiting for the backlogs of the remaining recipients to drain, so that only the stalled
+ *  recipient reaches the high-water mark.
+ */
+public final class BroadcastTest extends BaseClientServerTest {
+  private static final int HEALTHY_CLIENTS = 3;
+  
+  private static final int HIGH_WATER_MARK = 10;
+  
+  private static final int MAX_BROADCASTS = 5_000;
+  
+  private static final int MESSAGE_SIZE = 32_000;
+  
+  @Test
+  public void testNtUt() throws Exception {
+    test(NettyServer.factory(), UndertowClient.factory());
+  }
+  
+  @Test
+  public void testUtUt() throws Exception {
+    test(UndertowServer.factory(), UndertowClient.factory());
+  }
+  
+  @Test
+  public void testJtJt() throws Exception {
+    test(JettyServer.factory(), JettyClient.factory());
+  }
+  
+  private static final class Tally implements XSendCallback {
+    final Map<XEndpoint, AtomicInteger> skips = new ConcurrentHashMap<>();
+    
+    final AtomicInteger errors = new AtomicInteger();
+    
+    @Override
+    public void onComplete(XEndpoint endpoint) {}
+    
+    @Override
+    public void onError(XEndpoint endpoint, Throwable cause) {
+      errors.incrementAndGet();
+    }
+    
+    @Override
+    public void onSkip(XEndpoint endpoint) {
+      skips.computeIfAbsent(endpoint, __ -> new AtomicInteger()).incrementAndGet();
+    }
+    
+    int skipsOf(XEndpoint endpoint) {
+      final AtomicInteger count = skips.get(endpoint);
+      return count != null ? count.get() : 0;
+    }
+  }
+  
+  @SuppressWarnings("unchecked")
+  private void test(XServerFactory<? extends XEndpoint> serverFactory,
+                    XClientFactory<? extends XEndpoint> clientFactory) throws Exception {
+    final XServerConfig serverConfig = getDefaultServerConfig(false);
+    serverConfig.highWaterMark = HIGH_WATER_MARK;
+    createServer(serverFactory, serverConfig, new XEndpointLambdaListener<>());
+    createClient(clientFactory, getDefaultClientConfig());
+    final XEndpointManager<XEndpoint> manager = (XEndpointManager<XEndpoint>) server.getEndpointManager();
+    
+    // the stalled client connects first, so that its server-side endpoint can be told apart
+    final AtomicInteger stalledReceived = new AtomicInteger();
+    final XEndpoint stalledClient = openClientEndpoint(false, serverConfig.port, new XEndpointLambdaListener<>()
+                                                       .onText((endpoint, message) -> stalledReceived.incrementAndGet()));
+    SocketUtils.await().untilTrue(this::hasServerEndpoint);
+    final XEndpoint stalled = getServerEndpoint();
+    stalledClient.suspendReceives();
+    
+    final AtomicInteger[] healthyReceived = new AtomicInteger[HEALTHY_CLIENTS];
+    for (int i = 0; i < HEALTHY_CLIENTS; i++) {
+      final AtomicInteger received = healthyReceived[i] = new AtomicInteger();
+      openClientEndpoint(false, serverConfig.port, new XEndpointLambdaListener<>()
+                         .onText((endpoint, message) -> received.incrementAndGet()));
+    }
+    SocketUtils.await().until(() -> assertEquals(HEALTHY_CLIENTS + 1, manager.getEndpoints().size()));
+    final List<XEndpoint> recipients = new ArrayList<>(manager.getEndpoints());
+    final List<XEndpoint> healthy = new ArrayList<>(recipients);
+    healthy.remove(stalled);
+    
+    final Tally tally = new Tally();
+    final char[] chars = new char[MESSAGE_SIZE];
+    Arrays.fill(chars, 'x');
+    final String payload = new String(chars);
+    int broadcasts = 0;
+    while (broadcasts < MAX_BROADCASTS && tally.skipsOf(stalled) == 0) {
+      manager.broadcast(recipients, payload, tally);
+      broadcasts++;
+      for (XEndpoint endpoint : healthy) {
+        SocketUtils.await().until(() -> assertEquals(0, endpoint.getBacklog()));
+      }
+    }
+    
+    final int sent = broadcasts;
+    assertTrue("stalled recipient was never skipped", tally.skipsOf(stalled) > 0);
+    for (XEndpoint endpoint : healthy) {
+      assertEquals(0, tally.skipsOf(endpoint));
+    }
+    assertEquals(0, tally.errors.get());
+    SocketUtils.await().until(() -> {
+      for (AtomicInteger received : healthyReceived) {
+        assertEquals(sent, received.get());
+      }
+    });
+    
+    stalledClient.resumeReceives();
+    final int skipped = tally.skipsOf(stalled);
+    SocketUtils.await().until(() -> assertEquals(sent - skipped, stalledReceived.get()));
+    Thread.sleep(100);
+    assertEquals(sent - skipped, stalledReceived.get());
+    for (AtomicInteger received : healthyReceived) {
+      assertEquals(sent, received.get());
+    }
+  }
+}
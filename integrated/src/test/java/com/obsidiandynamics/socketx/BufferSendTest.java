@@ -0,0 +1,71 @@
+package com.obsidiandynamics.socketx;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.socketx.jetty.*;
+import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.undertow.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  Tests sending payloads written into buffers obtained from {@link XEndpoint#allocate(int)},
+ *  including buffers larger than Undertow's pooled buffers (typically 16 KiB).
+ */
+public final class BufferSendTest extends BaseClientServerTest {
+  private static final int MESSAGES = 10;
+  
+  @Test
+  public void testJtJt() throws Exception {
+    test(JettyServer.factory(), JettyClient.factory());
+  }
+
+  @Test
+  public void testUtUt() throws Exception {
+    test(UndertowServer.factory(), UndertowClient.factory());
+  }
+
+  @Test
+  public void testNtUt() throws Exception {
+    test(NettyServer.factory(), UndertowClient.factory());
+  }
+
+  private void test(XServerFactory<? extends XEndpoint> serverFactory,
+                    XClientFactory<? extends XEndpoint> clientFactory) throws Exception {
+    // the server echoes each text message as a binary message, written into an allocated buffer
+    final XServerConfig serverConfig = getDefaultServerConfig(false)
+        .withScanInterval(1);
+    final XSendCallback serverCallback = mock(XSendCallback.class);
+    final XEndpointListener<XEndpoint> serverListener = new XEndpointLambdaListener<>()
+        .onText((endpoint, message) -> {
+          final byte[] bytes = message.getBytes();
+          final XBuffer buffer = endpoint.allocate(bytes.length);
+          buffer.getBuffer().put(bytes);
+          endpoint.send(buffer, serverCallback);
+        });
+    createServer(serverFactory, serverConfig, serverListener);
+
+    final XClientConfig clientConfig = getDefaultClientConfig()
+        .withScanInterval(1);
+    createClient(clientFactory, clientConfig);
+    final XEndpointListener<XEndpoint> clientListener = createMockListener();
+    final XEndpoint endpoint = openClientEndpoint(false, serverConfig.port, clientListener);
+    
+    final String small = "small";
+    final String large = BinaryUtils.randomHexString(20_000);
+    for (int i = 0; i < MESSAGES; i++) {
+      endpoint.send(small);
+    }
+    endpoint.send(large);
+    
+    SocketUtils.await().until(() -> {
+      verify(serverCallback, times(MESSAGES + 1)).onComplete(notNull());
+      verify(clientListener, times(MESSAGES)).onBinary(notNull(), eq(ByteBuffer.wrap(small.getBytes())));
+      verify(clientListener).onBinary(notNull(), eq(ByteBuffer.wrap(large.getBytes())));
+    });
+  }
+}
@@ -0,0 +1,123 @@
+package com.obsidiandynamics.socketx;
+
+import static junit.framework.TestCase.*;
+
+import java.lang.management.*;
+import java.net.*;
+import java.util.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.indigo.util.*;
+import com.obsidiandynamics.socketx.attribute.*;
+import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.ssl.*;
+import com.obsidiandynamics.socketx.undertow.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  Measures the heap and direct memory retained per client connection, with the connections
+ *  idle once established. The memory is sampled after a full GC, before and after opening the
+ *  connections; as the server runs in the same process, the figures include the server's share
+ *  of each connection, which is the same for every client configuration.<p>
+ *
+ *  The Undertow client is measured over {@code ws} and {@code wss}, with heap and with direct
+ *  buffers.
+ */
+public final class ClientFootprintBenchmark implements TestSupport {
+  private static final int PREFERRED_PORT = 8090;
+  
+  private static final int PREFERRED_HTTPS_PORT = 8543;
+  
+  @Test
+  public void testNtUt() throws Exception {
+    measure(NettyServer.factory(), UndertowClient.factory(), false, false, 100);
+  }
+  
+  @Test
+  public void testNtUt_direct() throws Exception {
+    measure(NettyServer.factory(), UndertowClient.factory(), false, true, 100);
+  }
+  
+  @Test
+  public void testNtUt_https() throws Exception {
+    measure(NettyServer.factory(), UndertowClient.factory(), true, false, 100);
+  }
+  
+  @SuppressWarnings("unchecked")
+  private static <T> T unsafeCast(Object obj) {
+    return (T) obj;
+  }
+  
+  private static long heapUsed() {
+    final Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+  
+  private static long directUsed() {
+    long used = 0;
+    for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if (pool.getName().equals("direct")) {
+        used += pool.getMemoryUsed();
+      }
+    }
+    return used;
+  }
+  
+  private static void gc() throws InterruptedException {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+  }
+  
+  private static void measure(XServerFactory<? extends XEndpoint> serverFactory,
+                              XClientFactory<? extends XEndpoint> clientFactory,
+                              boolean https, boolean directBuffers, int connections) throws Exception {
+    final XServerConfig serverConfig = new XServerConfig()
+        .withPort(SocketUtils.getAvailablePort(PREFERRED_PORT))
+        .withHttpsPort(https ? SocketUtils.getAvailablePort(PREFERRED_HTTPS_PORT) : 0);
+    final XClientConfig clientConfig = new XClientConfig()
+        .withAttributes(new AttributeMap().with(UndertowAtts.DIRECT_BUFFERS, directBuffers))
+        .withSSLContextProvider(CompositeSSLContextProvider.getDevClientDefault());
+    final XServerFactory<XEndpoint> typedServerFactory = unsafeCast(serverFactory);
+    final XClientFactory<XEndpoint> typedClientFactory = unsafeCast(clientFactory);
+    try (XServer<XEndpoint> server = typedServerFactory.create(serverConfig, new XEndpointLambdaListener<>());
+         XClient<XEndpoint> client = typedClientFactory.create(clientConfig)) {
+      final URI uri = https
+          ? new URI("wss://localhost:" + serverConfig.httpsPort + "/")
+          : new URI("ws://localhost:" + serverConfig.port + "/");
+      final BulkConnector<XEndpoint> connector = new BulkConnector<>(client).withMaxConcurrency(100);
+      final int waitScale = 1 + connections / 10_000;
+      
+      // a warm-up connection lazily initialises whatever is shared among all connections
+      connector.connect(uri, 1, new XEndpointLambdaListener<>());
+      SocketUtils.await().until(() -> assertEquals(1, server.getEndpointManager().getEndpoints().size()));
+      gc();
+      final long heapBefore = heapUsed();
+      final long directBefore = directUsed();
+      
+      final List<XEndpoint> endpoints = connector.connect(uri, connections, new XEndpointLambdaListener<>());
+      SocketUtils.await().scale(waitScale).until(() -> {
+        assertEquals(connections + 1, server.getEndpointManager().getEndpoints().size());
+      });
+      gc();
+      final long heapPerConnection = (heapUsed() - heapBefore) / connections;
+      final long directPerConnection = (directUsed() - directBefore) / connections;
+      assertEquals(connections, endpoints.size());
+      
+      if (LOG) LOG_STREAM.format("%s/%s (%s, %s buffers): %,d connections, %,d B heap/conn, %,d B direct/conn\n",
+                                 server.getClass().getSimpleName(), client.getClass().getSimpleName(),
+                                 https ? "wss" : "ws", directBuffers ? "direct" : "heap", connections,
+                                 heapPerConnection, directPerConnection);
+    }
+  }
+  
+  public static void main(String[] args) throws Exception {
+    for (boolean https : new boolean[] { false, true }) {
+      for (boolean directBuffers : new boolean[] { false, true }) {
+        measure(NettyServer.factory(), UndertowClient.factory(), https, directBuffers, 5_000);
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package com.obsidiandynamics.socketx;
+
+import static junit.framework.TestCase.*;
+
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.indigo.util.*;
+import com.obsidiandynamics.socketx.jetty.*;
+import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.undertow.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  Measures the throughput and the p99 latency of a server streaming messages to a single 
+ *  client, for several write coalescing windows (the maximum number of messages per flush
+ *  and the maximum added delay). A window of one message disables coalescing.<p>
+ *  
+ *  Each message carries the time of its sending; the latency is measured on receipt, within 
+ *  the same process. The sender limits its backlog, rather than relying on a high-water mark,
+ *  so that no messages are dropped.
+ */
+public final class CoalescingBenchmark implements TestSupport {
+  private static final int PREFERRED_PORT = 8090;
+  
+  private static final int MAX_BACKLOG = 10_000;
+  
+  private static final int[][] WINDOWS = { { 1, 0 }, { 8, 50 }, { 32, 200 }, { 128, 1_000 } };
+  
+  @Test
+  public void testNtUt() throws Exception {
+    run(NettyServer.factory(), UndertowClient.factory(), WINDOWS, 1_000, 64);
+  }
+  
+  @Test
+  public void testJtJt() throws Exception {
+    run(JettyServer.factory(), JettyClient.factory(), WINDOWS, 1_000, 64);
+  }
+  
+  @SuppressWarnings("unchecked")
+  private static <T> T unsafeCast(Object obj) {
+    return (T) obj;
+  }
+  
+  private static void run(XServerFactory<? extends XEndpoint> serverFactory,
+                          XClientFactory<? extends XEndpoint> clientFactory,
+                          int[][] windows, int messages, int bytes) throws Exception {
+    for (int[] window : windows) {
+      final XServerConfig serverConfig = new XServerConfig()
+          .withPort(SocketUtils.getAvailablePort(PREFERRED_PORT))
+          .withWriteCoalesceMessages(window[0])
+          .withWriteCoalesceDelay(window[1]);
+      final XServerFactory<XEndpoint> typedServerFactory = unsafeCast(serverFactory);
+      final XClientFactory<XEndpoint> typedClientFactory = unsafeCast(clientFactory);
+      
+      final long[] latencies = new long[messages];
+      final AtomicInteger received = new AtomicInteger();
+      final XEndpointListener<XEndpoint> clientListener = new XEndpointLambdaListener<>()
+          .onBinary((endpoint, message) -> {
+            final long latency = System.nanoTime() - message.getLong(message.position());
+            // messages arrive on a single I/O thread; the increment publishes the sample
+            latencies[received.get()] = latency;
+            received.incrementAndGet();
+          });
+      
+      try (XServer<XEndpoint> server = typedServerFactory.create(serverConfig, new XEndpointLambdaListener<>());
+           XClient<XEndpoint> client = typedClientFactory.create(new XClientConfig())) {
+        client.connect(new URI("ws://localhost:" + serverConfig.port + "/"), clientListener);
+        SocketUtils.await().until(() -> {
+          assertEquals(1, server.getEndpointManager().getEndpoints().size());
+        });
+        final XEndpoint endpoint = server.getEndpointManager().getEndpoints().iterator().next();
+        
+        final long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+          while (endpoint.getBacklog() >= MAX_BACKLOG) {
+            Thread.yield();
+          }
+          final ByteBuffer payload = ByteBuffer.allocate(bytes);
+          payload.putLong(0, System.nanoTime());
+          endpoint.send(payload);
+        }
+        SocketUtils.await().scale(1 + messages / 100_000).until(() -> {
+          assertEquals(messages, received.get());
+        });
+        final long took = System.nanoTime() - start;
+        
+        Arrays.sort(latencies);
+        final long p99 = latencies[(int) Math.min(messages - 1, messages * 0.99)];
+        if (LOG) LOG_STREAM.format("%s: window %d msgs/%d us, %,.0f msg/s, p99 %,.1f us\n", 
+                                   server.getClass().getSimpleName(), window[0], window[1], 
+                                   messages * 1e9 / took, p99 / 1_000d);
+      }
+    }
+  }
+  
+  public static void main(String[] args) throws Exception {
+    run(NettyServer.factory(), UndertowClient.factory(), WINDOWS, 1_000_000, 64);
+    run(JettyServer.factory(), JettyClient.factory(), WINDOWS, 1_000_000, 64);
+  }
+}
@@ -0,0 +1,132 @@
+package com.obsidiandynamics.socketx;
+
+import static junit.framework.TestCase.*;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.indigo.util.*;
+import com.obsidiandynamics.socketx.jetty.*;
+import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.undertow.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  Measures the throughput of a server streaming text messages to a single client, with 
+ *  permessage-deflate disabled, enabled, and enabled above a compression threshold. Two 
+ *  payloads are considered: a short tick, which compresses poorly, and a large JSON snapshot, 
+ *  which compresses well.<p>
+ *  
+ *  The sender limits its backlog, rather than relying on a high-water mark, so that no 
+ *  messages are dropped.
+ */
+public final class CompressionBenchmark implements TestSupport {
+  private static final int PREFERRED_PORT = 8090;
+  
+  private static final int MAX_BACKLOG = 1_000;
+  
+  private static final int THRESHOLD = 1_024;
+  
+  private static final String TICK = "AUDUSD 0.7312 5K";
+  
+  private static final String SNAPSHOT = snapshot(50_000);
+  
+  /** Compression disabled, enabled, and enabled above the threshold. */
+  private static final int[] MODES = { -1, 0, THRESHOLD };
+  
+  private static String snapshot(int length) {
+    final Random random = new Random(0);
+    final StringBuilder sb = new StringBuilder("[");
+    while (sb.length() < length) {
+      if (sb.length() > 1) sb.append(',');
+      sb.append(String.format("{\"symbol\":\"SYM%03d\",\"bid\":%.2f,\"ask\":%.2f,\"volume\":%d}", 
+                              random.nextInt(1_000), 100 + random.nextInt(100) / 4d, 
+                              125 + random.nextInt(100) / 4d, random.nextInt(100) * 1_000));
+    }
+    return sb.append(']').toString();
+  }
+  
+  @Test
+  public void testNtUt() throws Exception {
+    run(NettyServer.factory(), UndertowClient.factory(), 1_000, 100);
+  }
+  
+  @Test
+  public void testJtJt() throws Exception {
+    run(JettyServer.factory(), JettyClient.factory(), 1_000, 100);
+  }
+  
+  @Test
+  public void testUtUt() throws Exception {
+    run(UndertowServer.factory(), UndertowClient.factory(), 1_000, 100);
+  }
+  
+  @SuppressWarnings("unchecked")
+  private static <T> T unsafeCast(Object obj) {
+    return (T) obj;
+  }
+  
+  private static void run(XServerFactory<? extends XEndpoint> serverFactory,
+                          XClientFactory<? extends XEndpoint> clientFactory,
+                          int ticks, int snapshots) throws Exception {
+    for (int mode : MODES) {
+      run(serverFactory, clientFactory, mode, TICK, ticks);
+      run(serverFactory, clientFactory, mode, SNAPSHOT, snapshots);
+    }
+  }
+  
+  private static void run(XServerFactory<? extends XEndpoint> serverFactory,
+                          XClientFactory<? extends XEndpoint> clientFactory,
+                          int mode, String payload, int messages) throws Exception {
+    final boolean compression = mode != -1;
+    final XServerConfig serverConfig = new XServerConfig()
+        .withPort(SocketUtils.getAvailablePort(PREFERRED_PORT))
+        .withMaxMessageSize(2 * SNAPSHOT.length())
+        .withCompression(compression)
+        .withCompressionThreshold(Math.max(0, mode));
+    final XClientConfig clientConfig = new XClientConfig()
+        .withMaxMessageSize(2 * SNAPSHOT.length())
+        .withCompression(compression);
+    final XServerFactory<XEndpoint> typedServerFactory = unsafeCast(serverFactory);
+    final XClientFactory<XEndpoint> typedClientFactory = unsafeCast(clientFactory);
+    
+    final AtomicInteger received = new AtomicInteger();
+    final XEndpointListener<XEndpoint> clientListener = new XEndpointLambdaListener<>()
+        .onText((endpoint, message) -> received.incrementAndGet());
+    
+    try (XServer<XEndpoint> server = typedServerFactory.create(serverConfig, new XEndpointLambdaListener<>());
+         XClient<XEndpoint> client = typedClientFactory.create(clientConfig)) {
+      client.connect(new URI("ws://localhost:" + serverConfig.port + "/"), clientListener);
+      SocketUtils.await().until(() -> {
+        assertEquals(1, server.getEndpointManager().getEndpoints().size());
+      });
+      final XEndpoint endpoint = server.getEndpointManager().getEndpoints().iterator().next();
+      
+      final long start = System.nanoTime();
+      for (int i = 0; i < messages; i++) {
+        while (endpoint.getBacklog() >= MAX_BACKLOG) {
+          Thread.yield();
+        }
+        endpoint.send(payload);
+      }
+      SocketUtils.await().scale(1 + messages / 10_000).until(() -> {
+        assertEquals(messages, received.get());
+      });
+      final long took = System.nanoTime() - start;
+      
+      if (LOG) LOG_STREAM.format("%s: %,d-byte payload, compression %s, %,.0f msg/s, %,.1f MB/s\n", 
+                                 server.getClass().getSimpleName(), payload.length(),
+                                 ! compression ? "off" : mode == 0 ? "on" : "above " + mode + " bytes",
+                                 messages * 1e9 / took, (double) messages * payload.length() * 1e3 / took);
+    }
+  }
+  
+  public static void main(String[] args) throws Exception {
+    run(NettyServer.factory(), UndertowClient.factory(), 1_000_000, 10_000);
+    run(JettyServer.factory(), JettyClient.factory(), 1_000_000, 10_000);
+    run(UndertowServer.factory(), UndertowClient.factory(), 1_000_000, 10_000);
+  }
+}
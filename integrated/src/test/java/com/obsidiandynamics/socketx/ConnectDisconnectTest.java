@@ -15,7 +15,9 @@ import org.slf4j.*;
 
 import com.obsidiandynamics.junit.*;
 import com.obsidiandynamics.socketx.jetty.*;
+import com.obsidiandynamics.socketx.loopback.*;
 import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.nio.*;
 import com.obsidiandynamics.socketx.ssl.*;
 import com.obsidiandynamics.socketx.undertow.*;
 import com.obsidiandynamics.socketx.util.*;
@@ -148,6 +150,46 @@ public final class ConnectDisconnectTest extends BaseClientServerTest {
     test(ABRUPT, CYCLES, CONNECTIONS, HTTP, SERVER_DISCONNECT, NettyServer.factory(), UndertowClient.factory());
   }
 
+  @Test
+  public void testLbLbClientGracefulDisconnect() throws Exception {
+    test(GRACEFUL, CYCLES, CONNECTIONS, HTTP, CLIENT_DISCONNECT, LoopbackServer.factory(), LoopbackClient.factory());
+  }
+  
+  @Test
+  public void testLbLbClientAbruptDisconnect() throws Exception {
+    test(ABRUPT, CYCLES, CONNECTIONS, HTTP, CLIENT_DISCONNECT, LoopbackServer.factory(), LoopbackClient.factory());
+  }
+  
+  @Test
+  public void testLbLbServerGracefulDisconnect() throws Exception {
+    test(GRACEFUL, CYCLES, CONNECTIONS, HTTP, SERVER_DISCONNECT, LoopbackServer.factory(), LoopbackClient.factory());
+  }
+  
+  @Test
+  public void testLbLbServerAbruptDisconnect() throws Exception {
+    test(ABRUPT, CYCLES, CONNECTIONS, HTTP, SERVER_DISCONNECT, LoopbackServer.factory(), LoopbackClient.factory());
+  }
+
+  @Test
+  public void testNiNiClientGracefulDisconnect() throws Exception {
+    test(GRACEFUL, CYCLES, CONNECTIONS, HTTP, CLIENT_DISCONNECT, NioServer.factory(), NioClient.factory());
+  }
+  
+  @Test
+  public void testNiNiClientAbruptDisconnect() throws Exception {
+    test(ABRUPT, CYCLES, CONNECTIONS, HTTP, CLIENT_DISCONNECT, NioServer.factory(), NioClient.factory());
+  }
+  
+  @Test
+  public void testNiNiServerGracefulDisconnect() throws Exception {
+    test(GRACEFUL, CYCLES, CONNECTIONS, HTTP, SERVER_DISCONNECT, NioServer.factory(), NioClient.factory());
+  }
+  
+  @Test
+  public void testNiNiServerAbruptDisconnect() throws Exception {
+    test(ABRUPT, CYCLES, CONNECTIONS, HTTP, SERVER_DISCONNECT, NioServer.factory(), NioClient.factory());
+  }
+
   private void test(boolean clean, int cycles, int connections, boolean https, boolean serverDisconnect,
                     XServerFactory<? extends XEndpoint> serverFactory,
                     XClientFactory<? extends XEndpoint> clientFactory) throws Exception {
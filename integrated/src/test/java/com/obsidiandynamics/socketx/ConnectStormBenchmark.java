@@ -0,0 +1,269 @@
+package com.obsidiandynamics.socketx;
+
+import static junit.framework.TestCase.*;
+
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.indigo.util.*;
+import com.obsidiandynamics.shell.*;
+import com.obsidiandynamics.socketx.attribute.*;
+import com.obsidiandynamics.socketx.jetty.*;
+import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.nio.*;
+import com.obsidiandynamics.socketx.undertow.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  Benchmarks the rate of connection churn (connects immediately followed by disconnects) 
+ *  against the number of connections that remain live throughout, simulating the connect
+ *  storm that typically follows a deployment.<p>
+ *  
+ *  The registry benchmark isolates the cost of tracking endpoints in an {@link XEndpointScanner},
+ *  using simulated endpoints. The churn benchmarks cycle real connections, one at a time. The
+ *  acceptor benchmarks open connections from several client threads at once, measuring how the
+ *  accept rate scales with the number of server acceptors ({@link XAtts#ACCEPTORS}). The bulk
+ *  benchmarks open connections from a single thread with a {@link BulkConnector}, measuring how
+ *  the connect rate scales with the number of attempts in flight.
+ */
+public final class ConnectStormBenchmark implements TestSupport {
+  private static final int PREFERRED_PORT = 8090;
+  
+  @Test
+  public void testRegistry() throws Exception {
+    registryChurn(new int[] { 0, 1_000, 10_000 }, 10_000);
+  }
+  
+  @Test
+  public void testUtUt() throws Exception {
+    connectChurn(UndertowServer.factory(), UndertowClient.factory(), new int[] { 0, 100 }, 100);
+  }
+  
+  @Test
+  public void testNtUt() throws Exception {
+    connectChurn(NettyServer.factory(), UndertowClient.factory(), new int[] { 0, 100 }, 100);
+  }
+  
+  @Test
+  public void testJtJt() throws Exception {
+    connectChurn(JettyServer.factory(), JettyClient.factory(), new int[] { 0, 100 }, 100);
+  }
+  
+  @Test
+  public void testNtUt_acceptors() throws Exception {
+    connectRate(NettyServer.factory(), UndertowClient.factory(), nativeNetty(), new int[] { 1, 2 }, 100, 4);
+  }
+  
+  @Test
+  public void testJtJt_acceptors() throws Exception {
+    connectRate(JettyServer.factory(), JettyClient.factory(), new AttributeMap(), new int[] { 0, 2 }, 100, 4);
+  }
+  
+  @Test
+  public void testUtUt_bulk() throws Exception {
+    bulkConnect(UndertowServer.factory(), UndertowClient.factory(), new int[] { 1, 64 }, 100);
+  }
+  
+  @Test
+  public void testJtJt_bulk() throws Exception {
+    bulkConnect(JettyServer.factory(), JettyClient.factory(), new int[] { 1, 64 }, 100);
+  }
+  
+  @Test
+  public void testNiNi_bulk() throws Exception {
+    bulkConnect(NioServer.factory(), NioClient.factory(), new int[] { 1, 64 }, 100);
+  }
+  
+  private static AttributeMap nativeNetty() {
+    return new AttributeMap().with(NettyAtts.TRANSPORT, NettyTransport.AUTO);
+  }
+  
+  /**
+   *  A minimal endpoint that is always open and never idle, used to populate the registry.
+   */
+  private static final class SimulatedEndpoint implements XEndpoint {
+    private final long lastActivityTime = System.currentTimeMillis();
+    
+    @Override public <T> T getContext() { return null; }
+
+    @Override public void setContext(Object context) {}
+
+    @Override public void send(String payload, XSendCallback callback) {}
+
+    @Override public void send(ByteBuffer payload, XSendCallback callback) {}
+
+    @Override public void flush() {}
+
+    @Override public void sendPing() {}
+
+    @Override public boolean isOpen() { return true; }
+
+    @Override public InetSocketAddress getRemoteAddress() { return null; }
+
+    @Override public long getBacklog() { return 0; }
+
+    @Override public void terminate() {}
+
+    @Override public long getLastActivityTime() { return lastActivityTime; }
+
+    @Override public void close() {}
+  }
+  
+  private static void registryChurn(int[] liveCounts, int cycles) throws Exception {
+    for (int live : liveCounts) {
+      try (XEndpointScanner<XEndpoint> scanner = new XEndpointScanner<>(1_000, 0)) {
+        for (int i = 0; i < live; i++) {
+          scanner.addEndpoint(new SimulatedEndpoint());
+        }
+        
+        final List<XEndpoint> churn = new ArrayList<>(cycles);
+        for (int i = 0; i < cycles; i++) {
+          churn.add(new SimulatedEndpoint());
+        }
+        
+        final long start = System.nanoTime();
+        for (XEndpoint endpoint : churn) {
+          scanner.addEndpoint(endpoint);
+          scanner.removeEndpoint(endpoint);
+        }
+        final long took = System.nanoTime() - start;
+        assertEquals(live, scanner.getEndpoints().size());
+        if (LOG) LOG_STREAM.format("registry: %,d live, %,d cycles, %,.0f cycles/s\n", 
+                                   live, cycles, cycles * 1e9 / took);
+      }
+    }
+  }
+  
+  @SuppressWarnings("unchecked")
+  private static <T> T unsafeCast(Object obj) {
+    return (T) obj;
+  }
+  
+  private static void connectChurn(XServerFactory<? extends XEndpoint> serverFactory,
+                                   XClientFactory<? extends XEndpoint> clientFactory,
+                                   int[] liveCounts, int cycles) throws Exception {
+    for (int live : liveCounts) {
+      final XServerConfig serverConfig = new XServerConfig()
+          .withPort(SocketUtils.getAvailablePort(PREFERRED_PORT));
+      final XServerFactory<XEndpoint> typedServerFactory = unsafeCast(serverFactory);
+      final XClientFactory<XEndpoint> typedClientFactory = unsafeCast(clientFactory);
+      try (XServer<XEndpoint> server = typedServerFactory.create(serverConfig, new XEndpointLambdaListener<>());
+           XClient<XEndpoint> client = typedClientFactory.create(new XClientConfig())) {
+        final URI uri = new URI("ws://localhost:" + serverConfig.port + "/");
+        final XEndpointListener<XEndpoint> clientListener = new XEndpointLambdaListener<>();
+        final int waitScale = 1 + live / 10_000;
+        
+        for (int i = 0; i < live; i++) {
+          client.connect(uri, clientListener);
+        }
+        SocketUtils.await().scale(waitScale).until(() -> {
+          assertEquals(live, server.getEndpointManager().getEndpoints().size());
+        });
+        
+        final long start = System.nanoTime();
+        for (int i = 0; i < cycles; i++) {
+          client.connect(uri, clientListener).close();
+        }
+        SocketUtils.await().scale(waitScale).until(() -> {
+          assertEquals(live, server.getEndpointManager().getEndpoints().size());
+        });
+        final long took = System.nanoTime() - start;
+        if (LOG) LOG_STREAM.format("%s: %,d live, %,d cycles, %,.0f cycles/s\n", 
+                                   server.getClass().getSimpleName(), live, cycles, cycles * 1e9 / took);
+      }
+    }
+  }
+  
+  private static void connectRate(XServerFactory<? extends XEndpoint> serverFactory,
+                                  XClientFactory<? extends XEndpoint> clientFactory,
+                                  Map<String, Object> serverAtts, int[] acceptorCounts, 
+                                  int connections, int clientThreads) throws Exception {
+    for (int acceptors : acceptorCounts) {
+      final AttributeMap atts = new AttributeMap();
+      atts.putAll(serverAtts);
+      atts.with(XAtts.ACCEPTORS, acceptors);
+      final XServerConfig serverConfig = new XServerConfig()
+          .withPort(SocketUtils.getAvailablePort(PREFERRED_PORT))
+          .withAttributes(atts);
+      final XServerFactory<XEndpoint> typedServerFactory = unsafeCast(serverFactory);
+      final XClientFactory<XEndpoint> typedClientFactory = unsafeCast(clientFactory);
+      try (XServer<XEndpoint> server = typedServerFactory.create(serverConfig, new XEndpointLambdaListener<>());
+           XClient<XEndpoint> client = typedClientFactory.create(new XClientConfig())) {
+        final URI uri = new URI("ws://localhost:" + serverConfig.port + "/");
+        final XEndpointListener<XEndpoint> clientListener = new XEndpointLambdaListener<>();
+        final int waitScale = 1 + connections / 10_000;
+        final ExecutorService executor = Executors.newFixedThreadPool(clientThreads);
+        
+        try {
+          final long start = System.nanoTime();
+          final List<Future<?>> futures = new ArrayList<>(clientThreads);
+          for (int t = 0; t < clientThreads; t++) {
+            final int share = connections / clientThreads + (t < connections % clientThreads ? 1 : 0);
+            futures.add(executor.submit(() -> {
+              for (int i = 0; i < share; i++) {
+                client.connect(uri, clientListener);
+              }
+              return null;
+            }));
+          }
+          for (Future<?> future : futures) {
+            future.get();
+          }
+          SocketUtils.await().scale(waitScale).until(() -> {
+            assertEquals(connections, server.getEndpointManager().getEndpoints().size());
+          });
+          final long took = System.nanoTime() - start;
+          if (LOG) LOG_STREAM.format("%s: %d acceptor(s), %,d connections, %d client threads, %,.0f conn/s\n", 
+                                     server.getClass().getSimpleName(), acceptors, connections, clientThreads, 
+                                     connections * 1e9 / took);
+        } finally {
+          executor.shutdown();
+        }
+      }
+    }
+  }
+  
+  private static void bulkConnect(XServerFactory<? extends XEndpoint> serverFactory,
+                                  XClientFactory<? extends XEndpoint> clientFactory,
+                                  int[] concurrencies, int connections) throws Exception {
+    for (int concurrency : concurrencies) {
+      final XServerConfig serverConfig = new XServerConfig()
+          .withPort(SocketUtils.getAvailablePort(PREFERRED_PORT));
+      final XServerFactory<XEndpoint> typedServerFactory = unsafeCast(serverFactory);
+      final XClientFactory<XEndpoint> typedClientFactory = unsafeCast(clientFactory);
+      try (XServer<XEndpoint> server = typedServerFactory.create(serverConfig, new XEndpointLambdaListener<>());
+           XClient<XEndpoint> client = typedClientFactory.create(new XClientConfig())) {
+        final URI uri = new URI("ws://localhost:" + serverConfig.port + "/");
+        final int waitScale = 1 + connections / 10_000;
+        
+        final long start = System.nanoTime();
+        final List<XEndpoint> endpoints = new BulkConnector<>(client)
+            .withMaxConcurrency(concurrency)
+            .connect(uri, connections, new XEndpointLambdaListener<>());
+        final long took = System.nanoTime() - start;
+        assertEquals(connections, endpoints.size());
+        SocketUtils.await().scale(waitScale).until(() -> {
+          assertEquals(connections, server.getEndpointManager().getEndpoints().size());
+        });
+        if (LOG) LOG_STREAM.format("%s: %,d in flight, %,d connections, %,.0f conn/s\n", 
+                                   client.getClass().getSimpleName(), concurrency, connections, 
+                                   connections * 1e9 / took);
+      }
+    }
+  }
+  
+  public static void main(String[] args) throws Exception {
+    BourneUtils.run("ulimit -Sa", null, true, System.out::print);
+    registryChurn(new int[] { 0, 10_000, 50_000, 100_000, 200_000 }, 100_000);
+    connectChurn(NettyServer.factory(), UndertowClient.factory(), new int[] { 0, 1_000, 5_000, 10_000 }, 10_000);
+    final int cores = Runtime.getRuntime().availableProcessors();
+    connectRate(NettyServer.factory(), UndertowClient.factory(), nativeNetty(), 
+                new int[] { 1, 2, 4, cores }, 20_000, cores);
+    bulkConnect(NettyServer.factory(), UndertowClient.factory(), new int[] { 1, 100, 1_000 }, 20_000);
+    bulkConnect(NioServer.factory(), NioClient.factory(), new int[] { 1, 100, 1_000 }, 20_000);
+  }
+}
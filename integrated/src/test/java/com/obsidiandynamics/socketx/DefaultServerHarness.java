@@ -97,6 +97,16 @@ final class DefaultServerHarness extends ServerHarness implements TestSupport {
     }
   }
 
+  @Override
+  public void broadcastShared(List<XEndpoint> endpoints, byte[] payload) {
+    server.getEndpointManager().broadcast(endpoints, ByteBuffer.wrap(payload), writeCallback);
+  }
+
+  @Override
+  public void broadcastShared(List<XEndpoint> endpoints, String payload) {
+    server.getEndpointManager().broadcast(endpoints, payload, writeCallback);
+  }
+
   @Override
   public void flush(List<XEndpoint> endpoints) throws IOException {
     for (XEndpoint endpoint : endpoints) {
@@ -0,0 +1,127 @@
+package com.obsidiandynamics.socketx;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.indigo.util.*;
+import com.obsidiandynamics.socketx.codec.*;
+
+/**
+ *  Compares the compression ratio and the CPU time per message of a {@link DictionaryCodec}
+ *  against permessage-deflate, with and without context takeover, over a corpus of messages.
+ *  The dictionary is trained on the first part of the corpus, and the comparison is made over 
+ *  the remainder.<p>
+ *  
+ *  The corpus is read from a file, one message per line, if a path is given as an argument; 
+ *  otherwise, a corpus of market data updates is synthesised.
+ */
+public final class DictionaryBenchmark implements TestSupport {
+  private static final int TRAINING_MESSAGES = 1_000;
+  
+  /** The deflate window size; a larger dictionary would be of no use. */
+  private static final int MAX_DICTIONARY_SIZE = 32_768;
+  
+  /** The trailer that RFC 7692 strips from each compressed message. */
+  private static final int SYNC_FLUSH_TRAILER = 4;
+  
+  @FunctionalInterface
+  private interface Compressor {
+    int compress(byte[] message);
+  }
+  
+  @Test
+  public void test() {
+    run(syntheticCorpus(TRAINING_MESSAGES + 1_000), 1);
+  }
+  
+  private static List<String> syntheticCorpus(int messages) {
+    final Random random = new Random(0);
+    final String[] sides = { "BUY", "SELL" };
+    final List<String> corpus = new ArrayList<>(messages);
+    for (int i = 0; i < messages; i++) {
+      corpus.add(String.format("{\"type\":\"quote\",\"symbol\":\"SYM%03d\",\"side\":\"%s\",\"price\":%.2f,"
+          + "\"quantity\":%d,\"venue\":\"XASX\",\"sequence\":%d,\"timestamp\":%d}", 
+          random.nextInt(200), sides[random.nextInt(2)], 100 + random.nextInt(10_000) / 100d, 
+          random.nextInt(100) * 100, i, 1_500_000_000_000L + i * 17));
+    }
+    return corpus;
+  }
+  
+  /**
+   *  Concatenates the training messages, latest last, keeping no more than the window size. 
+   *  Deflate encodes nearer matches more compactly, so the end of the dictionary is the most
+   *  valuable.
+   */
+  private static byte[] train(List<String> samples) {
+    final ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+    for (String sample : samples) {
+      final byte[] bytes = sample.getBytes(StandardCharsets.UTF_8);
+      dictionary.write(bytes, 0, bytes.length);
+    }
+    final byte[] all = dictionary.toByteArray();
+    return Arrays.copyOfRange(all, Math.max(0, all.length - MAX_DICTIONARY_SIZE), all.length);
+  }
+  
+  private static void run(List<String> corpus, int passes) {
+    final byte[] dictionary = train(corpus.subList(0, TRAINING_MESSAGES));
+    final List<byte[]> messages = new ArrayList<>();
+    for (String message : corpus.subList(TRAINING_MESSAGES, corpus.size())) {
+      messages.add(message.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    final byte[] output = new byte[MAX_DICTIONARY_SIZE * 4];
+    
+    final Deflater noContext = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    measure("permessage-deflate, no context takeover", messages, passes, message -> {
+      noContext.reset();
+      noContext.setInput(message);
+      return noContext.deflate(output, 0, output.length, Deflater.SYNC_FLUSH) - SYNC_FLUSH_TRAILER;
+    });
+    
+    final Deflater context = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    measure("permessage-deflate, context takeover", messages, passes, message -> {
+      context.setInput(message);
+      return context.deflate(output, 0, output.length, Deflater.SYNC_FLUSH) - SYNC_FLUSH_TRAILER;
+    });
+    
+    final DictionaryCodec codec = new DictionaryCodec(dictionary);
+    final String[] texts = corpus.subList(TRAINING_MESSAGES, corpus.size()).toArray(new String[0]);
+    final int[] index = { 0 };
+    measure("dictionary (" + dictionary.length + " bytes)", messages, passes, message -> {
+      final ByteBuffer encoded = codec.encode(texts[index[0]++ % texts.length]);
+      return encoded.remaining();
+    });
+  }
+  
+  private static void measure(String name, List<byte[]> messages, int passes, Compressor compressor) {
+    final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    long rawBytes = 0, compressedBytes = 0;
+    final long startCpu = threads.getCurrentThreadCpuTime();
+    for (int pass = 0; pass < passes; pass++) {
+      for (byte[] message : messages) {
+        final int compressed = compressor.compress(message);
+        assertTrue(compressed > 0);
+        rawBytes += message.length;
+        compressedBytes += compressed;
+      }
+    }
+    final long tookCpu = threads.getCurrentThreadCpuTime() - startCpu;
+    if (LOG) LOG_STREAM.format("%s: ratio %.2f, %,.0f ns CPU/msg\n", 
+                               name, (double) rawBytes / compressedBytes, (double) tookCpu / messages.size() / passes);
+  }
+  
+  public static void main(String[] args) throws IOException {
+    final List<String> corpus = args.length != 0 ? Files.readAllLines(Paths.get(args[0])) : syntheticCorpus(100_000);
+    if (corpus.size() <= TRAINING_MESSAGES) throw new IllegalArgumentException("Corpus must exceed " + TRAINING_MESSAGES + " messages");
+    run(corpus, 10);
+  }
+}
@@ -0,0 +1,117 @@
+package com.obsidiandynamics.socketx;
+
+import static junit.framework.TestCase.*;
+
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.indigo.util.*;
+import com.obsidiandynamics.socketx.dispatch.*;
+import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.undertow.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  Compares the throughput and the round-trip latency of a server that echoes messages from 
+ *  its listener, with the listener invoked inline on the I/O threads and dispatched by a 
+ *  {@link DispatchingListener} (on virtual threads where the runtime supports them). Each 
+ *  mode is measured with a non-blocking listener, and with one that blocks for a fixed time 
+ *  before replying, in the manner of a database lookup.<p>
+ *  
+ *  The client spreads its messages evenly among the connections, bounding the backlog of each
+ *  so that no messages are dropped.
+ */
+public final class DispatchBenchmark implements TestSupport {
+  private static final int PREFERRED_PORT = 8090;
+  
+  private static final int MAX_BACKLOG = 1_000;
+  
+  @Test
+  public void testNtUt() throws Exception {
+    run(NettyServer.factory(), UndertowClient.factory(), 10, 100, 100);
+  }
+  
+  @SuppressWarnings("unchecked")
+  private static <T> T unsafeCast(Object obj) {
+    return (T) obj;
+  }
+  
+  private static void run(XServerFactory<? extends XEndpoint> serverFactory,
+                          XClientFactory<? extends XEndpoint> clientFactory,
+                          int connections, int messagesPerConnection, int blockMicros) throws Exception {
+    if (LOG) LOG_STREAM.format("Virtual threads %s\n", VirtualThreads.isAvailable() ? "available" : "unavailable");
+    for (boolean dispatched : new boolean[] { false, true }) {
+      for (int block : new int[] { 0, blockMicros }) {
+        measure(serverFactory, clientFactory, connections, messagesPerConnection, dispatched, block);
+      }
+    }
+  }
+  
+  private static void measure(XServerFactory<? extends XEndpoint> serverFactory,
+                              XClientFactory<? extends XEndpoint> clientFactory,
+                              int connections, int messagesPerConnection, 
+                              boolean dispatched, int blockMicros) throws Exception {
+    final XEndpointListener<XEndpoint> handler = new XEndpointLambdaListener<>()
+        .onBinary((endpoint, message) -> {
+          if (blockMicros != 0) LockSupport.parkNanos(blockMicros * 1_000L);
+          endpoint.send(message);
+        });
+    final XEndpointListener<XEndpoint> serverListener = dispatched ? DispatchingListener.onVirtualThreads(handler) : handler;
+    
+    final int messages = connections * messagesPerConnection;
+    final AtomicLongArray latencies = new AtomicLongArray(messages);
+    final AtomicInteger received = new AtomicInteger();
+    final XEndpointListener<XEndpoint> clientListener = new XEndpointLambdaListener<>()
+        .onBinary((endpoint, message) -> {
+          latencies.set(received.getAndIncrement(), System.nanoTime() - message.getLong(message.position()));
+        });
+    
+    final XServerConfig serverConfig = new XServerConfig().withPort(SocketUtils.getAvailablePort(PREFERRED_PORT));
+    final XServerFactory<XEndpoint> typedServerFactory = unsafeCast(serverFactory);
+    final XClientFactory<XEndpoint> typedClientFactory = unsafeCast(clientFactory);
+    try (XServer<XEndpoint> server = typedServerFactory.create(serverConfig, serverListener);
+         XClient<XEndpoint> client = typedClientFactory.create(new XClientConfig())) {
+      final List<XEndpoint> endpoints = new ArrayList<>(connections);
+      for (int i = 0; i < connections; i++) {
+        endpoints.add(client.connect(new URI("ws://localhost:" + serverConfig.port + "/"), clientListener));
+      }
+      SocketUtils.await().until(() -> {
+        assertEquals(connections, server.getEndpointManager().getEndpoints().size());
+      });
+      
+      final long start = System.nanoTime();
+      for (int i = 0; i < messagesPerConnection; i++) {
+        for (XEndpoint endpoint : endpoints) {
+          while (endpoint.getBacklog() >= MAX_BACKLOG) {
+            Thread.yield();
+          }
+          final ByteBuffer payload = ByteBuffer.allocate(Long.BYTES);
+          payload.putLong(0, System.nanoTime());
+          endpoint.send(payload);
+        }
+      }
+      SocketUtils.await().scale(1 + messages * Math.max(1, blockMicros) / 1_000_000).until(() -> {
+        assertEquals(messages, received.get());
+      });
+      final long took = System.nanoTime() - start;
+      
+      final long[] sorted = new long[messages];
+      for (int i = 0; i < messages; i++) sorted[i] = latencies.get(i);
+      Arrays.sort(sorted);
+      if (LOG) LOG_STREAM.format("%s, %s listener: %,.0f msg/s, p50 %,.0f us, p99 %,.0f us\n",
+                                 dispatched ? "dispatched" : "inline", 
+                                 blockMicros != 0 ? "blocking (" + blockMicros + " us)" : "non-blocking",
+                                 messages * 1e9 / took, sorted[messages / 2] / 1_000d, 
+                                 sorted[(int) Math.min(messages - 1, messages * 0.99)] / 1_000d);
+    }
+  }
+  
+  public static void main(String[] args) throws Exception {
+    run(NettyServer.factory(), UndertowClient.factory(), 100, 1_000, 1_000);
+  }
+}
@@ -9,7 +9,9 @@ import java.util.*;
 import org.junit.*;
 
 import com.obsidiandynamics.socketx.jetty.*;
+import com.obsidiandynamics.socketx.loopback.*;
 import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.nio.*;
 import com.obsidiandynamics.socketx.undertow.*;
 import com.obsidiandynamics.socketx.util.*;
 
@@ -35,6 +37,26 @@ public final class EchoTest extends BaseClientServerTest {
     test(CYCLES, CONNECTIONS, MESSAGES, NettyServer.factory(), UndertowClient.factory());
   }
 
+  @Test
+  public void testLbLb() throws Exception {
+    test(CYCLES, CONNECTIONS, MESSAGES, LoopbackServer.factory(), LoopbackClient.factory());
+  }
+
+  @Test
+  public void testNiNi() throws Exception {
+    test(CYCLES, CONNECTIONS, MESSAGES, NioServer.factory(), NioClient.factory());
+  }
+
+  @Test
+  public void testNiUt() throws Exception {
+    test(CYCLES, CONNECTIONS, MESSAGES, NioServer.factory(), UndertowClient.factory());
+  }
+
+  @Test
+  public void testUtNi() throws Exception {
+    test(CYCLES, CONNECTIONS, MESSAGES, UndertowServer.factory(), NioClient.factory());
+  }
+
   private void test(int cycles, int connections, int messages,
                     XServerFactory<? extends XEndpoint> serverFactory,
                     XClientFactory<? extends XEndpoint> clientFactory) throws Exception {
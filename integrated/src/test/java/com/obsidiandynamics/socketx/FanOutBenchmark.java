@@ -3,6 +3,7 @@ package com.obsidiandynamics.socketx;
 import static junit.framework.TestCase.*;
 
 import java.io.*;
+import java.lang.management.*;
 import java.util.*;
 import java.util.concurrent.atomic.*;
 
@@ -14,7 +15,9 @@ import com.obsidiandynamics.shell.*;
 import com.obsidiandynamics.socketx.attribute.*;
 import com.obsidiandynamics.socketx.fake.*;
 import com.obsidiandynamics.socketx.jetty.*;
+import com.obsidiandynamics.socketx.loopback.*;
 import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.nio.*;
 import com.obsidiandynamics.socketx.ssl.*;
 import com.obsidiandynamics.socketx.undertow.*;
 import com.obsidiandynamics.socketx.util.*;
@@ -48,6 +51,7 @@ public final class FanOutBenchmark implements TestSupport {
     boolean echo;        // whether the client should respond to a broadcast
     boolean flush;       // flush on the server after enqueuing (if 'nodelay' is disabled)
     boolean text;        // send text frames instead of binary
+    boolean broadcast;   // use the endpoint manager's broadcast API instead of per-endpoint sends
     int backlogHwm;
     float warmupFrac;
     LogConfig log;
@@ -81,6 +85,7 @@ public final class FanOutBenchmark implements TestSupport {
       m = 10;
       bytes = BYTES;
       flush = false;
+      broadcast = false;
       backlogHwm = BACKlog_HWM;
       warmupFrac = 0.10f;
       log = new LogConfig() {{
@@ -165,6 +170,30 @@ public final class FanOutBenchmark implements TestSupport {
     }}.assignDefaults().andFinally(client::close).test();
   }
   
+  @Test
+  public void testNtUt_broadcast_binary() throws Throwable {
+    final XClient<?> client = createClient(UndertowClient.factory(), IDLE_TIMEOUT);
+    new Config() {{
+      serverHarnessFactory = serverHarnessFactory(NettyServer.factory());
+      clientHarnessFactory = clientHarnessFactory(client);
+      echo = false;
+      text = false;
+      broadcast = true;
+    }}.assignDefaults().andFinally(client::close).test();
+  }
+  
+  @Test
+  public void testNtUt_broadcast_text() throws Throwable {
+    final XClient<?> client = createClient(UndertowClient.factory(), IDLE_TIMEOUT);
+    new Config() {{
+      serverHarnessFactory = serverHarnessFactory(NettyServer.factory());
+      clientHarnessFactory = clientHarnessFactory(client);
+      echo = false;
+      text = true;
+      broadcast = true;
+    }}.assignDefaults().andFinally(client::close).test();
+  }
+  
   @Test
   public void testUtUt_noEcho_binary() throws Throwable {
     final XClient<?> client = createClient(UndertowClient.factory(), IDLE_TIMEOUT);
@@ -209,6 +238,18 @@ public final class FanOutBenchmark implements TestSupport {
     }}.assignDefaults().andFinally(client::close).test();
   }
   
+  @Test
+  public void testUtUt_broadcast_text() throws Throwable {
+    final XClient<?> client = createClient(UndertowClient.factory(), IDLE_TIMEOUT);
+    new Config() {{
+      serverHarnessFactory = serverHarnessFactory(UndertowServer.factory());
+      clientHarnessFactory = clientHarnessFactory(client);
+      echo = false;
+      text = true;
+      broadcast = true;
+    }}.assignDefaults().andFinally(client::close).test();
+  }
+  
   @Test
   public void testUtFc() throws Throwable {
     new Config() {{
@@ -251,6 +292,50 @@ public final class FanOutBenchmark implements TestSupport {
       text = false;
     }}.assignDefaults().andFinally(client::close).test();
   }
+
+  @Test
+  public void testLbLb_noEcho_binary() throws Throwable {
+    final XClient<?> client = createClient(LoopbackClient.factory(), IDLE_TIMEOUT);
+    new Config() {{
+      serverHarnessFactory = serverHarnessFactory(LoopbackServer.factory());
+      clientHarnessFactory = clientHarnessFactory(client);
+      echo = false;
+      text = false;
+    }}.assignDefaults().andFinally(client::close).test();
+  }
+  
+  @Test
+  public void testLbLb_echo_text() throws Throwable {
+    final XClient<?> client = createClient(LoopbackClient.factory(), IDLE_TIMEOUT);
+    new Config() {{
+      serverHarnessFactory = serverHarnessFactory(LoopbackServer.factory());
+      clientHarnessFactory = clientHarnessFactory(client);
+      echo = true;
+      text = true;
+    }}.assignDefaults().andFinally(client::close).test();
+  }
+
+  @Test
+  public void testNiNi_noEcho_binary() throws Throwable {
+    final XClient<?> client = createClient(NioClient.factory(), IDLE_TIMEOUT);
+    new Config() {{
+      serverHarnessFactory = serverHarnessFactory(NioServer.factory());
+      clientHarnessFactory = clientHarnessFactory(client);
+      echo = false;
+      text = false;
+    }}.assignDefaults().andFinally(client::close).test();
+  }
+  
+  @Test
+  public void testNiNi_echo_text() throws Throwable {
+    final XClient<?> client = createClient(NioClient.factory(), IDLE_TIMEOUT);
+    new Config() {{
+      serverHarnessFactory = serverHarnessFactory(NioServer.factory());
+      clientHarnessFactory = clientHarnessFactory(client);
+      echo = true;
+      text = true;
+    }}.assignDefaults().andFinally(client::close).test();
+  }
   
   private static void throttle(Config c, AtomicBoolean throttleInProgress, List<? extends XEndpoint> endpoints, int backlogHwm) {
     boolean logged = false;
@@ -286,6 +371,37 @@ public final class FanOutBenchmark implements TestSupport {
     }
   }
   
+  private static void broadcast(Config c, ServerHarness server, List<XEndpoint> endpoints, 
+                                byte[] binPayload, String textPayload) {
+    if (c.broadcast) {
+      if (c.text) {
+        server.broadcastShared(endpoints, textPayload);
+      } else {
+        server.broadcastShared(endpoints, binPayload);
+      }
+    } else {
+      if (c.text) {
+        server.broadcast(endpoints, textPayload);
+      } else {
+        server.broadcast(endpoints, binPayload);
+      }
+    }
+  }
+  
+  /**
+   *  Obtains the number of bytes allocated by the current thread, if supported by the JVM.
+   *  
+   *  @return The allocated bytes, or {@code -1} if allocation tracking is unsupported.
+   */
+  private static long getAllocatedBytes() {
+    final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (threadBean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    } else {
+      return -1;
+    }
+  }
+  
   private static Summary test(Config c) throws Exception {
     final List<ClientHarness> clients = new ArrayList<>(c.m);
     final AtomicBoolean throttleInProgress = new AtomicBoolean();
@@ -367,11 +483,7 @@ public final class FanOutBenchmark implements TestSupport {
     if (c.log.stages) c.log.out.format("s: warming up...\n");
     for (int i = 0; i < c.warmupMessages; i++) {
       long sent = 0;
-      if (c.text) {
-        server.broadcast(endpoints, textPayload);
-      } else {
-        server.broadcast(endpoints, binPayload);
-      }
+      broadcast(c, server, endpoints, binPayload, textPayload);
       
       if (c.backlogHwm != 0) {
         sent += endpoints.size();
@@ -387,13 +499,10 @@ public final class FanOutBenchmark implements TestSupport {
     final long start = System.currentTimeMillis();
     if (c.log.stages) c.log.out.format("s: starting timed run...\n");
     Parallel.blockingSlice(endpoints, sendThreads, sublist -> {
+      final long allocatedBefore = getAllocatedBytes();
       long sent = 0;
       for (int i = 0; i < timedRuns; i++) {
-        if (c.text) {
-          server.broadcast(sublist, textPayload);
-        } else {
-          server.broadcast(sublist, binPayload);
-        }
+        broadcast(c, server, sublist, binPayload, textPayload);
         
         if (c.backlogHwm != 0) {
           sent += sublist.size();
@@ -405,6 +514,12 @@ public final class FanOutBenchmark implements TestSupport {
         if (c.log.progress && (i + c.warmupMessages) % progressInterval == 0) c.log.printProgressBlock();
       }
       
+      if (c.log.stages && allocatedBefore != -1) {
+        final long recipients = timedRuns * sublist.size();
+        final long allocated = getAllocatedBytes() - allocatedBefore;
+        c.log.out.format("s: %,.1f bytes allocated per recipient by the sending thread\n", (double) allocated / recipients);
+      }
+      
       if (c.flush) {
         if (c.log.stages) c.log.out.format("s: flushing\n");
         for (int i = 0; i < c.n; i++) {
@@ -502,6 +617,7 @@ public final class FanOutBenchmark implements TestSupport {
         echo = false;
         flush = false;
         text = false;
+        broadcast = false;
         backlogHwm = BACKlog_HWM;
         warmupFrac = 0.10f;
         log = new LogConfig() {{
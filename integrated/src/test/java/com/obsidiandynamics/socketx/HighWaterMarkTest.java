@@ -13,7 +13,9 @@ import org.mockito.*;
 
 import com.obsidiandynamics.indigo.util.*;
 import com.obsidiandynamics.socketx.jetty.*;
+import com.obsidiandynamics.socketx.loopback.*;
 import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.nio.*;
 import com.obsidiandynamics.socketx.undertow.*;
 import com.obsidiandynamics.socketx.util.*;
 
@@ -51,6 +53,26 @@ public final class HighWaterMarkTest extends BaseClientServerTest {
     test(NettyServer.factory(), UndertowClient.factory(), BINARY);
   }
 
+  @Test
+  public void testLbLbText() throws Exception {
+    test(LoopbackServer.factory(), LoopbackClient.factory(), TEXT);
+  }
+
+  @Test
+  public void testLbLbBinary() throws Exception {
+    test(LoopbackServer.factory(), LoopbackClient.factory(), BINARY);
+  }
+
+  @Test
+  public void testNiNiText() throws Exception {
+    test(NioServer.factory(), NioClient.factory(), TEXT);
+  }
+
+  @Test
+  public void testNiNiBinary() throws Exception {
+    test(NioServer.factory(), NioClient.factory(), BINARY);
+  }
+
   private void test(XServerFactory<? extends XEndpoint> serverFactory,
                     XClientFactory<? extends XEndpoint> clientFactory,
                     boolean text) throws Exception {
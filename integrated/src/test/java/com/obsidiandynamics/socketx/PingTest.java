@@ -6,7 +6,9 @@ import static org.mockito.Mockito.*;
 import org.junit.*;
 
 import com.obsidiandynamics.socketx.jetty.*;
+import com.obsidiandynamics.socketx.loopback.*;
 import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.nio.*;
 import com.obsidiandynamics.socketx.undertow.*;
 import com.obsidiandynamics.socketx.util.*;
 
@@ -40,6 +42,26 @@ public final class PingTest extends BaseClientServerTest {
   public void testNtUtClientPing() throws Exception {
     testClientPing(NettyServer.factory(), UndertowClient.factory());
   }
+
+  @Test
+  public void testLbLbServerPing() throws Exception {
+    testServerPing(LoopbackServer.factory(), LoopbackClient.factory());
+  }
+
+  @Test
+  public void testLbLbClientPing() throws Exception {
+    testClientPing(LoopbackServer.factory(), LoopbackClient.factory());
+  }
+
+  @Test
+  public void testNiNiServerPing() throws Exception {
+    testServerPing(NioServer.factory(), NioClient.factory());
+  }
+
+  @Test
+  public void testNiNiClientPing() throws Exception {
+    testClientPing(NioServer.factory(), NioClient.factory());
+  }
   
   private XServerConfig getServerConfig() {
     return getDefaultServerConfig(false)
@@ -0,0 +1,122 @@
+package com.obsidiandynamics.socketx;
+
+import static junit.framework.TestCase.*;
+
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.indigo.util.*;
+import com.obsidiandynamics.socketx.XEndpointScanner.*;
+
+/**
+ *  Compares the cost of a scan pass in each of the {@link XEndpointScanner.Mode}s, over a
+ *  population of simulated endpoints whose keep-alive deadlines are spread evenly across the 
+ *  ping interval.<p>
+ *  
+ *  Scans are driven directly on a simulated clock, with the scanner thread left unstarted, so that 
+ *  a long stretch of connection time can be replayed quickly.
+ */
+public final class ScanBenchmark implements TestSupport {
+  private static final int SCAN_INTERVAL_MILLIS = 10;
+  
+  private static final int PING_INTERVAL_MILLIS = 5_000;
+  
+  @Test
+  public void testLinear() throws InterruptedException {
+    scan(Mode.LINEAR, 10_000, 1_000);
+  }
+  
+  @Test
+  public void testWheel() throws InterruptedException {
+    scan(Mode.WHEEL, 10_000, 1_000);
+  }
+  
+  /**
+   *  An endpoint that is always open, and whose activity is refreshed by a ping, as though
+   *  the pong was returned instantly.
+   */
+  private static final class SimulatedEndpoint implements XEndpoint {
+    private long lastActivityTime;
+    
+    private long pings;
+    
+    private final long[] clock;
+    
+    SimulatedEndpoint(long[] clock, long lastActivityTime) {
+      this.clock = clock;
+      this.lastActivityTime = lastActivityTime;
+    }
+    
+    @Override public <T> T getContext() { return null; }
+
+    @Override public void setContext(Object context) {}
+
+    @Override public void send(String payload, XSendCallback callback) {}
+
+    @Override public void send(ByteBuffer payload, XSendCallback callback) {}
+
+    @Override public void flush() {}
+
+    @Override public void sendPing() {
+      pings++;
+      lastActivityTime = clock[0];
+    }
+
+    @Override public boolean isOpen() { return true; }
+
+    @Override public InetSocketAddress getRemoteAddress() { return null; }
+
+    @Override public long getBacklog() { return 0; }
+
+    @Override public void terminate() {}
+
+    @Override public long getLastActivityTime() { return lastActivityTime; }
+
+    @Override public void close() {}
+  }
+  
+  private static void scan(Mode mode, int endpoints, int scans) throws InterruptedException {
+    try (XEndpointScanner<SimulatedEndpoint> scanner = 
+        new XEndpointScanner<>(SCAN_INTERVAL_MILLIS, PING_INTERVAL_MILLIS, mode, 1, false)) {
+      final long start = System.currentTimeMillis();
+      final long[] clock = { start };
+      final List<SimulatedEndpoint> population = new ArrayList<>(endpoints);
+      final Random random = new Random(0);
+      for (int i = 0; i < endpoints; i++) {
+        final SimulatedEndpoint endpoint = new SimulatedEndpoint(clock, start - random.nextInt(PING_INTERVAL_MILLIS));
+        population.add(endpoint);
+        scanner.addEndpoint(endpoint);
+      }
+      
+      final long began = System.nanoTime();
+      for (int i = 1; i <= scans; i++) {
+        clock[0] = start + (long) i * SCAN_INTERVAL_MILLIS;
+        scanner.scan(clock[0]);
+      }
+      final long took = System.nanoTime() - began;
+      
+      long pings = 0;
+      for (SimulatedEndpoint endpoint : population) {
+        pings += endpoint.pings;
+      }
+      final long simulatedMillis = (long) scans * SCAN_INTERVAL_MILLIS;
+      final long expectedPings = (long) endpoints * simulatedMillis / PING_INTERVAL_MILLIS;
+      assertTrue("pings=" + pings + ", expected~" + expectedPings, 
+                 pings >= expectedPings / 2 && pings <= expectedPings * 2 + endpoints);
+      
+      if (LOG) LOG_STREAM.format("%s: %,d endpoints, %,d scans, %,.1f µs/scan, %,d pings\n", 
+                                 mode, endpoints, scans, took / 1_000d / scans, pings);
+    }
+  }
+  
+  public static void main(String[] args) throws InterruptedException {
+    for (int endpoints : new int[] { 10_000, 100_000, 1_000_000 }) {
+      for (Mode mode : Mode.values()) {
+        scan(mode, endpoints, 2_000);
+      }
+    }
+  }
+}
@@ -16,6 +16,10 @@ public abstract class ServerHarness extends BaseHarness {
   
   public abstract void broadcast(List<XEndpoint> endpoints, String payload);
   
+  public abstract void broadcastShared(List<XEndpoint> endpoints, byte[] payload);
+  
+  public abstract void broadcastShared(List<XEndpoint> endpoints, String payload);
+  
   public abstract void flush(List<XEndpoint> endpoints) throws IOException;
   
   public abstract void sendPing(XEndpoint endpoint);
@@ -0,0 +1,81 @@
+package com.obsidiandynamics.socketx;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.socketx.jetty.*;
+import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.undertow.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  Tests {@link XEndpoint#sendStream(ReadableByteChannel, int)} from the client, received in
+ *  fragments by an {@link XEndpointPartialListener} on the server. The large message exceeds
+ *  the default maximum size of an aggregated message.
+ */
+public final class StreamTest extends BaseClientServerTest {
+  private static final int FRAGMENT_SIZE = 8192;
+
+  @Test
+  public void testJtJt() throws Exception {
+    test(JettyServer.factory(), JettyClient.factory());
+  }
+
+  @Test
+  public void testUtUt() throws Exception {
+    test(UndertowServer.factory(), UndertowClient.factory());
+  }
+
+  @Test
+  public void testNtUt() throws Exception {
+    test(NettyServer.factory(), UndertowClient.factory());
+  }
+
+  private void test(XServerFactory<? extends XEndpoint> serverFactory,
+                    XClientFactory<? extends XEndpoint> clientFactory) throws Exception {
+    // the server reassembles the fragments of each binary message
+    final XServerConfig serverConfig = getDefaultServerConfig(false)
+        .withScanInterval(1);
+    @SuppressWarnings("unchecked")
+    final XEndpointPartialListener<XEndpoint> serverListener = mock(XEndpointPartialListener.class);
+    final ByteArrayOutputStream fragments = new ByteArrayOutputStream();
+    final List<byte[]> messages = Collections.synchronizedList(new ArrayList<>());
+    doAnswer(invocation -> {
+      final ByteBuffer fragment = invocation.getArgument(1);
+      final byte[] bytes = new byte[fragment.remaining()];
+      fragment.get(bytes);
+      fragments.write(bytes);
+      if (invocation.<Boolean>getArgument(2)) {
+        messages.add(fragments.toByteArray());
+        fragments.reset();
+      }
+      return null;
+    }).when(serverListener).onBinaryFragment(any(), any(), anyBoolean());
+    // the listener isn't proxied, as the proxy would hide the partial listener interface
+    server = serverFactory.create(serverConfig, serverListener);
+
+    final XClientConfig clientConfig = getDefaultClientConfig()
+        .withScanInterval(1);
+    createClient(clientFactory, clientConfig);
+    final XEndpointListener<XEndpoint> clientListener = createMockListener();
+    final XEndpoint endpoint = openClientEndpoint(false, serverConfig.port, clientListener);
+    
+    final byte[] large = BinaryUtils.randomBytes(200_000);
+    final byte[] small = "small".getBytes();
+    endpoint.sendStream(Channels.newChannel(new ByteArrayInputStream(large)), FRAGMENT_SIZE);
+    endpoint.sendStream(new ByteArrayInputStream(small), FRAGMENT_SIZE);
+    
+    SocketUtils.await().until(() -> assertEquals(2, messages.size()));
+    assertArrayEquals(large, messages.get(0));
+    assertArrayEquals(small, messages.get(1));
+    verify(serverListener, never()).onBinary(any(), any());
+  }
+}
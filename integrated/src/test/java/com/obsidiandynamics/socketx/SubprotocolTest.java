@@ -0,0 +1,93 @@
+package com.obsidiandynamics.socketx;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.socketx.codec.*;
+import com.obsidiandynamics.socketx.jetty.*;
+import com.obsidiandynamics.socketx.loopback.*;
+import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.nio.*;
+import com.obsidiandynamics.socketx.undertow.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  Tests the negotiation of a subprotocol, using a {@link DictionaryCodec} to exchange
+ *  compressed messages where it has been agreed upon, and plain text messages otherwise.
+ */
+public final class SubprotocolTest extends BaseClientServerTest {
+  private static final DictionaryCodec CODEC = 
+      new DictionaryCodec("{\"symbol\":\"\",\"bid\":,\"ask\":,\"volume\":}".getBytes());
+  
+  private static final String MESSAGE = "{\"symbol\":\"SYM123\",\"bid\":101.25,\"ask\":101.5,\"volume\":12000}";
+  
+  @Test
+  public void testJtJt() throws Exception {
+    test(JettyServer.factory(), JettyClient.factory(), true);
+    test(JettyServer.factory(), JettyClient.factory(), false);
+  }
+
+  @Test
+  public void testUtUt() throws Exception {
+    test(UndertowServer.factory(), UndertowClient.factory(), true);
+    test(UndertowServer.factory(), UndertowClient.factory(), false);
+  }
+
+  @Test
+  public void testNtUt() throws Exception {
+    test(NettyServer.factory(), UndertowClient.factory(), true);
+    test(NettyServer.factory(), UndertowClient.factory(), false);
+  }
+
+  @Test
+  public void testLbLb() throws Exception {
+    test(LoopbackServer.factory(), LoopbackClient.factory(), true);
+    test(LoopbackServer.factory(), LoopbackClient.factory(), false);
+  }
+
+  @Test
+  public void testNiNi() throws Exception {
+    test(NioServer.factory(), NioClient.factory(), true);
+    test(NioServer.factory(), NioClient.factory(), false);
+  }
+
+  @Test
+  public void testNiUt() throws Exception {
+    test(NioServer.factory(), UndertowClient.factory(), true);
+  }
+
+  private void test(XServerFactory<? extends XEndpoint> serverFactory,
+                    XClientFactory<? extends XEndpoint> clientFactory,
+                    boolean offer) throws Exception {
+    // the server echoes each message, encoded where the codec has been agreed upon
+    final XServerConfig serverConfig = getDefaultServerConfig(false)
+        .withScanInterval(1)
+        .withSubprotocols("unsupported", CODEC.getSubprotocol());
+    final XEndpointListener<XEndpoint> serverListener = CODEC.decoding(new XEndpointLambdaListener<>()
+        .onText((endpoint, message) -> CODEC.send(endpoint, message, null)));
+    createServer(serverFactory, serverConfig, serverListener);
+
+    final XClientConfig clientConfig = getDefaultClientConfig()
+        .withScanInterval(1)
+        .withSubprotocols(offer ? new String[] { CODEC.getSubprotocol() } : new String[0]);
+    createClient(clientFactory, clientConfig);
+    final XEndpointListener<XEndpoint> clientListener = createMockListener();
+    final XEndpoint endpoint = openClientEndpoint(false, serverConfig.port, CODEC.decoding(clientListener));
+    
+    final String expectedSubprotocol = offer ? CODEC.getSubprotocol() : null;
+    assertEquals(expectedSubprotocol, endpoint.getSubprotocol());
+    CODEC.send(endpoint, MESSAGE, null);
+    
+    SocketUtils.await().until(() -> {
+      verify(clientListener).onText(notNull(), eq(MESSAGE));
+    });
+    assertEquals(expectedSubprotocol, getServerEndpoint().getSubprotocol());
+    verify(clientListener, never()).onBinary(any(), any());
+    verify(clientListener, never()).onError(any(), any());
+    
+    dispose();
+  }
+}
@@ -0,0 +1,122 @@
+package com.obsidiandynamics.socketx;
+
+import static org.junit.Assert.*;
+
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.socketx.dispatch.*;
+import com.obsidiandynamics.socketx.jetty.*;
+import com.obsidiandynamics.socketx.loopback.*;
+import com.obsidiandynamics.socketx.netty.*;
+import com.obsidiandynamics.socketx.nio.*;
+import com.obsidiandynamics.socketx.undertow.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  Tests the suspension of receives on the server, both directly and by a bounded 
+ *  {@link DispatchingListener}.
+ */
+public final class SuspendReceivesTest extends BaseClientServerTest {
+  /** Enough data to overflow the socket buffers between the client and the server. */
+  private static final int MESSAGES = 1_000;
+  
+  private static final int MESSAGE_SIZE = 32_000;
+  
+  private static final int MAX_QUEUED_MESSAGES = 10;
+  
+  @Test
+  public void testJtJt() throws Exception {
+    testSuspend(JettyServer.factory(), JettyClient.factory());
+    dispose();
+    testBoundedDispatch(JettyServer.factory(), JettyClient.factory());
+  }
+  
+  @Test
+  public void testUtUt() throws Exception {
+    testSuspend(UndertowServer.factory(), UndertowClient.factory());
+    dispose();
+    testBoundedDispatch(UndertowServer.factory(), UndertowClient.factory());
+  }
+  
+  @Test
+  public void testNtUt() throws Exception {
+    testSuspend(NettyServer.factory(), UndertowClient.factory());
+    dispose();
+    testBoundedDispatch(NettyServer.factory(), UndertowClient.factory());
+  }
+  
+  @Test
+  public void testLbLb() throws Exception {
+    testSuspend(LoopbackServer.factory(), LoopbackClient.factory());
+    dispose();
+    testBoundedDispatch(LoopbackServer.factory(), LoopbackClient.factory());
+  }
+  
+  @Test
+  public void testNiNi() throws Exception {
+    testSuspend(NioServer.factory(), NioClient.factory());
+    dispose();
+    testBoundedDispatch(NioServer.factory(), NioClient.factory());
+  }
+  
+  private void testSuspend(XServerFactory<? extends XEndpoint> serverFactory,
+                           XClientFactory<? extends XEndpoint> clientFactory) throws Exception {
+    final XServerConfig serverConfig = getDefaultServerConfig(false);
+    final AtomicInteger received = new AtomicInteger();
+    createServer(serverFactory, serverConfig, new XEndpointLambdaListener<>()
+                 .onBinary((endpoint, message) -> received.incrementAndGet()));
+    createClient(clientFactory, getDefaultClientConfig());
+    final XEndpoint endpoint = openClientEndpoint(false, serverConfig.port, new XEndpointLambdaListener<>());
+    SocketUtils.await().untilTrue(this::hasServerEndpoint);
+    
+    getServerEndpoint().suspendReceives();
+    final byte[] payload = new byte[MESSAGE_SIZE];
+    for (int i = 0; i < MESSAGES; i++) {
+      endpoint.send(ByteBuffer.wrap(payload));
+    }
+    
+    // the client's backlog should stall, as the server's socket buffer fills
+    Thread.sleep(500);
+    assertTrue("received=" + received.get(), received.get() < MESSAGES);
+    assertTrue("backlog=" + endpoint.getBacklog(), endpoint.getBacklog() > 0);
+    
+    getServerEndpoint().resumeReceives();
+    SocketUtils.await().until(() -> {
+      assertEquals(MESSAGES, received.get());
+      assertEquals(0, endpoint.getBacklog());
+    });
+  }
+  
+  private void testBoundedDispatch(XServerFactory<? extends XEndpoint> serverFactory,
+                                   XClientFactory<? extends XEndpoint> clientFactory) throws Exception {
+    final XServerConfig serverConfig = getDefaultServerConfig(false);
+    final List<String> received = Collections.synchronizedList(new ArrayList<>());
+    final XEndpointListener<XEndpoint> slowListener = new XEndpointLambdaListener<>()
+        .onText((endpoint, message) -> {
+          TestSupport.sleep(1);
+          received.add(message);
+        });
+    final ExecutorService workers = Executors.newFixedThreadPool(2);
+    try {
+      createServer(serverFactory, serverConfig, new DispatchingListener<>(slowListener, workers, MAX_QUEUED_MESSAGES));
+      createClient(clientFactory, getDefaultClientConfig());
+      final XEndpoint endpoint = openClientEndpoint(false, serverConfig.port, new XEndpointLambdaListener<>());
+      final int messages = 500;
+      for (int i = 0; i < messages; i++) {
+        endpoint.send(String.valueOf(i));
+      }
+      
+      SocketUtils.await().until(() -> assertEquals(messages, received.size()));
+      for (int i = 0; i < messages; i++) {
+        assertEquals(String.valueOf(i), received.get(i));
+      }
+    } finally {
+      workers.shutdown();
+    }
+  }
+}
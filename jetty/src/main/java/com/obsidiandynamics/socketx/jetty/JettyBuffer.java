@@ -0,0 +1,34 @@
+package com.obsidiandynamics.socketx.jetty;
+
+import java.nio.*;
+
+import org.eclipse.jetty.io.*;
+
+import com.obsidiandynamics.socketx.*;
+
+/**
+ *  An {@link XBuffer} drawn from a Jetty {@link ByteBufferPool}.
+ */
+final class JettyBuffer implements XBuffer {
+  private final ByteBufferPool pool;
+  
+  private final ByteBuffer buffer;
+  
+  JettyBuffer(ByteBufferPool pool, int capacity) {
+    this.pool = pool;
+    buffer = pool.acquire(capacity, true);
+    // pooled buffers are handed out in flush mode; open them up for filling
+    buffer.clear();
+    buffer.limit(capacity);
+  }
+
+  @Override
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  @Override
+  public void release() {
+    pool.release(buffer);
+  }
+}
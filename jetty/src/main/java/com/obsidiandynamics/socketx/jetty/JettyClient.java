@@ -2,10 +2,12 @@ package com.obsidiandynamics.socketx.jetty;
 
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.eclipse.jetty.client.*;
 import org.eclipse.jetty.util.ssl.*;
 import org.eclipse.jetty.util.thread.*;
+import org.eclipse.jetty.websocket.api.*;
 import org.eclipse.jetty.websocket.client.*;
 
 import com.obsidiandynamics.socketx.*;
@@ -24,16 +26,71 @@ public final class JettyClient implements XClient<JettyEndpoint> {
     this.httpClient = httpClient;
     client = new WebSocketClient(httpClient);
     client.setMaxIdleTimeout(config.idleTimeoutMillis);
+    client.getPolicy().setMaxTextMessageSize(config.maxMessageSize);
+    client.getPolicy().setMaxBinaryMessageSize(config.maxMessageSize);
     client.start();
-    scanner = new XEndpointScanner<>(config.scanIntervalMillis, 0);
+    scanner = new XEndpointScanner<>(config.scanIntervalMillis, 0, config.scanMode, 
+                                     XAtts.SCANNER_SHARDS.get(config.attributes));
   }
 
   @Override
   public JettyEndpoint connect(URI uri, XEndpointListener<? super JettyEndpoint> listener) throws Exception {
-    final JettyEndpoint endpoint = JettyEndpoint.clientOf(scanner, config, listener);
-    client.connect(endpoint, uri).get();
+    final JettyEndpoint endpoint = JettyEndpoint.clientOf(scanner, config, listener, 
+                                                          httpClient.getByteBufferPool(), httpClient.getExecutor());
+    client.connect(endpoint.toWebSocket(), uri, createUpgradeRequest()).get();
     return endpoint;
   }
+  
+  @Override
+  public CompletionStage<JettyEndpoint> connectAsync(URI uri, XEndpointListener<? super JettyEndpoint> listener) {
+    final JettyEndpoint endpoint = JettyEndpoint.clientOf(scanner, config, listener, 
+                                                          httpClient.getByteBufferPool(), httpClient.getExecutor());
+    final CompletableFuture<JettyEndpoint> future = new CompletableFuture<>();
+    final Future<Session> session;
+    try {
+      session = client.connect(endpoint.toWebSocket(), uri, createUpgradeRequest());
+    } catch (Throwable e) {
+      future.completeExceptionally(e);
+      return future;
+    }
+    
+    if (session instanceof CompletionStage) {
+      // the upgrade request completes its future from the HTTP client's threads
+      @SuppressWarnings("unchecked")
+      final CompletionStage<Session> stage = (CompletionStage<Session>) session;
+      stage.whenComplete((connected, cause) -> {
+        if (cause == null) {
+          future.complete(endpoint);
+        } else {
+          future.completeExceptionally(cause);
+        }
+      });
+    } else {
+      httpClient.getExecutor().execute(() -> {
+        try {
+          session.get();
+          future.complete(endpoint);
+        } catch (ExecutionException e) {
+          future.completeExceptionally(e.getCause());
+        } catch (Throwable e) {
+          future.completeExceptionally(e);
+        }
+      });
+    }
+    return future;
+  }
+  
+  private ClientUpgradeRequest createUpgradeRequest() {
+    final ClientUpgradeRequest request = new ClientUpgradeRequest();
+    if (config.subprotocols.length != 0) {
+      request.setSubProtocols(config.subprotocols);
+    }
+    if (config.compression) {
+      request.addExtensions(config.compressionContextTakeover 
+                            ? "permessage-deflate" : "permessage-deflate; client_no_context_takeover; server_no_context_takeover");
+    }
+    return request;
+  }
 
   @Override
   public void close() throws Exception {
@@ -3,21 +3,48 @@ package com.obsidiandynamics.socketx.jetty;
 import java.io.*;
 import java.net.*;
 import java.nio.*;
+import java.nio.channels.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
+import java.util.function.*;
 
+import org.eclipse.jetty.io.*;
 import org.eclipse.jetty.websocket.api.*;
 
 import com.obsidiandynamics.socketx.*;
+import com.obsidiandynamics.socketx.util.*;
 
 public final class JettyEndpoint extends WebSocketAdapter implements XEndpoint, WebSocketPingPongListener {
   private static final byte[] ZERO_ARRAY = new byte[0];
   
+  private static final AtomicLongFieldUpdater<JettyEndpoint> lastActivityTimeUpdater = 
+      AtomicLongFieldUpdater.newUpdater(JettyEndpoint.class, "lastActivityTime");
+  
   private final JettyEndpointManager manager;
   
-  private final AtomicLong backlog = new AtomicLong();
+  private final Backlog backlog;
+  
+  /** Maintains the backlog for sends that have neither a callback nor a tracked length. */
+  private final WriteCallback backlogDecrementer = new WriteCallback() {
+    @Override public void writeSuccess() {
+      backlog.remove(0);
+    }
+
+    @Override public void writeFailed(Throwable cause) {
+      backlog.remove(0);
+    }
+  };
+  
+  /** Coalesces the flushes of consecutive sends; {@code null} if coalescing is disabled. */
+  private final FlushCoalescer coalescer;
   
   private final AtomicBoolean closeFired = new AtomicBoolean();
   
+  private final SuspendCounter receiveSuspensions = new SuspendCounter(this::suspendSession, this::resumeSession);
+  
+  /** The token for resuming a suspended session; guarded by the suspend counter. */
+  private SuspendToken suspendToken;
+  
   private volatile Object context;
   
   private volatile InetSocketAddress remoteAddress;
@@ -26,12 +53,18 @@ public final class JettyEndpoint extends WebSocketAdapter implements XEndpoint,
 
   JettyEndpoint(JettyEndpointManager manager) {
     this.manager = manager;
+    final XEndpointConfig<?> config = manager.getConfig();
+    backlog = new Backlog(config.highWaterMark, config.highWaterMarkBytes, 
+                          writable -> manager.getListener().onWritabilityChanged(this, writable));
+    coalescer = config.hasWriteCoalescing() 
+        ? new FlushCoalescer(config.writeCoalesceMessages, config.writeCoalesceDelayMicros, this::flushCoalesced) : null;
     touchLastActivityTime();
   }
   
-  static JettyEndpoint clientOf(XEndpointScanner<JettyEndpoint> scanner, 
-                                XEndpointConfig<?> config, XEndpointListener<? super JettyEndpoint> listener) {
-    return new JettyEndpointManager(scanner, 0, config, listener).createEndpoint();
+  static JettyEndpoint clientOf(XEndpointScanner<JettyEndpoint> scanner, XEndpointConfig<?> config, 
+                                XEndpointListener<? super JettyEndpoint> listener, 
+                                ByteBufferPool bufferPool, Executor executor) {
+    return new JettyEndpointManager(scanner, 0, config, listener, bufferPool, executor).createEndpoint();
   }
   
   @Override
@@ -48,6 +81,10 @@ public final class JettyEndpoint extends WebSocketAdapter implements XEndpoint,
   @Override 
   public void onWebSocketConnect(Session session) {
     super.onWebSocketConnect(session);
+    if (coalescer != null) {
+      // frames are aggregated by default, and flushed as directed by the coalescer
+      getRemote().setBatchMode(BatchMode.ON);
+    }
     manager.add(this);
     manager.getListener().onConnect(this);
     remoteAddress = getRemote().getInetSocketAddress();
@@ -69,6 +106,22 @@ public final class JettyEndpoint extends WebSocketAdapter implements XEndpoint,
     touchLastActivityTime();
   }
   
+  void onBinaryFragment(ByteBuffer fragment, boolean last) {
+    manager.getPartialListener().onBinaryFragment(this, fragment, last);
+    touchLastActivityTime();
+  }
+  
+  /**
+   *  Obtains the object to register with Jetty for this endpoint. Where the listener is a 
+   *  partial listener, this is an adapter that receives binary messages in fragments; 
+   *  otherwise, it is the endpoint itself.
+   *  
+   *  @return The WebSocket object.
+   */
+  Object toWebSocket() {
+    return manager.getPartialListener() != null ? new JettyPartialAdapter(this, manager.getConfig().maxMessageSize) : this;
+  }
+  
   @Override 
   public void onWebSocketClose(int statusCode, String reason) {
     super.onWebSocketClose(statusCode, reason);
@@ -86,8 +139,10 @@ public final class JettyEndpoint extends WebSocketAdapter implements XEndpoint,
   @Override
   public void send(String payload, XSendCallback callback) {
     if (isBelowHWM()) {
-      backlog.incrementAndGet();
-      getRemote().sendString(payload, wrapCallback(callback));
+      final int length = lengthOf(payload);
+      backlog.add(length);
+      final RemoteEndpoint remote = getRemote();
+      send(remote, payload, remote::sendString, wrapCallback(callback, length));
       touchLastActivityTime();
     } else if (callback != null) {
       callback.onSkip(this);
@@ -97,36 +152,186 @@ public final class JettyEndpoint extends WebSocketAdapter implements XEndpoint,
   @Override
   public void send(ByteBuffer payload, XSendCallback callback) {
     if (isBelowHWM()) {
-      backlog.incrementAndGet();
-      getRemote().sendBytes(payload, wrapCallback(callback));
+      final int length = lengthOf(payload);
+      backlog.add(length);
+      final RemoteEndpoint remote = getRemote();
+      send(remote, payload, remote::sendBytes, wrapCallback(callback, length));
       touchLastActivityTime();
     } else if (callback != null) {
       callback.onSkip(this);
     }
   }
   
-  private WriteCallback wrapCallback(XSendCallback callback) {
+  /**
+   *  Sends a message while holding the lock on the remote endpoint. Jetty reads the batch mode
+   *  from the remote endpoint on each send, and the mode is switched temporarily by the 
+   *  coalescer and by {@link #sendBatch}; without the lock, a message could be sent in a mode
+   *  meant for another, and left in the aggregate after the flush.
+   */
+  private <P> void send(RemoteEndpoint remote, P payload, BiConsumer<P, WriteCallback> sender, 
+                        WriteCallback writeCallback) {
+    synchronized (remote) {
+      if (coalescer == null) {
+        sender.accept(payload, writeCallback);
+      } else if (coalescer.onSend()) {
+        remote.setBatchMode(BatchMode.OFF);
+        sender.accept(payload, writeCallback);
+        remote.setBatchMode(BatchMode.ON);
+      } else {
+        sender.accept(payload, writeCallback);
+        coalescer.onQueued();
+      }
+    }
+  }
+  
+  /**
+   *  Allocates a direct buffer from the manager's pool. The buffer is returned to the pool once
+   *  sent.
+   */
+  @Override
+  public XBuffer allocate(int capacity) {
+    return new JettyBuffer(manager.getBufferPool(), capacity);
+  }
+  
+  /**
+   *  Sends the batch with a single flush, by way of Jetty's batch mode.
+   */
+  @Override
+  public void sendBatch(String[] payloads, XSendCallback callback) {
+    final RemoteEndpoint remote = getRemote();
+    sendBatch(payloads, this::lengthOf, remote::sendString, callback);
+  }
+  
+  /**
+   *  Sends the batch with a single flush, by way of Jetty's batch mode.
+   */
+  @Override
+  public void sendBatch(ByteBuffer[] payloads, XSendCallback callback) {
+    final RemoteEndpoint remote = getRemote();
+    sendBatch(payloads, this::lengthOf, remote::sendBytes, callback);
+  }
+  
+  /**
+   *  Sends a batch in {@link BatchMode#ON}, so that Jetty aggregates the frames, and then sends 
+   *  the last message of the batch in {@link BatchMode#OFF}, which flushes the aggregate. The 
+   *  backlog is reserved ahead of sending, so that the last message to clear the high-water
+   *  mark is known before any are sent.
+   */
+  private <P> void sendBatch(P[] payloads, ToIntFunction<P> lengthFunc, 
+                             BiConsumer<P, WriteCallback> sender, XSendCallback callback) {
+    final int[] lengths = new int[payloads.length];
+    int last = -1;
+    for (int i = 0; i < payloads.length; i++) {
+      if (isBelowHWM()) {
+        lengths[i] = lengthFunc.applyAsInt(payloads[i]);
+        backlog.add(lengths[i]);
+        last = i;
+      } else {
+        lengths[i] = -1;
+        if (callback != null) callback.onSkip(this);
+      }
+    }
+    if (last == -1) return;
+    
+    final RemoteEndpoint remote = getRemote();
+    synchronized (remote) {
+      final BatchMode batchMode = remote.getBatchMode();
+      remote.setBatchMode(BatchMode.ON);
+      try {
+        for (int i = 0; i <= last; i++) {
+          if (lengths[i] != -1) {
+            if (i == last) remote.setBatchMode(BatchMode.OFF);
+            sender.accept(payloads[i], wrapCallback(callback, lengths[i]));
+          }
+        }
+      } finally {
+        remote.setBatchMode(batchMode);
+      }
+    }
+    touchLastActivityTime();
+  }
+  
+  private int lengthOf(String payload) {
+    return backlog.isTrackingBytes() ? payload.length() : 0;
+  }
+  
+  private int lengthOf(ByteBuffer payload) {
+    return backlog.isTrackingBytes() ? payload.remaining() : 0;
+  }
+  
+  /**
+   *  Wraps the given callback in one that also maintains the backlog. Where there is no callback
+   *  to invoke and no length to retain, a callback shared by all sends is returned, sparing an
+   *  allocation per send.
+   */
+  private WriteCallback wrapCallback(XSendCallback callback, int length) {
+    if (callback == null && length == 0) return backlogDecrementer;
+    
     return new WriteCallback() {
       @Override public void writeSuccess() {
-        backlog.decrementAndGet();
+        backlog.remove(length);
         if (callback != null) callback.onComplete(JettyEndpoint.this);
       }
 
       @Override public void writeFailed(Throwable cause) {
-        backlog.decrementAndGet();
+        backlog.remove(length);
         if (callback != null) callback.onError(JettyEndpoint.this, cause);
       }
     };
   }
   
   private boolean isBelowHWM() {
-    return backlog.get() < manager.getConfig().highWaterMark;
+    return backlog.isBelowHighWaterMark();
+  }
+  
+  /**
+   *  Sends each fragment with {@link RemoteEndpoint#sendPartialBytes}, which blocks until 
+   *  the fragment has been written.
+   */
+  @Override
+  public void sendStream(ReadableByteChannel source, int fragmentSize) throws IOException {
+    final FragmentReader reader = new FragmentReader(source, fragmentSize);
+    final RemoteEndpoint remote = getRemote();
+    do {
+      remote.sendPartialBytes(reader.next(), reader.isLast());
+      touchLastActivityTime();
+    } while (! reader.isLast());
+    
+    if (coalescer != null) {
+      // in batch mode, the tail of the message may otherwise linger in the aggregation buffer
+      remote.flush();
+    }
   }
   
   @Override
   public void flush() throws IOException {
     getRemote().flush();
   }
+  
+  /**
+   *  Invoked by the coalescer when its delay elapses. As {@link RemoteEndpoint#flush()} blocks
+   *  until the aggregated frames have been written, the flush is handed off to the manager's 
+   *  executor, rather than holding up the coalescer's timer, which is shared by all endpoints.
+   */
+  private void flushCoalesced() {
+    if (isOpen()) {
+      try {
+        manager.getExecutor().execute(this::flushIfOpen);
+      } catch (RejectedExecutionException e) {
+        // the executor has been stopped, and the endpoint is being closed along with it
+      }
+    }
+  }
+  
+  private void flushIfOpen() {
+    if (isOpen()) {
+      try {
+        flush();
+      } catch (IOException e) {
+        onWebSocketError(e);
+      }
+    }
+  }
 
   @Override
   public void sendPing() {
@@ -176,9 +381,58 @@ public final class JettyEndpoint extends WebSocketAdapter implements XEndpoint,
     return remoteAddress;
   }
 
+  @Override
+  public String getSubprotocol() {
+    final Session session = getSession();
+    return session != null ? session.getUpgradeResponse().getAcceptedSubProtocol() : null;
+  }
+
   @Override
   public long getBacklog() {
-    return backlog.get();
+    return backlog.getMessages();
+  }
+
+  @Override
+  public long getBacklogBytes() {
+    return backlog.getBytes();
+  }
+
+  @Override
+  public boolean isWritable() {
+    return backlog.isWritable();
+  }
+
+  @Override
+  public void suspendReceives() {
+    receiveSuspensions.suspend();
+  }
+
+  @Override
+  public void resumeReceives() {
+    receiveSuspensions.resume();
+  }
+
+  @Override
+  public boolean isReceivesSuspended() {
+    return receiveSuspensions.isSuspended();
+  }
+
+  /**
+   *  Suspends the session, holding on to the token needed to resume it. Jetty doesn't permit 
+   *  a session to be suspended twice; the suspend counter ensures that it isn't.
+   */
+  private void suspendSession() {
+    final Session session = getSession();
+    if (session != null && session.isOpen()) {
+      suspendToken = session.suspend();
+    }
+  }
+
+  private void resumeSession() {
+    if (suspendToken != null) {
+      suspendToken.resume();
+      suspendToken = null;
+    }
   }
 
   @Override
@@ -186,8 +440,15 @@ public final class JettyEndpoint extends WebSocketAdapter implements XEndpoint,
     return lastActivityTime;
   }
   
+  /**
+   *  Stamps the activity time from the coarse clock, skipping the store if the time hasn't moved
+   *  since the last stamp.
+   */
   private void touchLastActivityTime() {
-    lastActivityTime = System.currentTimeMillis();
+    final long now = CoarseClock.now();
+    if (lastActivityTime != now) {
+      lastActivityTimeUpdater.lazySet(this, now);
+    }
   }
 
   @Override
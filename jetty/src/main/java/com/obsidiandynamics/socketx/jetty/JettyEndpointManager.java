@@ -1,13 +1,18 @@
 package com.obsidiandynamics.socketx.jetty;
 
 import java.util.*;
+import java.util.concurrent.*;
 
+import org.eclipse.jetty.io.*;
 import org.eclipse.jetty.websocket.server.*;
 import org.eclipse.jetty.websocket.servlet.*;
 
 import com.obsidiandynamics.socketx.*;
 
 final class JettyEndpointManager extends WebSocketHandler implements XEndpointManager<JettyEndpoint> {
+  /** The compression extensions that Jetty supports out of the box. */
+  private static final String[] DEFLATE_EXTENSIONS = { "permessage-deflate", "deflate-frame", "x-webkit-deflate-frame" };
+  
   private final int idleTimeoutMillis;
   
   private final XEndpointConfig<?> config;
@@ -15,13 +20,22 @@ final class JettyEndpointManager extends WebSocketHandler implements XEndpointMa
   private final XEndpointListener<? super JettyEndpoint> listener;
   
   private final XEndpointScanner<JettyEndpoint> scanner;
+  
+  /** Recycles the outbound buffers allocated by the endpoints; shared with the connections. */
+  private final ByteBufferPool bufferPool;
+  
+  /** Runs blocking work on behalf of the endpoints, such as coalesced flushes. */
+  private final Executor executor;
 
   JettyEndpointManager(XEndpointScanner<JettyEndpoint> scanner, int idleTimeoutMillis, 
-                       XEndpointConfig<?> config, XEndpointListener<? super JettyEndpoint> listener) {
+                       XEndpointConfig<?> config, XEndpointListener<? super JettyEndpoint> listener, 
+                       ByteBufferPool bufferPool, Executor executor) {
     this.idleTimeoutMillis = idleTimeoutMillis;
     this.config = config;
     this.listener = listener;
     this.scanner = scanner;
+    this.bufferPool = bufferPool;
+    this.executor = executor;
   }
   
   @Override
@@ -29,14 +43,44 @@ final class JettyEndpointManager extends WebSocketHandler implements XEndpointMa
     if (idleTimeoutMillis != 0) {
       factory.getPolicy().setIdleTimeout(idleTimeoutMillis);
     }
+    // the parser checks these limits against the payload length in each frame's header
+    factory.getPolicy().setMaxTextMessageSize(config.maxMessageSize);
+    factory.getPolicy().setMaxBinaryMessageSize(config.maxMessageSize);
+    if (! config.compression) {
+      // Jetty registers the deflate extensions by default
+      for (String extension : DEFLATE_EXTENSIONS) {
+        factory.getExtensionFactory().unregister(extension);
+      }
+    }
     
     factory.setCreator(new WebSocketCreator() {
       @Override public Object createWebSocket(ServletUpgradeRequest req, ServletUpgradeResponse resp) {
-        return createEndpoint();
+        final String subprotocol = selectSubprotocol(req.getSubProtocols());
+        if (subprotocol != null) {
+          resp.setAcceptedSubProtocol(subprotocol);
+        }
+        return createEndpoint().toWebSocket();
       }
     });
   }
   
+  /**
+   *  Selects the first of the client's requested subprotocols that is also supported by this
+   *  server.
+   *  
+   *  @param requested The subprotocols requested by the client.
+   *  @return The selected subprotocol, or {@code null} if there is no match.
+   */
+  private String selectSubprotocol(List<String> requested) {
+    final List<String> supported = Arrays.asList(config.subprotocols);
+    for (String subprotocol : requested) {
+      if (supported.contains(subprotocol)) {
+        return subprotocol;
+      }
+    }
+    return null;
+  }
+  
   JettyEndpoint createEndpoint() {
     final JettyEndpoint endpoint = new JettyEndpoint(JettyEndpointManager.this);
     return endpoint;
@@ -54,10 +98,27 @@ final class JettyEndpointManager extends WebSocketHandler implements XEndpointMa
     return listener;
   }
   
+  /**
+   *  Obtains the listener as a partial listener, if it is one.
+   *  
+   *  @return The partial listener, or {@code null} if binary messages are to be delivered whole.
+   */
+  XEndpointPartialListener<? super JettyEndpoint> getPartialListener() {
+    return listener instanceof XEndpointPartialListener ? (XEndpointPartialListener<? super JettyEndpoint>) listener : null;
+  }
+  
   XEndpointConfig<?> getConfig() {
     return config;
   }
   
+  ByteBufferPool getBufferPool() {
+    return bufferPool;
+  }
+  
+  Executor getExecutor() {
+    return executor;
+  }
+  
   @Override
   public Collection<JettyEndpoint> getEndpoints() {
     return scanner.getEndpoints();
@@ -0,0 +1,111 @@
+package com.obsidiandynamics.socketx.jetty;
+
+import java.nio.*;
+
+import org.eclipse.jetty.websocket.api.*;
+
+/**
+ *  Receives messages in fragments on behalf of a {@link JettyEndpoint} whose listener is an
+ *  {@link com.obsidiandynamics.socketx.XEndpointPartialListener}. Binary fragments are passed
+ *  on as they arrive; text fragments are assembled into whole messages. All other events are 
+ *  forwarded to the endpoint unchanged.<p>
+ *  
+ *  Jetty doesn't enforce the maximum message size in partial mode, so it is enforced here on 
+ *  the assembled text, counting its UTF-8 encoded length. A text message that exceeds it is 
+ *  reported to the listener and the connection closed with status 1009, as Netty does.<p>
+ *  
+ *  Jetty delivers the events for a given connection serially.
+ */
+final class JettyPartialAdapter implements WebSocketPartialListener, WebSocketPingPongListener {
+  private final JettyEndpoint endpoint;
+  
+  private final int maxMessageSize;
+  
+  private final StringBuilder text = new StringBuilder();
+  
+  /** The UTF-8 encoded length of the text assembled so far. */
+  private long textBytes;
+  
+  /** Set once the message in progress has been rejected, until its final fragment. */
+  private boolean discarding;
+  
+  JettyPartialAdapter(JettyEndpoint endpoint, int maxMessageSize) {
+    this.endpoint = endpoint;
+    this.maxMessageSize = maxMessageSize;
+  }
+  
+  @Override
+  public void onWebSocketConnect(Session session) {
+    endpoint.onWebSocketConnect(session);
+  }
+
+  @Override
+  public void onWebSocketPartialText(String payload, boolean fin) {
+    if (! discarding) {
+      textBytes += utf8Length(payload);
+      if (textBytes > maxMessageSize) {
+        rejectText();
+      } else {
+        text.append(payload);
+      }
+    }
+    
+    if (fin) {
+      final String message = discarding ? null : text.toString();
+      text.setLength(0);
+      textBytes = 0;
+      discarding = false;
+      if (message != null) endpoint.onWebSocketText(message);
+    }
+  }
+  
+  private void rejectText() {
+    discarding = true;
+    text.setLength(0);
+    text.trimToSize();
+    final String reason = "Text message exceeds " + maxMessageSize + " bytes";
+    endpoint.onWebSocketError(new MessageTooLargeException(reason));
+    final Session session = endpoint.getSession();
+    if (session != null) session.close(StatusCode.MESSAGE_TOO_LARGE, reason);
+  }
+  
+  private static int utf8Length(String str) {
+    final int length = str.length();
+    int bytes = length;
+    for (int i = 0; i < length; i++) {
+      final char ch = str.charAt(i);
+      if (ch >= 0x800) {
+        // surrogates count 2 each, for 4 bytes per pair; the rest of the BMP takes 3 bytes
+        bytes += Character.isSurrogate(ch) ? 1 : 2;
+      } else if (ch >= 0x80) {
+        bytes++;
+      }
+    }
+    return bytes;
+  }
+
+  @Override
+  public void onWebSocketPartialBinary(ByteBuffer payload, boolean fin) {
+    endpoint.onBinaryFragment(payload, fin);
+  }
+
+  @Override
+  public void onWebSocketPing(ByteBuffer payload) {
+    endpoint.onWebSocketPing(payload);
+  }
+
+  @Override
+  public void onWebSocketPong(ByteBuffer payload) {
+    endpoint.onWebSocketPong(payload);
+  }
+
+  @Override
+  public void onWebSocketClose(int statusCode, String reason) {
+    endpoint.onWebSocketClose(statusCode, reason);
+  }
+
+  @Override
+  public void onWebSocketError(Throwable cause) {
+    endpoint.onWebSocketError(cause);
+  }
+}
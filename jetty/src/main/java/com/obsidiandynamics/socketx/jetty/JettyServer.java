@@ -5,6 +5,7 @@ import java.util.*;
 import javax.net.ssl.*;
 
 import org.eclipse.jetty.http.*;
+import org.eclipse.jetty.io.*;
 import org.eclipse.jetty.server.*;
 import org.eclipse.jetty.server.handler.*;
 import org.eclipse.jetty.servlet.*;
@@ -25,18 +26,25 @@ public final class JettyServer implements XServer<JettyEndpoint> {
     final int minThreads = JettyAtts.MIN_THREADS.get(config.attributes);
     final int maxThreads = JettyAtts.MAX_THREADS.get(config.attributes);
     server = new Server(new QueuedThreadPool(maxThreads, minThreads));
+    // the connections and the endpoints' outbound buffers draw from a single pool
+    final ByteBufferPool bufferPool = new ArrayByteBufferPool();
 
+    // Jetty (on Java 8) can't bind with SO_REUSEPORT; instead, each connector's socket is shared by the 
+    // given number of acceptor threads, with -1 deferring to Jetty's own heuristic
+    final int acceptors = XAtts.ACCEPTORS.get(config.attributes);
+    final int connectorAcceptors = acceptors != 0 ? acceptors : -1;
     final List<Connector> connectors = new ArrayList<>(2);
     final ServerConnector httpConnector = 
-        new ServerConnector(server, null, null, null, -1, -1, 
+        new ServerConnector(server, null, null, bufferPool, connectorAcceptors, -1, 
                             new ConnectionFactory[] { getHttpConnectionFactory() });
     connectors.add(httpConnector);
     httpConnector.setPort(config.port);
 
     if (config.httpsPort != 0) {
-      final ServerConnector httpsConnector = new ServerConnector(server,
-                                                                 getSSLConnectionFactory(config.sslContextProvider.getSSLContext()),
-                                                                 getHttpConnectionFactory());
+      final ServerConnector httpsConnector = 
+          new ServerConnector(server, null, null, bufferPool, connectorAcceptors, -1,
+                              new ConnectionFactory[] { getSSLConnectionFactory(config.sslContextProvider.getSSLContext()),
+                                                        getHttpConnectionFactory() });
       connectors.add(httpsConnector);
       httpsConnector.setPort(config.httpsPort);
     }
@@ -46,8 +54,10 @@ public final class JettyServer implements XServer<JettyEndpoint> {
     final HandlerCollection handlers = new ContextHandlerCollection();
     server.setHandler(handlers);
 
-    scanner = new XEndpointScanner<>(config.scanIntervalMillis, config.pingIntervalMillis);
-    manager = new JettyEndpointManager(scanner, config.idleTimeoutMillis, config, listener);
+    scanner = new XEndpointScanner<>(config.scanIntervalMillis, config.pingIntervalMillis, config.scanMode, 
+                                     XAtts.SCANNER_SHARDS.get(config.attributes));
+    manager = new JettyEndpointManager(scanner, config.idleTimeoutMillis, config, listener, 
+                                      bufferPool, server.getThreadPool());
     final ContextHandler wsContext = new ContextHandler(config.path);
     wsContext.setHandler(manager);
     handlers.addHandler(wsContext);
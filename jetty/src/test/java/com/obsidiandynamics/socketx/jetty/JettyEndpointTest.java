@@ -6,13 +6,18 @@ import static org.mockito.Mockito.*;
 
 import java.io.*;
 import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
+import org.eclipse.jetty.io.*;
 import org.eclipse.jetty.websocket.api.*;
 import org.hamcrest.*;
 import org.junit.*;
 import org.junit.rules.*;
 
 import com.obsidiandynamics.socketx.*;
+import com.obsidiandynamics.socketx.util.*;
 
 /**
  *  Tests specific to {@link JettyEndpoint}, beyond what is normally covered by the integration
@@ -34,11 +39,16 @@ public final class JettyEndpointTest {
     endpoint = null;
   }
   
-  @SuppressWarnings("unchecked")
   private void createFixtures() {
+    createFixtures(new DerivedEndpointConfig(), Runnable::run);
+  }
+  
+  @SuppressWarnings("unchecked")
+  private void createFixtures(XEndpointConfig<?> config, Executor executor) {
     listener = mock(XEndpointListener.class);
     scanner = new XEndpointScanner<>(1, 1000);
-    final JettyEndpointManager manager = new JettyEndpointManager(scanner, 1000, new DerivedEndpointConfig(), listener);
+    final JettyEndpointManager manager = new JettyEndpointManager(scanner, 1000, config, listener, 
+                                                                  new ArrayByteBufferPool(), executor);
     endpoint = new JettyEndpoint(manager);
   }
   
@@ -67,6 +77,150 @@ public final class JettyEndpointTest {
     assertEquals(0L, endpoint.getBacklog());
   }
   
+  @Test
+  public void testSendBatch() {
+    createFixtures();
+    
+    final Session session = mock(Session.class);
+    final RemoteEndpoint remote = mock(RemoteEndpoint.class);
+    when(session.getRemote()).thenReturn(remote);
+    final AtomicReference<BatchMode> batchMode = new AtomicReference<>(BatchMode.AUTO);
+    when(remote.getBatchMode()).thenAnswer(invocation -> batchMode.get());
+    doAnswer(invocation -> {
+      batchMode.set((BatchMode) invocation.getArguments()[0]);
+      return null;
+    }).when(remote).setBatchMode(notNull());
+    endpoint.onWebSocketConnect(session);
+    
+    // record the batch mode in effect for each message
+    final List<String> sent = new ArrayList<>();
+    doAnswer(invocation -> {
+      sent.add(invocation.getArguments()[0] + ":" + batchMode.get());
+      final WriteCallback writeCallback = (WriteCallback) invocation.getArguments()[1];
+      writeCallback.writeSuccess();
+      return null;
+    }).when(remote).sendString(notNull(), notNull());
+    
+    final XSendCallback callback = mock(XSendCallback.class);
+    endpoint.sendBatch(new String[] { "a", "b", "c" }, callback);
+    assertEquals(Arrays.asList("a:ON", "b:ON", "c:OFF"), sent);
+    assertEquals(BatchMode.AUTO, batchMode.get());
+    verify(callback, times(3)).onComplete(eq(endpoint));
+    assertEquals(0L, endpoint.getBacklog());
+  }
+  
+  /**
+   *  Sends a message from another thread while a batch is being sent. The message must wait 
+   *  for the batch, rather than being sent in the batch's mode and left behind in the aggregate.
+   */
+  @Test
+  public void testSendDuringBatch() throws InterruptedException {
+    createFixtures();
+    
+    final Session session = mock(Session.class);
+    final RemoteEndpoint remote = mock(RemoteEndpoint.class);
+    when(session.getRemote()).thenReturn(remote);
+    final AtomicReference<BatchMode> batchMode = new AtomicReference<>(BatchMode.AUTO);
+    when(remote.getBatchMode()).thenAnswer(invocation -> batchMode.get());
+    doAnswer(invocation -> {
+      batchMode.set((BatchMode) invocation.getArguments()[0]);
+      return null;
+    }).when(remote).setBatchMode(notNull());
+    endpoint.onWebSocketConnect(session);
+    
+    final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    final Thread sender = new Thread(() -> endpoint.send("x"), "sender");
+    doAnswer(invocation -> {
+      final String payload = (String) invocation.getArguments()[0];
+      sent.add(payload + ":" + batchMode.get());
+      if (payload.equals("a")) {
+        sender.start();
+        Thread.sleep(100);
+      }
+      return null;
+    }).when(remote).sendString(notNull(), notNull());
+    
+    endpoint.sendBatch(new String[] { "a", "b", "c" }, null);
+    sender.join();
+    assertEquals(Arrays.asList("a:ON", "b:ON", "c:OFF", "x:AUTO"), sent);
+  }
+  
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testPartialTextTooLarge() {
+    final XEndpointPartialListener<JettyEndpoint> partialListener = mock(XEndpointPartialListener.class);
+    scanner = new XEndpointScanner<>(1, 1000);
+    final JettyEndpointManager manager = new JettyEndpointManager(scanner, 1000, new DerivedEndpointConfig().withMaxMessageSize(8), 
+                                                                  partialListener, new ArrayByteBufferPool(), Runnable::run);
+    endpoint = new JettyEndpoint(manager);
+    final JettyPartialAdapter adapter = (JettyPartialAdapter) endpoint.toWebSocket();
+    final Session session = mock(Session.class);
+    when(session.getRemote()).thenReturn(mock(RemoteEndpoint.class));
+    when(session.isOpen()).thenReturn(true);
+    adapter.onWebSocketConnect(session);
+    
+    // 4 bytes, then 2 bytes in UTF-8
+    adapter.onWebSocketPartialText("abcd", false);
+    adapter.onWebSocketPartialText("\u00e9", true);
+    verify(partialListener).onText(endpoint, "abcd\u00e9");
+    
+    // 6 bytes, then 3 bytes in UTF-8
+    adapter.onWebSocketPartialText("abcdef", false);
+    adapter.onWebSocketPartialText("\u20ac", false);
+    verify(partialListener).onError(eq(endpoint), isA(MessageTooLargeException.class));
+    verify(session).close(eq(StatusCode.MESSAGE_TOO_LARGE), notNull());
+    adapter.onWebSocketPartialText("x", true);
+    verify(partialListener, times(1)).onText(any(), any());
+    
+    adapter.onWebSocketPartialText("ok", true);
+    verify(partialListener).onText(endpoint, "ok");
+  }
+  
+  @Test
+  public void testCoalescedFlushHandedToExecutor() throws IOException {
+    final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+    createFixtures(new DerivedEndpointConfig().withWriteCoalesceMessages(100).withWriteCoalesceDelay(1_000), tasks::add);
+    
+    final Session session = mock(Session.class);
+    final RemoteEndpoint remote = mock(RemoteEndpoint.class);
+    when(session.getRemote()).thenReturn(remote);
+    when(session.isOpen()).thenReturn(true);
+    endpoint.onWebSocketConnect(session);
+    verify(remote).setBatchMode(eq(BatchMode.ON));
+    
+    endpoint.send("a");
+    verify(remote).sendString(eq("a"), notNull());
+    SocketUtils.await().until(() -> assertEquals(1, tasks.size()));
+    verify(remote, never()).flush();
+    
+    tasks.remove().run();
+    verify(remote).flush();
+  }
+  
+  @Test
+  public void testSendWithoutCallbackSharesCallback() {
+    createFixtures();
+    
+    final Session session = mock(Session.class);
+    final RemoteEndpoint remote = mock(RemoteEndpoint.class);
+    when(session.getRemote()).thenReturn(remote);
+    endpoint.onWebSocketConnect(session);
+    
+    final List<WriteCallback> writeCallbacks = new ArrayList<>();
+    doAnswer(invocation -> {
+      final WriteCallback writeCallback = (WriteCallback) invocation.getArguments()[1];
+      writeCallbacks.add(writeCallback);
+      writeCallback.writeSuccess();
+      return null;
+    }).when(remote).sendString(notNull(), notNull());
+    
+    endpoint.send("a");
+    endpoint.send("b");
+    assertEquals(2, writeCallbacks.size());
+    assertSame(writeCallbacks.get(0), writeCallbacks.get(1));
+    assertEquals(0L, endpoint.getBacklog());
+  }
+  
   @Test
   public void testOnWebSocketErrorConnected() {
     createFixtures();
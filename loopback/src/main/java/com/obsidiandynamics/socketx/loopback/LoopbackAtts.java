@@ -0,0 +1,11 @@
+package com.obsidiandynamics.socketx.loopback;
+
+import com.obsidiandynamics.socketx.attribute.*;
+
+public final class LoopbackAtts {
+  public static final Attribute<Integer> IO_THREADS = new Attribute<Integer>("socketx.loopback.ioThreads")
+      .withMin(Constant.of(1))
+      .withDefault(Constant.of(Math.max(2, Runtime.getRuntime().availableProcessors())));
+  
+  private LoopbackAtts() {}
+}
@@ -0,0 +1,103 @@
+package com.obsidiandynamics.socketx.loopback;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import com.obsidiandynamics.socketx.*;
+
+/**
+ *  Connects to a {@link LoopbackServer} in the same JVM, resolving the server by the port of
+ *  the given URI. The host is disregarded, and no TLS is applied to {@code wss} connections.
+ */
+public final class LoopbackClient implements XClient<LoopbackEndpoint> {
+  /** The first of the ports assigned to client endpoints, as seen by the server. */
+  private static final int FIRST_EPHEMERAL_PORT = 49_152;
+  
+  private static final AtomicInteger nextEphemeralPort = new AtomicInteger();
+  
+  private final XClientConfig config;
+  
+  private final LoopbackWorker worker;
+  
+  private final XEndpointScanner<LoopbackEndpoint> scanner;
+  
+  private LoopbackClient(XClientConfig config) {
+    this.config = config;
+    worker = new LoopbackWorker("LoopbackClient", LoopbackAtts.IO_THREADS.get(config.attributes));
+    scanner = new XEndpointScanner<>(config.scanIntervalMillis, 0, config.scanMode, 
+                                     XAtts.SCANNER_SHARDS.get(config.attributes));
+  }
+
+  @Override
+  public LoopbackEndpoint connect(URI uri, XEndpointListener<? super LoopbackEndpoint> listener) throws Exception {
+    final int port = uri.getPort() != -1 ? uri.getPort() : uri.getScheme().equals("wss") ? 443 : 80;
+    final LoopbackServer server = LoopbackServer.boundTo(port);
+    if (server == null) throw new ConnectException("Connection refused: " + uri);
+    
+    final XServerConfig serverConfig = server.getConfig();
+    final String path = uri.getPath().isEmpty() ? "/" : uri.getPath();
+    if (! path.equals(serverConfig.path)) throw new IOException("No WebSocket endpoint at " + uri);
+    
+    final String subprotocol = selectSubprotocol(config.subprotocols, serverConfig.subprotocols);
+    final InetAddress loopback = InetAddress.getLoopbackAddress();
+    final LoopbackEndpoint serverEndpoint = new LoopbackEndpoint(server.getEndpointManager(), server.getWorker().next(), 
+                                                                 new InetSocketAddress(loopback, nextEphemeralPort()), 
+                                                                 subprotocol);
+    final LoopbackEndpoint clientEndpoint = new LoopbackEndpoint(new LoopbackEndpointManager(scanner, config, listener), 
+                                                                 worker.next(), new InetSocketAddress(loopback, port), 
+                                                                 subprotocol);
+    LoopbackEndpoint.link(serverEndpoint, clientEndpoint);
+    serverEndpoint.getIoExecutor().execute(serverEndpoint::open);
+    clientEndpoint.open();
+    return clientEndpoint;
+  }
+  
+  /**
+   *  Selects the first of the offered subprotocols that the server supports.
+   *  
+   *  @param offered The subprotocols offered by the client.
+   *  @param supported The subprotocols supported by the server.
+   *  @return The selected subprotocol, or {@code null} if there is none in common.
+   */
+  private static String selectSubprotocol(String[] offered, String[] supported) {
+    final List<String> supportedList = Arrays.asList(supported);
+    for (String subprotocol : offered) {
+      if (supportedList.contains(subprotocol)) return subprotocol;
+    }
+    return null;
+  }
+  
+  private static int nextEphemeralPort() {
+    return FIRST_EPHEMERAL_PORT + (nextEphemeralPort.getAndIncrement() & Integer.MAX_VALUE) % (65_536 - FIRST_EPHEMERAL_PORT);
+  }
+
+  @Override
+  public void close() throws Exception {
+    scanner.closeEndpoints(60_000);
+    scanner.close();
+    worker.close();
+  }
+  
+  @Override
+  public Collection<LoopbackEndpoint> getEndpoints() {
+    return scanner.getEndpoints();
+  }
+  
+  @Override
+  public XClientConfig getConfig() {
+    return config;
+  }
+  
+  public static final class Factory implements XClientFactory<LoopbackEndpoint> {
+    @Override 
+    public XClient<LoopbackEndpoint> create(XClientConfig config) throws Exception {
+      return new LoopbackClient(config);
+    }
+  }
+  
+  public static XClientFactory<LoopbackEndpoint> factory() {
+    return new Factory();
+  }
+}
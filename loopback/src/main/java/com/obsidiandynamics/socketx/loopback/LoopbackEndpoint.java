@@ -0,0 +1,470 @@
+package com.obsidiandynamics.socketx.loopback;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.slf4j.*;
+
+import com.obsidiandynamics.socketx.*;
+import com.obsidiandynamics.socketx.loopback.LoopbackWorker.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  One end of an in-process connection. Frames sent on an endpoint are appended to the inbound
+ *  queue of its peer, which drains the queue on its own I/O thread, invoking its listener for
+ *  each frame in turn.<p>
+ *
+ *  A data frame remains in the sender's backlog until the receiver has taken it off the queue,
+ *  at which point the send completes. A slow listener thus holds back the sender much as a
+ *  full socket buffer would.
+ */
+public final class LoopbackEndpoint implements XEndpoint {
+  private static final Logger log = LoggerFactory.getLogger(LoopbackEndpoint.class);
+  
+  private static final AtomicLongFieldUpdater<LoopbackEndpoint> lastActivityTimeUpdater =
+      AtomicLongFieldUpdater.newUpdater(LoopbackEndpoint.class, "lastActivityTime");
+  
+  private static final int NORMAL_CLOSURE = 1000;
+  
+  private static final int MESSAGE_TOO_BIG = 1009;
+  
+  private enum FrameType {
+    TEXT, BINARY, PING, PONG, CLOSE, TERMINATE
+  }
+  
+  private static final class Frame {
+    final FrameType type;
+    final Object payload;
+    final int statusCode;
+    final XSendCallback callback;
+    final int length;
+    
+    Frame(FrameType type, Object payload, int statusCode, XSendCallback callback, int length) {
+      this.type = type;
+      this.payload = payload;
+      this.statusCode = statusCode;
+      this.callback = callback;
+      this.length = length;
+    }
+  }
+  
+  private static final Frame TERMINATE = new Frame(FrameType.TERMINATE, null, 0, null, 0);
+  
+  private final LoopbackEndpointManager manager;
+  
+  private final IoThread ioThread;
+  
+  private final InetSocketAddress remoteAddress;
+  
+  private final String subprotocol;
+  
+  private final Backlog backlog;
+  
+  private final Queue<Frame> inbound = new ConcurrentLinkedQueue<>();
+  
+  /** The number of frames yet to be drained; held at one until the endpoint is opened, so that
+   *  no frames are delivered ahead of {@code onConnect()}. */
+  private final AtomicInteger pending = new AtomicInteger(1);
+  
+  private final AtomicBoolean closeSent = new AtomicBoolean();
+  
+  private final AtomicBoolean closeFired = new AtomicBoolean();
+  
+  private final SuspendCounter receiveSuspensions = new SuspendCounter(() -> receivesSuspended = true, this::unsuspend);
+  
+  /** Set by the drain when it stops for suspended receives, leaving the remaining frames for
+   *  {@link #resumeReceives()} to schedule. */
+  private final AtomicBoolean drainParked = new AtomicBoolean();
+  
+  private LoopbackEndpoint peer;
+  
+  private volatile boolean open = true;
+  
+  private volatile boolean receivesSuspended;
+  
+  private volatile Object context;
+  
+  private volatile long lastActivityTime;
+  
+  LoopbackEndpoint(LoopbackEndpointManager manager, IoThread ioThread, InetSocketAddress remoteAddress, String subprotocol) {
+    this.manager = manager;
+    this.ioThread = ioThread;
+    this.remoteAddress = remoteAddress;
+    this.subprotocol = subprotocol;
+    final XEndpointConfig<?> config = manager.getConfig();
+    backlog = new Backlog(config.highWaterMark, config.highWaterMarkBytes,
+                          writable -> manager.getListener().onWritabilityChanged(this, writable));
+    touchLastActivityTime();
+  }
+  
+  /**
+   *  Connects a pair of endpoints to one another. Must be called before either endpoint is opened.
+   *
+   *  @param a One endpoint.
+   *  @param b The other endpoint.
+   */
+  static void link(LoopbackEndpoint a, LoopbackEndpoint b) {
+    a.peer = b;
+    b.peer = a;
+  }
+  
+  /**
+   *  Registers the endpoint with its manager and notifies the listener, before releasing any
+   *  frames that may have arrived in the meantime.
+   */
+  void open() {
+    manager.add(this);
+    manager.getListener().onConnect(this);
+    schedule();
+  }
+  
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T getContext() {
+    return (T) context;
+  }
+  
+  @Override
+  public void setContext(Object context) {
+    this.context = context;
+  }
+  
+  @Override
+  public void send(String payload, XSendCallback callback) {
+    send(FrameType.TEXT, payload, lengthOf(payload), callback);
+  }
+  
+  /**
+   *  Sends a copy of the payload, leaving the position of the given buffer unchanged.
+   */
+  @Override
+  public void send(ByteBuffer payload, XSendCallback callback) {
+    final ByteBuffer copy = ByteBuffer.allocate(payload.remaining());
+    copy.put(payload.duplicate());
+    copy.flip();
+    send(FrameType.BINARY, copy, lengthOf(payload), callback);
+  }
+  
+  private void send(FrameType type, Object payload, int length, XSendCallback callback) {
+    if (! open) {
+      if (callback != null) callback.onError(this, new ClosedChannelException());
+    } else if (backlog.isBelowHighWaterMark()) {
+      backlog.add(length);
+      peer.receive(new Frame(type, payload, 0, callback, length));
+      touchLastActivityTime();
+    } else if (callback != null) {
+      callback.onSkip(this);
+    }
+  }
+  
+  private int lengthOf(String payload) {
+    return backlog.isTrackingBytes() ? payload.length() : 0;
+  }
+  
+  private int lengthOf(ByteBuffer payload) {
+    return backlog.isTrackingBytes() ? payload.remaining() : 0;
+  }
+  
+  /**
+   *  Blocks until the message has been taken up by the peer, and so mustn't be called from
+   *  this endpoint's I/O thread, which may also be serving the peer.
+   */
+  @Override
+  public void sendStream(ReadableByteChannel source, int fragmentSize) throws IOException {
+    if (ioThread.isCurrent()) throw new IllegalStateException("Cannot stream from the I/O thread");
+    XEndpoint.super.sendStream(source, fragmentSize);
+  }
+  
+  /**
+   *  Queues a frame arriving from the peer, scheduling the queue to be drained if it isn't
+   *  already.
+   *
+   *  @param frame The frame.
+   */
+  private void receive(Frame frame) {
+    if (frame == TERMINATE) {
+      // the connection is going away; any frames held back by a suspension must make way
+      unsuspend();
+    }
+    inbound.add(frame);
+    if (pending.getAndIncrement() == 0) {
+      schedule();
+    }
+  }
+  
+  private void schedule() {
+    try {
+      ioThread.execute(this::drain);
+    } catch (RejectedExecutionException e) {
+      // the I/O threads have been shut down; the remaining frames can only be discarded
+      drain();
+    }
+  }
+  
+  /**
+   *  Dispatches the queued frames, one at a time, until the queue is empty or receives are 
+   *  suspended. In the latter case, the drain is parked with the pending count still held, so 
+   *  that the arrival of further frames doesn't schedule another drain in the meantime.
+   */
+  private void drain() {
+    int missed = 1;
+    for (;;) {
+      for (;;) {
+        if (receivesSuspended && ! park()) return;
+        
+        final Frame frame = inbound.poll();
+        if (frame == null) break;
+        
+        try {
+          dispatch(frame);
+        } catch (Throwable e) {
+          if (open) {
+            manager.getListener().onError(this, e);
+          } else {
+            log.warn("Error handling frame", e);
+          }
+        }
+      }
+      
+      missed = pending.addAndGet(-missed);
+      if (missed == 0) return;
+    }
+  }
+  
+  /**
+   *  Parks the drain, unless receives have been resumed in the meantime.
+   *  
+   *  @return True if the drain should carry on, having been resumed before it could be parked.
+   */
+  private boolean park() {
+    drainParked.set(true);
+    return ! receivesSuspended && drainParked.compareAndSet(true, false);
+  }
+  
+  private void dispatch(Frame frame) {
+    switch (frame.type) {
+      case TEXT:
+        if (! open) {
+          peer.failSend(frame);
+        } else {
+          peer.completeSend(frame);
+          touchLastActivityTime();
+          final String text = (String) frame.payload;
+          if (text.length() > manager.getConfig().maxMessageSize) {
+            rejectTooBig(text.length());
+          } else {
+            manager.getListener().onText(this, text);
+          }
+        }
+        break;
+      
+      case BINARY:
+        if (! open) {
+          peer.failSend(frame);
+        } else {
+          peer.completeSend(frame);
+          touchLastActivityTime();
+          final ByteBuffer binary = (ByteBuffer) frame.payload;
+          final XEndpointPartialListener<? super LoopbackEndpoint> partialListener = manager.getPartialListener();
+          if (partialListener != null) {
+            partialListener.onBinaryFragment(this, binary, true);
+          } else if (binary.remaining() > manager.getConfig().maxMessageSize) {
+            rejectTooBig(binary.remaining());
+          } else {
+            manager.getListener().onBinary(this, binary);
+          }
+        }
+        break;
+      
+      case PING:
+        if (open) {
+          touchLastActivityTime();
+          final ByteBuffer data = (ByteBuffer) frame.payload;
+          manager.getListener().onPing(this, data.duplicate());
+          peer.receive(new Frame(FrameType.PONG, data, 0, null, 0));
+        }
+        break;
+      
+      case PONG:
+        if (open) {
+          touchLastActivityTime();
+          manager.getListener().onPong(this, (ByteBuffer) frame.payload);
+        }
+        break;
+      
+      case CLOSE:
+        if (open) {
+          touchLastActivityTime();
+          manager.getListener().onDisconnect(this, frame.statusCode, (String) frame.payload);
+          if (closeSent.compareAndSet(false, true)) {
+            peer.receive(new Frame(FrameType.CLOSE, frame.payload, frame.statusCode, null, 0));
+          }
+          open = false;
+          fireCloseEvent();
+        } else {
+          // the connection is already gone; the peer would otherwise await a reply indefinitely
+          peer.receive(TERMINATE);
+        }
+        break;
+      
+      case TERMINATE:
+        open = false;
+        fireCloseEvent();
+        break;
+    }
+  }
+  
+  private void rejectTooBig(int length) {
+    manager.getListener().onError(this, new IOException("Message of " + length + " exceeds the maximum size of " +
+        manager.getConfig().maxMessageSize));
+    sendClose(MESSAGE_TOO_BIG, "Message too big");
+  }
+  
+  private void completeSend(Frame frame) {
+    backlog.remove(frame.length);
+    if (frame.callback != null) frame.callback.onComplete(this);
+  }
+  
+  private void failSend(Frame frame) {
+    backlog.remove(frame.length);
+    if (frame.callback != null) frame.callback.onError(this, new ClosedChannelException());
+  }
+  
+  /**
+   *  The loopback connection has no stream to flush, so this method does nothing.
+   */
+  @Override
+  public void flush() {}
+  
+  @Override
+  public Executor getIoExecutor() {
+    return ioThread;
+  }
+  
+  @Override
+  public void sendPing() {
+    if (open) {
+      touchLastActivityTime();
+      peer.receive(new Frame(FrameType.PING, ByteBuffer.allocate(0), 0, null, 0));
+    }
+  }
+  
+  @Override
+  public void close() {
+    if (! sendClose(NORMAL_CLOSURE, "")) {
+      terminate();
+    }
+  }
+  
+  private boolean sendClose(int statusCode, String reason) {
+    if (open && closeSent.compareAndSet(false, true)) {
+      peer.receive(new Frame(FrameType.CLOSE, reason, statusCode, null, 0));
+      return true;
+    } else {
+      return false;
+    }
+  }
+  
+  /**
+   *  Closes this endpoint and its peer without the close handshake, firing the close event on
+   *  each endpoint's I/O thread after any frames already queued for it.
+   */
+  @Override
+  public void terminate() {
+    if (open) {
+      open = false;
+      peer.receive(TERMINATE);
+    }
+    receive(TERMINATE);
+  }
+  
+  private void fireCloseEvent() {
+    if (closeFired.compareAndSet(false, true)) {
+      manager.remove(this);
+      manager.getListener().onClose(this);
+    }
+  }
+  
+  @Override
+  public InetSocketAddress getRemoteAddress() {
+    return remoteAddress;
+  }
+  
+  @Override
+  public String getSubprotocol() {
+    return subprotocol;
+  }
+  
+  @Override
+  public long getBacklog() {
+    return backlog.getMessages();
+  }
+  
+  @Override
+  public long getBacklogBytes() {
+    return backlog.getBytes();
+  }
+  
+  @Override
+  public boolean isWritable() {
+    return backlog.isWritable();
+  }
+  
+  /**
+   *  Holds back the frames arriving from the peer in the inbound queue, which (unlike a socket 
+   *  buffer) is unbounded; the peer should therefore limit its backlog. Terminating either end 
+   *  resumes receives, so that the connection can be torn down.
+   */
+  @Override
+  public void suspendReceives() {
+    receiveSuspensions.suspend();
+  }
+  
+  @Override
+  public void resumeReceives() {
+    receiveSuspensions.resume();
+  }
+  
+  @Override
+  public boolean isReceivesSuspended() {
+    return receivesSuspended;
+  }
+  
+  private void unsuspend() {
+    receivesSuspended = false;
+    if (drainParked.compareAndSet(true, false)) {
+      schedule();
+    }
+  }
+  
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+  
+  @Override
+  public long getLastActivityTime() {
+    return lastActivityTime;
+  }
+  
+  /**
+   *  Stamps the activity time from the coarse clock, skipping the store if the time hasn't moved
+   *  since the last stamp.
+   */
+  private void touchLastActivityTime() {
+    final long now = CoarseClock.now();
+    if (lastActivityTime != now) {
+      lastActivityTimeUpdater.lazySet(this, now);
+    }
+  }
+  
+  @Override
+  public String toString() {
+    return XEndpoint.defaultToString(this);
+  }
+}
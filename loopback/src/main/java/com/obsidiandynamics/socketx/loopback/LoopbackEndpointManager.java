@@ -0,0 +1,50 @@
+package com.obsidiandynamics.socketx.loopback;
+
+import java.util.*;
+
+import com.obsidiandynamics.socketx.*;
+
+final class LoopbackEndpointManager implements XEndpointManager<LoopbackEndpoint> {
+  private final XEndpointScanner<LoopbackEndpoint> scanner;
+  
+  private final XEndpointConfig<?> config;
+  
+  private final XEndpointListener<? super LoopbackEndpoint> listener;
+  
+  LoopbackEndpointManager(XEndpointScanner<LoopbackEndpoint> scanner, XEndpointConfig<?> config, 
+                          XEndpointListener<? super LoopbackEndpoint> listener) {
+    this.scanner = scanner;
+    this.config = config;
+    this.listener = listener;
+  }
+  
+  XEndpointListener<? super LoopbackEndpoint> getListener() {
+    return listener;
+  }
+  
+  /**
+   *  Obtains the listener as a partial listener, if it is one.
+   *  
+   *  @return The partial listener, or {@code null} if binary messages are to be delivered whole.
+   */
+  XEndpointPartialListener<? super LoopbackEndpoint> getPartialListener() {
+    return listener instanceof XEndpointPartialListener ? (XEndpointPartialListener<? super LoopbackEndpoint>) listener : null;
+  }
+  
+  XEndpointConfig<?> getConfig() {
+    return config;
+  }
+  
+  @Override
+  public Collection<LoopbackEndpoint> getEndpoints() {
+    return scanner.getEndpoints();
+  }
+  
+  void add(LoopbackEndpoint endpoint) {
+    scanner.addEndpoint(endpoint);
+  }
+  
+  void remove(LoopbackEndpoint endpoint) {
+    scanner.removeEndpoint(endpoint);
+  }
+}
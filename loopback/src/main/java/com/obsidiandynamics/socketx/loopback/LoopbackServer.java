@@ -0,0 +1,89 @@
+package com.obsidiandynamics.socketx.loopback;
+
+import java.net.*;
+import java.util.concurrent.*;
+
+import com.obsidiandynamics.socketx.*;
+
+/**
+ *  A server that accepts connections from {@link LoopbackClient}s within the same JVM, in
+ *  place of a network listener. The server is bound to its configured port (and HTTPS port, 
+ *  if set) in a JVM-wide registry, which clients consult when connecting.
+ */
+public final class LoopbackServer implements XServer<LoopbackEndpoint> {
+  private static final ConcurrentMap<Integer, LoopbackServer> bound = new ConcurrentHashMap<>();
+  
+  private final XServerConfig config;
+  private final LoopbackEndpointManager manager;
+  private final LoopbackWorker worker;
+  private final XEndpointScanner<LoopbackEndpoint> scanner;
+  
+  private LoopbackServer(XServerConfig config, 
+                         XEndpointListener<? super LoopbackEndpoint> listener) throws BindException {
+    this.config = config;
+    bind(config.port);
+    if (config.httpsPort != 0) {
+      try {
+        bind(config.httpsPort);
+      } catch (BindException e) {
+        bound.remove(config.port, this);
+        throw e;
+      }
+    }
+    
+    worker = new LoopbackWorker("LoopbackServer-" + config.port, LoopbackAtts.IO_THREADS.get(config.attributes));
+    scanner = new XEndpointScanner<>(config.scanIntervalMillis, config.pingIntervalMillis, config.scanMode, 
+                                     XAtts.SCANNER_SHARDS.get(config.attributes));
+    manager = new LoopbackEndpointManager(scanner, config, listener);
+  }
+  
+  private void bind(int port) throws BindException {
+    if (bound.putIfAbsent(port, this) != null) {
+      throw new BindException("Port " + port + " is already bound");
+    }
+  }
+  
+  /**
+   *  Obtains the server bound to the given port.
+   *  
+   *  @param port The port.
+   *  @return The server, or {@code null} if no server is bound to the port.
+   */
+  static LoopbackServer boundTo(int port) {
+    return bound.get(port);
+  }
+  
+  LoopbackWorker getWorker() {
+    return worker;
+  }
+
+  @Override
+  public void close() throws Exception {
+    bound.remove(config.port, this);
+    bound.remove(config.httpsPort, this);
+    scanner.closeEndpoints(60_000);
+    scanner.close();
+    worker.close();
+  }
+
+  @Override
+  public LoopbackEndpointManager getEndpointManager() {
+    return manager;
+  }
+  
+  @Override
+  public XServerConfig getConfig() {
+    return config;
+  }
+  
+  public static final class Factory implements XServerFactory<LoopbackEndpoint> {
+    @Override public XServer<LoopbackEndpoint> create(XServerConfig config,
+                                                      XEndpointListener<? super LoopbackEndpoint> listener) throws Exception {
+      return new LoopbackServer(config, listener);
+    }
+  }
+  
+  public static XServerFactory<LoopbackEndpoint> factory() {
+    return new Factory();
+  }
+}
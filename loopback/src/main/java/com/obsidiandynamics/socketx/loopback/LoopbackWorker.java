@@ -0,0 +1,65 @@
+package com.obsidiandynamics.socketx.loopback;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ *  A fixed set of single-threaded executors, standing in for the I/O threads of a network
+ *  provider. Each endpoint is bound to one I/O thread for its lifetime, so that the callbacks
+ *  of any one endpoint are serialised.
+ */
+final class LoopbackWorker implements AutoCloseable {
+  static final class IoThread implements Executor {
+    private final ExecutorService executor;
+    
+    private volatile Thread thread;
+    
+    IoThread(String name) {
+      executor = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        this.thread = thread;
+        return thread;
+      });
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      executor.execute(command);
+    }
+    
+    boolean isCurrent() {
+      return Thread.currentThread() == thread;
+    }
+  }
+  
+  private final IoThread[] ioThreads;
+  
+  private final AtomicInteger next = new AtomicInteger();
+  
+  LoopbackWorker(String name, int threads) {
+    ioThreads = new IoThread[threads];
+    for (int i = 0; i < threads; i++) {
+      ioThreads[i] = new IoThread(name + "-" + i);
+    }
+  }
+  
+  /**
+   *  Obtains the next I/O thread, in round-robin order.
+   *  
+   *  @return The I/O thread.
+   */
+  IoThread next() {
+    return ioThreads[(next.getAndIncrement() & Integer.MAX_VALUE) % ioThreads.length];
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    for (IoThread ioThread : ioThreads) {
+      ioThread.executor.shutdown();
+    }
+    for (IoThread ioThread : ioThreads) {
+      ioThread.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+  }
+}
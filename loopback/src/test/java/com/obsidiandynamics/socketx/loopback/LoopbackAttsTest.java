@@ -0,0 +1,12 @@
+package com.obsidiandynamics.socketx.loopback;
+
+import org.junit.*;
+
+import com.obsidiandynamics.assertion.*;
+
+public final class LoopbackAttsTest {
+  @Test
+  public void testConformance() throws Exception {
+    Assertions.assertUtilityClassWellDefined(LoopbackAtts.class);
+  }
+}
@@ -0,0 +1,53 @@
+package com.obsidiandynamics.socketx.netty;
+
+import java.util.*;
+
+import com.obsidiandynamics.socketx.*;
+
+import io.netty.handler.codec.http.websocketx.extensions.*;
+import io.netty.handler.codec.http.websocketx.extensions.compression.*;
+
+/**
+ *  Negotiates permessage-deflate according to the compression settings of an 
+ *  {@link XEndpointConfig}.<p>
+ *  
+ *  Netty's handshaker only restricts the server's own window size and context takeover when
+ *  the client asks it to. As RFC 7692 allows the server to impose these parameters 
+ *  unilaterally, they are added to the client's offer before it is handed to Netty, 
+ *  which then applies them and echoes them in its response.
+ */
+final class DeflateHandshaker implements WebSocketServerExtensionHandshaker {
+  private static final String SERVER_MAX_WINDOW = "server_max_window_bits";
+  
+  private static final String SERVER_NO_CONTEXT = "server_no_context_takeover";
+  
+  private static final int MAX_WINDOW_BITS = 15;
+  
+  private final PerMessageDeflateServerExtensionHandshaker delegate;
+  
+  private final int windowBits;
+  
+  private final boolean contextTakeover;
+  
+  DeflateHandshaker(XEndpointConfig<?> config) {
+    windowBits = config.compressionWindowBits;
+    contextTakeover = config.compressionContextTakeover;
+    delegate = new PerMessageDeflateServerExtensionHandshaker(config.compressionLevel, true, windowBits, 
+                                                              true, ! contextTakeover);
+  }
+
+  @Override
+  public WebSocketServerExtension handshakeExtension(WebSocketExtensionData offer) {
+    final Map<String, String> parameters = new HashMap<>(offer.parameters());
+    if (windowBits < MAX_WINDOW_BITS) {
+      final String requested = parameters.get(SERVER_MAX_WINDOW);
+      if (requested == null || Integer.parseInt(requested) > windowBits) {
+        parameters.put(SERVER_MAX_WINDOW, String.valueOf(windowBits));
+      }
+    }
+    if (! contextTakeover) {
+      parameters.put(SERVER_NO_CONTEXT, null);
+    }
+    return delegate.handshakeExtension(new WebSocketExtensionData(offer.name(), parameters));
+  }
+}
@@ -0,0 +1,58 @@
+package com.obsidiandynamics.socketx.netty;
+
+import java.nio.*;
+import java.nio.charset.*;
+
+import io.netty.buffer.*;
+
+/**
+ *  Encodes complete, unmasked server-to-client WebSocket frames into a {@link ByteBuf}, so that
+ *  a single encoded frame may be shared among any number of channels.<p>
+ *  
+ *  Because the result is a plain {@link ByteBuf} rather than a {@link io.netty.handler.codec.http.websocketx.WebSocketFrame},
+ *  it passes through the pipeline's frame and extension encoders untouched. In particular, 
+ *  frames encoded here are never compressed, which RFC 7692 permits even when permessage-deflate
+ *  has been negotiated.
+ */
+final class EncodedFrames {
+  private static final int FIN = 0x80;
+  
+  private static final int OPCODE_TEXT = 0x1;
+  
+  private static final int OPCODE_BINARY = 0x2;
+  
+  private static final int MAX_SHORT_LENGTH = 125;
+  
+  private static final int MAX_MEDIUM_LENGTH = 0xFFFF;
+  
+  private EncodedFrames() {}
+  
+  static ByteBuf binary(ByteBufAllocator alloc, ByteBuffer payload) {
+    return encode(alloc, OPCODE_BINARY, payload.duplicate());
+  }
+  
+  static ByteBuf text(ByteBufAllocator alloc, String payload) {
+    return encode(alloc, OPCODE_TEXT, ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8)));
+  }
+  
+  private static ByteBuf encode(ByteBufAllocator alloc, int opcode, ByteBuffer payload) {
+    final int length = payload.remaining();
+    final ByteBuf frame = alloc.buffer(headerLength(length) + length);
+    frame.writeByte(FIN | opcode);
+    if (length <= MAX_SHORT_LENGTH) {
+      frame.writeByte(length);
+    } else if (length <= MAX_MEDIUM_LENGTH) {
+      frame.writeByte(126);
+      frame.writeShort(length);
+    } else {
+      frame.writeByte(127);
+      frame.writeLong(length);
+    }
+    frame.writeBytes(payload);
+    return frame;
+  }
+  
+  static int headerLength(int payloadLength) {
+    return payloadLength <= MAX_SHORT_LENGTH ? 2 : payloadLength <= MAX_MEDIUM_LENGTH ? 4 : 10;
+  }
+}
@@ -0,0 +1,82 @@
+package com.obsidiandynamics.socketx.netty;
+
+import java.util.concurrent.*;
+
+import io.netty.channel.*;
+
+/**
+ *  Consolidates the flushes issued on a channel, in the manner of Netty's
+ *  {@code FlushConsolidationHandler}, but with the delay bounded in time rather than by
+ *  the event loop's task queue. A flush is forwarded once the given number of flushes has
+ *  accumulated, or once the maximum delay has elapsed since the first pending flush,
+ *  whichever comes first.<p>
+ *
+ *  All state is confined to the channel's event loop.
+ */
+final class FlushCoalescingHandler extends ChannelDuplexHandler {
+  private final int maxMessages;
+
+  private final long maxDelayMicros;
+
+  private int pendingFlushes;
+
+  private ScheduledFuture<?> scheduledFlush;
+
+  FlushCoalescingHandler(int maxMessages, long maxDelayMicros) {
+    this.maxMessages = maxMessages;
+    this.maxDelayMicros = maxDelayMicros;
+  }
+
+  @Override
+  public void flush(ChannelHandlerContext ctx) throws Exception {
+    if (++pendingFlushes >= maxMessages) {
+      flushNow(ctx);
+    } else if (scheduledFlush == null) {
+      scheduledFlush = ctx.executor().schedule(() -> {
+        scheduledFlush = null;
+        flushIfPending(ctx);
+      }, maxDelayMicros, TimeUnit.MICROSECONDS);
+    }
+  }
+
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    // hand the pending writes to the socket as soon as the outbound buffer fills up
+    if (! ctx.channel().isWritable()) {
+      flushIfPending(ctx);
+    }
+    ctx.fireChannelWritabilityChanged();
+  }
+
+  @Override
+  public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+    flushIfPending(ctx);
+    ctx.close(promise);
+  }
+
+  @Override
+  public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+    flushIfPending(ctx);
+    ctx.disconnect(promise);
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+    flushIfPending(ctx);
+  }
+
+  private void flushIfPending(ChannelHandlerContext ctx) {
+    if (pendingFlushes != 0) {
+      flushNow(ctx);
+    }
+  }
+
+  private void flushNow(ChannelHandlerContext ctx) {
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    pendingFlushes = 0;
+    ctx.flush();
+  }
+}
@@ -6,9 +6,33 @@ import com.obsidiandynamics.socketx.attribute.Constant;
 import io.netty.util.*;
 
 public final class NettyAtts {
+  /** The number of worker event loop threads, serving established connections. */
   public static final Attribute<Integer> EVENT_LOOP_THREADS = new Attribute<Integer>("socketx.netty.eventLoopThreads")
       .withMin(Constant.of(1))
       .withDefault(Constant.of(NettyRuntime.availableProcessors() * 2));
   
+  /** Whether inbound binary, ping and pong messages are delivered as views over the pooled
+   *  frame buffer, rather than copied to the heap. See {@link NettyEndpoint#retainInbound()}. */
+  public static final Attribute<Boolean> ZERO_COPY_INBOUND = new Attribute<Boolean>("socketx.netty.zeroCopyInbound")
+      .withDefault(Constant.of(false));
+  
+  /** The I/O transport; native transports fall back to NIO where unavailable. */
+  public static final Attribute<NettyTransport> TRANSPORT = new Attribute<NettyTransport>("socketx.netty.transport")
+      .withDefault(Constant.of(NettyTransport.NIO));
+  
+  /** Whether {@code SO_REUSEPORT} is set on the server socket. Native transports only. */
+  public static final Attribute<Boolean> REUSE_PORT = new Attribute<Boolean>("socketx.netty.reusePort")
+      .withDefault(Constant.of(false));
+  
+  /** The length of the {@code TCP_FASTOPEN} queue, where {@code 0} disables Fast Open. 
+   *  Native transports only. */
+  public static final Attribute<Integer> TCP_FASTOPEN = new Attribute<Integer>("socketx.netty.tcpFastOpen")
+      .withMin(Constant.of(0))
+      .withDefault(Constant.of(0));
+  
+  /** Whether epoll operates in edge-triggered (as opposed to level-triggered) mode. Epoll only. */
+  public static final Attribute<Boolean> EDGE_TRIGGERED = new Attribute<Boolean>("socketx.netty.edgeTriggered")
+      .withDefault(Constant.of(true));
+  
   private NettyAtts() {}
 }
@@ -0,0 +1,42 @@
+package com.obsidiandynamics.socketx.netty;
+
+import java.nio.*;
+
+import com.obsidiandynamics.socketx.*;
+
+import io.netty.buffer.*;
+
+/**
+ *  An {@link XBuffer} drawn from the channel's allocator (pooled and direct, by default).
+ *  The exposed {@link ByteBuffer} is a view over the memory of the underlying {@link ByteBuf},
+ *  so that the payload can be sent without copying or wrapping.
+ */
+final class NettyBuffer implements XBuffer {
+  private final ByteBuf buf;
+  
+  private final ByteBuffer nioBuffer;
+  
+  NettyBuffer(ByteBufAllocator alloc, int capacity) {
+    buf = alloc.directBuffer(capacity, capacity);
+    nioBuffer = buf.nioBuffer(0, capacity);
+  }
+
+  @Override
+  public ByteBuffer getBuffer() {
+    return nioBuffer;
+  }
+  
+  /**
+   *  Obtains the underlying {@link ByteBuf}, spanning the bytes written to the exposed buffer.
+   *  
+   *  @return The underlying buffer.
+   */
+  ByteBuf toByteBuf() {
+    return buf.writerIndex(nioBuffer.position());
+  }
+
+  @Override
+  public void release() {
+    buf.release();
+  }
+}
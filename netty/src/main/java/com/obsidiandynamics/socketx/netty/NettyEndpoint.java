@@ -3,28 +3,66 @@ package com.obsidiandynamics.socketx.netty;
 import java.io.*;
 import java.net.*;
 import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
 import java.util.concurrent.atomic.*;
 
 import com.obsidiandynamics.socketx.*;
+import com.obsidiandynamics.socketx.util.*;
 
 import io.netty.buffer.*;
 import io.netty.channel.*;
+import io.netty.channel.Channel;
 import io.netty.handler.codec.http.websocketx.*;
 import io.netty.util.concurrent.*;
 
 public final class NettyEndpoint implements XEndpoint {
+  private static final AtomicLongFieldUpdater<NettyEndpoint> lastActivityTimeUpdater = 
+      AtomicLongFieldUpdater.newUpdater(NettyEndpoint.class, "lastActivityTime");
+  
   private final NettyEndpointManager manager;
   private final ChannelHandlerContext handlerContext;
-  private final AtomicLong backlog = new AtomicLong();
+  private final Backlog backlog;
+  /** Maintains the backlog for sends that have neither a callback nor a tracked length. */
+  private final GenericFutureListener<ChannelFuture> backlogDecrementer;
+  /** Payloads shorter than this are sent pre-encoded, bypassing permessage-deflate. */
+  private final int compressionThreshold;
   private final AtomicBoolean closeFired = new AtomicBoolean();
+  private final SuspendCounter receiveSuspensions;
+  /** Whether the channel's writability counts towards that of the endpoint. */
+  private final boolean channelWritabilityTracked;
+  /** Reports changes in the combined writability, one at a time and without holding a lock. */
+  private final SerialUpdater writabilityUpdater = new SerialUpdater(this::reportWritability);
+  /** Held while writing a data frame, so that the write can't slip into a stream. */
+  private final Object writeLock = new Object();
+  /** Held for the duration of a stream, so that concurrent streams are sent one after another. */
+  private final Object streamLock = new Object();
+  
+  /** Data writes held back while a stream is in progress, or {@code null}; guarded by {@link #writeLock}. */
+  private Queue<Runnable> deferredWrites;
   
   private volatile Object context;
   
+  private volatile String subprotocol;
+  
   private volatile long lastActivityTime;
+  
+  /** The writability last reported to the listener; confined to {@link #writabilityUpdater}. */
+  private boolean reportedWritable = true;
+  
+  /** The buffer backing the inbound message being delivered; confined to the event loop. */
+  private ByteBuf inbound;
 
   NettyEndpoint(NettyEndpointManager manager, ChannelHandlerContext handlerContext) {
     this.manager = manager;
     this.handlerContext = handlerContext;
+    final XEndpointConfig<?> config = manager.getConfig();
+    backlog = new Backlog(config.highWaterMark, config.highWaterMarkBytes, writable -> writabilityUpdater.update());
+    channelWritabilityTracked = config.highWaterMarkBytes != Long.MAX_VALUE;
+    backlogDecrementer = f -> backlog.remove(0);
+    compressionThreshold = config.compression ? config.compressionThreshold : 0;
+    receiveSuspensions = new SuspendCounter(() -> handlerContext.channel().config().setAutoRead(false),
+                                            () -> handlerContext.channel().config().setAutoRead(true));
     touchLastActivityTime();
   }
   
@@ -43,34 +81,240 @@ public final class NettyEndpoint implements XEndpoint {
     this.context = context;
   }
   
+  /**
+   *  Binary payloads shorter than the compression threshold are encoded here, so that the 
+   *  frame bypasses permessage-deflate.
+   */
   @Override
   public void send(ByteBuffer payload, XSendCallback callback) {
     if (isBelowHWM()) {
-      backlog.incrementAndGet();
-      final ByteBuf buf = Unpooled.wrappedBuffer(payload);
-      final ChannelFuture f = handlerContext.channel().writeAndFlush(new BinaryWebSocketFrame(buf));
-      f.addListener(wrapCallback(callback));
+      final int length = lengthOf(payload);
+      backlog.add(length);
+      final Object frame = payload.remaining() < compressionThreshold 
+          ? EncodedFrames.binary(handlerContext.alloc(), payload) : new BinaryWebSocketFrame(Unpooled.wrappedBuffer(payload));
+      writeData(frame, wrapCallback(callback, length), true);
       touchLastActivityTime();
     } else if (callback != null) {
       callback.onSkip(this);
     }
   }
   
+  /**
+   *  Text payloads shorter than the compression threshold (counted in characters) are encoded 
+   *  here, so that the frame bypasses permessage-deflate.
+   */
   @Override
   public void send(String payload, XSendCallback callback) {
     if (isBelowHWM()) {
-      backlog.incrementAndGet();
-      final ChannelFuture f = handlerContext.channel().writeAndFlush(new TextWebSocketFrame(payload));
-      f.addListener(wrapCallback(callback));
+      final int length = lengthOf(payload);
+      backlog.add(length);
+      final Object frame = payload.length() < compressionThreshold 
+          ? EncodedFrames.text(handlerContext.alloc(), payload) : new TextWebSocketFrame(payload);
+      writeData(frame, wrapCallback(callback, length), true);
       touchLastActivityTime();
     } else if (callback != null) {
       callback.onSkip(this);
     }
   }
   
-  private GenericFutureListener<ChannelFuture> wrapCallback(XSendCallback callback) {
+  /**
+   *  Allocates a buffer from the channel's allocator, which is pooled by default.
+   */
+  @Override
+  public XBuffer allocate(int capacity) {
+    return new NettyBuffer(handlerContext.alloc(), capacity);
+  }
+  
+  /**
+   *  Sends a buffer obtained from {@link #allocate(int)} directly as the content of the frame,
+   *  which Netty releases back to the pool once written.
+   */
+  @Override
+  public void send(XBuffer buffer, XSendCallback callback) {
+    if (! (buffer instanceof NettyBuffer)) {
+      XEndpoint.super.send(buffer, callback);
+      return;
+    }
+    
+    final ByteBuf buf = ((NettyBuffer) buffer).toByteBuf();
+    if (isBelowHWM()) {
+      final int length = lengthOf(buf);
+      backlog.add(length);
+      writeData(new BinaryWebSocketFrame(buf), wrapCallback(callback, length), true);
+      touchLastActivityTime();
+    } else {
+      buf.release();
+      if (callback != null) callback.onSkip(this);
+    }
+  }
+  
+  /**
+   *  Writes each message of the batch without flushing, then flushes the channel once, so that
+   *  the batch is written with as few system calls as the socket buffer allows.
+   */
+  @Override
+  public void sendBatch(String[] payloads, XSendCallback callback) {
+    synchronized (writeLock) {
+      for (String payload : payloads) {
+        if (isBelowHWM()) {
+          final int length = lengthOf(payload);
+          backlog.add(length);
+          writeData(new TextWebSocketFrame(payload), wrapCallback(callback, length), false);
+        } else if (callback != null) {
+          callback.onSkip(this);
+        }
+      }
+      flushData();
+    }
+    touchLastActivityTime();
+  }
+  
+  /**
+   *  Writes each message of the batch without flushing, then flushes the channel once, so that
+   *  the batch is written with as few system calls as the socket buffer allows.
+   */
+  @Override
+  public void sendBatch(ByteBuffer[] payloads, XSendCallback callback) {
+    synchronized (writeLock) {
+      for (ByteBuffer payload : payloads) {
+        if (isBelowHWM()) {
+          final int length = lengthOf(payload);
+          backlog.add(length);
+          final ByteBuf buf = Unpooled.wrappedBuffer(payload);
+          writeData(new BinaryWebSocketFrame(buf), wrapCallback(callback, length), false);
+        } else if (callback != null) {
+          callback.onSkip(this);
+        }
+      }
+      flushData();
+    }
+    touchLastActivityTime();
+  }
+  
+  /**
+   *  Sends the first fragment as a binary frame and the remainder as continuation frames, 
+   *  awaiting the write of each before reading the next, so that the fragment buffer can be 
+   *  wrapped rather than copied.<p>
+   *  
+   *  As no other data frame may come between the fragments of a message, messages sent while 
+   *  the stream is in progress are held back (while still counting towards the backlog) and
+   *  written once the stream ends; a concurrent stream waits for this one to end. Control 
+   *  frames aren't held back.
+   */
+  @Override
+  public void sendStream(ReadableByteChannel source, int fragmentSize) throws IOException {
+    final Channel channel = handlerContext.channel();
+    if (channel.eventLoop().inEventLoop()) throw new IllegalStateException("Cannot stream from the I/O thread");
+    
+    synchronized (streamLock) {
+      synchronized (writeLock) {
+        deferredWrites = new ArrayDeque<>();
+      }
+      try {
+        final FragmentReader reader = new FragmentReader(source, fragmentSize);
+        boolean first = true;
+        do {
+          final ByteBuf buf = Unpooled.wrappedBuffer(reader.next());
+          final WebSocketFrame frame = first ? new BinaryWebSocketFrame(reader.isLast(), 0, buf) 
+              : new ContinuationWebSocketFrame(reader.isLast(), 0, buf);
+          awaitWrite(channel.writeAndFlush(frame));
+          touchLastActivityTime();
+          first = false;
+        } while (! reader.isLast());
+      } finally {
+        synchronized (writeLock) {
+          for (Runnable write; (write = deferredWrites.poll()) != null;) {
+            write.run();
+          }
+          deferredWrites = null;
+        }
+      }
+    }
+  }
+  
+  /**
+   *  Writes a data frame, flushing if requested, or holds the write back if a stream is in 
+   *  progress. The listener is added once the lock has been released, as it will be notified 
+   *  straight away if the write has already failed.
+   */
+  private void writeData(Object frame, GenericFutureListener<ChannelFuture> listener, boolean flush) {
+    final ChannelFuture f;
+    synchronized (writeLock) {
+      if (deferredWrites != null) {
+        deferredWrites.add(() -> write(frame, flush).addListener(listener));
+        return;
+      }
+      f = write(frame, flush);
+    }
+    f.addListener(listener);
+  }
+  
+  private ChannelFuture write(Object frame, boolean flush) {
+    final Channel channel = handlerContext.channel();
+    return flush ? channel.writeAndFlush(frame) : channel.write(frame);
+  }
+  
+  private void flushData() {
+    synchronized (writeLock) {
+      if (deferredWrites == null) {
+        handlerContext.channel().flush();
+      } else {
+        deferredWrites.add(handlerContext.channel()::flush);
+      }
+    }
+  }
+  
+  private static void awaitWrite(ChannelFuture f) throws IOException {
+    try {
+      f.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while sending stream");
+    }
+    if (! f.isSuccess()) throw new IOException("Error sending stream", f.cause());
+  }
+  
+  /**
+   *  Sends a pre-encoded frame, sharing the underlying buffer with other recipients. The caller
+   *  retains ownership of {@code frame}; this method only takes out an additional reference
+   *  for the duration of the write.
+   *  
+   *  @param frame The encoded frame.
+   *  @param callback Optional callback, invoked when the send completes (or fails).
+   */
+  void sendEncoded(ByteBuf frame, XSendCallback callback) {
+    if (isBelowHWM()) {
+      final int length = lengthOf(frame);
+      backlog.add(length);
+      writeData(frame.retainedDuplicate(), wrapCallback(callback, length), true);
+      touchLastActivityTime();
+    } else if (callback != null) {
+      callback.onSkip(this);
+    }
+  }
+  
+  private int lengthOf(String payload) {
+    return backlog.isTrackingBytes() ? payload.length() : 0;
+  }
+  
+  private int lengthOf(ByteBuffer payload) {
+    return backlog.isTrackingBytes() ? payload.remaining() : 0;
+  }
+  
+  private int lengthOf(ByteBuf frame) {
+    return backlog.isTrackingBytes() ? frame.readableBytes() : 0;
+  }
+  
+  /**
+   *  Wraps the given callback in a listener that also maintains the backlog. Where there is no 
+   *  callback to invoke and no length to retain, a listener shared by all sends is returned, 
+   *  sparing an allocation per send.
+   */
+  private GenericFutureListener<ChannelFuture> wrapCallback(XSendCallback callback, int length) {
+    if (callback == null && length == 0) return backlogDecrementer;
+    
     return f -> {
-      backlog.decrementAndGet();
+      backlog.remove(length);
       if (callback != null) {
         if (f.isSuccess()) {
           callback.onComplete(this);
@@ -82,7 +326,7 @@ public final class NettyEndpoint implements XEndpoint {
   }
   
   private boolean isBelowHWM() {
-    return backlog.get() < manager.getConfig().highWaterMark;
+    return backlog.isBelowHighWaterMark();
   }
   
   @Override
@@ -96,9 +340,18 @@ public final class NettyEndpoint implements XEndpoint {
     return handlerContext.channel().isOpen();
   }
   
+  /**
+   *  Flushes from the WebSocket handler's context rather than from the tail of the pipeline,
+   *  so that an explicit flush bypasses write coalescing.
+   */
   @Override
   public void flush() {
-    handlerContext.channel().flush();
+    handlerContext.flush();
+  }
+  
+  @Override
+  public EventLoop getIoExecutor() {
+    return handlerContext.channel().eventLoop();
   }
 
   @Override
@@ -109,10 +362,14 @@ public final class NettyEndpoint implements XEndpoint {
     fireCloseEvent();
   }
 
+  /**
+   *  Closes from the tail of the pipeline, rather than from the WebSocket handler's context, so
+   *  that writes held back by the flush coalescer are flushed before the channel closes.
+   */
   @Override
   public void close() throws Exception {
     if (handlerContext.channel().isOpen()) {
-      handlerContext.close().get();
+      handlerContext.channel().close().get();
     } else {
       fireCloseEvent();
     }
@@ -125,8 +382,40 @@ public final class NettyEndpoint implements XEndpoint {
     }
   }
   
-  void onBinary(ByteBuffer message) {
-    manager.getListener().onBinary(this, message);
+  /**
+   *  Retains the buffer backing the binary message, fragment, ping or pong that is currently being 
+   *  delivered to the listener. This is the escape hatch for a listener that needs to hold on 
+   *  to an inbound message beyond the callback when {@link NettyAtts#ZERO_COPY_INBOUND} is 
+   *  enabled, without copying it.<p>
+   *  
+   *  This method may only be called from within the listener callback. The caller takes 
+   *  ownership of the returned buffer, and must release it when done.
+   *  
+   *  @return A retained view of the inbound message.
+   *  @throws IllegalStateException If no inbound message is being delivered.
+   */
+  public ByteBuf retainInbound() {
+    if (inbound == null) throw new IllegalStateException("No inbound message is being delivered");
+    return inbound.retainedDuplicate();
+  }
+  
+  void onBinary(ByteBuf content, ByteBuffer message) {
+    inbound = content;
+    try {
+      manager.getListener().onBinary(this, message);
+    } finally {
+      inbound = null;
+    }
+    touchLastActivityTime();
+  }
+  
+  void onBinaryFragment(ByteBuf content, ByteBuffer fragment, boolean last) {
+    inbound = content;
+    try {
+      manager.getPartialListener().onBinaryFragment(this, fragment, last);
+    } finally {
+      inbound = null;
+    }
     touchLastActivityTime();
   }
   
@@ -135,13 +424,23 @@ public final class NettyEndpoint implements XEndpoint {
     touchLastActivityTime();
   }
   
-  void onPing(ByteBuffer data) {
-    manager.getListener().onPing(this, data);
+  void onPing(ByteBuf content, ByteBuffer data) {
+    inbound = content;
+    try {
+      manager.getListener().onPing(this, data);
+    } finally {
+      inbound = null;
+    }
     touchLastActivityTime();
   }
   
-  void onPong(ByteBuffer data) {
-    manager.getListener().onPong(this, data);
+  void onPong(ByteBuf content, ByteBuffer data) {
+    inbound = content;
+    try {
+      manager.getListener().onPong(this, data);
+    } finally {
+      inbound = null;
+    }
     touchLastActivityTime();
   }
   
@@ -154,15 +453,75 @@ public final class NettyEndpoint implements XEndpoint {
   void onError(Throwable cause) {
     if (isOpen()) manager.getListener().onError(this, cause);
   }
+  
+  void onChannelWritabilityChanged() {
+    if (channelWritabilityTracked) writabilityUpdater.update();
+  }
+  
+  /**
+   *  Reports a change in the combined writability of the backlog and the channel to the 
+   *  listener. Run whenever either changes, from the sending thread or the event loop.
+   */
+  private void reportWritability() {
+    final boolean writable = isWritable();
+    if (writable != reportedWritable) {
+      reportedWritable = writable;
+      manager.getListener().onWritabilityChanged(this, writable);
+    }
+  }
 
   @Override
   public InetSocketAddress getRemoteAddress() {
     return (InetSocketAddress) handlerContext.channel().remoteAddress();
   }
 
+  @Override
+  public String getSubprotocol() {
+    return subprotocol;
+  }
+  
+  void setSubprotocol(String subprotocol) {
+    this.subprotocol = subprotocol;
+  }
+
   @Override
   public long getBacklog() {
-    return backlog.get();
+    return backlog.getMessages();
+  }
+
+  @Override
+  public long getBacklogBytes() {
+    return backlog.getBytes();
+  }
+
+  /**
+   *  The endpoint is unwritable while its backlog is at either high-water mark, or, when a
+   *  byte-based high-water mark has been set, while the channel is unwritable. The latter mark
+   *  is applied to the channel's write buffer water marks; without it, the channel is governed
+   *  by Netty's default water marks (32 KiB low, 64 KiB high), which bear no relation to the
+   *  endpoint's configuration, and so are disregarded.
+   */
+  @Override
+  public boolean isWritable() {
+    return backlog.isWritable() && (! channelWritabilityTracked || handlerContext.channel().isWritable());
+  }
+
+  /**
+   *  Disables the channel's auto-read, so that the event loop stops reading from the socket.
+   */
+  @Override
+  public void suspendReceives() {
+    receiveSuspensions.suspend();
+  }
+
+  @Override
+  public void resumeReceives() {
+    receiveSuspensions.resume();
+  }
+
+  @Override
+  public boolean isReceivesSuspended() {
+    return receiveSuspensions.isSuspended();
   }
 
   @Override
@@ -170,8 +529,15 @@ public final class NettyEndpoint implements XEndpoint {
     return lastActivityTime;
   }
   
+  /**
+   *  Stamps the activity time from the coarse clock, skipping the store if the time hasn't moved
+   *  since the last stamp.
+   */
   private void touchLastActivityTime() {
-    lastActivityTime = System.currentTimeMillis();
+    final long now = CoarseClock.now();
+    if (lastActivityTime != now) {
+      lastActivityTimeUpdater.lazySet(this, now);
+    }
   }
 
   @Override
@@ -1,10 +1,12 @@
 package com.obsidiandynamics.socketx.netty;
 
+import java.nio.*;
 import java.util.*;
 import java.util.concurrent.*;
 
 import com.obsidiandynamics.socketx.*;
 
+import io.netty.buffer.*;
 import io.netty.channel.*;
 
 final class NettyEndpointManager implements XEndpointManager<NettyEndpoint> {
@@ -23,8 +25,17 @@ final class NettyEndpointManager implements XEndpointManager<NettyEndpoint> {
     this.listener = listener;
   }
 
-  NettyEndpoint createEndpoint(ChannelHandlerContext context) {
+  /**
+   *  Creates an endpoint for a connection that has completed its handshake, and notifies the 
+   *  listener.
+   *  
+   *  @param context The handler context.
+   *  @param subprotocol The agreed subprotocol, or {@code null} if none was agreed.
+   *  @return The new endpoint.
+   */
+  NettyEndpoint createEndpoint(ChannelHandlerContext context, String subprotocol) {
     final NettyEndpoint endpoint = new NettyEndpoint(this, context);
+    endpoint.setSubprotocol(subprotocol);
     endpoints.put(context.channel().id(), endpoint);
     scanner.addEndpoint(endpoint);
     listener.onConnect(endpoint);
@@ -45,6 +56,15 @@ final class NettyEndpointManager implements XEndpointManager<NettyEndpoint> {
     return listener;
   }
   
+  /**
+   *  Obtains the listener as a partial listener, if it is one.
+   *  
+   *  @return The partial listener, or {@code null} if binary messages are to be delivered whole.
+   */
+  XEndpointPartialListener<? super NettyEndpoint> getPartialListener() {
+    return listener instanceof XEndpointPartialListener ? (XEndpointPartialListener<? super NettyEndpoint>) listener : null;
+  }
+  
   XEndpointConfig<?> getConfig() {
     return config;
   }
@@ -53,4 +73,32 @@ final class NettyEndpointManager implements XEndpointManager<NettyEndpoint> {
   public Collection<NettyEndpoint> getEndpoints() {
     return scanner.getEndpoints();
   }
+  
+  /**
+   *  Encodes the frame once and shares the encoded buffer among all recipients. The shared frame
+   *  bypasses permessage-deflate, and is therefore always sent uncompressed.
+   */
+  @Override
+  public void broadcast(Collection<? extends NettyEndpoint> endpoints, ByteBuffer payload, XSendCallback callback) {
+    broadcastEncoded(endpoints, EncodedFrames.binary(ByteBufAllocator.DEFAULT, payload), callback);
+  }
+  
+  /**
+   *  Encodes the frame once and shares the encoded buffer among all recipients. The shared frame
+   *  bypasses permessage-deflate, and is therefore always sent uncompressed.
+   */
+  @Override
+  public void broadcast(Collection<? extends NettyEndpoint> endpoints, String payload, XSendCallback callback) {
+    broadcastEncoded(endpoints, EncodedFrames.text(ByteBufAllocator.DEFAULT, payload), callback);
+  }
+  
+  private static void broadcastEncoded(Collection<? extends NettyEndpoint> endpoints, ByteBuf frame, XSendCallback callback) {
+    try {
+      for (NettyEndpoint endpoint : endpoints) {
+        endpoint.sendEncoded(frame, callback);
+      }
+    } finally {
+      frame.release();
+    }
+  }
 }
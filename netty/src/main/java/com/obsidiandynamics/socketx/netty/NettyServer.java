@@ -1,23 +1,28 @@
 package com.obsidiandynamics.socketx.netty;
 
+import java.util.*;
+
+import org.slf4j.*;
+
 import com.obsidiandynamics.socketx.*;
+import com.obsidiandynamics.socketx.netty.Transports.*;
 
 import io.netty.bootstrap.*;
 import io.netty.channel.*;
-import io.netty.channel.nio.*;
-import io.netty.channel.socket.nio.*;
 import io.netty.handler.logging.*;
 import io.netty.handler.ssl.*;
 
 public final class NettyServer implements XServer<NettyEndpoint> {
+  private static final Logger log = LoggerFactory.getLogger(NettyServer.class);
+  
   private final XServerConfig config;
   private final NettyEndpointManager manager;
   private final EventLoopGroup bossGroup;
   private final EventLoopGroup workerGroup;
   private final XEndpointScanner<NettyEndpoint> scanner;
+  private final NettyTransport transport;
   
-  private final Channel channel;
-  private final Channel httpsChannel;
+  private final List<Channel> channels = new ArrayList<>();
   
   private NettyServer(XServerConfig config, XEndpointListener<? super NettyEndpoint> listener) throws Exception {
     if (config.servlets.length != 0) {
@@ -25,35 +30,61 @@ public final class NettyServer implements XServer<NettyEndpoint> {
     }
     this.config = config;
     
-    scanner = new XEndpointScanner<>(config.scanIntervalMillis, config.pingIntervalMillis);
+    scanner = new XEndpointScanner<>(config.scanIntervalMillis, config.pingIntervalMillis, config.scanMode, 
+                                     XAtts.SCANNER_SHARDS.get(config.attributes));
     manager = new NettyEndpointManager(scanner, config, listener);
     final int eventLoopThreads = NettyAtts.EVENT_LOOP_THREADS.get(config.attributes);
-    bossGroup = new NioEventLoopGroup(eventLoopThreads);
-    workerGroup = new NioEventLoopGroup();
+    final Transport transport = Transports.resolve(NettyAtts.TRANSPORT.get(config.attributes));
+    this.transport = transport.getType();
+    final int acceptors = XAtts.ACCEPTORS.get(config.attributes);
+    final int listeners;
+    if (acceptors > 1 && ! transport.supportsReusePort()) {
+      log.warn("Multiple acceptors require SO_REUSEPORT, which isn't supported by the {} transport; "
+          + "binding a single listener", transport.getType());
+      listeners = 1;
+    } else {
+      listeners = Math.max(1, acceptors);
+    }
+    
+    // each listening socket is owned by its own boss thread; the worker group serves the connections
+    bossGroup = transport.createEventLoopGroup(listeners);
+    workerGroup = transport.createEventLoopGroup(eventLoopThreads);
     
-    channel = createChannel(bossGroup, workerGroup, manager, config.path, null, config.idleTimeoutMillis, config.port);
+    final boolean zeroCopyInbound = NettyAtts.ZERO_COPY_INBOUND.get(config.attributes);
+    bind(transport, config, manager, null, zeroCopyInbound, config.port, listeners);
     
     if (config.httpsPort != 0) {
       final SslContext sslContext = new JdkSslContext(config.sslContextProvider.getSSLContext(), false, ClientAuth.NONE);
-      httpsChannel = createChannel(bossGroup, workerGroup, manager, config.path, sslContext,
-                                   config.idleTimeoutMillis, config.httpsPort);
-    } else {
-      httpsChannel = null;
+      bind(transport, config, manager, sslContext, zeroCopyInbound, config.httpsPort, listeners);
     }
   }
   
-  private static Channel createChannel(EventLoopGroup bossGroup, EventLoopGroup workerGroup, 
-                                       NettyEndpointManager manager, String path, SslContext sslContext, 
-                                       int idleTimeoutMillis, int port) throws InterruptedException {
-    return new ServerBootstrap()
+  /**
+   *  Binds one or more listening sockets to the given port. Where more than one socket is bound,
+   *  {@code SO_REUSEPORT} is set, and the kernel balances incoming connections among the sockets,
+   *  each registered with a different boss event loop.
+   */
+  private void bind(Transport transport, XServerConfig config, NettyEndpointManager manager, SslContext sslContext, 
+                    boolean zeroCopyInbound, int port, int listeners) throws InterruptedException {
+    final ServerBootstrap bootstrap = new ServerBootstrap()
     .group(bossGroup, workerGroup)
-    .channel(NioServerSocketChannel.class)
+    .channel(transport.getServerChannelClass())
     .handler(new LoggingHandler(LogLevel.INFO))
     .childOption(ChannelOption.SO_REUSEADDR, true)
-    .childHandler(new WebSocketServerInitializer(manager, path, sslContext, idleTimeoutMillis))
-    .bind(port)
-    .sync()
-    .channel();
+    .childHandler(new WebSocketServerInitializer(manager, config.path, sslContext, 
+                                                 config.idleTimeoutMillis, zeroCopyInbound));
+    if (config.highWaterMarkBytes != Long.MAX_VALUE) {
+      // the channel turns unwritable above the high-water mark, and writable again below half of it
+      final int high = (int) Math.min(config.highWaterMarkBytes, Integer.MAX_VALUE);
+      bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(high / 2, high));
+    }
+    transport.configure(bootstrap, config.attributes, listeners > 1 || NettyAtts.REUSE_PORT.get(config.attributes));
+    for (int i = 0; i < listeners; i++) {
+      channels.add(bootstrap
+                   .bind(port)
+                   .sync()
+                   .channel());
+    }
   }
   
   @Override
@@ -62,8 +93,9 @@ public final class NettyServer implements XServer<NettyEndpoint> {
     scanner.close();
     bossGroup.shutdownGracefully();
     workerGroup.shutdownGracefully();
-    channel.closeFuture().sync();
-    if (httpsChannel != null) httpsChannel.closeFuture().sync();
+    for (Channel channel : channels) {
+      channel.closeFuture().sync();
+    }
   }
 
   @Override
@@ -71,6 +103,16 @@ public final class NettyServer implements XServer<NettyEndpoint> {
     return manager;
   }
   
+  /**
+   *  Obtains the transport in use, which may differ from the requested transport if the
+   *  latter was unavailable.
+   *  
+   *  @return The transport.
+   */
+  public NettyTransport getTransport() {
+    return transport;
+  }
+  
   @Override
   public XServerConfig getConfig() {
     return config;
@@ -0,0 +1,16 @@
+package com.obsidiandynamics.socketx.netty;
+
+/**
+ *  The I/O transport underlying a {@link NettyServer}. Native transports fall back to
+ *  {@link #NIO} if they aren't available on the current platform or classpath.
+ */
+public enum NettyTransport {
+  /** The JDK's NIO selector; available on all platforms. */
+  NIO,
+  
+  /** Linux epoll, via Netty's native transport. */
+  EPOLL,
+  
+  /** The best available transport, in order of preference: epoll, NIO. */
+  AUTO
+}
@@ -0,0 +1,140 @@
+package com.obsidiandynamics.socketx.netty;
+
+import java.util.*;
+
+import org.slf4j.*;
+
+import io.netty.bootstrap.*;
+import io.netty.channel.*;
+import io.netty.channel.epoll.*;
+import io.netty.channel.nio.*;
+import io.netty.channel.socket.nio.*;
+
+/**
+ *  Resolves a {@link NettyTransport} selection to a concrete transport, falling back to NIO
+ *  when a native transport is unavailable.
+ */
+final class Transports {
+  private static final Logger log = LoggerFactory.getLogger(Transports.class);
+  
+  /**
+   *  A concrete transport, capable of creating event loops and server channels, and of 
+   *  applying transport-specific options.
+   */
+  interface Transport {
+    NettyTransport getType();
+    
+    /**
+     *  Creates an event loop group for this transport.
+     *  
+     *  @param threads The number of threads, or {@code 0} for Netty's default.
+     *  @return The event loop group.
+     */
+    EventLoopGroup createEventLoopGroup(int threads);
+    
+    Class<? extends ServerChannel> getServerChannelClass();
+    
+    /**
+     *  Determines whether this transport can set {@code SO_REUSEPORT}, permitting several 
+     *  listening sockets to be bound to the same port.
+     *  
+     *  @return True if {@code SO_REUSEPORT} is supported.
+     */
+    boolean supportsReusePort();
+    
+    /**
+     *  Applies the native options in {@link NettyAtts} that are supported by this transport.
+     *  
+     *  @param bootstrap The bootstrap to configure.
+     *  @param atts The attributes.
+     *  @param reusePort Whether {@code SO_REUSEPORT} should be set.
+     */
+    void configure(ServerBootstrap bootstrap, Map<String, Object> atts, boolean reusePort);
+  }
+  
+  private Transports() {}
+  
+  static Transport resolve(NettyTransport requested) {
+    switch (requested) {
+      case EPOLL:
+        if (Epoll.isAvailable()) {
+          return new EpollTransport();
+        } else {
+          log.warn("Epoll transport unavailable; falling back to NIO", Epoll.unavailabilityCause());
+          return new NioTransport();
+        }
+        
+      case AUTO:
+        return Epoll.isAvailable() ? new EpollTransport() : new NioTransport();
+        
+      case NIO:
+      default:
+        return new NioTransport();
+    }
+  }
+  
+  static final class NioTransport implements Transport {
+    @Override
+    public NettyTransport getType() {
+      return NettyTransport.NIO;
+    }
+
+    @Override
+    public EventLoopGroup createEventLoopGroup(int threads) {
+      return new NioEventLoopGroup(threads);
+    }
+
+    @Override
+    public Class<? extends ServerChannel> getServerChannelClass() {
+      return NioServerSocketChannel.class;
+    }
+
+    @Override
+    public boolean supportsReusePort() {
+      return false;
+    }
+
+    @Override
+    public void configure(ServerBootstrap bootstrap, Map<String, Object> atts, boolean reusePort) {
+      if (reusePort || NettyAtts.TCP_FASTOPEN.get(atts) != 0) {
+        log.warn("SO_REUSEPORT and TCP_FASTOPEN are only supported by native transports; ignoring");
+      }
+    }
+  }
+  
+  static final class EpollTransport implements Transport {
+    @Override
+    public NettyTransport getType() {
+      return NettyTransport.EPOLL;
+    }
+
+    @Override
+    public EventLoopGroup createEventLoopGroup(int threads) {
+      return new EpollEventLoopGroup(threads);
+    }
+
+    @Override
+    public Class<? extends ServerChannel> getServerChannelClass() {
+      return EpollServerSocketChannel.class;
+    }
+
+    @Override
+    public boolean supportsReusePort() {
+      return true;
+    }
+
+    @Override
+    public void configure(ServerBootstrap bootstrap, Map<String, Object> atts, boolean reusePort) {
+      final EpollMode mode = NettyAtts.EDGE_TRIGGERED.get(atts) ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+      bootstrap
+      .option(EpollChannelOption.EPOLL_MODE, mode)
+      .childOption(EpollChannelOption.EPOLL_MODE, mode)
+      .option(EpollChannelOption.SO_REUSEPORT, reusePort);
+      
+      final int fastOpenQueue = NettyAtts.TCP_FASTOPEN.get(atts);
+      if (fastOpenQueue != 0) {
+        bootstrap.option(EpollChannelOption.TCP_FASTOPEN, fastOpenQueue);
+      }
+    }
+  }
+}
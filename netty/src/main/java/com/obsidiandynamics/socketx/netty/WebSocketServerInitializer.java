@@ -1,15 +1,20 @@
 package com.obsidiandynamics.socketx.netty;
 
+import java.io.*;
 import java.nio.*;
+import java.nio.charset.*;
 import java.util.*;
 import java.util.concurrent.*;
 
+import com.obsidiandynamics.socketx.*;
+
 import io.netty.buffer.*;
 import io.netty.channel.*;
 import io.netty.channel.socket.*;
+import io.netty.handler.codec.*;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.codec.http.websocketx.*;
-import io.netty.handler.codec.http.websocketx.extensions.compression.*;
+import io.netty.handler.codec.http.websocketx.extensions.*;
 import io.netty.handler.ssl.*;
 import io.netty.handler.timeout.*;
 
@@ -18,18 +23,22 @@ final class WebSocketServerInitializer extends ChannelInitializer<SocketChannel>
   private final SslContext sslContext;
   private final NettyEndpointManager manager;
   private final int idleTimeoutMillis;
+  private final boolean zeroCopyInbound;
 
   WebSocketServerInitializer(NettyEndpointManager manager, String path, 
-                             SslContext sslContext, int idleTimeoutMillis) {
+                             SslContext sslContext, int idleTimeoutMillis, boolean zeroCopyInbound) {
     this.manager = manager;
     this.path = path;
     this.sslContext = sslContext;
     this.idleTimeoutMillis = idleTimeoutMillis;
+    this.zeroCopyInbound = zeroCopyInbound;
   }
 
   @Override
   public void initChannel(SocketChannel ch) throws Exception {
     final ChannelPipeline pipeline = ch.pipeline();
+    final XEndpointConfig<?> config = manager.getConfig();
+    final int maxMessageSize = config.maxMessageSize;
     if (sslContext != null) {
       pipeline.addLast(sslContext.newHandler(ch.alloc()));
     }
@@ -41,15 +50,28 @@ final class WebSocketServerInitializer extends ChannelInitializer<SocketChannel>
         final NettyEndpoint endpoint = manager.remove(ctx.channel().id());
         if (endpoint != null) {
           endpoint.terminate();
+        } else {
+          // the connection has yet to complete its handshake
+          ctx.close();
         }
       }
     });
-    pipeline.addLast(new WebSocketServerCompressionHandler());
-    pipeline.addLast(new WebSocketServerProtocolHandler(path, null, true) {
-      @Override public void channelActive(ChannelHandlerContext ctx) throws Exception {
-        super.channelActive(ctx);
-        manager.createEndpoint(ctx);
-      }
+    if (config.compression) {
+      pipeline.addLast(new WebSocketServerExtensionHandler(new DeflateHandshaker(config)));
+    }
+    final boolean partial = manager.getPartialListener() != null;
+    if (! partial) {
+      // fragmented messages are reassembled before they reach the protocol handler
+      pipeline.addLast(new WebSocketFrameAggregator(maxMessageSize));
+    }
+    // the frame decoder rejects an oversized frame upon reading its header
+    final String subprotocols = config.subprotocols.length != 0 ? String.join(",", config.subprotocols) : null;
+    pipeline.addLast(new WebSocketServerProtocolHandler(path, subprotocols, true, maxMessageSize) {
+      /** Whether a fragmented binary message is in progress; only used in partial mode. */
+      private boolean binaryInProgress;
+      
+      /** The fragments of a text message in progress; only used in partial mode. */
+      private ByteArrayOutputStream textInProgress;
       
       @Override protected void decode(ChannelHandlerContext ctx, WebSocketFrame frame, List<Object> out) throws Exception {
         super.decode(ctx, frame, out);
@@ -61,33 +83,101 @@ final class WebSocketServerInitializer extends ChannelInitializer<SocketChannel>
           }
         } else if (frame instanceof TextWebSocketFrame) {
           final NettyEndpoint endpoint = manager.get(ctx.channel().id());
-          if (endpoint != null) {
-            final TextWebSocketFrame textFrame = (TextWebSocketFrame) frame;
-            endpoint.onText(textFrame.text());
+          if (! partial || frame.isFinalFragment()) {
+            if (endpoint != null) {
+              final TextWebSocketFrame textFrame = (TextWebSocketFrame) frame;
+              endpoint.onText(textFrame.text());
+            }
+          } else {
+            textInProgress = new ByteArrayOutputStream();
+            appendText(frame.content());
           }
         } else if (frame instanceof BinaryWebSocketFrame) {
           final NettyEndpoint endpoint = manager.get(ctx.channel().id());
-          if (endpoint != null) {
-            endpoint.onBinary(toByteBuffer(frame.content()));
+          if (partial) {
+            binaryInProgress = ! frame.isFinalFragment();
+            if (endpoint != null) {
+              endpoint.onBinaryFragment(frame.content(), toByteBuffer(frame.content()), frame.isFinalFragment());
+            }
+          } else if (endpoint != null) {
+            endpoint.onBinary(frame.content(), toByteBuffer(frame.content()));
+          }
+        } else if (frame instanceof ContinuationWebSocketFrame) {
+          // continuations only get this far in partial mode; otherwise, they are aggregated
+          final NettyEndpoint endpoint = manager.get(ctx.channel().id());
+          if (binaryInProgress) {
+            binaryInProgress = ! frame.isFinalFragment();
+            if (endpoint != null) {
+              endpoint.onBinaryFragment(frame.content(), toByteBuffer(frame.content()), frame.isFinalFragment());
+            }
+          } else if (textInProgress != null) {
+            appendText(frame.content());
+            if (frame.isFinalFragment()) {
+              final String text = new String(textInProgress.toByteArray(), StandardCharsets.UTF_8);
+              textInProgress = null;
+              if (endpoint != null) {
+                endpoint.onText(text);
+              }
+            }
           }
         } else if (frame instanceof PingWebSocketFrame) {
           final NettyEndpoint endpoint = manager.get(ctx.channel().id());
           if (endpoint != null) {
-            endpoint.onPing(toByteBuffer(frame.content()));
+            endpoint.onPing(frame.content(), toByteBuffer(frame.content()));
           }
         } else if (frame instanceof PongWebSocketFrame) {
           final NettyEndpoint endpoint = manager.get(ctx.channel().id());
           if (endpoint != null) {
-            endpoint.onPong(toByteBuffer(frame.content()));
+            endpoint.onPong(frame.content(), toByteBuffer(frame.content()));
           }
         }
       }
       
+      private void appendText(ByteBuf buf) throws IOException {
+        final int length = buf.readableBytes();
+        if (textInProgress.size() + length > maxMessageSize) {
+          textInProgress = null;
+          throw new TooLongFrameException("Text message exceeds " + maxMessageSize + " bytes");
+        }
+        buf.getBytes(buf.readerIndex(), textInProgress, length);
+      }
+      
+      /**
+       *  In zero-copy mode, returns a view over the frame's buffer, which remains valid only for
+       *  the duration of the listener callback. Otherwise, copies the frame's contents to the 
+       *  heap, leaving the buffer's reader index intact.
+       *  
+       *  @param buf The frame contents.
+       *  @return The message.
+       */
       private ByteBuffer toByteBuffer(ByteBuf buf) {
-        final ByteBuffer data = ByteBuffer.allocate(buf.readableBytes());
-        buf.readBytes(data);
-        data.flip();
-        return data;
+        if (zeroCopyInbound) {
+          return buf.nioBuffer();
+        } else {
+          final ByteBuffer data = ByteBuffer.allocate(buf.readableBytes());
+          buf.getBytes(buf.readerIndex(), data);
+          data.flip();
+          return data;
+        }
+      }
+      
+      /**
+       *  The endpoint is only created once the handshake has completed, so that the agreed 
+       *  subprotocol is known by the time the listener's {@code onConnect()} is called.
+       */
+      @Override public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof HandshakeComplete) {
+          manager.createEndpoint(ctx, ((HandshakeComplete) evt).selectedSubprotocol());
+        }
+        super.userEventTriggered(ctx, evt);
+      }
+      
+      @Override public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        super.channelWritabilityChanged(ctx);
+        final NettyEndpoint endpoint = manager.get(ctx.channel().id());
+        if (endpoint != null) {
+          endpoint.onChannelWritabilityChanged();
+        }
       }
       
       @Override public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
@@ -98,5 +188,10 @@ final class WebSocketServerInitializer extends ChannelInitializer<SocketChannel>
         }
       }
     });
+    
+    if (config.hasWriteCoalescing()) {
+      // sends enter the pipeline at the tail, so their flushes are intercepted ahead of the codecs
+      pipeline.addLast(new FlushCoalescingHandler(config.writeCoalesceMessages, config.writeCoalesceDelayMicros));
+    }
   }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.obsidiandynamics.socketx.netty;
+
+import static org.junit.Assert.*;
+
+import java.nio.*;
+import java.nio.charset.*;
+
+import org.junit.*;
+
+import io.netty.buffer.*;
+
+public final class EncodedFramesTest {
+  @Test
+  public void testShortBinary() {
+    final ByteBuffer payload = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+    final ByteBuf frame = EncodedFrames.binary(UnpooledByteBufAllocator.DEFAULT, payload);
+    try {
+      assertEquals(5, frame.readableBytes());
+      assertEquals((byte) 0x82, frame.getByte(0));
+      assertEquals(3, frame.getByte(1));
+      assertEquals(1, frame.getByte(2));
+      assertEquals(3, frame.getByte(4));
+      assertEquals(0, payload.position());
+    } finally {
+      frame.release();
+    }
+  }
+  
+  @Test
+  public void testMediumBinary() {
+    final ByteBuffer payload = ByteBuffer.allocate(126);
+    final ByteBuf frame = EncodedFrames.binary(UnpooledByteBufAllocator.DEFAULT, payload);
+    try {
+      assertEquals(4 + 126, frame.readableBytes());
+      assertEquals(126, frame.getUnsignedByte(1));
+      assertEquals(126, frame.getUnsignedShort(2));
+    } finally {
+      frame.release();
+    }
+  }
+  
+  @Test
+  public void testLongBinary() {
+    final ByteBuffer payload = ByteBuffer.allocate(65_536);
+    final ByteBuf frame = EncodedFrames.binary(UnpooledByteBufAllocator.DEFAULT, payload);
+    try {
+      assertEquals(10 + 65_536, frame.readableBytes());
+      assertEquals(127, frame.getUnsignedByte(1));
+      assertEquals(65_536L, frame.getLong(2));
+    } finally {
+      frame.release();
+    }
+  }
+  
+  @Test
+  public void testText() {
+    final ByteBuf frame = EncodedFrames.text(UnpooledByteBufAllocator.DEFAULT, "hello");
+    try {
+      assertEquals((byte) 0x81, frame.getByte(0));
+      assertEquals(5, frame.getByte(1));
+      assertEquals("hello", frame.toString(2, 5, StandardCharsets.UTF_8));
+    } finally {
+      frame.release();
+    }
+  }
+}
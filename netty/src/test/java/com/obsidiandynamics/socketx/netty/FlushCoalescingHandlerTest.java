@@ -0,0 +1,73 @@
+package com.obsidiandynamics.socketx.netty;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.socketx.*;
+
+import io.netty.channel.*;
+import io.netty.channel.embedded.*;
+import io.netty.handler.codec.http.websocketx.*;
+
+public final class FlushCoalescingHandlerTest {
+  @Test
+  public void testFlushOnMessageCount() {
+    final EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(3, TimeUnit.HOURS.toMicros(1)));
+    channel.writeAndFlush("a");
+    channel.writeAndFlush("b");
+    assertTrue(channel.outboundMessages().isEmpty());
+    
+    channel.writeAndFlush("c");
+    assertEquals(3, channel.outboundMessages().size());
+    channel.finishAndReleaseAll();
+  }
+  
+  @Test
+  public void testFlushOnDelay() throws InterruptedException {
+    final EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(100, 1_000));
+    channel.writeAndFlush("a");
+    assertTrue(channel.outboundMessages().isEmpty());
+    
+    Thread.sleep(10);
+    channel.runScheduledPendingTasks();
+    assertEquals(1, channel.outboundMessages().size());
+    channel.finishAndReleaseAll();
+  }
+  
+  @Test
+  public void testFlushOnClose() {
+    final EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(100, TimeUnit.HOURS.toMicros(1)));
+    channel.writeAndFlush("a");
+    assertTrue(channel.outboundMessages().isEmpty());
+    
+    channel.close();
+    assertEquals(1, channel.outboundMessages().size());
+    channel.finishAndReleaseAll();
+  }
+  
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testEndpointSendThenClose() throws Exception {
+    // the endpoint's context sits ahead of the coalescer, as does the WebSocket handler's
+    final EmbeddedChannel channel = new EmbeddedChannel(new ChannelDuplexHandler(), 
+                                                        new FlushCoalescingHandler(100, TimeUnit.HOURS.toMicros(1)));
+    try (XEndpointScanner<NettyEndpoint> scanner = new XEndpointScanner<>(1, 1000)) {
+      final NettyEndpointManager manager = new NettyEndpointManager(scanner, new DerivedEndpointConfig(), 
+                                                                    mock(XEndpointListener.class));
+      final NettyEndpoint endpoint = manager.createEndpoint(channel.pipeline().firstContext(), null);
+      endpoint.send("a");
+      assertTrue(channel.outboundMessages().isEmpty());
+      
+      endpoint.close();
+      assertFalse(channel.isOpen());
+      assertEquals(1, channel.outboundMessages().size());
+      assertEquals("a", ((TextWebSocketFrame) channel.outboundMessages().peek()).text());
+    } finally {
+      channel.finishAndReleaseAll();
+    }
+  }
+}
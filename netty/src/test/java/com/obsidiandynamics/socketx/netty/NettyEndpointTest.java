@@ -5,12 +5,18 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import org.junit.*;
 import org.junit.rules.*;
+import org.mockito.*;
 
 import com.obsidiandynamics.socketx.*;
 
+import io.netty.buffer.*;
 import io.netty.channel.*;
 import io.netty.handler.codec.http.websocketx.*;
 import io.netty.util.concurrent.*;
@@ -21,6 +27,7 @@ import io.netty.util.concurrent.*;
  */
 public final class NettyEndpointTest {
   private XEndpointScanner<NettyEndpoint> scanner;
+  private NettyEndpointManager manager;
   private NettyEndpoint endpoint;
   private XEndpointListener<NettyEndpoint> listener;
   private ChannelHandlerContext handlerContext;
@@ -62,11 +69,15 @@ public final class NettyEndpointTest {
     }
   }
   
-  @SuppressWarnings("unchecked")
   private void createEndpointManager() {
+    createEndpointManager(new DerivedEndpointConfig());
+  }
+  
+  @SuppressWarnings("unchecked")
+  private void createEndpointManager(XEndpointConfig<?> config) {
     listener = mock(XEndpointListener.class);
     scanner = new XEndpointScanner<>(1, 1000);
-    final NettyEndpointManager manager = new NettyEndpointManager(scanner, new DerivedEndpointConfig(), listener);
+    manager = new NettyEndpointManager(scanner, config, listener);
     handlerContext = mock(ChannelHandlerContext.class);
     channel = mock(Channel.class);
     when(handlerContext.channel()).thenReturn(channel);
@@ -102,6 +113,200 @@ public final class NettyEndpointTest {
     assertEquals(0L, endpoint.getBacklog());
   }
   
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testSendBatch() {
+    createEndpointManager();
+    
+    final ChannelFuture f = mock(ChannelFuture.class);
+    when(channel.write(notNull())).thenReturn(f);
+    when(f.isSuccess()).thenReturn(true);
+    when(f.addListener(notNull())).thenAnswer(invocation -> {
+      final GenericFutureListener<ChannelFuture> listener = 
+          (GenericFutureListener<ChannelFuture>) invocation.getArguments()[0];
+      listener.operationComplete(f);
+      return null;
+    });
+    
+    final XSendCallback callback = mock(XSendCallback.class);
+    endpoint.sendBatch(new String[] { "a", "b", "c" }, callback);
+    endpoint.sendBatch(new ByteBuffer[] { ByteBuffer.allocate(1), ByteBuffer.allocate(2) }, callback);
+    verify(channel, times(3)).write(isA(TextWebSocketFrame.class));
+    verify(channel, times(2)).write(isA(BinaryWebSocketFrame.class));
+    verify(channel, times(2)).flush();
+    verify(channel, never()).writeAndFlush(any());
+    verify(callback, times(5)).onComplete(eq(endpoint));
+    assertEquals(0L, endpoint.getBacklog());
+    assertEquals(0L, endpoint.getBacklogBytes());
+  }
+  
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testSendWithoutCallbackSharesListener() {
+    createEndpointManager();
+    
+    final ChannelFuture f = mock(ChannelFuture.class);
+    when(channel.writeAndFlush(notNull())).thenReturn(f);
+    final List<GenericFutureListener<ChannelFuture>> listeners = new ArrayList<>();
+    when(f.addListener(notNull())).thenAnswer(invocation -> {
+      final GenericFutureListener<ChannelFuture> listener = 
+          (GenericFutureListener<ChannelFuture>) invocation.getArguments()[0];
+      listeners.add(listener);
+      listener.operationComplete(f);
+      return null;
+    });
+    
+    endpoint.send("a");
+    endpoint.send(ByteBuffer.allocate(1));
+    assertEquals(2, listeners.size());
+    assertSame(listeners.get(0), listeners.get(1));
+    assertEquals(0L, endpoint.getBacklog());
+    
+    endpoint.send("b", mock(XSendCallback.class));
+    assertNotSame(listeners.get(0), listeners.get(2));
+  }
+  
+  @Test
+  public void testAllocateAndSend() {
+    createEndpointManager();
+    when(handlerContext.alloc()).thenReturn(PooledByteBufAllocator.DEFAULT);
+    
+    final List<BinaryWebSocketFrame> frames = new ArrayList<>();
+    when(channel.writeAndFlush(notNull())).thenAnswer(invocation -> {
+      frames.add((BinaryWebSocketFrame) invocation.getArguments()[0]);
+      return mock(ChannelFuture.class);
+    });
+    
+    final XBuffer buffer = endpoint.allocate(16);
+    assertEquals(0, buffer.getBuffer().position());
+    assertEquals(16, buffer.getBuffer().limit());
+    buffer.getBuffer().putInt(42);
+    endpoint.send(buffer);
+    
+    assertEquals(1, frames.size());
+    final ByteBuf content = frames.get(0).content();
+    assertEquals(4, content.readableBytes());
+    assertEquals(42, content.getInt(0));
+    assertTrue(content.isDirect());
+    frames.get(0).release();
+    assertEquals(0, content.refCnt());
+  }
+  
+  @Test
+  public void testSendBelowCompressionThreshold() {
+    createEndpointManager(new DerivedEndpointConfig().withCompression(true).withCompressionThreshold(8));
+    when(handlerContext.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+    
+    final List<Object> frames = new ArrayList<>();
+    when(channel.writeAndFlush(notNull())).thenAnswer(invocation -> {
+      frames.add(invocation.getArguments()[0]);
+      return mock(ChannelFuture.class);
+    });
+    
+    endpoint.send("tick");
+    endpoint.send("snapshot");
+    endpoint.send(ByteBuffer.wrap(new byte[4]));
+    endpoint.send(ByteBuffer.wrap(new byte[8]));
+    
+    assertEquals(4, frames.size());
+    assertTrue(frames.get(0) instanceof ByteBuf);
+    assertEquals(2 + 4, ((ByteBuf) frames.get(0)).readableBytes());
+    assertTrue(frames.get(1) instanceof TextWebSocketFrame);
+    assertTrue(frames.get(2) instanceof ByteBuf);
+    assertEquals(2 + 4, ((ByteBuf) frames.get(2)).readableBytes());
+    assertTrue(frames.get(3) instanceof BinaryWebSocketFrame);
+    ((ByteBuf) frames.get(0)).release();
+    ((ByteBuf) frames.get(2)).release();
+  }
+  
+  /**
+   *  Sends a message and a batch while a stream is held up awaiting the write of its first 
+   *  fragment. Neither may be written until the stream's last fragment has been.
+   */
+  @Test
+  public void testSendDuringStream() throws Exception {
+    createEndpointManager();
+    when(channel.eventLoop()).thenReturn(mock(EventLoop.class));
+    final CountDownLatch release = new CountDownLatch(1);
+    final ChannelFuture streamFuture = mock(ChannelFuture.class);
+    when(streamFuture.isSuccess()).thenReturn(true);
+    when(streamFuture.await()).thenAnswer(invocation -> {
+      assertTrue(release.await(10, TimeUnit.SECONDS));
+      return streamFuture;
+    });
+    when(channel.writeAndFlush(notNull())).thenReturn(streamFuture);
+    when(channel.write(notNull())).thenReturn(mock(ChannelFuture.class));
+    
+    final AtomicReference<Throwable> streamError = new AtomicReference<>();
+    final Thread streamer = new Thread(() -> {
+      try {
+        endpoint.sendStream(new ByteArrayInputStream(new byte[30]), 10);
+      } catch (Throwable e) {
+        streamError.set(e);
+      }
+    }, "streamer");
+    streamer.start();
+    verify(channel, timeout(10_000)).writeAndFlush(isA(BinaryWebSocketFrame.class));
+    
+    endpoint.send("test");
+    endpoint.sendBatch(new String[] { "a", "b" }, null);
+    verify(channel, never()).writeAndFlush(isA(TextWebSocketFrame.class));
+    verify(channel, never()).write(any());
+    verify(channel, never()).flush();
+    assertEquals(3L, endpoint.getBacklog());
+    
+    release.countDown();
+    streamer.join();
+    assertNull(streamError.get());
+    
+    final InOrder inOrder = inOrder(channel);
+    inOrder.verify(channel).writeAndFlush(isA(BinaryWebSocketFrame.class));
+    inOrder.verify(channel, times(2)).writeAndFlush(isA(ContinuationWebSocketFrame.class));
+    inOrder.verify(channel).writeAndFlush(isA(TextWebSocketFrame.class));
+    inOrder.verify(channel, times(2)).write(isA(TextWebSocketFrame.class));
+    inOrder.verify(channel).flush();
+    
+    endpoint.send("after");
+    verify(channel, times(2)).writeAndFlush(isA(TextWebSocketFrame.class));
+  }
+  
+  @Test
+  public void testBroadcast() {
+    createEndpointManager(new DerivedEndpointConfig().withHighWaterMark(1));
+    final List<Object> frames = new ArrayList<>();
+    when(channel.writeAndFlush(notNull())).thenAnswer(invocation -> {
+      frames.add(invocation.getArguments()[0]);
+      return mock(ChannelFuture.class);
+    });
+    
+    // a second endpoint, whose only send never completes, holding it at the high-water mark
+    final ChannelHandlerContext blockedContext = mock(ChannelHandlerContext.class);
+    final Channel blockedChannel = mock(Channel.class);
+    when(blockedContext.channel()).thenReturn(blockedChannel);
+    when(blockedContext.close()).thenReturn(mock(ChannelFuture.class));
+    when(blockedChannel.id()).thenReturn(new TextChannelId("blocked"));
+    when(blockedChannel.writeAndFlush(notNull())).thenReturn(mock(ChannelFuture.class));
+    final NettyEndpoint blocked = new NettyEndpoint(manager, blockedContext);
+    blocked.send("pending");
+    assertEquals(1L, blocked.getBacklog());
+    
+    final XSendCallback callback = mock(XSendCallback.class);
+    manager.broadcast(Arrays.asList(endpoint, blocked), "test", callback);
+    manager.broadcast(Arrays.asList(endpoint, blocked), ByteBuffer.wrap(new byte[] { 1, 2, 3 }), callback);
+    
+    assertEquals(2, frames.size());
+    verify(callback, times(2)).onSkip(eq(blocked));
+    verify(blockedChannel, times(1)).writeAndFlush(any());
+    
+    // the broadcast has released its reference to each shared frame, leaving only the written duplicate
+    for (Object frame : frames) {
+      final ByteBuf buf = (ByteBuf) frame;
+      assertEquals(1, buf.refCnt());
+      buf.release();
+      assertEquals(0, buf.refCnt());
+    }
+  }
+  
   @Test
   public void testOnErrorConnected() {
     createEndpointManager();
@@ -121,4 +326,83 @@ public final class NettyEndpointTest {
     endpoint.onError(cause);
     verify(listener, times(0)).onError(eq(endpoint), eq(cause));
   }
+  
+  @Test
+  public void testWritabilityChanged() {
+    createEndpointManager(new DerivedEndpointConfig().withHighWaterMarkBytes(1024));
+
+    when(channel.isWritable()).thenReturn(false);
+    assertFalse(endpoint.isWritable());
+    endpoint.onChannelWritabilityChanged();
+    verify(listener, times(1)).onWritabilityChanged(eq(endpoint), eq(false));
+    
+    when(channel.isWritable()).thenReturn(true);
+    assertTrue(endpoint.isWritable());
+    endpoint.onChannelWritabilityChanged();
+    verify(listener, times(1)).onWritabilityChanged(eq(endpoint), eq(true));
+  }
+  
+  @Test
+  public void testChannelWritabilityIgnoredWithoutBytesHWM() {
+    createEndpointManager();
+
+    when(channel.isWritable()).thenReturn(false);
+    assertTrue(endpoint.isWritable());
+    endpoint.onChannelWritabilityChanged();
+    verify(listener, never()).onWritabilityChanged(any(), anyBoolean());
+  }
+  
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testMessagesHWMWritability() throws Exception {
+    createEndpointManager(new DerivedEndpointConfig().withHighWaterMark(2));
+    when(channel.isWritable()).thenReturn(true);
+    
+    final ChannelFuture f = mock(ChannelFuture.class);
+    when(channel.writeAndFlush(notNull())).thenReturn(f);
+    when(f.isSuccess()).thenReturn(true);
+    final List<GenericFutureListener<ChannelFuture>> pending = new ArrayList<>();
+    when(f.addListener(notNull())).thenAnswer(invocation -> {
+      pending.add((GenericFutureListener<ChannelFuture>) invocation.getArguments()[0]);
+      return f;
+    });
+    
+    endpoint.send("first", null);
+    assertTrue(endpoint.isWritable());
+    endpoint.send("second", null);
+    assertFalse(endpoint.isWritable());
+    verify(listener, times(1)).onWritabilityChanged(eq(endpoint), eq(false));
+    
+    final XSendCallback callback = mock(XSendCallback.class);
+    endpoint.send("third", callback);
+    verify(callback).onSkip(eq(endpoint));
+    
+    pending.get(0).operationComplete(f);
+    assertTrue(endpoint.isWritable());
+    verify(listener, times(1)).onWritabilityChanged(eq(endpoint), eq(true));
+    pending.get(1).operationComplete(f);
+    assertEquals(0, endpoint.getBacklog());
+    verify(listener, times(2)).onWritabilityChanged(eq(endpoint), anyBoolean());
+  }
+  
+  @Test
+  public void testRetainInbound() {
+    createEndpointManager();
+    
+    final ByteBuf content = Unpooled.wrappedBuffer(new byte[] { 1, 2, 3 });
+    final List<ByteBuf> retained = new ArrayList<>();
+    doAnswer(invocation -> retained.add(endpoint.retainInbound()))
+    .when(listener).onBinary(eq(endpoint), notNull());
+    endpoint.onBinary(content, content.nioBuffer());
+    
+    assertEquals(1, retained.size());
+    assertEquals(2, content.refCnt());
+    assertEquals(3, retained.get(0).readableBytes());
+    retained.get(0).release();
+    assertEquals(1, content.refCnt());
+    content.release();
+    
+    exception.expect(IllegalStateException.class);
+    endpoint.retainInbound();
+  }
 }
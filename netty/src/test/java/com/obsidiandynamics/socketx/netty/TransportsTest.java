@@ -0,0 +1,57 @@
+package com.obsidiandynamics.socketx.netty;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.socketx.attribute.*;
+import com.obsidiandynamics.socketx.netty.Transports.*;
+
+import io.netty.bootstrap.*;
+import io.netty.channel.*;
+import io.netty.channel.epoll.*;
+import io.netty.channel.socket.nio.*;
+
+public final class TransportsTest {
+  @Test
+  public void testNio() throws InterruptedException {
+    final Transport transport = Transports.resolve(NettyTransport.NIO);
+    assertEquals(NettyTransport.NIO, transport.getType());
+    assertEquals(NioServerSocketChannel.class, transport.getServerChannelClass());
+    final EventLoopGroup group = transport.createEventLoopGroup(1);
+    group.shutdownGracefully().sync();
+    
+    final ServerBootstrap bootstrap = mock(ServerBootstrap.class);
+    assertFalse(transport.supportsReusePort());
+    transport.configure(bootstrap, new AttributeMap(), true);
+    verify(bootstrap, never()).option(any(), any());
+  }
+  
+  @Test
+  public void testEpollOrFallback() {
+    final Transport transport = Transports.resolve(NettyTransport.EPOLL);
+    assertEquals(Epoll.isAvailable() ? NettyTransport.EPOLL : NettyTransport.NIO, transport.getType());
+  }
+  
+  @Test
+  public void testAuto() {
+    final Transport transport = Transports.resolve(NettyTransport.AUTO);
+    assertEquals(Epoll.isAvailable() ? NettyTransport.EPOLL : NettyTransport.NIO, transport.getType());
+  }
+  
+  @Test
+  public void testEpollConfigure() {
+    final Transport transport = new Transports.EpollTransport();
+    assertTrue(transport.supportsReusePort());
+    final ServerBootstrap bootstrap = mock(ServerBootstrap.class, RETURNS_SELF);
+    transport.configure(bootstrap, new AttributeMap()
+                        .with(NettyAtts.TCP_FASTOPEN, 16)
+                        .with(NettyAtts.EDGE_TRIGGERED, false), true);
+    verify(bootstrap).option(eq(EpollChannelOption.EPOLL_MODE), eq(EpollMode.LEVEL_TRIGGERED));
+    verify(bootstrap).childOption(eq(EpollChannelOption.EPOLL_MODE), eq(EpollMode.LEVEL_TRIGGERED));
+    verify(bootstrap).option(eq(EpollChannelOption.SO_REUSEPORT), eq(true));
+    verify(bootstrap).option(eq(EpollChannelOption.TCP_FASTOPEN), eq(16));
+  }
+}
@@ -1,10 +1,12 @@
 package com.obsidiandynamics.socketx.netty;
 
+import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import java.io.*;
 import java.lang.reflect.*;
+import java.nio.*;
 import java.util.*;
 
 import org.junit.*;
@@ -16,7 +18,9 @@ import com.obsidiandynamics.socketx.*;
 import io.netty.buffer.*;
 import io.netty.channel.*;
 import io.netty.channel.socket.*;
+import io.netty.handler.codec.http.*;
 import io.netty.handler.codec.http.websocketx.*;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler.*;
 import io.netty.handler.timeout.*;
 import io.netty.util.*;
 
@@ -133,7 +137,11 @@ public final class WebSocketServerInitializerTest {
   
   @SuppressWarnings("unchecked")
   private void createFixtures() {
-    listener = mock(XEndpointListener.class);
+    createFixtures(mock(XEndpointListener.class));
+  }
+  
+  private void createFixtures(XEndpointListener<NettyEndpoint> listener) {
+    this.listener = listener;
     scanner = new XEndpointScanner<>(1, 1000);
     manager = new NettyEndpointManager(scanner, new DerivedEndpointConfig(), listener);
     handlerContext = mock(ChannelHandlerContext.class);
@@ -144,7 +152,7 @@ public final class WebSocketServerInitializerTest {
     when(channel.id()).thenReturn(new TextChannelId("test"));
     pipeline = mock(ChannelPipeline.class);
     when(channel.pipeline()).thenReturn(pipeline);
-    w = new WebSocketServerInitializer(manager, "/", null, Integer.MAX_VALUE);
+    w = new WebSocketServerInitializer(manager, "/", null, Integer.MAX_VALUE, false);
     ctx = mock(ChannelHandlerContext.class);
     when(ctx.channel()).thenReturn(channel);
   }
@@ -190,13 +198,75 @@ public final class WebSocketServerInitializerTest {
     });
   }
   
+  @Test
+  public void testDecodePartial() throws Exception {
+    @SuppressWarnings("unchecked")
+    final XEndpointPartialListener<NettyEndpoint> partialListener = mock(XEndpointPartialListener.class);
+    createFixtures(partialListener);
+    
+    testHandler(WebSocketServerProtocolHandler.class, handler -> {
+      try {
+        final Method m = WebSocketServerProtocolHandler.class
+            .getDeclaredMethod("decode", ChannelHandlerContext.class, WebSocketFrame.class, List.class);
+        m.setAccessible(true);
+        manager.createEndpoint(ctx, null);
+        m.invoke(handler, ctx, new BinaryWebSocketFrame(false, 0, Unpooled.wrappedBuffer(new byte[] {0, 1})), new ArrayList<>());
+        m.invoke(handler, ctx, new TextWebSocketFrame("single"), new ArrayList<>());
+        m.invoke(handler, ctx, new ContinuationWebSocketFrame(true, 0, Unpooled.wrappedBuffer(new byte[] {2})), new ArrayList<>());
+        m.invoke(handler, ctx, new TextWebSocketFrame(false, 0, "hello "), new ArrayList<>());
+        m.invoke(handler, ctx, new ContinuationWebSocketFrame(true, 0, "world"), new ArrayList<>());
+      } catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+        throw new AssertionError(e);
+      }
+    });
+    
+    verify(partialListener).onBinaryFragment(notNull(), eq(ByteBuffer.wrap(new byte[] {0, 1})), eq(false));
+    verify(partialListener).onBinaryFragment(notNull(), eq(ByteBuffer.wrap(new byte[] {2})), eq(true));
+    verify(partialListener).onText(notNull(), eq("single"));
+    verify(partialListener).onText(notNull(), eq("hello world"));
+    verify(partialListener, never()).onBinary(any(), any());
+    verify(pipeline, never()).addLast(isA(WebSocketFrameAggregator.class));
+  }
+  
+  @Test
+  public void testEndpointCreatedOnHandshake() throws Exception {
+    createFixtures();
+    doAnswer(invocation -> {
+      assertEquals("test", invocation.<NettyEndpoint>getArgument(0).getSubprotocol());
+      return null;
+    }).when(listener).onConnect(any());
+    
+    testHandler(WebSocketServerProtocolHandler.class, handler -> {
+      handler.userEventTriggered(ctx, "other");
+      assertNull(manager.get(channel.id()));
+      try {
+        final Constructor<HandshakeComplete> c = HandshakeComplete.class
+            .getDeclaredConstructor(String.class, HttpHeaders.class, String.class);
+        c.setAccessible(true);
+        handler.userEventTriggered(ctx, c.newInstance("/", EmptyHttpHeaders.INSTANCE, "test"));
+      } catch (NoSuchMethodException | SecurityException | InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+        throw new AssertionError(e);
+      }
+    });
+    
+    assertNotNull(manager.get(channel.id()));
+    verify(listener).onConnect(manager.get(channel.id()));
+  }
+  
+  @Test
+  public void testAggregatorAddedForWholeMessages() throws Exception {
+    createFixtures();
+    w.initChannel(channel);
+    verify(pipeline).addLast(isA(WebSocketFrameAggregator.class));
+  }
+  
   @Test
   public void testExceptionCaught() throws Exception {
     createFixtures();
     
     testHandler(WebSocketServerProtocolHandler.class, handler -> {
       handler.exceptionCaught(ctx, new IOException("boom"));
-      manager.createEndpoint(ctx);
+      manager.createEndpoint(ctx, null);
       handler.exceptionCaught(ctx, new IOException("boom"));
     });
   }
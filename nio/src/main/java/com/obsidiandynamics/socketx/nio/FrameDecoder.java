@@ -0,0 +1,189 @@
+package com.obsidiandynamics.socketx.nio;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+
+/**
+ *  Incrementally decodes RFC 6455 frames from a sequence of buffers, without allocating. A 
+ *  header split across reads is accumulated in fields, while the payload is unmasked in place 
+ *  and passed to the handler in chunks, as it arrives. A buffer may thus be discarded once 
+ *  {@link #decode(ByteBuffer, Handler)} returns.<p>
+ *  
+ *  The decoder checks the framing rules that can be judged from a single frame; the ordering
+ *  of frames is left to the handler. This class is not thread-safe.
+ */
+final class FrameDecoder {
+  /** Receives the decoded frames. */
+  interface Handler {
+    /**
+     *  Invoked once the header of a frame has been decoded.
+     *  
+     *  @param fin Whether this is the final frame of a message.
+     *  @param opcode The opcode.
+     *  @param length The payload length.
+     *  @throws IOException To abort decoding.
+     */
+    void onHeader(boolean fin, int opcode, long length) throws IOException;
+    
+    /**
+     *  Invoked with each chunk of the payload. A frame with an empty payload results in a
+     *  single empty chunk. The chunk is only valid for the duration of the call.
+     *  
+     *  @param chunk The payload chunk.
+     *  @param frameEnd Whether the chunk concludes the frame's payload.
+     *  @throws IOException To abort decoding.
+     */
+    void onPayload(ByteBuffer chunk, boolean frameEnd) throws IOException;
+  }
+  
+  private enum State {
+    HEADER, LENGTH, MASK, PAYLOAD
+  }
+  
+  private final boolean expectMasked;
+  
+  private State state = State.HEADER;
+  
+  /** The first byte of the header, or {@code -1} if it is yet to be read. */
+  private int firstByte = -1;
+  
+  private boolean fin;
+  
+  private int opcode;
+  
+  private boolean masked;
+  
+  /** The number of bytes of the extended length or masking key yet to be read. */
+  private int fieldBytes;
+  
+  private long remaining;
+  
+  private int mask;
+  
+  private long payloadOffset;
+  
+  /**
+   *  Creates a decoder.
+   *  
+   *  @param expectMasked Whether frames must be masked (as sent by a client) or unmasked (as 
+   *                      sent by a server).
+   */
+  FrameDecoder(boolean expectMasked) {
+    this.expectMasked = expectMasked;
+  }
+  
+  /**
+   *  Decodes the frames in the given buffer, consuming all of its remaining bytes.
+   *  
+   *  @param in The buffer, which may be modified by unmasking.
+   *  @param handler The handler.
+   *  @throws ProtocolException If a frame violates the protocol.
+   *  @throws IOException If thrown by the handler.
+   */
+  void decode(ByteBuffer in, Handler handler) throws IOException {
+    while (in.hasRemaining() || state == State.PAYLOAD && remaining == 0) {
+      switch (state) {
+        case HEADER:
+          if (firstByte == -1) {
+            firstByte = in.get() & 0xFF;
+          } else {
+            decodeHeader(firstByte, in.get() & 0xFF, handler);
+            firstByte = -1;
+          }
+          break;
+          
+        case LENGTH:
+          remaining = remaining << 8 | in.get() & 0xFF;
+          if (--fieldBytes == 0) {
+            if (remaining < 0) throw new ProtocolException("Invalid payload length");
+            beginMaskOrPayload(handler);
+          }
+          break;
+          
+        case MASK:
+          mask = mask << 8 | in.get() & 0xFF;
+          if (--fieldBytes == 0) {
+            beginPayload(handler);
+          }
+          break;
+          
+        case PAYLOAD:
+          final int start = in.position();
+          final int length = (int) Math.min(remaining, in.remaining());
+          if (masked) {
+            Frames.unmask(in, start, length, mask, payloadOffset);
+          }
+          payloadOffset += length;
+          remaining -= length;
+          
+          final int limit = in.limit();
+          in.limit(start + length);
+          try {
+            handler.onPayload(in, remaining == 0);
+          } finally {
+            in.limit(limit);
+            in.position(start + length);
+          }
+          if (remaining == 0) {
+            state = State.HEADER;
+          }
+          break;
+      }
+    }
+  }
+  
+  private void decodeHeader(int b0, int b1, Handler handler) throws IOException {
+    fin = (b0 & 0x80) != 0;
+    if ((b0 & 0x70) != 0) throw new ProtocolException("Reserved bits set");
+    opcode = b0 & 0x0F;
+    switch (opcode) {
+      case Frames.CONTINUATION:
+      case Frames.TEXT:
+      case Frames.BINARY:
+      case Frames.CLOSE:
+      case Frames.PING:
+      case Frames.PONG:
+        break;
+        
+      default:
+        throw new ProtocolException("Unknown opcode " + opcode);
+    }
+    
+    masked = (b1 & 0x80) != 0;
+    if (masked != expectMasked) throw new ProtocolException(expectMasked ? "Frame not masked" : "Frame masked");
+    
+    final int length = b1 & 0x7F;
+    if (Frames.isControl(opcode) && (! fin || length > Frames.MAX_CONTROL_PAYLOAD)) {
+      throw new ProtocolException("Invalid control frame");
+    }
+    
+    remaining = 0;
+    if (length == 126) {
+      fieldBytes = 2;
+      state = State.LENGTH;
+    } else if (length == 127) {
+      fieldBytes = 8;
+      state = State.LENGTH;
+    } else {
+      remaining = length;
+      beginMaskOrPayload(handler);
+    }
+  }
+  
+  private void beginMaskOrPayload(Handler handler) throws IOException {
+    if (masked) {
+      mask = 0;
+      fieldBytes = 4;
+      state = State.MASK;
+    } else {
+      beginPayload(handler);
+    }
+  }
+  
+  private void beginPayload(Handler handler) throws IOException {
+    payloadOffset = 0;
+    state = State.PAYLOAD;
+    handler.onHeader(fin, opcode, remaining);
+  }
+}
@@ -0,0 +1,93 @@
+package com.obsidiandynamics.socketx.nio;
+
+import java.nio.*;
+
+/**
+ *  RFC 6455 opcodes and status codes, and the allocation-free encoding of frames.
+ */
+final class Frames {
+  static final int CONTINUATION = 0x0;
+  static final int TEXT = 0x1;
+  static final int BINARY = 0x2;
+  static final int CLOSE = 0x8;
+  static final int PING = 0x9;
+  static final int PONG = 0xA;
+  
+  static final int NORMAL_CLOSURE = 1000;
+  static final int PROTOCOL_ERROR = 1002;
+  static final int NO_STATUS = 1005;
+  static final int MESSAGE_TOO_BIG = 1009;
+  
+  /** The maximum payload length of a control frame. */
+  static final int MAX_CONTROL_PAYLOAD = 125;
+  
+  /** The length of the longest header - a 64-bit length and a masking key. */
+  static final int MAX_HEADER_LENGTH = 14;
+  
+  private Frames() {}
+  
+  static boolean isControl(int opcode) {
+    return (opcode & 0x8) != 0;
+  }
+  
+  /**
+   *  Writes the header of a final frame.
+   *  
+   *  @param out The buffer to write to, with at least {@link #MAX_HEADER_LENGTH} bytes remaining.
+   *  @param opcode The opcode.
+   *  @param length The payload length.
+   *  @param masked Whether the payload is masked, as it must be when sent by a client.
+   *  @param mask The masking key, if masked.
+   */
+  static void encodeHeader(ByteBuffer out, int opcode, long length, boolean masked, int mask) {
+    out.put((byte) (0x80 | opcode));
+    final int maskBit = masked ? 0x80 : 0;
+    if (length <= 125) {
+      out.put((byte) (maskBit | length));
+    } else if (length <= 0xFFFF) {
+      out.put((byte) (maskBit | 126));
+      out.putShort((short) length);
+    } else {
+      out.put((byte) (maskBit | 127));
+      out.putLong(length);
+    }
+    if (masked) {
+      out.putInt(mask);
+    }
+  }
+  
+  /**
+   *  Copies bytes from one buffer to another, masking them along the way. 
+   *  
+   *  @param src The source buffer.
+   *  @param out The destination buffer.
+   *  @param length The number of bytes to copy.
+   *  @param mask The masking key.
+   *  @param offset The offset of the first byte within the payload, which determines the 
+   *                alignment of the key.
+   */
+  static void mask(ByteBuffer src, ByteBuffer out, int length, int mask, long offset) {
+    for (int i = 0; i < length; i++) {
+      out.put((byte) (src.get() ^ maskByte(mask, offset + i)));
+    }
+  }
+  
+  /**
+   *  Unmasks a region of a buffer in place, leaving its position unchanged.
+   *  
+   *  @param buffer The buffer.
+   *  @param start The index of the first byte.
+   *  @param length The number of bytes to unmask.
+   *  @param mask The masking key.
+   *  @param offset The offset of the first byte within the payload.
+   */
+  static void unmask(ByteBuffer buffer, int start, int length, int mask, long offset) {
+    for (int i = 0; i < length; i++) {
+      buffer.put(start + i, (byte) (buffer.get(start + i) ^ maskByte(mask, offset + i)));
+    }
+  }
+  
+  private static int maskByte(int mask, long offset) {
+    return mask >>> (24 - ((int) (offset & 3) << 3));
+  }
+}
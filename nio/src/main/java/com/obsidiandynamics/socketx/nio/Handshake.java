@@ -0,0 +1,159 @@
+package com.obsidiandynamics.socketx.nio;
+
+import java.net.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ *  The HTTP/1.1 upgrade handshake of RFC 6455.
+ */
+final class Handshake {
+  private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+  
+  /** The maximum length of a request or response head. */
+  static final int MAX_HEAD_LENGTH = 8192;
+  
+  private Handshake() {}
+  
+  /**
+   *  The start line and headers of an HTTP request or response.
+   */
+  static final class Head {
+    final String startLine;
+    
+    /** Header values, keyed by their lower-cased names. */
+    final Map<String, String> headers;
+    
+    Head(String startLine, Map<String, String> headers) {
+      this.startLine = startLine;
+      this.headers = headers;
+    }
+    
+    String getHeader(String name) {
+      return headers.get(name.toLowerCase(Locale.ROOT));
+    }
+    
+    /**
+     *  Determines whether a comma-separated header contains the given token, ignoring case.
+     *  
+     *  @param name The header name.
+     *  @param token The token.
+     *  @return True if the token is present.
+     */
+    boolean hasToken(String name, String token) {
+      final String value = getHeader(name);
+      if (value == null) return false;
+      for (String element : value.split(",")) {
+        if (element.trim().equalsIgnoreCase(token)) return true;
+      }
+      return false;
+    }
+  }
+  
+  /**
+   *  Parses a head from the given buffer, if it holds a complete one, leaving the position 
+   *  just past its terminating blank line.
+   *  
+   *  @param buffer The buffer, ready for reading.
+   *  @return The head, or {@code null} if it is incomplete.
+   *  @throws ProtocolException If the head is malformed.
+   */
+  static Head parse(ByteBuffer buffer) throws ProtocolException {
+    final int start = buffer.position();
+    for (int i = start; i + 3 < buffer.limit(); i++) {
+      if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n' && buffer.get(i + 2) == '\r' && buffer.get(i + 3) == '\n') {
+        final byte[] bytes = new byte[i - start];
+        buffer.get(bytes);
+        buffer.position(i + 4);
+        return parse(new String(bytes, StandardCharsets.ISO_8859_1));
+      }
+    }
+    return null;
+  }
+  
+  private static Head parse(String text) throws ProtocolException {
+    final String[] lines = text.split("\r\n");
+    final Map<String, String> headers = new HashMap<>();
+    for (int i = 1; i < lines.length; i++) {
+      final int colon = lines[i].indexOf(':');
+      if (colon <= 0) throw new ProtocolException("Malformed header: " + lines[i]);
+      final String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+      final String value = lines[i].substring(colon + 1).trim();
+      headers.merge(name, value, (existing, added) -> existing + ", " + added);
+    }
+    return new Head(lines[0], headers);
+  }
+  
+  /**
+   *  Derives the {@code Sec-WebSocket-Accept} value from the client's key.
+   *  
+   *  @param key The {@code Sec-WebSocket-Key} value.
+   *  @return The accept value.
+   */
+  static String accept(String key) {
+    try {
+      final MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+      return Base64.getEncoder().encodeToString(sha1.digest((key + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+  
+  static String newKey() {
+    final byte[] nonce = new byte[16];
+    ThreadLocalRandom.current().nextBytes(nonce);
+    return Base64.getEncoder().encodeToString(nonce);
+  }
+  
+  static byte[] request(URI uri, String key, String[] subprotocols) {
+    final String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+    final String query = uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "";
+    final StringBuilder sb = new StringBuilder()
+        .append("GET ").append(path).append(query).append(" HTTP/1.1\r\n")
+        .append("Host: ").append(uri.getHost()).append(uri.getPort() != -1 ? ":" + uri.getPort() : "").append("\r\n")
+        .append("Upgrade: websocket\r\n")
+        .append("Connection: Upgrade\r\n")
+        .append("Sec-WebSocket-Key: ").append(key).append("\r\n")
+        .append("Sec-WebSocket-Version: 13\r\n");
+    if (subprotocols.length != 0) {
+      sb.append("Sec-WebSocket-Protocol: ").append(String.join(", ", subprotocols)).append("\r\n");
+    }
+    return sb.append("\r\n").toString().getBytes(StandardCharsets.ISO_8859_1);
+  }
+  
+  static byte[] response(String key, String subprotocol) {
+    final StringBuilder sb = new StringBuilder()
+        .append("HTTP/1.1 101 Switching Protocols\r\n")
+        .append("Upgrade: websocket\r\n")
+        .append("Connection: Upgrade\r\n")
+        .append("Sec-WebSocket-Accept: ").append(accept(key)).append("\r\n");
+    if (subprotocol != null) {
+      sb.append("Sec-WebSocket-Protocol: ").append(subprotocol).append("\r\n");
+    }
+    return sb.append("\r\n").toString().getBytes(StandardCharsets.ISO_8859_1);
+  }
+  
+  static byte[] rejection(int status, String reason) {
+    return ("HTTP/1.1 " + status + " " + reason + "\r\nConnection: close\r\nContent-Length: 0\r\n\r\n")
+        .getBytes(StandardCharsets.ISO_8859_1);
+  }
+  
+  /**
+   *  Selects the first of the offered subprotocols that the server supports.
+   *  
+   *  @param offered The {@code Sec-WebSocket-Protocol} request header, or {@code null}.
+   *  @param supported The subprotocols supported by the server.
+   *  @return The selected subprotocol, or {@code null} if there is none in common.
+   */
+  static String selectSubprotocol(String offered, String[] supported) {
+    if (offered == null) return null;
+    final List<String> supportedList = Arrays.asList(supported);
+    for (String subprotocol : offered.split(",")) {
+      if (supportedList.contains(subprotocol.trim())) return subprotocol.trim();
+    }
+    return null;
+  }
+}
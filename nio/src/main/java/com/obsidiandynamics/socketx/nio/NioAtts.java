@@ -0,0 +1,34 @@
+package com.obsidiandynamics.socketx.nio;
+
+import com.obsidiandynamics.socketx.attribute.*;
+
+public final class NioAtts {
+  /** The number of selector threads, each serving its share of the connections. */
+  public static final Attribute<Integer> SELECTOR_THREADS = new Attribute<Integer>("socketx.nio.selectorThreads")
+      .withMin(Constant.of(1))
+      .withDefault(Constant.of(Runtime.getRuntime().availableProcessors()));
+  
+  /** The size of the read and write buffers shared by the connections of a selector thread, 
+   *  and of the pooled buffers holding a connection's unwritten output. */
+  public static final Attribute<Integer> BUFFER_SIZE = new Attribute<Integer>("socketx.nio.bufferSize")
+      .withMin(Constant.of(256))
+      .withDefault(Constant.of(65_536));
+  
+  /** Whether the shared and pooled buffers are allocated outside of the heap. */
+  public static final Attribute<Boolean> DIRECT_BUFFERS = new Attribute<Boolean>("socketx.nio.directBuffers")
+      .withDefault(Constant.of(true));
+  
+  /** Whether inbound binary messages that arrive in a single read are delivered as views over 
+   *  the shared read buffer, valid only for the duration of the callback, rather than copied 
+   *  to the heap. */
+  public static final Attribute<Boolean> ZERO_COPY_INBOUND = new Attribute<Boolean>("socketx.nio.zeroCopyInbound")
+      .withDefault(Constant.of(false));
+  
+  /** The time allowed for the opening handshake, from the moment the server accepts the 
+   *  connection, or the client starts connecting, after which the connection is dropped. */
+  public static final Attribute<Integer> HANDSHAKE_TIMEOUT_MILLIS = new Attribute<Integer>("socketx.nio.handshakeTimeoutMillis")
+      .withMin(Constant.of(1))
+      .withDefault(Constant.of(10_000));
+  
+  private NioAtts() {}
+}
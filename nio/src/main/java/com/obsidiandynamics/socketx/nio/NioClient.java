@@ -0,0 +1,223 @@
+package com.obsidiandynamics.socketx.nio;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.obsidiandynamics.socketx.*;
+import com.obsidiandynamics.socketx.nio.Handshake.*;
+
+/**
+ *  A WebSocket client implemented directly on the JDK's NIO selectors. Connections are 
+ *  established and upgraded without blocking, on the reactor that subsequently services the 
+ *  connection; only the resolution of the host name takes place on the connecting thread.
+ *  {@code wss} URIs are not supported.
+ */
+public final class NioClient implements XClient<NioEndpoint> {
+  private final XClientConfig config;
+  
+  private final NioReactorGroup reactors;
+  
+  private final XEndpointScanner<NioEndpoint> scanner;
+  
+  private final int handshakeTimeoutMillis;
+  
+  private NioClient(XClientConfig config) throws IOException {
+    this.config = config;
+    handshakeTimeoutMillis = NioAtts.HANDSHAKE_TIMEOUT_MILLIS.get(config.attributes);
+    reactors = new NioReactorGroup("NioClient", config);
+    scanner = new XEndpointScanner<>(config.scanIntervalMillis, 0, config.scanMode, 
+                                     XAtts.SCANNER_SHARDS.get(config.attributes));
+  }
+  
+  @Override
+  public NioEndpoint connect(URI uri, XEndpointListener<? super NioEndpoint> listener) throws Exception {
+    try {
+      return connectAsync(uri, listener).toCompletableFuture().get();
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+  }
+  
+  @Override
+  public CompletionStage<NioEndpoint> connectAsync(URI uri, XEndpointListener<? super NioEndpoint> listener) {
+    final CompletableFuture<NioEndpoint> future = new CompletableFuture<>();
+    if (! uri.getScheme().equals("ws")) {
+      future.completeExceptionally(new UnsupportedOperationException("Unsupported scheme " + uri.getScheme()));
+      return future;
+    }
+    
+    final InetSocketAddress address = new InetSocketAddress(uri.getHost(), uri.getPort() != -1 ? uri.getPort() : 80);
+    final SocketChannel channel;
+    try {
+      channel = SocketChannel.open();
+    } catch (IOException e) {
+      future.completeExceptionally(e);
+      return future;
+    }
+    
+    final NioReactor reactor = reactors.next();
+    try {
+      reactor.execute(new Upgrade(uri, address, channel, reactor, listener, future)::start);
+    } catch (RejectedExecutionException e) {
+      NioReactor.closeQuietly(channel);
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+  
+  /**
+   *  Connects to the server and performs the upgrade handshake, completing the future with the 
+   *  endpoint once the server's response has been validated. The future fails with a 
+   *  {@link SocketTimeoutException} if the handshake doesn't complete in time. Confined to the 
+   *  reactor thread.
+   */
+  private final class Upgrade implements NioReactor.SelectHandler {
+    private final InetSocketAddress address;
+    
+    private final SocketChannel channel;
+    
+    private final NioReactor reactor;
+    
+    private final XEndpointListener<? super NioEndpoint> listener;
+    
+    private final CompletableFuture<NioEndpoint> future;
+    
+    private final String key = Handshake.newKey();
+    
+    private final ByteBuffer request;
+    
+    private final ByteBuffer buffer = ByteBuffer.allocate(Handshake.MAX_HEAD_LENGTH);
+    
+    private SelectionKey selectionKey;
+    
+    private NioReactor.Timeout timeout;
+    
+    Upgrade(URI uri, InetSocketAddress address, SocketChannel channel, NioReactor reactor, 
+            XEndpointListener<? super NioEndpoint> listener, CompletableFuture<NioEndpoint> future) {
+      this.address = address;
+      this.channel = channel;
+      this.reactor = reactor;
+      this.listener = listener;
+      this.future = future;
+      request = ByteBuffer.wrap(Handshake.request(uri, key, config.subprotocols));
+    }
+    
+    void start() {
+      timeout = reactor.schedule(this::expire, handshakeTimeoutMillis);
+      try {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        selectionKey = reactor.register(channel, 0, this);
+        if (channel.connect(address)) {
+          writeRequest();
+        } else {
+          selectionKey.interestOps(SelectionKey.OP_CONNECT);
+        }
+      } catch (Exception e) {
+        fail(e);
+      }
+    }
+    
+    private void expire() {
+      fail(new SocketTimeoutException("Handshake timed out after " + handshakeTimeoutMillis + " ms"));
+    }
+    
+    @Override
+    public void onSelect(SelectionKey key) {
+      try {
+        if (key.isConnectable()) {
+          if (channel.finishConnect()) {
+            writeRequest();
+          }
+        } else if (key.isWritable()) {
+          writeRequest();
+        } else if (key.isReadable()) {
+          readResponse();
+        }
+      } catch (Exception e) {
+        fail(e);
+      }
+    }
+    
+    @Override
+    public void onAbort(SelectionKey key) {
+      fail(new ClosedChannelException());
+    }
+    
+    private void writeRequest() throws IOException {
+      channel.write(request);
+      selectionKey.interestOps(request.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+    
+    private void readResponse() throws IOException {
+      if (channel.read(buffer) == -1) throw new EOFException("Connection closed during handshake");
+      buffer.flip();
+      final Head head = Handshake.parse(buffer);
+      if (head != null) {
+        upgrade(head);
+      } else if (buffer.limit() == buffer.capacity()) {
+        throw new ProtocolException("Response head too long");
+      } else {
+        buffer.compact();
+      }
+    }
+    
+    private void upgrade(Head head) throws IOException {
+      final String[] statusLine = head.startLine.split(" ", 3);
+      if (statusLine.length < 2 || ! statusLine[1].equals("101")) {
+        throw new IOException("Upgrade rejected: " + head.startLine);
+      }
+      if (! Handshake.accept(key).equals(head.getHeader("Sec-WebSocket-Accept"))) {
+        throw new ProtocolException("Invalid Sec-WebSocket-Accept");
+      }
+      final String subprotocol = head.getHeader("Sec-WebSocket-Protocol");
+      if (subprotocol != null && ! Arrays.asList(config.subprotocols).contains(subprotocol)) {
+        throw new ProtocolException("Unsolicited subprotocol " + subprotocol);
+      }
+      
+      timeout.cancel();
+      final NioEndpoint endpoint = new NioEndpoint(new NioEndpointManager(scanner, config, listener), reactor, channel, true, 
+                                                   (InetSocketAddress) channel.getRemoteAddress(), subprotocol);
+      endpoint.open(buffer);
+      future.complete(endpoint);
+    }
+    
+    private void fail(Exception cause) {
+      timeout.cancel();
+      NioReactor.closeQuietly(channel);
+      future.completeExceptionally(cause);
+    }
+  }
+  
+  @Override
+  public void close() throws Exception {
+    scanner.closeEndpoints(60_000);
+    scanner.close();
+    reactors.close();
+  }
+  
+  @Override
+  public Collection<NioEndpoint> getEndpoints() {
+    return scanner.getEndpoints();
+  }
+  
+  @Override
+  public XClientConfig getConfig() {
+    return config;
+  }
+  
+  public static final class Factory implements XClientFactory<NioEndpoint> {
+    @Override 
+    public XClient<NioEndpoint> create(XClientConfig config) throws Exception {
+      return new NioClient(config);
+    }
+  }
+  
+  public static XClientFactory<NioEndpoint> factory() {
+    return new Factory();
+  }
+}
@@ -0,0 +1,758 @@
+package com.obsidiandynamics.socketx.nio;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.obsidiandynamics.socketx.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  A WebSocket connection over a {@link SocketChannel}, served by a single {@link NioReactor}.<p>
+ *
+ *  Inbound frames are decoded from the reactor's shared read buffer. Outbound frames are queued
+ *  and encoded by the reactor into its shared write buffer, so that the frames sent between two
+ *  turns of the reactor are written with a single system call. A send completes once its frame
+ *  has been written to the socket.
+ */
+public final class NioEndpoint implements XEndpoint {
+  private static final AtomicLongFieldUpdater<NioEndpoint> lastActivityTimeUpdater =
+      AtomicLongFieldUpdater.newUpdater(NioEndpoint.class, "lastActivityTime");
+  
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+  
+  /** A frame awaiting transmission. Confined to the reactor thread once dequeued. */
+  private static final class OutFrame {
+    final int opcode;
+    final ByteBuffer payload;
+    final XSendCallback callback;
+    final int length;
+    final boolean counted;
+    boolean headerWritten;
+    int mask;
+    long offset;
+    
+    OutFrame(int opcode, ByteBuffer payload, XSendCallback callback, int length, boolean counted) {
+      this.opcode = opcode;
+      this.payload = payload;
+      this.callback = callback;
+      this.length = length;
+      this.counted = counted;
+    }
+  }
+  
+  private final NioEndpointManager manager;
+  
+  private final NioReactor reactor;
+  
+  private final SocketChannel channel;
+  
+  private final boolean client;
+  
+  private final InetSocketAddress remoteAddress;
+  
+  private final String subprotocol;
+  
+  private final Backlog backlog;
+  
+  private final FrameDecoder decoder;
+  
+  private final FrameHandler frameHandler = new FrameHandler();
+  
+  private final Queue<OutFrame> outbound = new ConcurrentLinkedQueue<>();
+  
+  /** Set while a write is scheduled, in progress, or awaiting the socket's writability. */
+  private final AtomicBoolean writeScheduled = new AtomicBoolean();
+  
+  private final AtomicBoolean closeSent = new AtomicBoolean();
+  
+  private final AtomicBoolean closeFired = new AtomicBoolean();
+  
+  private final SuspendCounter receiveSuspensions;
+  
+  /* Fields below are confined to the reactor thread. */
+  
+  private SelectionKey key;
+  
+  /** Frames that have been encoded, but not yet written to the socket in their entirety. */
+  private final Deque<OutFrame> unconfirmed = new ArrayDeque<>();
+  
+  /** The frame being encoded, if its payload didn't fit in the write buffer. */
+  private OutFrame current;
+  
+  /** Output that the socket didn't accept, held in a pooled buffer until it becomes writable. */
+  private ByteBuffer pendingOut;
+  
+  /** Whether the channel is to be closed once the outbound frames have been written. */
+  private boolean closeAfterFlush;
+  
+  private boolean closeReceived;
+  
+  private boolean readInterest = true;
+  
+  private boolean writeInterest;
+  
+  private volatile boolean open = true;
+  
+  private volatile Object context;
+  
+  private volatile long lastActivityTime;
+  
+  NioEndpoint(NioEndpointManager manager, NioReactor reactor, SocketChannel channel, boolean client,
+              InetSocketAddress remoteAddress, String subprotocol) {
+    this.manager = manager;
+    this.reactor = reactor;
+    this.channel = channel;
+    this.client = client;
+    this.remoteAddress = remoteAddress;
+    this.subprotocol = subprotocol;
+    decoder = new FrameDecoder(! client);
+    final XEndpointConfig<?> config = manager.getConfig();
+    backlog = new Backlog(config.highWaterMark, config.highWaterMarkBytes,
+                          writable -> manager.getListener().onWritabilityChanged(this, writable));
+    receiveSuspensions = new SuspendCounter(() -> executeIfRunning(() -> setReadInterest(false)),
+                                            () -> executeIfRunning(() -> setReadInterest(true)));
+    touchLastActivityTime();
+  }
+  
+  /**
+   *  Registers the channel with the reactor and notifies the listener, then decodes any frames
+   *  that arrived along with the handshake. Must be called from the reactor thread.
+   *
+   *  @param received The bytes received after the handshake.
+   *  @throws IOException If the channel couldn't be registered, in which case the listener 
+   *          isn't notified.
+   */
+  void open(ByteBuffer received) throws IOException {
+    key = reactor.register(channel, SelectionKey.OP_READ, new NioReactor.SelectHandler() {
+      @Override
+      public void onSelect(SelectionKey key) {
+        NioEndpoint.this.onSelect(key);
+      }
+      
+      @Override
+      public void onAbort(SelectionKey key) {
+        closeChannel();
+      }
+    });
+    manager.add(this);
+    try {
+      manager.getListener().onConnect(this);
+      if (received.hasRemaining()) {
+        decode(received);
+      }
+    } catch (RuntimeException e) {
+      onListenerError(e);
+    }
+  }
+  
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T getContext() {
+    return (T) context;
+  }
+  
+  @Override
+  public void setContext(Object context) {
+    this.context = context;
+  }
+  
+  private void onSelect(SelectionKey key) {
+    try {
+      if (key.isReadable()) {
+        read();
+      }
+      if (key.isValid() && key.isWritable()) {
+        write();
+      }
+    } catch (RuntimeException e) {
+      onListenerError(e);
+    }
+  }
+  
+  private void read() {
+    final ByteBuffer buffer = reactor.getReadBuffer();
+    buffer.clear();
+    final int read;
+    try {
+      read = channel.read(buffer);
+    } catch (IOException e) {
+      onIoError(e);
+      return;
+    }
+    
+    if (read == -1) {
+      closeChannel();
+    } else if (read != 0) {
+      buffer.flip();
+      decode(buffer);
+    }
+  }
+  
+  private void decode(ByteBuffer buffer) {
+    try {
+      decoder.decode(buffer, frameHandler);
+    } catch (MessageTooBigException e) {
+      manager.getListener().onError(this, e);
+      fail(Frames.MESSAGE_TOO_BIG, e.getMessage());
+    } catch (ProtocolException e) {
+      manager.getListener().onError(this, e);
+      fail(Frames.PROTOCOL_ERROR, e.getMessage());
+    } catch (IOException e) {
+      onIoError(e);
+    }
+  }
+  
+  /**
+   *  Reports an exception thrown by the listener (or a send callback) on the reactor thread,
+   *  and closes the connection, as its input may only have been partly processed.
+   */
+  private void onListenerError(RuntimeException e) {
+    try {
+      if (open) manager.getListener().onError(this, e);
+    } finally {
+      closeChannel();
+    }
+  }
+  
+  private void onIoError(IOException e) {
+    if (open) {
+      manager.getListener().onError(this, e);
+    }
+    closeChannel();
+  }
+  
+  /**
+   *  Responds to an inbound violation by sending a close frame, after which the channel is
+   *  closed and no further input is processed.
+   */
+  private void fail(int statusCode, String reason) {
+    closeReceived = true;
+    if (closeSent.compareAndSet(false, true)) {
+      enqueue(closeFrame(statusCode, reason));
+    }
+    closeAfterFlush = true;
+    scheduleWrite();
+  }
+  
+  static final class MessageTooBigException extends IOException {
+    private static final long serialVersionUID = 1L;
+    
+    MessageTooBigException(String m) { super(m); }
+  }
+  
+  /**
+   *  Assembles messages from the decoded frames and dispatches them to the listener.
+   */
+  private final class FrameHandler implements FrameDecoder.Handler {
+    /** The opcode of the data frame being decoded. */
+    private int frameOpcode;
+    
+    /** Whether the data frame being decoded is the last of its message. */
+    private boolean frameFin;
+    
+    /** Whether any of the current frame's payload has been received. */
+    private boolean frameStarted;
+    
+    /** The opcode of the message being assembled, or {@code -1} if there is none. */
+    private int messageOpcode = -1;
+    
+    private long messageLength;
+    
+    /** Accumulates fragmented messages and those that span reads; allocated on demand. */
+    private ByteBuffer message;
+    
+    /** Accumulates the payload of a control frame; allocated on demand. */
+    private ByteBuffer control;
+    
+    @Override
+    public void onHeader(boolean fin, int opcode, long length) throws IOException {
+      if (! open || closeReceived) return;
+      frameOpcode = opcode;
+      frameFin = fin;
+      frameStarted = false;
+      if (Frames.isControl(opcode)) {
+        if (control == null) control = ByteBuffer.allocate(Frames.MAX_CONTROL_PAYLOAD);
+        control.clear();
+        return;
+      }
+      
+      if (opcode == Frames.CONTINUATION) {
+        if (messageOpcode == -1) throw new ProtocolException("Unexpected continuation frame");
+      } else {
+        if (messageOpcode != -1) throw new ProtocolException("Expected continuation frame");
+        messageOpcode = opcode;
+        messageLength = 0;
+      }
+      
+      messageLength += length;
+      if (! isPartial() && messageLength > manager.getConfig().maxMessageSize) {
+        throw new MessageTooBigException("Message of " + messageLength + " bytes exceeds the maximum size of " +
+            manager.getConfig().maxMessageSize);
+      }
+    }
+    
+    private boolean isPartial() {
+      return messageOpcode == Frames.BINARY && manager.getPartialListener() != null;
+    }
+    
+    @Override
+    public void onPayload(ByteBuffer chunk, boolean frameEnd) throws IOException {
+      if (! open || closeReceived) return;
+      touchLastActivityTime();
+      
+      if (Frames.isControl(frameOpcode)) {
+        control.put(chunk);
+        if (frameEnd) {
+          control.flip();
+          onControl(frameOpcode, control);
+        }
+        return;
+      }
+      
+      final boolean messageEnd = frameEnd && frameFin;
+      if (isPartial()) {
+        manager.getPartialListener().onBinaryFragment(NioEndpoint.this, chunk, messageEnd);
+      } else if (messageEnd && ! frameStarted && (message == null || message.position() == 0)) {
+        // the entire message is in hand; deliver it without accumulating
+        onMessage(messageOpcode, chunk, true);
+      } else {
+        append(chunk);
+        if (messageEnd) {
+          message.flip();
+          try {
+            onMessage(messageOpcode, message, false);
+          } finally {
+            // retain the buffer for the next message, unless it has grown unduly
+            message = message.capacity() > manager.getBufferSize() ? null : (ByteBuffer) message.clear();
+          }
+        }
+      }
+      
+      frameStarted = true;
+      if (messageEnd) {
+        messageOpcode = -1;
+      }
+    }
+    
+    private void append(ByteBuffer chunk) {
+      if (message == null) {
+        message = ByteBuffer.allocate(Math.max(chunk.remaining(), 256));
+      } else if (message.remaining() < chunk.remaining()) {
+        final int required = message.position() + chunk.remaining();
+        final ByteBuffer grown = ByteBuffer.allocate(Math.max(required, message.capacity() * 2));
+        message.flip();
+        grown.put(message);
+        message = grown;
+      }
+      message.put(chunk);
+    }
+  }
+  
+  private void onMessage(int opcode, ByteBuffer payload, boolean shared) {
+    if (opcode == Frames.TEXT) {
+      manager.getListener().onText(this, decodeText(payload));
+    } else if (shared && manager.isZeroCopyInbound()) {
+      manager.getListener().onBinary(this, payload.slice());
+    } else {
+      manager.getListener().onBinary(this, copy(payload));
+    }
+  }
+  
+  private static String decodeText(ByteBuffer payload) {
+    if (payload.hasArray()) {
+      return new String(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining(),
+                        StandardCharsets.UTF_8);
+    } else {
+      final byte[] bytes = new byte[payload.remaining()];
+      payload.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+  
+  private static ByteBuffer copy(ByteBuffer payload) {
+    final ByteBuffer copy = ByteBuffer.allocate(payload.remaining());
+    copy.put(payload);
+    copy.flip();
+    return copy;
+  }
+  
+  private void onControl(int opcode, ByteBuffer payload) {
+    switch (opcode) {
+      case Frames.PING:
+        final ByteBuffer data = copy(payload);
+        manager.getListener().onPing(this, data.duplicate());
+        if (! closeSent.get()) {
+          enqueue(new OutFrame(Frames.PONG, data, null, 0, false));
+        }
+        break;
+      
+      case Frames.PONG:
+        manager.getListener().onPong(this, copy(payload));
+        break;
+      
+      case Frames.CLOSE:
+        final int statusCode = payload.remaining() >= 2 ? payload.getShort() & 0xFFFF : Frames.NO_STATUS;
+        final String reason = decodeText(payload);
+        closeReceived = true;
+        manager.getListener().onDisconnect(this, statusCode, reason);
+        if (closeSent.compareAndSet(false, true)) {
+          enqueue(statusCode != Frames.NO_STATUS ? closeFrame(statusCode, "") : new OutFrame(Frames.CLOSE, EMPTY, null, 0, false));
+        }
+        closeAfterFlush = true;
+        scheduleWrite();
+        break;
+    }
+  }
+  
+  private static OutFrame closeFrame(int statusCode, String reason) {
+    final byte[] reasonBytes = reason.getBytes(StandardCharsets.UTF_8);
+    final ByteBuffer payload = ByteBuffer.allocate(2 + Math.min(reasonBytes.length, Frames.MAX_CONTROL_PAYLOAD - 2));
+    payload.putShort((short) statusCode);
+    payload.put(reasonBytes, 0, payload.remaining());
+    payload.flip();
+    return new OutFrame(Frames.CLOSE, payload, null, 0, false);
+  }
+  
+  @Override
+  public void send(String payload, XSendCallback callback) {
+    send(Frames.TEXT, ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8)),
+         backlog.isTrackingBytes() ? payload.length() : 0, callback);
+  }
+  
+  @Override
+  public void send(ByteBuffer payload, XSendCallback callback) {
+    send(Frames.BINARY, payload.duplicate(), backlog.isTrackingBytes() ? payload.remaining() : 0, callback);
+  }
+  
+  private void send(int opcode, ByteBuffer payload, int length, XSendCallback callback) {
+    if (! open || closeSent.get()) {
+      if (callback != null) callback.onError(this, new ClosedChannelException());
+    } else if (backlog.isBelowHighWaterMark()) {
+      backlog.add(length);
+      enqueue(new OutFrame(opcode, payload, callback, length, true));
+      touchLastActivityTime();
+    } else if (callback != null) {
+      callback.onSkip(this);
+    }
+  }
+  
+  /**
+   *  Sends the stream as a single frame, as per the default implementation, having checked that 
+   *  it isn't called from the reactor thread, which would deadlock.
+   */
+  @Override
+  public void sendStream(ReadableByteChannel source, int fragmentSize) throws IOException {
+    if (reactor.isCurrent()) throw new IllegalStateException("Cannot stream from the I/O thread");
+    XEndpoint.super.sendStream(source, fragmentSize);
+  }
+  
+  private void enqueue(OutFrame frame) {
+    outbound.add(frame);
+    scheduleWrite();
+  }
+  
+  private void scheduleWrite() {
+    if (writeScheduled.compareAndSet(false, true)) {
+      try {
+        reactor.execute(this::write);
+      } catch (RejectedExecutionException e) {
+        failQueued();
+      }
+    }
+  }
+  
+  /**
+   *  Fails the queued frames when the reactor has stopped, and so will never write them. 
+   *  Called from the sending thread.
+   */
+  private void failQueued() {
+    do {
+      for (OutFrame frame; (frame = outbound.poll()) != null;) {
+        failFrame(frame);
+      }
+      writeScheduled.set(false);
+    } while (! outbound.isEmpty() && writeScheduled.compareAndSet(false, true));
+  }
+  
+  private void failFrame(OutFrame frame) {
+    if (frame.counted) {
+      backlog.remove(frame.length);
+      if (frame.callback != null) frame.callback.onError(this, new ClosedChannelException());
+    }
+  }
+  
+  /**
+   *  Writes the outbound frames, for as long as the socket accepts them. Must be called from
+   *  the reactor thread.
+   */
+  private void write() {
+    if (! open) {
+      failOutbound();
+      return;
+    }
+    
+    try {
+      for (;;) {
+        if (pendingOut != null) {
+          channel.write(pendingOut);
+          if (pendingOut.hasRemaining()) {
+            setWriteInterest(true);
+            return;
+          }
+          reactor.release(pendingOut);
+          pendingOut = null;
+          confirm();
+        }
+        
+        final ByteBuffer buffer = reactor.getWriteBuffer();
+        buffer.clear();
+        encode(buffer);
+        if (buffer.position() == 0) {
+          setWriteInterest(false);
+          writeScheduled.set(false);
+          if (outbound.isEmpty() || ! writeScheduled.compareAndSet(false, true)) {
+            if (closeAfterFlush && ! writeScheduled.get()) {
+              closeChannel();
+            }
+            return;
+          }
+          continue;
+        }
+        
+        buffer.flip();
+        channel.write(buffer);
+        if (buffer.hasRemaining()) {
+          pendingOut = reactor.acquire();
+          pendingOut.put(buffer);
+          pendingOut.flip();
+          setWriteInterest(true);
+          return;
+        }
+        confirm();
+      }
+    } catch (IOException e) {
+      onIoError(e);
+    }
+  }
+  
+  private void setWriteInterest(boolean interested) {
+    writeInterest = interested;
+    updateInterestOps();
+  }
+  
+  private void setReadInterest(boolean interested) {
+    readInterest = interested;
+    updateInterestOps();
+  }
+  
+  private void updateInterestOps() {
+    if (key != null && key.isValid()) {
+      final int ops = (readInterest ? SelectionKey.OP_READ : 0) | (writeInterest ? SelectionKey.OP_WRITE : 0);
+      if (key.interestOps() != ops) {
+        key.interestOps(ops);
+      }
+    }
+  }
+  
+  /**
+   *  Encodes as many of the outbound frames as will fit into the given buffer, the last of
+   *  which may be encoded in part.
+   */
+  private void encode(ByteBuffer buffer) {
+    for (;;) {
+      OutFrame frame = current;
+      if (frame == null) {
+        frame = outbound.poll();
+        if (frame == null) return;
+        current = frame;
+      }
+      
+      if (! frame.headerWritten) {
+        if (buffer.remaining() < Frames.MAX_HEADER_LENGTH) return;
+        if (client) frame.mask = ThreadLocalRandom.current().nextInt();
+        Frames.encodeHeader(buffer, frame.opcode, frame.payload.remaining(), client, frame.mask);
+        frame.headerWritten = true;
+      }
+      
+      final ByteBuffer payload = frame.payload;
+      final int length = Math.min(buffer.remaining(), payload.remaining());
+      if (client) {
+        Frames.mask(payload, buffer, length, frame.mask, frame.offset);
+        frame.offset += length;
+      } else {
+        final int limit = payload.limit();
+        payload.limit(payload.position() + length);
+        buffer.put(payload);
+        payload.limit(limit);
+      }
+      if (payload.hasRemaining()) return;
+      
+      unconfirmed.add(frame);
+      current = null;
+    }
+  }
+  
+  private void confirm() {
+    for (OutFrame frame; (frame = unconfirmed.poll()) != null;) {
+      if (frame.counted) {
+        backlog.remove(frame.length);
+        if (frame.callback != null) frame.callback.onComplete(this);
+      }
+    }
+  }
+  
+  private void failOutbound() {
+    for (OutFrame frame; (frame = unconfirmed.poll()) != null;) {
+      failFrame(frame);
+    }
+    if (current != null) {
+      failFrame(current);
+      current = null;
+    }
+    failQueued();
+  }
+  
+  /**
+   *  Frames are written as soon as the reactor gets to them, so this method does nothing.
+   */
+  @Override
+  public void flush() {}
+  
+  /**
+   *  Withdraws the channel's read interest, leaving unread data in the socket's receive buffer.
+   *  Messages already read from the socket are still delivered.
+   */
+  @Override
+  public void suspendReceives() {
+    receiveSuspensions.suspend();
+  }
+  
+  @Override
+  public void resumeReceives() {
+    receiveSuspensions.resume();
+  }
+  
+  @Override
+  public boolean isReceivesSuspended() {
+    return receiveSuspensions.isSuspended();
+  }
+  
+  @Override
+  public NioReactor getIoExecutor() {
+    return reactor;
+  }
+  
+  @Override
+  public void sendPing() {
+    if (open && ! closeSent.get()) {
+      touchLastActivityTime();
+      enqueue(new OutFrame(Frames.PING, EMPTY, null, 0, false));
+    }
+  }
+  
+  @Override
+  public void close() {
+    if (open && closeSent.compareAndSet(false, true)) {
+      enqueue(closeFrame(Frames.NORMAL_CLOSURE, ""));
+    } else {
+      terminate();
+    }
+  }
+  
+  @Override
+  public void terminate() {
+    try {
+      reactor.executeOrRun(this::closeChannel);
+    } catch (RejectedExecutionException e) {
+      closeChannel();
+    }
+  }
+  
+  /**
+   *  Runs the task on the reactor, unless the reactor has stopped, in which case the channel
+   *  has been closed and there is nothing left to do.
+   */
+  private void executeIfRunning(Runnable task) {
+    try {
+      reactor.executeOrRun(task);
+    } catch (RejectedExecutionException e) {}
+  }
+  
+  private void closeChannel() {
+    if (open) {
+      open = false;
+      if (key != null) key.cancel();
+      NioReactor.closeQuietly(channel);
+      if (pendingOut != null) {
+        reactor.release(pendingOut);
+        pendingOut = null;
+      }
+      failOutbound();
+    }
+    fireCloseEvent();
+  }
+  
+  private void fireCloseEvent() {
+    if (closeFired.compareAndSet(false, true)) {
+      manager.remove(this);
+      manager.getListener().onClose(this);
+    }
+  }
+  
+  @Override
+  public InetSocketAddress getRemoteAddress() {
+    return remoteAddress;
+  }
+  
+  @Override
+  public String getSubprotocol() {
+    return subprotocol;
+  }
+  
+  @Override
+  public long getBacklog() {
+    return backlog.getMessages();
+  }
+  
+  @Override
+  public long getBacklogBytes() {
+    return backlog.getBytes();
+  }
+  
+  @Override
+  public boolean isWritable() {
+    return backlog.isWritable();
+  }
+  
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+  
+  @Override
+  public long getLastActivityTime() {
+    return lastActivityTime;
+  }
+  
+  /**
+   *  Stamps the activity time from the coarse clock, skipping the store if the time hasn't moved
+   *  since the last stamp.
+   */
+  private void touchLastActivityTime() {
+    final long now = CoarseClock.now();
+    if (lastActivityTime != now) {
+      lastActivityTimeUpdater.lazySet(this, now);
+    }
+  }
+  
+  @Override
+  public String toString() {
+    return XEndpoint.defaultToString(this);
+  }
+}
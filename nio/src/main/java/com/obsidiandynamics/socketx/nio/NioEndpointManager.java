@@ -0,0 +1,64 @@
+package com.obsidiandynamics.socketx.nio;
+
+import java.util.*;
+
+import com.obsidiandynamics.socketx.*;
+
+final class NioEndpointManager implements XEndpointManager<NioEndpoint> {
+  private final XEndpointScanner<NioEndpoint> scanner;
+  
+  private final XEndpointConfig<?> config;
+  
+  private final XEndpointListener<? super NioEndpoint> listener;
+  
+  private final int bufferSize;
+  
+  private final boolean zeroCopyInbound;
+  
+  NioEndpointManager(XEndpointScanner<NioEndpoint> scanner, XEndpointConfig<?> config, 
+                     XEndpointListener<? super NioEndpoint> listener) {
+    this.scanner = scanner;
+    this.config = config;
+    this.listener = listener;
+    bufferSize = NioAtts.BUFFER_SIZE.get(config.attributes);
+    zeroCopyInbound = NioAtts.ZERO_COPY_INBOUND.get(config.attributes);
+  }
+  
+  XEndpointListener<? super NioEndpoint> getListener() {
+    return listener;
+  }
+  
+  /**
+   *  Obtains the listener as a partial listener, if it is one.
+   *  
+   *  @return The partial listener, or {@code null} if binary messages are to be delivered whole.
+   */
+  XEndpointPartialListener<? super NioEndpoint> getPartialListener() {
+    return listener instanceof XEndpointPartialListener ? (XEndpointPartialListener<? super NioEndpoint>) listener : null;
+  }
+  
+  XEndpointConfig<?> getConfig() {
+    return config;
+  }
+  
+  int getBufferSize() {
+    return bufferSize;
+  }
+  
+  boolean isZeroCopyInbound() {
+    return zeroCopyInbound;
+  }
+  
+  @Override
+  public Collection<NioEndpoint> getEndpoints() {
+    return scanner.getEndpoints();
+  }
+  
+  void add(NioEndpoint endpoint) {
+    scanner.addEndpoint(endpoint);
+  }
+  
+  void remove(NioEndpoint endpoint) {
+    scanner.removeEndpoint(endpoint);
+  }
+}
@@ -0,0 +1,328 @@
+package com.obsidiandynamics.socketx.nio;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.slf4j.*;
+
+/**
+ *  A selector serviced by a dedicated thread, which also runs the tasks submitted to it, and 
+ *  those scheduled to run after a delay. All channels registered with a reactor, and the buffers
+ *  it hands out, are confined to its thread. Once the reactor has stopped, tasks submitted to it
+ *  are rejected with a {@link RejectedExecutionException}.<p>
+ *  
+ *  A single read buffer and a single write buffer are shared among all of the reactor's 
+ *  connections; a connection only holds a buffer of its own while its output is held back by 
+ *  a full socket send buffer.
+ */
+final class NioReactor extends Thread implements Executor {
+  private static final Logger log = LoggerFactory.getLogger(NioReactor.class);
+  
+  /** Handles the readiness of a registered channel. */
+  @FunctionalInterface
+  interface SelectHandler {
+    void onSelect(SelectionKey key);
+    
+    /**
+     *  Abandons the channel, either because {@link #onSelect} threw an unexpected exception, 
+     *  leaving the channel in an unknown state, or because the reactor is stopping. By default,
+     *  the channel is closed.
+     *  
+     *  @param key The selection key.
+     */
+    default void onAbort(SelectionKey key) {
+      closeQuietly(key.channel());
+    }
+  }
+  
+  /** A task scheduled to run once a delay has elapsed. Confined to the reactor thread. */
+  static final class Timeout implements Comparable<Timeout> {
+    private final long deadline;
+    
+    private final Runnable task;
+    
+    private boolean cancelled;
+    
+    Timeout(long deadline, Runnable task) {
+      this.deadline = deadline;
+      this.task = task;
+    }
+    
+    /**
+     *  Cancels the task, if it hasn't already run. Must be called from the reactor thread.
+     */
+    void cancel() {
+      cancelled = true;
+    }
+    
+    @Override
+    public int compareTo(Timeout other) {
+      return Long.compare(deadline - other.deadline, 0);
+    }
+  }
+  
+  /** The maximum number of buffers retained in the pool. */
+  private static final int MAX_POOLED_BUFFERS = 64;
+  
+  private final Selector selector;
+  
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  
+  private final AtomicBoolean wakeupPending = new AtomicBoolean();
+  
+  private final int bufferSize;
+  
+  private final boolean directBuffers;
+  
+  private final ByteBuffer readBuffer;
+  
+  private final ByteBuffer writeBuffer;
+  
+  private final Deque<ByteBuffer> pool = new ArrayDeque<>();
+  
+  private final Queue<Timeout> timeouts = new PriorityQueue<>();
+  
+  private volatile boolean running = true;
+  
+  NioReactor(String name, int bufferSize, boolean directBuffers) throws IOException {
+    super(name);
+    setDaemon(true);
+    selector = Selector.open();
+    this.bufferSize = bufferSize;
+    this.directBuffers = directBuffers;
+    readBuffer = allocate();
+    writeBuffer = allocate();
+  }
+  
+  private ByteBuffer allocate() {
+    return directBuffers ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+  }
+  
+  @Override
+  public void run() {
+    while (running) {
+      try {
+        select();
+      } catch (IOException e) {
+        log.error("Error selecting", e);
+        continue;
+      }
+      
+      final Set<SelectionKey> selected = selector.selectedKeys();
+      if (! selected.isEmpty()) {
+        for (SelectionKey key : selected) {
+          if (key.isValid()) {
+            select(key);
+          }
+        }
+        selected.clear();
+      }
+      
+      wakeupPending.set(false);
+      runTasks();
+      runTimeouts();
+    }
+    
+    runTasks();
+    for (SelectionKey key : selector.keys()) {
+      abort(key);
+    }
+    closeQuietly(selector);
+  }
+  
+  /**
+   *  Selects, waiting no longer than the time until the earliest timeout is due.
+   */
+  private void select() throws IOException {
+    final Timeout next = timeouts.peek();
+    if (next == null) {
+      selector.select();
+    } else {
+      final long delayMillis = TimeUnit.NANOSECONDS.toMillis(next.deadline - System.nanoTime() + 999_999);
+      if (delayMillis > 0) {
+        selector.select(delayMillis);
+      } else {
+        selector.selectNow();
+      }
+    }
+  }
+  
+  /**
+   *  Hands a selected key to its handler. Handlers deal with their own I/O errors; anything else
+   *  that escapes a handler has the channel aborted, sparing the reactor and the other channels.
+   */
+  private static void select(SelectionKey key) {
+    try {
+      ((SelectHandler) key.attachment()).onSelect(key);
+    } catch (Throwable e) {
+      log.error("Unexpected error", e);
+      abort(key);
+    }
+  }
+  
+  private static void abort(SelectionKey key) {
+    try {
+      ((SelectHandler) key.attachment()).onAbort(key);
+    } catch (Throwable e) {
+      log.error("Unexpected error", e);
+      closeQuietly(key.channel());
+    }
+  }
+  
+  private void runTimeouts() {
+    final long now = System.nanoTime();
+    for (Timeout timeout; (timeout = timeouts.peek()) != null && timeout.deadline - now <= 0;) {
+      timeouts.remove();
+      if (! timeout.cancelled) {
+        try {
+          timeout.task.run();
+        } catch (Throwable e) {
+          log.error("Unexpected error", e);
+        }
+      }
+    }
+  }
+  
+  private void runTasks() {
+    for (Runnable task; (task = tasks.poll()) != null;) {
+      try {
+        task.run();
+      } catch (Throwable e) {
+        log.error("Unexpected error", e);
+      }
+    }
+  }
+  
+  static void closeQuietly(Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      log.debug("Error closing " + closeable, e);
+    }
+  }
+  
+  /**
+   *  Runs the given task on the reactor thread, waking the selector if necessary.<p>
+   *  
+   *  A task that is submitted once the reactor has been stopped is rejected, unless the reactor
+   *  has already picked it up for its final run of the pending tasks.
+   *  
+   *  @throws RejectedExecutionException If the reactor has stopped.
+   */
+  @Override
+  public void execute(Runnable task) {
+    tasks.add(task);
+    if (! running && tasks.remove(task)) {
+      throw new RejectedExecutionException("Reactor " + getName() + " has stopped");
+    }
+    if (wakeupPending.compareAndSet(false, true)) {
+      selector.wakeup();
+    }
+  }
+  
+  /**
+   *  Runs the given task on the reactor thread, directly if called from it.
+   *  
+   *  @param task The task.
+   *  @throws RejectedExecutionException If the reactor has stopped.
+   */
+  void executeOrRun(Runnable task) {
+    if (isCurrent()) {
+      task.run();
+    } else {
+      execute(task);
+    }
+  }
+  
+  /**
+   *  Schedules a task to run on the reactor thread once the given delay has elapsed. Must be 
+   *  called from the reactor thread.
+   *  
+   *  @param task The task.
+   *  @param delayMillis The delay, in milliseconds.
+   *  @return The timeout, which may be used to cancel the task.
+   */
+  Timeout schedule(Runnable task, long delayMillis) {
+    final Timeout timeout = new Timeout(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis), task);
+    timeouts.add(timeout);
+    return timeout;
+  }
+  
+  boolean isCurrent() {
+    return Thread.currentThread() == this;
+  }
+  
+  boolean isRunning() {
+    return running;
+  }
+  
+  /**
+   *  Registers a channel with the selector. Must be called from the reactor thread.
+   *  
+   *  @param channel The channel, which must be in non-blocking mode.
+   *  @param ops The interest set.
+   *  @param handler Handles the channel's readiness.
+   *  @return The selection key.
+   *  @throws ClosedChannelException If the channel has been closed.
+   */
+  SelectionKey register(SelectableChannel channel, int ops, SelectHandler handler) throws ClosedChannelException {
+    return channel.register(selector, ops, handler);
+  }
+  
+  /**
+   *  Obtains the shared read buffer. Must be called from the reactor thread, and the buffer
+   *  must be consumed before yielding to the reactor.
+   *  
+   *  @return The read buffer.
+   */
+  ByteBuffer getReadBuffer() {
+    return readBuffer;
+  }
+  
+  /**
+   *  Obtains the shared write buffer, subject to the same conditions as the read buffer.
+   *  
+   *  @return The write buffer.
+   */
+  ByteBuffer getWriteBuffer() {
+    return writeBuffer;
+  }
+  
+  /**
+   *  Takes a cleared buffer from the pool, allocating one if the pool is empty. Must be called 
+   *  from the reactor thread.
+   *  
+   *  @return The buffer, with the same capacity as the shared buffers.
+   */
+  ByteBuffer acquire() {
+    final ByteBuffer buffer = pool.pollFirst();
+    return buffer != null ? buffer : allocate();
+  }
+  
+  /**
+   *  Returns a buffer obtained from {@link #acquire()} to the pool.
+   *  
+   *  @param buffer The buffer.
+   */
+  void release(ByteBuffer buffer) {
+    if (pool.size() < MAX_POOLED_BUFFERS) {
+      buffer.clear();
+      pool.addFirst(buffer);
+    }
+  }
+  
+  /**
+   *  Stops the reactor, aborting all channels registered with it.
+   *  
+   *  @throws InterruptedException If the thread was interrupted.
+   */
+  void close() throws InterruptedException {
+    running = false;
+    selector.wakeup();
+    join();
+  }
+}
@@ -0,0 +1,39 @@
+package com.obsidiandynamics.socketx.nio;
+
+import java.io.*;
+import java.util.concurrent.atomic.*;
+
+import com.obsidiandynamics.socketx.*;
+
+/**
+ *  A set of reactors, among which connections are assigned in round-robin order.
+ */
+final class NioReactorGroup implements AutoCloseable {
+  private final NioReactor[] reactors;
+  
+  private final AtomicInteger next = new AtomicInteger();
+  
+  NioReactorGroup(String name, XEndpointConfig<?> config) throws IOException {
+    final int threads = NioAtts.SELECTOR_THREADS.get(config.attributes);
+    final int bufferSize = NioAtts.BUFFER_SIZE.get(config.attributes);
+    final boolean directBuffers = NioAtts.DIRECT_BUFFERS.get(config.attributes);
+    reactors = new NioReactor[threads];
+    for (int i = 0; i < threads; i++) {
+      reactors[i] = new NioReactor(name + "-" + i, bufferSize, directBuffers);
+    }
+    for (NioReactor reactor : reactors) {
+      reactor.start();
+    }
+  }
+  
+  NioReactor next() {
+    return reactors[(next.getAndIncrement() & Integer.MAX_VALUE) % reactors.length];
+  }
+  
+  @Override
+  public void close() throws InterruptedException {
+    for (NioReactor reactor : reactors) {
+      reactor.close();
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package com.obsidiandynamics.socketx.nio;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.concurrent.*;
+
+import org.slf4j.*;
+
+import com.obsidiandynamics.socketx.*;
+import com.obsidiandynamics.socketx.nio.Handshake.*;
+
+/**
+ *  A WebSocket server implemented directly on the JDK's NIO selectors, without a third-party
+ *  HTTP stack. Connections are accepted on one of the reactors and spread among all of them.<p>
+ *  
+ *  Only the WebSocket upgrade is served; HTTPS, servlets and extensions (such as compression) 
+ *  are not supported.
+ */
+public final class NioServer implements XServer<NioEndpoint> {
+  private static final Logger log = LoggerFactory.getLogger(NioServer.class);
+  
+  private static final int ACCEPT_BACKLOG = 1024;
+  
+  private final XServerConfig config;
+  private final NioReactorGroup reactors;
+  private final ServerSocketChannel serverChannel;
+  private final NioEndpointManager manager;
+  private final XEndpointScanner<NioEndpoint> scanner;
+  private final int handshakeTimeoutMillis;
+  
+  private NioServer(XServerConfig config, XEndpointListener<? super NioEndpoint> listener) throws Exception {
+    this.config = config;
+    if (config.httpsPort != 0) {
+      log.warn("HTTPS is not supported; ignoring port {}", config.httpsPort);
+    }
+    if (config.servlets.length != 0) {
+      log.warn("Servlets are not supported; ignoring {} servlet(s)", config.servlets.length);
+    }
+    
+    scanner = new XEndpointScanner<>(config.scanIntervalMillis, config.pingIntervalMillis, config.scanMode, 
+                                     XAtts.SCANNER_SHARDS.get(config.attributes));
+    manager = new NioEndpointManager(scanner, config, listener);
+    handshakeTimeoutMillis = NioAtts.HANDSHAKE_TIMEOUT_MILLIS.get(config.attributes);
+    reactors = new NioReactorGroup("NioServer-" + config.port, config);
+    
+    serverChannel = ServerSocketChannel.open();
+    try {
+      serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      serverChannel.bind(new InetSocketAddress(config.port), ACCEPT_BACKLOG);
+      serverChannel.configureBlocking(false);
+      final NioReactor acceptor = reactors.next();
+      final CompletableFuture<Void> registered = new CompletableFuture<>();
+      acceptor.execute(() -> {
+        try {
+          acceptor.register(serverChannel, SelectionKey.OP_ACCEPT, key -> accept());
+          registered.complete(null);
+        } catch (IOException e) {
+          registered.completeExceptionally(e);
+        }
+      });
+      registered.get();
+    } catch (Exception e) {
+      NioReactor.closeQuietly(serverChannel);
+      reactors.close();
+      scanner.close();
+      throw e;
+    }
+  }
+  
+  private void accept() {
+    for (;;) {
+      final SocketChannel channel;
+      try {
+        channel = serverChannel.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      } catch (IOException e) {
+        log.warn("Error accepting connection", e);
+        return;
+      }
+      
+      final NioReactor reactor = reactors.next();
+      try {
+        reactor.execute(() -> new Upgrade(channel, reactor).register());
+      } catch (RejectedExecutionException e) {
+        NioReactor.closeQuietly(channel);
+      }
+    }
+  }
+  
+  /**
+   *  Reads the upgrade request of an accepted connection, and completes the handshake, dropping
+   *  the connection if the request doesn't arrive in time. Confined to the reactor thread.
+   */
+  private final class Upgrade {
+    private final SocketChannel channel;
+    
+    private final NioReactor reactor;
+    
+    private final ByteBuffer buffer = ByteBuffer.allocate(Handshake.MAX_HEAD_LENGTH);
+    
+    private NioReactor.Timeout timeout;
+    
+    Upgrade(SocketChannel channel, NioReactor reactor) {
+      this.channel = channel;
+      this.reactor = reactor;
+    }
+    
+    void register() {
+      try {
+        reactor.register(channel, SelectionKey.OP_READ, key -> read());
+      } catch (IOException e) {
+        NioReactor.closeQuietly(channel);
+        return;
+      }
+      timeout = reactor.schedule(this::expire, handshakeTimeoutMillis);
+    }
+    
+    private void expire() {
+      if (channel.isOpen()) {
+        log.debug("Upgrade request timed out after {} ms", handshakeTimeoutMillis);
+        NioReactor.closeQuietly(channel);
+      }
+    }
+    
+    private void read() {
+      try {
+        if (channel.read(buffer) == -1) {
+          NioReactor.closeQuietly(channel);
+          return;
+        }
+        
+        buffer.flip();
+        final Head head = Handshake.parse(buffer);
+        if (head != null) {
+          upgrade(head);
+        } else if (buffer.limit() == buffer.capacity()) {
+          reject(431, "Request Header Fields Too Large");
+        } else {
+          buffer.compact();
+        }
+      } catch (ProtocolException e) {
+        reject(400, "Bad Request");
+      } catch (IOException e) {
+        log.debug("Error reading upgrade request", e);
+        NioReactor.closeQuietly(channel);
+      }
+    }
+    
+    private void upgrade(Head head) throws IOException {
+      final String[] requestLine = head.startLine.split(" ");
+      if (requestLine.length != 3 || ! requestLine[0].equals("GET")) {
+        reject(400, "Bad Request");
+        return;
+      }
+      
+      final String target = requestLine[1];
+      final int query = target.indexOf('?');
+      final String path = query != -1 ? target.substring(0, query) : target;
+      if (! path.equals(config.path)) {
+        reject(404, "Not Found");
+        return;
+      }
+      
+      final String key = head.getHeader("Sec-WebSocket-Key");
+      if (key == null || ! head.hasToken("Upgrade", "websocket") || ! head.hasToken("Connection", "Upgrade")) {
+        reject(400, "Bad Request");
+        return;
+      }
+      if (! "13".equals(head.getHeader("Sec-WebSocket-Version"))) {
+        reject(426, "Upgrade Required");
+        return;
+      }
+      
+      final String subprotocol = Handshake.selectSubprotocol(head.getHeader("Sec-WebSocket-Protocol"), config.subprotocols);
+      timeout.cancel();
+      writeFully(ByteBuffer.wrap(Handshake.response(key, subprotocol)));
+      final NioEndpoint endpoint = new NioEndpoint(manager, reactor, channel, false, 
+                                                   (InetSocketAddress) channel.getRemoteAddress(), subprotocol);
+      endpoint.open(buffer);
+    }
+    
+    private void reject(int status, String reason) {
+      try {
+        writeFully(ByteBuffer.wrap(Handshake.rejection(status, reason)));
+      } catch (IOException e) {
+        log.debug("Error rejecting upgrade request", e);
+      }
+      NioReactor.closeQuietly(channel);
+    }
+    
+    /**
+     *  Writes a handshake response, which the send buffer of a fresh connection will normally
+     *  accept in one go.
+     */
+    private void writeFully(ByteBuffer response) throws IOException {
+      while (response.hasRemaining()) {
+        if (channel.write(response) == 0) {
+          Thread.yield();
+        }
+      }
+    }
+  }
+  
+  @Override
+  public void close() throws Exception {
+    NioReactor.closeQuietly(serverChannel);
+    scanner.closeEndpoints(60_000);
+    scanner.close();
+    reactors.close();
+  }
+  
+  @Override
+  public NioEndpointManager getEndpointManager() {
+    return manager;
+  }
+  
+  @Override
+  public XServerConfig getConfig() {
+    return config;
+  }
+  
+  public static final class Factory implements XServerFactory<NioEndpoint> {
+    @Override public XServer<NioEndpoint> create(XServerConfig config,
+                                                 XEndpointListener<? super NioEndpoint> listener) throws Exception {
+      return new NioServer(config, listener);
+    }
+  }
+  
+  public static XServerFactory<NioEndpoint> factory() {
+    return new Factory();
+  }
+}
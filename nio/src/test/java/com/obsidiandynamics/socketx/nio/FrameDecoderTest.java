@@ -0,0 +1,125 @@
+package com.obsidiandynamics.socketx.nio;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+
+import org.junit.*;
+
+public final class FrameDecoderTest {
+  private static final int MASK = 0x12345678;
+  
+  /**
+   *  Collects the decoded frames as strings of the form {@code opcode:payload}.
+   */
+  private static final class CollectingHandler implements FrameDecoder.Handler {
+    final List<String> frames = new ArrayList<>();
+    
+    private int opcode;
+    
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    
+    @Override
+    public void onHeader(boolean fin, int opcode, long length) {
+      this.opcode = opcode;
+      payload.reset();
+    }
+    
+    @Override
+    public void onPayload(ByteBuffer chunk, boolean frameEnd) {
+      while (chunk.hasRemaining()) {
+        payload.write(chunk.get());
+      }
+      if (frameEnd) {
+        frames.add(opcode + ":" + new String(payload.toByteArray()));
+      }
+    }
+  }
+  
+  private static ByteBuffer encode(int opcode, byte[] payload, boolean masked) {
+    final ByteBuffer out = ByteBuffer.allocate(Frames.MAX_HEADER_LENGTH + payload.length);
+    Frames.encodeHeader(out, opcode, payload.length, masked, MASK);
+    if (masked) {
+      Frames.mask(ByteBuffer.wrap(payload), out, payload.length, MASK, 0);
+    } else {
+      out.put(payload);
+    }
+    out.flip();
+    return out;
+  }
+  
+  private static ByteBuffer concat(ByteBuffer... buffers) {
+    final ByteBuffer out = ByteBuffer.allocate(Arrays.stream(buffers).mapToInt(ByteBuffer::remaining).sum());
+    for (ByteBuffer buffer : buffers) out.put(buffer);
+    out.flip();
+    return out;
+  }
+  
+  private static String repeat(char c, int count) {
+    final char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+  
+  @Test
+  public void testRoundTripMasked() throws IOException {
+    final String medium = repeat('m', 300);
+    final String large = repeat('l', 70_000);
+    final ByteBuffer in = concat(encode(Frames.TEXT, "hello".getBytes(), true),
+                                 encode(Frames.PING, new byte[0], true),
+                                 encode(Frames.BINARY, medium.getBytes(), true),
+                                 encode(Frames.BINARY, large.getBytes(), true));
+    final CollectingHandler handler = new CollectingHandler();
+    new FrameDecoder(true).decode(in, handler);
+    assertEquals(Arrays.asList(Frames.TEXT + ":hello", Frames.PING + ":", Frames.BINARY + ":" + medium, 
+                               Frames.BINARY + ":" + large), handler.frames);
+  }
+  
+  @Test
+  public void testByteAtATime() throws IOException {
+    final ByteBuffer in = concat(encode(Frames.TEXT, "hello".getBytes(), false),
+                                 encode(Frames.BINARY, repeat('x', 200).getBytes(), false));
+    final CollectingHandler handler = new CollectingHandler();
+    final FrameDecoder decoder = new FrameDecoder(false);
+    while (in.hasRemaining()) {
+      final ByteBuffer single = ByteBuffer.allocate(1);
+      single.put(in.get()).flip();
+      decoder.decode(single, handler);
+      assertFalse(single.hasRemaining());
+    }
+    assertEquals(Arrays.asList(Frames.TEXT + ":hello", Frames.BINARY + ":" + repeat('x', 200)), handler.frames);
+  }
+  
+  @Test(expected=ProtocolException.class)
+  public void testUnmaskedFromClient() throws IOException {
+    new FrameDecoder(true).decode(encode(Frames.TEXT, "hello".getBytes(), false), new CollectingHandler());
+  }
+  
+  @Test(expected=ProtocolException.class)
+  public void testMaskedFromServer() throws IOException {
+    new FrameDecoder(false).decode(encode(Frames.TEXT, "hello".getBytes(), true), new CollectingHandler());
+  }
+  
+  @Test(expected=ProtocolException.class)
+  public void testReservedBits() throws IOException {
+    new FrameDecoder(false).decode(ByteBuffer.wrap(new byte[] {(byte) 0xC1, 0}), new CollectingHandler());
+  }
+  
+  @Test(expected=ProtocolException.class)
+  public void testUnknownOpcode() throws IOException {
+    new FrameDecoder(false).decode(ByteBuffer.wrap(new byte[] {(byte) 0x83, 0}), new CollectingHandler());
+  }
+  
+  @Test(expected=ProtocolException.class)
+  public void testOversizedControlFrame() throws IOException {
+    new FrameDecoder(false).decode(encode(Frames.PING, new byte[126], false), new CollectingHandler());
+  }
+  
+  @Test(expected=ProtocolException.class)
+  public void testFragmentedControlFrame() throws IOException {
+    new FrameDecoder(false).decode(ByteBuffer.wrap(new byte[] {(byte) Frames.PING, 0}), new CollectingHandler());
+  }
+}
@@ -0,0 +1,69 @@
+package com.obsidiandynamics.socketx.nio;
+
+import static org.junit.Assert.*;
+
+import java.net.*;
+import java.nio.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.socketx.nio.Handshake.*;
+
+public final class HandshakeTest {
+  @Test
+  public void testAccept() {
+    // the example from section 1.3 of RFC 6455
+    assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", Handshake.accept("dGhlIHNhbXBsZSBub25jZQ=="));
+  }
+  
+  @Test
+  public void testRequest() throws Exception {
+    final byte[] request = Handshake.request(new URI("ws://localhost:8080/path?q=1"), "key", new String[] {"a", "b"});
+    final ByteBuffer buffer = ByteBuffer.wrap(request);
+    final Head head = Handshake.parse(buffer);
+    assertNotNull(head);
+    assertFalse(buffer.hasRemaining());
+    assertEquals("GET /path?q=1 HTTP/1.1", head.startLine);
+    assertEquals("localhost:8080", head.getHeader("host"));
+    assertEquals("key", head.getHeader("Sec-WebSocket-Key"));
+    assertEquals("a, b", head.getHeader("Sec-WebSocket-Protocol"));
+    assertTrue(head.hasToken("Upgrade", "WebSocket"));
+    assertTrue(head.hasToken("Connection", "upgrade"));
+    assertFalse(head.hasToken("Connection", "close"));
+  }
+  
+  @Test
+  public void testResponse() throws Exception {
+    final Head head = Handshake.parse(ByteBuffer.wrap(Handshake.response("key", "b")));
+    assertEquals("HTTP/1.1 101 Switching Protocols", head.startLine);
+    assertEquals(Handshake.accept("key"), head.getHeader("Sec-WebSocket-Accept"));
+    assertEquals("b", head.getHeader("Sec-WebSocket-Protocol"));
+  }
+  
+  @Test
+  public void testIncomplete() throws Exception {
+    final ByteBuffer buffer = ByteBuffer.wrap("GET / HTTP/1.1\r\nHost: localhost\r\n".getBytes());
+    assertNull(Handshake.parse(buffer));
+    assertEquals(0, buffer.position());
+  }
+  
+  @Test
+  public void testLeftover() throws Exception {
+    final ByteBuffer buffer = ByteBuffer.wrap("HTTP/1.1 101 Switching Protocols\r\n\r\nframe".getBytes());
+    assertNotNull(Handshake.parse(buffer));
+    assertEquals(5, buffer.remaining());
+  }
+  
+  @Test(expected=ProtocolException.class)
+  public void testMalformedHeader() throws Exception {
+    Handshake.parse(ByteBuffer.wrap("GET / HTTP/1.1\r\nbogus\r\n\r\n".getBytes()));
+  }
+  
+  @Test
+  public void testSelectSubprotocol() {
+    final String[] supported = {"b", "a"};
+    assertEquals("a", Handshake.selectSubprotocol("c, a, b", supported));
+    assertNull(Handshake.selectSubprotocol("c", supported));
+    assertNull(Handshake.selectSubprotocol(null, supported));
+  }
+}
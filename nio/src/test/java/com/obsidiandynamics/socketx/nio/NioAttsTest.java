@@ -0,0 +1,12 @@
+package com.obsidiandynamics.socketx.nio;
+
+import org.junit.*;
+
+import com.obsidiandynamics.assertion.*;
+
+public final class NioAttsTest {
+  @Test
+  public void testConformance() throws Exception {
+    Assertions.assertUtilityClassWellDefined(NioAtts.class);
+  }
+}
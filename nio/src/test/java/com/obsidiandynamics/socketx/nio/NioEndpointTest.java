@@ -0,0 +1,269 @@
+package com.obsidiandynamics.socketx.nio;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.socketx.*;
+import com.obsidiandynamics.socketx.attribute.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  Tests the semantics of a connection between an NIO client and server, which the integration 
+ *  tests cover only in part.
+ */
+public final class NioEndpointTest {
+  private static final int PORT = SocketUtils.getAvailablePort(8090);
+  
+  private static final int TIMEOUT = 10_000;
+  
+  private XServer<NioEndpoint> server;
+  
+  private XClient<NioEndpoint> client;
+  
+  private XEndpointListener<NioEndpoint> serverListener;
+  
+  private XEndpointListener<NioEndpoint> clientListener;
+  
+  @Before
+  public void before() {
+    serverListener = createMockListener();
+    clientListener = createMockListener();
+  }
+  
+  @After
+  public void after() throws Exception {
+    if (client != null) client.close();
+    if (server != null) server.close();
+    client = null;
+    server = null;
+  }
+  
+  @SuppressWarnings("unchecked")
+  private static XEndpointListener<NioEndpoint> createMockListener() {
+    return mock(XEndpointListener.class);
+  }
+  
+  private static XServerConfig getServerConfig() {
+    return new XServerConfig() {{
+      port = PORT;
+    }};
+  }
+  
+  private NioEndpoint connect(XServerConfig serverConfig, XClientConfig clientConfig, 
+                                   XEndpointListener<NioEndpoint> serverListener) throws Exception {
+    server = NioServer.factory().create(serverConfig, serverListener);
+    client = NioClient.factory().create(clientConfig);
+    final NioEndpoint endpoint = client.connect(new URI("ws://localhost:" + PORT + "/"), clientListener);
+    verify(serverListener, timeout(TIMEOUT)).onConnect(notNull());
+    return endpoint;
+  }
+  
+  private NioEndpoint getServerEndpoint() {
+    return server.getEndpointManager().getEndpoints().iterator().next();
+  }
+  
+  @Test
+  public void testSend() throws Exception {
+    final NioEndpoint endpoint = connect(getServerConfig(), new XClientConfig(), serverListener);
+    verify(clientListener).onConnect(endpoint);
+    final XSendCallback callback = mock(XSendCallback.class);
+    endpoint.send("test", callback);
+    final ByteBuffer payload = ByteBuffer.wrap("test".getBytes());
+    endpoint.send(payload, callback);
+    
+    verify(serverListener, timeout(TIMEOUT)).onText(notNull(), eq("test"));
+    verify(serverListener, timeout(TIMEOUT)).onBinary(notNull(), eq(ByteBuffer.wrap("test".getBytes())));
+    verify(callback, timeout(TIMEOUT).times(2)).onComplete(endpoint);
+    assertEquals(0, payload.position());
+    assertEquals(0, endpoint.getBacklog());
+    assertEquals(PORT, endpoint.getRemoteAddress().getPort());
+    assertNotNull(getServerEndpoint().getRemoteAddress());
+  }
+  
+  @Test
+  public void testPing() throws Exception {
+    final NioEndpoint endpoint = connect(getServerConfig(), new XClientConfig(), serverListener);
+    endpoint.sendPing();
+    verify(serverListener, timeout(TIMEOUT)).onPing(notNull(), notNull());
+    verify(clientListener, timeout(TIMEOUT)).onPong(eq(endpoint), notNull());
+  }
+  
+  @Test
+  public void testHighWaterMark() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> release.await(TIMEOUT, TimeUnit.MILLISECONDS)).when(serverListener).onText(any(), any());
+    final NioEndpoint endpoint = connect(getServerConfig(), new XClientConfig().withHighWaterMark(1), serverListener);
+    final XSendCallback callback = mock(XSendCallback.class);
+    try {
+      for (int i = 0; i < 10; i++) {
+        endpoint.send("test", callback);
+        assertTrue("backlog=" + endpoint.getBacklog(), endpoint.getBacklog() <= 1);
+      }
+      verify(callback, atLeastOnce()).onSkip(endpoint);
+    } finally {
+      release.countDown();
+    }
+  }
+  
+  @Test
+  public void testSuspendReceives() throws Exception {
+    final NioEndpoint endpoint = connect(getServerConfig(), new XClientConfig(), serverListener);
+    final NioEndpoint serverEndpoint = getServerEndpoint();
+    serverEndpoint.suspendReceives();
+    serverEndpoint.suspendReceives();
+    endpoint.send("test");
+    Thread.sleep(100);
+    verify(serverListener, never()).onText(any(), any());
+    
+    assertTrue(serverEndpoint.isReceivesSuspended());
+    
+    serverEndpoint.resumeReceives();
+    Thread.sleep(100);
+    verify(serverListener, never()).onText(any(), any());
+    assertTrue(serverEndpoint.isReceivesSuspended());
+    
+    serverEndpoint.resumeReceives();
+    verify(serverListener, timeout(TIMEOUT)).onText(serverEndpoint, "test");
+    assertFalse(serverEndpoint.isReceivesSuspended());
+    
+    serverEndpoint.resumeReceives();
+    assertFalse(serverEndpoint.isReceivesSuspended());
+  }
+  
+  @Test
+  public void testClose() throws Exception {
+    final NioEndpoint endpoint = connect(getServerConfig(), new XClientConfig(), serverListener);
+    endpoint.close();
+    endpoint.close();
+    assertTrue(endpoint.awaitClose(TIMEOUT));
+    
+    verify(serverListener, timeout(TIMEOUT)).onDisconnect(notNull(), eq(1000), any());
+    verify(clientListener, timeout(TIMEOUT)).onDisconnect(eq(endpoint), eq(1000), any());
+    verify(serverListener, timeout(TIMEOUT)).onClose(notNull());
+    verify(clientListener, timeout(TIMEOUT)).onClose(endpoint);
+    assertTrue(client.getEndpoints().isEmpty());
+    
+    final XSendCallback callback = mock(XSendCallback.class);
+    endpoint.send("test", callback);
+    verify(callback).onError(eq(endpoint), isA(ClosedChannelException.class));
+  }
+  
+  @Test
+  public void testTerminate() throws Exception {
+    final NioEndpoint endpoint = connect(getServerConfig(), new XClientConfig(), serverListener);
+    getServerEndpoint().terminate();
+    assertTrue(endpoint.awaitClose(TIMEOUT));
+    
+    verify(serverListener, timeout(TIMEOUT)).onClose(notNull());
+    verify(clientListener, timeout(TIMEOUT)).onClose(endpoint);
+    verify(serverListener, never()).onDisconnect(any(), anyInt(), any());
+    verify(clientListener, never()).onDisconnect(any(), anyInt(), any());
+  }
+  
+  @Test
+  public void testMessageTooBig() throws Exception {
+    final NioEndpoint endpoint = connect(getServerConfig().withMaxMessageSize(4), new XClientConfig(), serverListener);
+    endpoint.send("tests");
+    
+    verify(serverListener, timeout(TIMEOUT)).onError(notNull(), isA(IOException.class));
+    verify(clientListener, timeout(TIMEOUT)).onDisconnect(eq(endpoint), eq(1009), any());
+    verify(serverListener, never()).onText(any(), any());
+    assertTrue(endpoint.awaitClose(TIMEOUT));
+  }
+  
+  @Test
+  public void testListenerError() throws Exception {
+    final RuntimeException error = new RuntimeException("Boom");
+    doThrow(error).when(serverListener).onText(any(), eq("boom"));
+    final NioEndpoint endpoint = connect(getServerConfig(), new XClientConfig(), serverListener);
+    final NioEndpoint other = client.connect(new URI("ws://localhost:" + PORT + "/"), clientListener);
+    endpoint.send("boom");
+    
+    verify(serverListener, timeout(TIMEOUT)).onError(notNull(), eq(error));
+    verify(serverListener, timeout(TIMEOUT)).onClose(notNull());
+    assertTrue(endpoint.awaitClose(TIMEOUT));
+    
+    other.send("test");
+    verify(serverListener, timeout(TIMEOUT)).onText(notNull(), eq("test"));
+    assertEquals(1, server.getEndpointManager().getEndpoints().size());
+  }
+  
+  @Test
+  public void testPartialListener() throws Exception {
+    @SuppressWarnings("unchecked")
+    final XEndpointPartialListener<NioEndpoint> partialListener = mock(XEndpointPartialListener.class);
+    final NioEndpoint endpoint = connect(getServerConfig(), new XClientConfig(), partialListener);
+    endpoint.send(ByteBuffer.wrap("test".getBytes()));
+    
+    verify(partialListener, timeout(TIMEOUT)).onBinaryFragment(notNull(), eq(ByteBuffer.wrap("test".getBytes())), eq(true));
+  }
+  
+  @Test
+  public void testSubprotocol() throws Exception {
+    final NioEndpoint endpoint = connect(getServerConfig().withSubprotocols("b", "a"), 
+                                              new XClientConfig().withSubprotocols("c", "a", "b"), serverListener);
+    assertEquals("a", endpoint.getSubprotocol());
+    assertEquals("a", getServerEndpoint().getSubprotocol());
+  }
+  
+  @Test
+  public void testReactorStopped() throws Exception {
+    final NioEndpoint endpoint = connect(getServerConfig(), new XClientConfig(), serverListener);
+    endpoint.getIoExecutor().close();
+    verify(clientListener).onClose(endpoint);
+    assertTrue(client.getEndpoints().isEmpty());
+    
+    final XSendCallback callback = mock(XSendCallback.class);
+    endpoint.send("test", callback);
+    verify(callback).onError(eq(endpoint), isA(ClosedChannelException.class));
+  }
+  
+  @Test
+  public void testServerHandshakeTimeout() throws Exception {
+    server = NioServer.factory().create(getServerConfig()
+                                        .withAttributes(new AttributeMap().with(NioAtts.HANDSHAKE_TIMEOUT_MILLIS, 100)), 
+                                        serverListener);
+    try (Socket socket = new Socket("localhost", PORT)) {
+      socket.setSoTimeout(TIMEOUT);
+      assertEquals(-1, socket.getInputStream().read());
+    }
+    verify(serverListener, never()).onConnect(any());
+  }
+  
+  @Test(expected=SocketTimeoutException.class)
+  public void testClientHandshakeTimeout() throws Exception {
+    try (ServerSocket serverSocket = new ServerSocket(PORT)) {
+      client = NioClient.factory().create(new XClientConfig()
+                                          .withAttributes(new AttributeMap().with(NioAtts.HANDSHAKE_TIMEOUT_MILLIS, 100)));
+      client.connect(new URI("ws://localhost:" + PORT + "/"), clientListener);
+    }
+  }
+  
+    @Test(expected=BindException.class)
+  public void testPortInUse() throws Exception {
+    server = NioServer.factory().create(getServerConfig(), serverListener);
+    NioServer.factory().create(getServerConfig(), serverListener);
+  }
+  
+  @Test(expected=ConnectException.class)
+  public void testConnectionRefused() throws Exception {
+    client = NioClient.factory().create(new XClientConfig());
+    client.connect(new URI("ws://localhost:" + PORT + "/"), clientListener);
+  }
+  
+  @Test(expected=IOException.class)
+  public void testNoEndpointAtPath() throws Exception {
+    server = NioServer.factory().create(getServerConfig(), serverListener);
+    client = NioClient.factory().create(new XClientConfig());
+    client.connect(new URI("ws://localhost:" + PORT + "/other"), clientListener);
+  }
+}
@@ -0,0 +1,124 @@
+package com.obsidiandynamics.socketx;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ *  Opens a large number of client connections to the same URI, as is typical of ramping up
+ *  a load test. Connections are opened with {@link XClient#connectAsync}, so that a single
+ *  thread is able to keep many connection attempts in flight; the number of attempts in
+ *  flight is bounded by the maximum concurrency, and the attempts may optionally be paced
+ *  at a fixed rate.<p>
+ *
+ *  A connector may be reused, but shouldn't be reconfigured while connecting.
+ *
+ *  @param <E> The endpoint type.
+ */
+public final class BulkConnector<E extends XEndpoint> {
+  private final XClient<E> client;
+  
+  private int maxConcurrency = 1_000;
+  
+  private int connectRate;
+  
+  /**
+   *  Creates a connector for the given client.
+   *
+   *  @param client The client to connect with.
+   */
+  public BulkConnector(XClient<E> client) {
+    this.client = client;
+  }
+  
+  /**
+   *  Sets the maximum number of connection attempts that may be in flight at any one time.
+   *  The default is 1,000.
+   *
+   *  @param maxConcurrency The maximum number of outstanding attempts.
+   *  @return This connector for chaining.
+   */
+  public BulkConnector<E> withMaxConcurrency(int maxConcurrency) {
+    if (maxConcurrency < 1) throw new IllegalArgumentException("Max concurrency must be at least 1");
+    this.maxConcurrency = maxConcurrency;
+    return this;
+  }
+  
+  /**
+   *  Sets the rate at which connection attempts are started, in connections per second. The
+   *  default is 0, in which case attempts are only held back by the maximum concurrency.
+   *
+   *  @param connectRate The connection rate, or 0 for unpaced.
+   *  @return This connector for chaining.
+   */
+  public BulkConnector<E> withConnectRate(int connectRate) {
+    if (connectRate < 0) throw new IllegalArgumentException("Connect rate cannot be negative");
+    this.connectRate = connectRate;
+    return this;
+  }
+  
+  /**
+   *  Opens the given number of connections, blocking until all attempts have completed.<p>
+   *
+   *  Upon the first failed attempt, no further attempts are started, and the failure is
+   *  rethrown once the outstanding attempts have completed. The connections opened up to that
+   *  point are left open, and may be obtained from {@link XClient#getEndpoints()}.
+   *
+   *  @param uri The endpoint URI. (ws://... or wss:/...)
+   *  @param connections The number of connections to open.
+   *  @param listener The listener for all endpoints.
+   *  @return The endpoints, in the order that their connection attempts were started.
+   *  @throws Exception If a connection attempt failed.
+   */
+  public List<E> connect(URI uri, int connections, XEndpointListener<? super E> listener) throws Exception {
+    final Semaphore permits = new Semaphore(maxConcurrency);
+    final AtomicReferenceArray<E> endpoints = new AtomicReferenceArray<>(connections);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final long start = System.nanoTime();
+    
+    try {
+      for (int i = 0; i < connections && error.get() == null; i++) {
+        if (connectRate != 0) {
+          final long due = start + i * 1_000_000_000L / connectRate;
+          for (long wait; (wait = due - System.nanoTime()) > 0;) {
+            LockSupport.parkNanos(wait);
+          }
+        }
+        
+        permits.acquire();
+        final int index = i;
+        try {
+          client.connectAsync(uri, listener).whenComplete((endpoint, cause) -> {
+            if (cause == null) {
+              endpoints.set(index, endpoint);
+            } else {
+              error.compareAndSet(null, cause);
+            }
+            permits.release();
+          });
+        } catch (Throwable e) {
+          error.compareAndSet(null, e);
+          permits.release();
+        }
+      }
+    } finally {
+      permits.acquireUninterruptibly(maxConcurrency);
+      permits.release(maxConcurrency);
+    }
+    
+    final Throwable cause = error.get();
+    if (cause != null) {
+      final Throwable unwrapped = cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+      if (unwrapped instanceof Error) throw (Error) unwrapped;
+      throw unwrapped instanceof Exception ? (Exception) unwrapped : new ExecutionException(unwrapped);
+    }
+    
+    final List<E> list = new ArrayList<>(connections);
+    for (int i = 0; i < connections; i++) {
+      list.add(endpoints.get(i));
+    }
+    return list;
+  }
+}
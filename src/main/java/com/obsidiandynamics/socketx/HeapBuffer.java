@@ -0,0 +1,22 @@
+package com.obsidiandynamics.socketx;
+
+import java.nio.*;
+
+/**
+ *  An unpooled {@link XBuffer}, backed by the heap; releasing it is a no-op.
+ */
+final class HeapBuffer implements XBuffer {
+  private final ByteBuffer buffer;
+  
+  HeapBuffer(int capacity) {
+    buffer = ByteBuffer.allocate(capacity);
+  }
+
+  @Override
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  @Override
+  public void release() {}
+}
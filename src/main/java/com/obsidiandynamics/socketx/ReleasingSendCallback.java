@@ -0,0 +1,34 @@
+package com.obsidiandynamics.socketx;
+
+/**
+ *  Releases an {@link XBuffer} once its send has completed, failed or been skipped, before
+ *  passing the outcome on to the application's callback, if one was given.
+ */
+final class ReleasingSendCallback implements XSendCallback {
+  private final XBuffer buffer;
+  
+  private final XSendCallback callback;
+  
+  ReleasingSendCallback(XBuffer buffer, XSendCallback callback) {
+    this.buffer = buffer;
+    this.callback = callback;
+  }
+
+  @Override
+  public void onComplete(XEndpoint endpoint) {
+    buffer.release();
+    if (callback != null) callback.onComplete(endpoint);
+  }
+
+  @Override
+  public void onError(XEndpoint endpoint, Throwable cause) {
+    buffer.release();
+    if (callback != null) callback.onError(endpoint, cause);
+  }
+
+  @Override
+  public void onSkip(XEndpoint endpoint) {
+    buffer.release();
+    if (callback != null) callback.onSkip(endpoint);
+  }
+}
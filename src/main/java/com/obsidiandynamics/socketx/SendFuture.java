@@ -0,0 +1,26 @@
+package com.obsidiandynamics.socketx;
+
+import java.util.concurrent.*;
+
+/**
+ *  A future that doubles as the {@link XSendCallback} of the send it tracks, so that 
+ *  {@link XEndpoint#sendAsync(String)} and {@link XEndpoint#sendAsync(java.nio.ByteBuffer)} 
+ *  allocate a single object per send. The future completes with {@code true} once the message
+ *  has been sent, with {@code false} if it was skipped, and exceptionally if the send failed.
+ */
+final class SendFuture extends CompletableFuture<Boolean> implements XSendCallback {
+  @Override
+  public void onComplete(XEndpoint endpoint) {
+    complete(true);
+  }
+
+  @Override
+  public void onError(XEndpoint endpoint, Throwable cause) {
+    completeExceptionally(cause);
+  }
+
+  @Override
+  public void onSkip(XEndpoint endpoint) {
+    complete(false);
+  }
+}
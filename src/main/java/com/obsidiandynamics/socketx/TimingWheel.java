@@ -0,0 +1,148 @@
+package com.obsidiandynamics.socketx;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ *  A hierarchical timing wheel, tracking a deadline for each scheduled item.<p>
+ *  
+ *  Time is divided into ticks of a fixed duration. The wheel comprises {@link #LEVELS} levels
+ *  of {@link #SLOTS} slots each, the slots at every level spanning {@link #SLOTS} times as many 
+ *  ticks as the slots at the level below. Scheduling an item is O(1); advancing the wheel by one 
+ *  tick costs O(1) plus the number of items that expire or cascade to a lower level. Items 
+ *  beyond the range of the top level are parked and re-examined at each top-level slot boundary.<p>
+ *  
+ *  This class is not thread-safe.
+ *
+ *  @param <T> The item type.
+ */
+final class TimingWheel<T> {
+  static final int SLOT_BITS = 6;
+  
+  static final int SLOTS = 1 << SLOT_BITS;
+  
+  private static final int SLOT_MASK = SLOTS - 1;
+  
+  static final int LEVELS = 4;
+  
+  private static final class Timer<T> {
+    final T item;
+    
+    final long deadlineTick;
+
+    Timer(T item, long deadlineTick) {
+      this.item = item;
+      this.deadlineTick = deadlineTick;
+    }
+  }
+  
+  private final long tickMillis;
+  
+  private final long originMillis;
+  
+  private final ArrayDeque<Timer<T>>[][] slots;
+  
+  private long currentTick;
+  
+  private int size;
+  
+  @SuppressWarnings("unchecked")
+  TimingWheel(long tickMillis, long originMillis) {
+    if (tickMillis <= 0) throw new IllegalArgumentException("Tick duration must be positive");
+    this.tickMillis = tickMillis;
+    this.originMillis = originMillis;
+    slots = new ArrayDeque[LEVELS][SLOTS];
+    for (int level = 0; level < LEVELS; level++) {
+      for (int slot = 0; slot < SLOTS; slot++) {
+        slots[level][slot] = new ArrayDeque<>();
+      }
+    }
+  }
+  
+  /**
+   *  Schedules an item to expire at the given time. Deadlines that fall on or before the 
+   *  current tick are deferred to the next tick. Items expire no earlier than their deadline, 
+   *  and no later than one tick after it.
+   *  
+   *  @param item The item to schedule.
+   *  @param deadlineMillis The deadline, in epoch milliseconds.
+   */
+  void schedule(T item, long deadlineMillis) {
+    final long deadlineTick = Math.max(ceilTick(deadlineMillis), currentTick + 1);
+    insert(new Timer<>(item, deadlineTick));
+    size++;
+  }
+  
+  /**
+   *  Advances the wheel to the given time, handing each expired item to the {@code expiry} 
+   *  consumer. The consumer may safely reschedule items.
+   *  
+   *  @param nowMillis The current time, in epoch milliseconds.
+   *  @param expiry Receives expired items.
+   */
+  void advance(long nowMillis, Consumer<? super T> expiry) {
+    final long targetTick = floorTick(nowMillis);
+    while (currentTick < targetTick) {
+      currentTick++;
+      cascade();
+      final ArrayDeque<Timer<T>> slot = slots[0][(int) (currentTick & SLOT_MASK)];
+      for (int remaining = slot.size(); remaining > 0; remaining--) {
+        final Timer<T> timer = slot.poll();
+        size--;
+        expiry.accept(timer.item);
+      }
+    }
+  }
+  
+  /**
+   *  Obtains the number of scheduled items.
+   *  
+   *  @return The number of items.
+   */
+  int size() {
+    return size;
+  }
+  
+  private void cascade() {
+    for (int level = LEVELS - 1; level > 0; level--) {
+      final int shift = SLOT_BITS * level;
+      if ((currentTick & ((1L << shift) - 1)) == 0) {
+        final ArrayDeque<Timer<T>> slot = slots[level][(int) ((currentTick >>> shift) & SLOT_MASK)];
+        for (int remaining = slot.size(); remaining > 0; remaining--) {
+          insert(slot.poll());
+        }
+      }
+    }
+  }
+  
+  /**
+   *  Places a timer at the lowest level whose slot boundaries separate its deadline from the 
+   *  current tick. The timer will then be cascaded to successively lower levels as the wheel 
+   *  advances, reaching level 0 in time to expire at its deadline tick.
+   *  
+   *  @param timer The timer to insert.
+   */
+  private void insert(Timer<T> timer) {
+    final long divergence = timer.deadlineTick ^ currentTick;
+    final int level = (63 - Long.numberOfLeadingZeros(divergence)) / SLOT_BITS;
+    if (level < LEVELS) {
+      final int slot = (int) ((timer.deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+      slots[level][slot].add(timer);
+    } else {
+      // beyond the range of the wheel; park in the next top-level slot to be cascaded
+      final int topShift = SLOT_BITS * (LEVELS - 1);
+      final int slot = (int) (((currentTick >>> topShift) + 1) & SLOT_MASK);
+      slots[LEVELS - 1][slot].add(timer);
+    }
+  }
+  
+  private long floorTick(long millis) {
+    final long elapsed = millis - originMillis;
+    return elapsed <= 0 ? 0 : elapsed / tickMillis;
+  }
+  
+  private long ceilTick(long millis) {
+    final long elapsed = millis - originMillis;
+    return elapsed <= 0 ? 0 : (elapsed + tickMillis - 1) / tickMillis;
+  }
+}
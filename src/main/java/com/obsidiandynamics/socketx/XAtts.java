@@ -0,0 +1,24 @@
+package com.obsidiandynamics.socketx;
+
+import com.obsidiandynamics.socketx.attribute.Attribute;
+import com.obsidiandynamics.socketx.attribute.Constant;
+
+/**
+ *  Attributes that are understood by all providers.
+ */
+public final class XAtts {
+  /** The number of scanner threads, among which endpoints are divided. */
+  public static final Attribute<Integer> SCANNER_SHARDS = new Attribute<Integer>("socketx.scanner.shards")
+      .withMin(Constant.of(1))
+      .withDefault(Constant.of(1));
+  
+  /** The number of acceptors per listening port, where {@code 0} leaves the choice to the provider. 
+   *  Providers with native {@code SO_REUSEPORT} support bind a separate listening socket for each
+   *  acceptor; others share a single socket among the acceptor threads. Undertow, whose I/O 
+   *  threads all accept from the listening socket, ignores it. Server-side only. */
+  public static final Attribute<Integer> ACCEPTORS = new Attribute<Integer>("socketx.acceptors")
+      .withMin(Constant.of(0))
+      .withDefault(Constant.of(0));
+  
+  private XAtts() {}
+}
@@ -0,0 +1,29 @@
+package com.obsidiandynamics.socketx;
+
+import java.nio.*;
+
+/**
+ *  An outbound buffer obtained from {@link XEndpoint#allocate(int)}, typically drawn from a
+ *  pool maintained by the underlying provider, and possibly direct.<p>
+ *  
+ *  The payload is written into {@link #getBuffer()}, starting at position zero. Passing the
+ *  buffer to {@link XEndpoint#send(XBuffer, XSendCallback)} sends the bytes written so far (up
+ *  to the buffer's position) and transfers ownership of the buffer to the endpoint, which 
+ *  recycles it once the send completes (or fails, or is skipped). A buffer that isn't sent
+ *  must be handed back with {@link #release()}. Either way, the buffer must not be accessed 
+ *  afterwards.
+ */
+public interface XBuffer {
+  /**
+   *  Obtains the underlying buffer, for writing the payload into. Initially, the position is 
+   *  zero and the limit is the requested capacity.
+   *  
+   *  @return The underlying buffer.
+   */
+  ByteBuffer getBuffer();
+  
+  /**
+   *  Returns the buffer to its pool without sending it.
+   */
+  void release();
+}
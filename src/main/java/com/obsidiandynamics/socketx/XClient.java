@@ -2,6 +2,7 @@ package com.obsidiandynamics.socketx;
 
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import com.obsidiandynamics.await.*;
 
@@ -21,6 +22,29 @@ public interface XClient<E extends XEndpoint> extends AutoCloseable {
    */
   E connect(URI uri, XEndpointListener<? super E> listener) throws Exception;
   
+  /**
+   *  Opens a new client connection asynchronously, returning a stage that completes with the 
+   *  endpoint once the connection succeeds, or exceptionally if it fails.<p>
+   *  
+   *  By default, this method connects on the calling thread, by way of 
+   *  {@link #connect(URI, XEndpointListener)}, returning a stage that has already completed. 
+   *  Providers that are able to connect without blocking override this method, completing 
+   *  the stage from an I/O thread; dependent actions should not block.
+   *  
+   *  @param uri The endpoint URI. (ws://... or wss:/...)
+   *  @param listener The endpoint listener.
+   *  @return A stage that completes with the connection object.
+   */
+  default CompletionStage<E> connectAsync(URI uri, XEndpointListener<? super E> listener) {
+    final CompletableFuture<E> future = new CompletableFuture<>();
+    try {
+      future.complete(connect(uri, listener));
+    } catch (Throwable e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+  
   /**
    *  Obtains the connected endpoints.
    *  
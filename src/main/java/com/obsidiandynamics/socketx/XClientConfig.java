@@ -1,5 +1,7 @@
 package com.obsidiandynamics.socketx;
 
+import java.util.*;
+
 import com.obsidiandynamics.socketx.ssl.*;
 import com.obsidiandynamics.yconf.*;
 
@@ -12,7 +14,12 @@ public class XClientConfig extends XEndpointConfig<XClientConfig> {
   @Override
   public String toString() {
     return "XClientConfig [idleTimeoutMillis: " + idleTimeoutMillis + ", scanIntervalMillis: " + scanIntervalMillis
-           + ", highWaterMark: " + highWaterMark + ", sslContextProvider: " + sslContextProvider
+           + ", scanMode: " + scanMode + ", highWaterMark: " + highWaterMark + ", highWaterMarkBytes: " + highWaterMarkBytes
+           + ", writeCoalesceMessages: " + writeCoalesceMessages + ", writeCoalesceDelayMicros: " + writeCoalesceDelayMicros
+           + ", maxMessageSize: " + maxMessageSize + ", compression: " + compression + ", compressionLevel: " + compressionLevel
+           + ", compressionWindowBits: " + compressionWindowBits + ", compressionContextTakeover: " + compressionContextTakeover
+           + ", compressionThreshold: " + compressionThreshold + ", subprotocols: " + Arrays.toString(subprotocols)
+           + ", sslContextProvider: " + sslContextProvider
            + ", attributes: " + attributes + "]";
   }
 }
@@ -3,9 +3,12 @@ package com.obsidiandynamics.socketx;
 import java.io.*;
 import java.net.*;
 import java.nio.*;
+import java.nio.channels.*;
 import java.time.*;
+import java.util.concurrent.*;
 
 import com.obsidiandynamics.await.*;
+import com.obsidiandynamics.socketx.util.*;
 
 /**
  *  The abstract definition of a WebSocket endpoint.
@@ -60,6 +63,180 @@ public interface XEndpoint extends AutoCloseable {
    */
   void send(ByteBuffer payload, XSendCallback callback);
   
+  /**
+   *  Allocates an outbound buffer of the given capacity, to be filled by the caller and then
+   *  sent with {@link #send(XBuffer, XSendCallback)}. Providers draw the buffer from their own 
+   *  pool, where possible, sparing the garbage collector from short-lived payload buffers.<p>
+   *  
+   *  By default, the buffer is allocated on the heap.
+   *  
+   *  @param capacity The required capacity, in bytes.
+   *  @return The buffer.
+   */
+  default XBuffer allocate(int capacity) {
+    return new HeapBuffer(capacity);
+  }
+  
+  /**
+   *  Asynchronously sends the contents of a buffer obtained from {@link #allocate(int)} as a 
+   *  binary frame, transferring the ownership of the buffer to this endpoint.
+   *  
+   *  @param buffer The buffer.
+   */
+  default void send(XBuffer buffer) {
+    send(buffer, null);
+  }
+  
+  /**
+   *  Asynchronously sends the contents of a buffer obtained from {@link #allocate(int)} as a 
+   *  binary frame, transferring the ownership of the buffer to this endpoint. The payload 
+   *  comprises the bytes from the start of the buffer up to its position. The buffer is
+   *  released once the send completes, fails or is skipped.<p>
+   *  
+   *  By default, the buffer is flipped and sent with {@link #send(ByteBuffer, XSendCallback)}.
+   *  
+   *  @param buffer The buffer.
+   *  @param callback Optional callback, invoked when the send completes (or fails).
+   */
+  default void send(XBuffer buffer, XSendCallback callback) {
+    final ByteBuffer payload = buffer.getBuffer();
+    payload.flip();
+    send(payload, new ReleasingSendCallback(buffer, callback));
+  }
+  
+  /**
+   *  Asynchronously sends a text frame, returning a stage that completes with {@code true} once
+   *  the message has been sent, or with {@code false} if it was skipped due to a breach of the 
+   *  high-water mark. If the send fails, the stage completes exceptionally.
+   *  
+   *  @param payload The payload.
+   *  @return The completion stage.
+   */
+  default CompletionStage<Boolean> sendAsync(String payload) {
+    final SendFuture future = new SendFuture();
+    send(payload, future);
+    return future;
+  }
+  
+  /**
+   *  Asynchronously sends a binary frame, returning a stage that completes with {@code true} once
+   *  the message has been sent, or with {@code false} if it was skipped due to a breach of the 
+   *  high-water mark. If the send fails, the stage completes exceptionally.
+   *  
+   *  @param payload The payload.
+   *  @return The completion stage.
+   */
+  default CompletionStage<Boolean> sendAsync(ByteBuffer payload) {
+    final SendFuture future = new SendFuture();
+    send(payload, future);
+    return future;
+  }
+  
+  /**
+   *  Asynchronously sends a batch of text frames, in the given order, flushing the 
+   *  underlying stream once for the entire batch where the provider supports it.
+   *  
+   *  @param payloads The payloads.
+   */
+  default void sendBatch(String[] payloads) {
+    sendBatch(payloads, null);
+  }
+  
+  /**
+   *  Asynchronously sends a batch of text frames, in the given order. The high-water mark 
+   *  applies to each message individually.<p>
+   *  
+   *  A provider may write the batch with a single flush. By default, each message is sent 
+   *  with {@link #send(String, XSendCallback)}, so that the batch is only gathered into fewer 
+   *  writes where the provider's I/O thread lags behind.
+   *  
+   *  @param payloads The payloads.
+   *  @param callback Optional callback, invoked for each message when its send completes (or fails).
+   */
+  default void sendBatch(String[] payloads, XSendCallback callback) {
+    for (String payload : payloads) {
+      send(payload, callback);
+    }
+  }
+  
+  /**
+   *  Asynchronously sends a batch of binary frames, in the given order, flushing the 
+   *  underlying stream once for the entire batch where the provider supports it.
+   *  
+   *  @param payloads The payloads.
+   */
+  default void sendBatch(ByteBuffer[] payloads) {
+    sendBatch(payloads, null);
+  }
+  
+  /**
+   *  Asynchronously sends a batch of binary frames, in the given order. The high-water mark 
+   *  applies to each message individually.<p>
+   *  
+   *  A provider may write the batch with a single flush. By default, each message is sent 
+   *  with {@link #send(ByteBuffer, XSendCallback)}, so that the batch is only gathered into 
+   *  fewer writes where the provider's I/O thread lags behind.
+   *  
+   *  @param payloads The payloads.
+   *  @param callback Optional callback, invoked for each message when its send completes (or fails).
+   */
+  default void sendBatch(ByteBuffer[] payloads, XSendCallback callback) {
+    for (ByteBuffer payload : payloads) {
+      send(payload, callback);
+    }
+  }
+  
+  /**
+   *  Sends the contents of a stream as a single binary message, reading and transmitting
+   *  it in fragments of the given size so that large payloads needn't be held in memory
+   *  in their entirety.
+   *  
+   *  @param source The stream to send; read until exhausted, but not closed.
+   *  @param fragmentSize The maximum size of each fragment, in bytes.
+   *  @throws IOException If the stream could not be read or the message could not be sent.
+   *  @see #sendStream(ReadableByteChannel, int)
+   */
+  default void sendStream(InputStream source, int fragmentSize) throws IOException {
+    sendStream(Channels.newChannel(source), fragmentSize);
+  }
+  
+  /**
+   *  Sends the contents of a channel as a single binary message, reading and transmitting
+   *  it in fragments of the given size so that large payloads needn't be held in memory
+   *  in their entirety. The source should be in blocking mode.<p>
+   *  
+   *  This method blocks until the last fragment has been sent, and must not be called from
+   *  the endpoint's I/O thread. No other data messages may be sent on this endpoint until it 
+   *  returns. Where the message is sent in fragments, the high-water mark doesn't apply.<p>
+   *  
+   *  By default, the stream is read in its entirety and sent as a single frame, to which the
+   *  high-water mark does apply; a message that is skipped results in an {@link IOException}.
+   *  
+   *  @param source The channel to send; read until exhausted, but not closed.
+   *  @param fragmentSize The maximum size of each fragment, in bytes.
+   *  @throws IOException If the channel could not be read, or the message could not be sent or
+   *          was skipped due to a breach of the high-water mark.
+   */
+  default void sendStream(ReadableByteChannel source, int fragmentSize) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final FragmentReader reader = new FragmentReader(source, fragmentSize);
+    do {
+      final ByteBuffer fragment = reader.next();
+      out.write(fragment.array(), fragment.position(), fragment.remaining());
+    } while (! reader.isLast());
+    
+    final boolean sent;
+    try {
+      sent = sendAsync(ByteBuffer.wrap(out.toByteArray())).toCompletableFuture().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while sending stream");
+    } catch (ExecutionException e) {
+      throw new IOException("Error sending stream", e.getCause());
+    }
+    if (! sent) throw new IOException("Stream skipped: high-water mark breached");
+  }
+  
   /**
    *  Flushing the underlying stream. Depending on the implementation, this method may block.
    *  
@@ -86,12 +263,80 @@ public interface XEndpoint extends AutoCloseable {
    */
   InetSocketAddress getRemoteAddress();
   
+  /**
+   *  Obtains the subprotocol agreed upon in the opening handshake. The subprotocols on offer
+   *  are set with {@link XEndpointConfig#withSubprotocols(String...)}.
+   *  
+   *  @return The subprotocol, or {@code null} if none was agreed upon (or the handshake is yet
+   *          to complete).
+   */
+  default String getSubprotocol() {
+    return null;
+  }
+  
   /**
    *  Obtains the send backlog - the number of messages queued for sending but yet to be confirmed.
    *  
    *  @return The number of backlogged messages.
    */
   long getBacklog();
+  
+  /**
+   *  Obtains the send backlog in bytes - the combined length of the messages queued for sending 
+   *  but yet to be confirmed. Text messages are counted by their length in characters. Bytes are
+   *  only tracked when a byte-based high-water mark has been set; otherwise, this method returns 
+   *  {@code 0}.
+   *  
+   *  @return The number of backlogged bytes.
+   */
+  default long getBacklogBytes() {
+    return 0;
+  }
+  
+  /**
+   *  Determines whether the endpoint is writable. An endpoint becomes unwritable when its
+   *  backlog reaches a high-water mark, and writable again once the backlog has drained 
+   *  sufficiently. Changes are reported to {@link XEndpointListener#onWritabilityChanged}.
+   *  
+   *  @return True if the endpoint is writable.
+   */
+  default boolean isWritable() {
+    return true;
+  }
+
+  /**
+   *  Stops reading from the connection, so that a consumer unable to keep up exerts backpressure
+   *  on the remote peer by way of TCP flow control. Messages that have already been read may
+   *  still be delivered.<p>
+   *
+   *  Suspensions are counted: receives remain suspended until each call to this method has
+   *  been matched by a call to {@link #resumeReceives()}, so that independent parties may each 
+   *  suspend receives without resuming them on another's behalf.<p>
+   *
+   *  By default, this method throws an {@link UnsupportedOperationException}.
+   */
+  default void suspendReceives() {
+    throw new UnsupportedOperationException("Suspending receives is not supported");
+  }
+
+  /**
+   *  Releases a suspension made by {@link #suspendReceives()}, resuming reads from the connection
+   *  if it was the last one outstanding. Has no effect if receives aren't suspended.<p>
+   *
+   *  By default, this method throws an {@link UnsupportedOperationException}.
+   */
+  default void resumeReceives() {
+    throw new UnsupportedOperationException("Suspending receives is not supported");
+  }
+
+  /**
+   *  Determines whether receives are suspended.
+   *
+   *  @return True if there is at least one outstanding suspension.
+   */
+  default boolean isReceivesSuspended() {
+    return false;
+  }
 
   /**
    *  Terminate the connection without sending the standard WebSocket close opcode.
@@ -116,6 +361,16 @@ public interface XEndpoint extends AutoCloseable {
     return ZonedDateTime.ofInstant(Instant.ofEpochMilli(getLastActivityTime()), ZoneOffset.systemDefault());
   }
   
+  /**
+   *  Obtains the executor that services this endpoint's I/O, such as an event loop, if the
+   *  provider exposes one. Tasks submitted to this executor run on the endpoint's I/O thread.
+   *  
+   *  @return The I/O executor, or {@code null} if the provider doesn't expose one.
+   */
+  default Executor getIoExecutor() {
+    return null;
+  }
+  
   /**
    *  Awaits the closure of the underlying channel, which implies that the close frame handshake
    *  would have been performed.
@@ -13,9 +13,42 @@ public abstract class XEndpointConfig<C extends XEndpointConfig<C>> {
   @YInject
   public int scanIntervalMillis = 1_000;
   
+  @YInject
+  public XEndpointScanner.Mode scanMode = XEndpointScanner.Mode.LINEAR;
+  
   @YInject
   public long highWaterMark = Long.MAX_VALUE;
   
+  @YInject
+  public long highWaterMarkBytes = Long.MAX_VALUE;
+  
+  @YInject
+  public int writeCoalesceMessages = 1;
+  
+  @YInject
+  public long writeCoalesceDelayMicros = 100;
+  
+  @YInject
+  public int maxMessageSize = 65_536;
+  
+  @YInject
+  public boolean compression;
+  
+  @YInject
+  public int compressionLevel = 6;
+  
+  @YInject
+  public int compressionWindowBits = 15;
+  
+  @YInject
+  public boolean compressionContextTakeover = true;
+  
+  @YInject
+  public int compressionThreshold;
+  
+  @YInject
+  public String[] subprotocols = new String[0];
+  
   @YInject
   public SSLContextProvider sslContextProvider;
   
@@ -27,6 +60,11 @@ public abstract class XEndpointConfig<C extends XEndpointConfig<C>> {
     return self();
   }
   
+  public final C withScanMode(XEndpointScanner.Mode scanMode) {
+    this.scanMode = scanMode;
+    return self();
+  }
+  
   public final boolean hasIdleTimeout() {
     return idleTimeoutMillis != 0;
   }
@@ -41,6 +79,129 @@ public abstract class XEndpointConfig<C extends XEndpointConfig<C>> {
     return self();
   }
   
+  public final C withHighWaterMarkBytes(long highWaterMarkBytes) {
+    this.highWaterMarkBytes = highWaterMarkBytes;
+    return self();
+  }
+  
+  public final boolean hasWriteCoalescing() {
+    return writeCoalesceMessages > 1;
+  }
+  
+  /**
+   *  Sets the maximum number of sends that may be coalesced into a single flush. A value 
+   *  of {@code 1} (the default) flushes every send, disabling coalescing.
+   *  
+   *  @param writeCoalesceMessages The maximum number of messages per flush.
+   *  @return This config object for chaining.
+   */
+  public final C withWriteCoalesceMessages(int writeCoalesceMessages) {
+    this.writeCoalesceMessages = writeCoalesceMessages;
+    return self();
+  }
+  
+  /**
+   *  Sets the maximum time that a coalesced send may be held back before it is flushed. Only 
+   *  applies when coalescing is enabled.
+   *  
+   *  @param writeCoalesceDelayMicros The maximum added latency, in microseconds.
+   *  @return This config object for chaining.
+   */
+  public final C withWriteCoalesceDelay(long writeCoalesceDelayMicros) {
+    this.writeCoalesceDelayMicros = writeCoalesceDelayMicros;
+    return self();
+  }
+  
+  /**
+   *  Sets the maximum size of an inbound frame, and of an inbound message once aggregated. 
+   *  Where the provider can, an oversized frame is rejected as soon as its header is read, 
+   *  before its payload is buffered, and the connection is closed. Binary messages delivered 
+   *  in fragments to an {@link XEndpointPartialListener} are not limited in their total size.
+   *  
+   *  @param maxMessageSize The maximum size, in bytes.
+   *  @return This config object for chaining.
+   */
+  public final C withMaxMessageSize(int maxMessageSize) {
+    this.maxMessageSize = maxMessageSize;
+    return self();
+  }
+  
+  /**
+   *  Enables or disables the permessage-deflate extension (RFC 7692). When enabled, a server
+   *  accepts the extension if offered by the client, and a client offers it to the server.
+   *  Enabled by default for a server (see {@link XServerConfig}), and disabled for a client.
+   *  
+   *  @param compression Whether compression is enabled.
+   *  @return This config object for chaining.
+   */
+  public final C withCompression(boolean compression) {
+    this.compression = compression;
+    return self();
+  }
+  
+  /**
+   *  Sets the deflate compression level, from {@code 0} (no compression) to {@code 9} (best
+   *  compression).
+   *  
+   *  @param compressionLevel The compression level.
+   *  @return This config object for chaining.
+   */
+  public final C withCompressionLevel(int compressionLevel) {
+    this.compressionLevel = compressionLevel;
+    return self();
+  }
+  
+  /**
+   *  Sets the base-two logarithm of the LZ77 sliding window size, from {@code 8} to {@code 15}
+   *  (the default). Smaller windows use less memory per connection, at the expense of the 
+   *  compression ratio.
+   *  
+   *  @param compressionWindowBits The window size, in bits.
+   *  @return This config object for chaining.
+   */
+  public final C withCompressionWindowBits(int compressionWindowBits) {
+    this.compressionWindowBits = compressionWindowBits;
+    return self();
+  }
+  
+  /**
+   *  Sets whether the compression context is carried over from one message to the next. 
+   *  Context takeover improves the compression of similar consecutive messages, but requires
+   *  the compressor's state to be retained for the life of the connection.
+   *  
+   *  @param compressionContextTakeover Whether context takeover is permitted.
+   *  @return This config object for chaining.
+   */
+  public final C withCompressionContextTakeover(boolean compressionContextTakeover) {
+    this.compressionContextTakeover = compressionContextTakeover;
+    return self();
+  }
+  
+  /**
+   *  Sets the size below which outbound messages are sent uncompressed, even if compression 
+   *  has been negotiated. Small messages compress poorly, and aren't worth the CPU time.
+   *  
+   *  @param compressionThreshold The minimum size of a compressed message, in bytes.
+   *  @return This config object for chaining.
+   */
+  public final C withCompressionThreshold(int compressionThreshold) {
+    this.compressionThreshold = compressionThreshold;
+    return self();
+  }
+  
+  /**
+   *  Sets the subprotocols supported by this endpoint, in order of preference. A client offers
+   *  these to the server, which selects the first of the client's subprotocols that it also
+   *  supports. The outcome is available from {@link XEndpoint#getSubprotocol()}.
+   *  
+   *  @param subprotocols The supported subprotocols.
+   *  @return This config object for chaining.
+   */
+  public final C withSubprotocols(String... subprotocols) {
+    this.subprotocols = subprotocols;
+    return self();
+  }
+  
   public final C withSSLContextProvider(SSLContextProvider sslContextProvider) {
     this.sslContextProvider = sslContextProvider;
     return self();
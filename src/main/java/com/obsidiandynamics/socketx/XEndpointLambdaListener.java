@@ -35,6 +35,10 @@ public class XEndpointLambdaListener<E extends XEndpoint> implements XEndpointLi
     void onError(E endpoint, Throwable cause);
   }
   
+  @FunctionalInterface public interface OnWritabilityChanged<E extends XEndpoint> {
+    void onWritabilityChanged(E endpoint, boolean writable);
+  }
+  
   private OnConnect<? super E> onConnect;
   
   private OnText<? super E> onText;
@@ -51,6 +55,8 @@ public class XEndpointLambdaListener<E extends XEndpoint> implements XEndpointLi
   
   private OnError<? super E> onError;
   
+  private OnWritabilityChanged<? super E> onWritabilityChanged;
+  
   @Override
   public void onConnect(E endpoint) {
     if (onConnect != null) onConnect.onConnect(endpoint);
@@ -91,6 +97,11 @@ public class XEndpointLambdaListener<E extends XEndpoint> implements XEndpointLi
     if (onError != null) onError.onError(endpoint, cause);
   }
 
+  @Override
+  public void onWritabilityChanged(E endpoint, boolean writable) {
+    if (onWritabilityChanged != null) onWritabilityChanged.onWritabilityChanged(endpoint, writable);
+  }
+
   public final XEndpointLambdaListener<E> onConnect(OnConnect<? super E> onConnect) {
     this.onConnect = onConnect;
     return this;
@@ -130,4 +141,9 @@ public class XEndpointLambdaListener<E extends XEndpoint> implements XEndpointLi
     this.onError = onError;
     return this;
   }
+
+  public final XEndpointLambdaListener<E> onWritabilityChanged(OnWritabilityChanged<? super E> onWritabilityChanged) {
+    this.onWritabilityChanged = onWritabilityChanged;
+    return this;
+  }
 }
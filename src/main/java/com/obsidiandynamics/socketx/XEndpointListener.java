@@ -18,4 +18,14 @@ public interface XEndpointListener<E extends XEndpoint> {
   void onClose(E endpoint);
   
   void onError(E endpoint, Throwable cause);
+  
+  /**
+   *  Invoked when the writability of the endpoint changes, allowing a producer to pause 
+   *  sending when the endpoint becomes unwritable, and to resume once it becomes writable
+   *  again. Does nothing by default.
+   *  
+   *  @param endpoint The endpoint.
+   *  @param writable Whether the endpoint is now writable.
+   */
+  default void onWritabilityChanged(E endpoint, boolean writable) {}
 }
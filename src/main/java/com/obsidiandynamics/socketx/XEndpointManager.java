@@ -1,5 +1,6 @@
 package com.obsidiandynamics.socketx;
 
+import java.nio.*;
 import java.util.*;
 
 /**
@@ -14,4 +15,38 @@ public interface XEndpointManager<E extends XEndpoint> {
    *  @return The connected endpoints.
    */
   Collection<E> getEndpoints();
+  
+  /**
+   *  Asynchronously sends the same binary frame to each of the given endpoints.<p>
+   *  
+   *  The high-water mark and the callback apply to each endpoint individually, as if 
+   *  {@link XEndpoint#send(ByteBuffer, XSendCallback)} was called once for each endpoint.
+   *  Providers may encode the frame once and share it among all recipients; the payload 
+   *  must therefore not be modified after calling this method.
+   *  
+   *  @param endpoints The target endpoints.
+   *  @param payload The payload.
+   *  @param callback Optional callback, invoked for each endpoint when its send completes (or fails).
+   */
+  default void broadcast(Collection<? extends E> endpoints, ByteBuffer payload, XSendCallback callback) {
+    for (E endpoint : endpoints) {
+      endpoint.send(payload.duplicate(), callback);
+    }
+  }
+  
+  /**
+   *  Asynchronously sends the same text frame to each of the given endpoints.<p>
+   *  
+   *  The high-water mark and the callback apply to each endpoint individually, as if 
+   *  {@link XEndpoint#send(String, XSendCallback)} was called once for each endpoint.
+   *  
+   *  @param endpoints The target endpoints.
+   *  @param payload The payload.
+   *  @param callback Optional callback, invoked for each endpoint when its send completes (or fails).
+   */
+  default void broadcast(Collection<? extends E> endpoints, String payload, XSendCallback callback) {
+    for (E endpoint : endpoints) {
+      endpoint.send(payload, callback);
+    }
+  }
 }
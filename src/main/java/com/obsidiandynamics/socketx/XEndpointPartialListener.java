@@ -0,0 +1,33 @@
+package com.obsidiandynamics.socketx;
+
+import java.nio.*;
+
+/**
+ *  A listener that receives binary messages in fragments, as they arrive, rather than
+ *  aggregated into whole messages. Providers deliver binary messages to a listener that
+ *  implements this interface via {@link #onBinaryFragment}, in lieu of 
+ *  {@link XEndpointListener#onBinary}. Text messages are delivered whole, as usual.<p>
+ *  
+ *  The fragment boundaries are at the discretion of the provider, and needn't correspond to
+ *  those of the frames on the wire.
+ *
+ *  @param <E> The endpoint type.
+ */
+public interface XEndpointPartialListener<E extends XEndpoint> extends XEndpointListener<E> {
+  /**
+   *  Invoked when a fragment of a binary message has been received. The fragment buffer may
+   *  be recycled once this method returns, and must not be retained.
+   *  
+   *  @param endpoint The endpoint.
+   *  @param fragment The fragment.
+   *  @param last Whether this is the final fragment of the message; the final fragment may be empty.
+   */
+  void onBinaryFragment(E endpoint, ByteBuffer fragment, boolean last);
+  
+  /**
+   *  Not invoked for partial listeners; binary messages are delivered to 
+   *  {@link #onBinaryFragment} instead.
+   */
+  @Override
+  default void onBinary(E endpoint, ByteBuffer message) {}
+}
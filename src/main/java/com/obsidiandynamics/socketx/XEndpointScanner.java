@@ -2,31 +2,175 @@ package com.obsidiandynamics.socketx;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import org.slf4j.*;
 
-public final class XEndpointScanner<E extends XEndpoint> extends Thread implements AutoCloseable {
+/**
+ *  Monitors endpoints on one or more scanner threads, terminating defunct endpoints and sending
+ *  pings to those that have been inactive for longer than the ping interval.<p>
+ *  
+ *  Endpoints are divided among shards, each served by its own thread. An endpoint that 
+ *  exposes an I/O executor (see {@link XEndpoint#getIoExecutor()}) is assigned to a shard by
+ *  its executor, so that all endpoints sharing an I/O thread are scanned together; in that 
+ *  case, the pings falling due in a scan pass are submitted to the executor as a single batch. 
+ *  The remaining endpoints are assigned by hash.
+ *
+ *  @param <E> The endpoint type.
+ */
+public final class XEndpointScanner<E extends XEndpoint> implements AutoCloseable {
   private static final Logger log = LoggerFactory.getLogger(XEndpointScanner.class);
   
+  /**
+   *  The strategy used to locate endpoints that are defunct or due for a ping.
+   */
+  public enum Mode {
+    /** Examines every endpoint on each scan, at O(N) cost per scan. */
+    LINEAR,
+    
+    /** Keys each endpoint on its next deadline in a timing wheel, so that each scan only
+     *  examines the endpoints that have come due. Defunct endpoints are detected at their
+     *  next deadline, rather than on the following scan. */
+    WHEEL
+  }
+  
   private final int scanIntervalMillis;
   private final int pingIntervalMillis;
-  private final Set<E> endpoints = new CopyOnWriteArraySet<>();
+  
+  private final Mode mode;
+  
+  /** How often an endpoint is checked for liveness in the absence of pings. */
+  private final long recheckIntervalMillis;
+  
+  private final List<Shard> shards;
+  
+  /** Shards are assigned to I/O executors in round-robin order, as executors are encountered. */
+  private final Map<Executor, Shard> executorShards = new ConcurrentHashMap<>();
+  
+  private final AtomicInteger nextExecutorShard = new AtomicInteger();
+  
+  private final Collection<E> endpointsView = new AbstractCollection<E>() {
+    @Override
+    public Iterator<E> iterator() {
+      return shards.stream().flatMap(shard -> shard.endpoints.stream()).iterator();
+    }
+
+    @Override
+    public int size() {
+      int size = 0;
+      for (Shard shard : shards) {
+        size += shard.endpoints.size();
+      }
+      return size;
+    }
+    
+    @Override
+    public boolean contains(Object o) {
+      for (Shard shard : shards) {
+        if (shard.endpoints.contains(o)) return true;
+      }
+      return false;
+    }
+  };
   
   private volatile boolean running = true;
   
   public XEndpointScanner(int scanIntervalMillis, int pingIntervalMillis) {
-    super(String.format("Scanner[scanInterval=%dms,pingInterval=%dms]", 
-                        scanIntervalMillis, pingIntervalMillis));
+    this(scanIntervalMillis, pingIntervalMillis, Mode.LINEAR);
+  }
+  
+  public XEndpointScanner(int scanIntervalMillis, int pingIntervalMillis, Mode mode) {
+    this(scanIntervalMillis, pingIntervalMillis, mode, 1);
+  }
+  
+  public XEndpointScanner(int scanIntervalMillis, int pingIntervalMillis, Mode mode, int shards) {
+    this(scanIntervalMillis, pingIntervalMillis, mode, shards, true);
+  }
+  
+  /**
+   *  Creates a scanner, optionally leaving the scanner threads unstarted so that scans may be
+   *  driven directly through {@link #scan(long)}.
+   *  
+   *  @param scanIntervalMillis The scan interval.
+   *  @param pingIntervalMillis The ping interval, or {@code 0} if pings are disabled.
+   *  @param mode The scan mode.
+   *  @param shards The number of shards.
+   *  @param start Whether to start the scanner threads.
+   */
+  XEndpointScanner(int scanIntervalMillis, int pingIntervalMillis, Mode mode, int shards, boolean start) {
+    if (shards < 1) throw new IllegalArgumentException("Shard count must be at least 1");
     this.scanIntervalMillis = scanIntervalMillis;
     this.pingIntervalMillis = pingIntervalMillis;
-    start();
+    this.mode = mode;
+    final long tickMillis = Math.max(1, scanIntervalMillis);
+    recheckIntervalMillis = pingIntervalMillis != 0 ? pingIntervalMillis : tickMillis * TimingWheel.SLOTS;
+    
+    final long origin = System.currentTimeMillis();
+    final List<Shard> shardList = new ArrayList<>(shards);
+    for (int i = 0; i < shards; i++) {
+      shardList.add(new Shard(i, mode == Mode.WHEEL ? new TimingWheel<>(tickMillis, origin) : null));
+    }
+    this.shards = Collections.unmodifiableList(shardList);
+    if (start) {
+      for (Shard shard : this.shards) {
+        shard.start();
+      }
+    }
   }
   
-  @Override
-  public void run() {
-    while (running) {
+  /**
+   *  A partition of the endpoints, scanned by its own thread.
+   */
+  private final class Shard extends Thread {
+    /** Supports O(1) insertion and removal, and weakly consistent iteration. */
+    final Set<E> endpoints = ConcurrentHashMap.newKeySet();
+    
+    /** Deadlines in {@link Mode#WHEEL} mode; confined to the scanner thread. */
+    private final TimingWheel<E> wheel;
+    
+    /** Endpoints added since the last scan, awaiting placement on the wheel. */
+    private final Queue<E> pending = new ConcurrentLinkedQueue<>();
+    
+    /** Pings falling due in the current pass, batched by I/O executor. */
+    private final Map<Executor, List<E>> pingBatches = new HashMap<>();
+    
+    Shard(int index, TimingWheel<E> wheel) {
+      super(String.format("Scanner-%d[scanInterval=%dms,pingInterval=%dms,mode=%s]", 
+                          index, scanIntervalMillis, pingIntervalMillis, mode));
+      this.wheel = wheel;
+    }
+    
+    @Override
+    public void run() {
+      while (running) {
+        scan(System.currentTimeMillis());
+        
+        try {
+          Thread.sleep(scanIntervalMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          continue;
+        }
+      }
+    }
+    
+    void add(E endpoint) {
+      if (endpoints.add(endpoint) && wheel != null) {
+        pending.add(endpoint);
+      }
+    }
+    
+    void scan(long now) {
+      if (wheel != null) {
+        scanWheel(now);
+      } else {
+        scanLinear(now);
+      }
+      dispatchPings();
+    }
+    
+    private void scanLinear(long now) {
       try {
-        final long now = System.currentTimeMillis();
         for (E endpoint : endpoints) {
           if (! endpoint.isOpen()) {
             log.debug("Terminating defunct endpoint {}", endpoint);
@@ -34,45 +178,148 @@ public final class XEndpointScanner<E extends XEndpoint> extends Thread implemen
           } else if (pingIntervalMillis != 0) {
             final long lastActivity = endpoint.getLastActivityTime();
             if (now - lastActivity > pingIntervalMillis) {
-              log.trace("Pinging {}", endpoint);
-              endpoint.sendPing();
+              ping(endpoint);
             }
           }
         }
       } catch (Exception e) {
         log.error("Unexpected error", e);
       }
+    }
+    
+    private void scanWheel(long now) {
+      for (E endpoint; (endpoint = pending.poll()) != null;) {
+        wheel.schedule(endpoint, now + recheckIntervalMillis);
+      }
+      wheel.advance(now, endpoint -> check(endpoint, now));
+    }
+    
+    /**
+     *  Handles an endpoint whose deadline has expired, rescheduling it if it remains registered.
+     *  An endpoint that has seen activity since it was scheduled is simply moved to its new 
+     *  deadline, without being pinged.
+     *  
+     *  @param endpoint The endpoint.
+     *  @param now The current time.
+     */
+    private void check(E endpoint, long now) {
+      if (! endpoints.contains(endpoint)) return; // removed since it was scheduled
       
+      long deadline = now + recheckIntervalMillis;
       try {
-        Thread.sleep(scanIntervalMillis);
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-        continue;
+        if (! endpoint.isOpen()) {
+          log.debug("Terminating defunct endpoint {}", endpoint);
+          endpoint.terminate();
+        } else if (pingIntervalMillis != 0) {
+          final long lastActivity = endpoint.getLastActivityTime();
+          if (now - lastActivity > pingIntervalMillis) {
+            ping(endpoint);
+          } else {
+            deadline = lastActivity + pingIntervalMillis + 1;
+          }
+        }
+      } catch (Exception e) {
+        log.error("Unexpected error", e);
+      }
+      wheel.schedule(endpoint, deadline);
+    }
+    
+    private void ping(E endpoint) {
+      final Executor executor = endpoint.getIoExecutor();
+      if (executor != null) {
+        pingBatches.computeIfAbsent(executor, k -> new ArrayList<>()).add(endpoint);
+      } else {
+        log.trace("Pinging {}", endpoint);
+        endpoint.sendPing();
       }
     }
+    
+    /**
+     *  Submits the batched pings to their respective I/O executors, one task per executor.
+     */
+    private void dispatchPings() {
+      if (pingBatches.isEmpty()) return;
+      
+      for (Map.Entry<Executor, List<E>> entry : pingBatches.entrySet()) {
+        final List<E> batch = entry.getValue();
+        try {
+          entry.getKey().execute(() -> {
+            for (E endpoint : batch) {
+              try {
+                log.trace("Pinging {}", endpoint);
+                endpoint.sendPing();
+              } catch (Exception e) {
+                log.error("Unexpected error", e);
+              }
+            }
+          });
+        } catch (Exception e) {
+          log.error("Unexpected error", e);
+        }
+      }
+      pingBatches.clear();
+    }
+  }
+  
+  private Shard shardFor(E endpoint) {
+    if (shards.size() == 1) return shards.get(0);
+    
+    final Executor executor = endpoint.getIoExecutor();
+    if (executor != null) {
+      return executorShards.computeIfAbsent(executor, 
+                                            k -> shards.get(nextExecutorShard.getAndIncrement() % shards.size()));
+    } else {
+      final int hash = endpoint.hashCode();
+      return shards.get(((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % shards.size());
+    }
+  }
+  
+  /**
+   *  Performs a single scan pass over every shard, from the calling thread. Intended for use
+   *  when the scanner threads haven't been started. Scans must be presented with non-decreasing
+   *  times.
+   *  
+   *  @param now The current time, in epoch milliseconds.
+   */
+  void scan(long now) {
+    for (Shard shard : shards) {
+      shard.scan(now);
+    }
   }
   
   public void addEndpoint(E endpoint) {
-    endpoints.add(endpoint);
+    shardFor(endpoint).add(endpoint);
   }
   
   public void removeEndpoint(E endpoint) {
-    endpoints.remove(endpoint);
+    shardFor(endpoint).endpoints.remove(endpoint);
   }
   
   public Collection<E> getEndpoints() {
-    return Collections.unmodifiableSet(endpoints);
+    return Collections.unmodifiableCollection(endpointsView);
+  }
+  
+  public Mode getMode() {
+    return mode;
+  }
+  
+  public int getShards() {
+    return shards.size();
   }
   
   @Override
   public void close() throws InterruptedException {
     running = false;
-    interrupt();
-    join();
+    for (Shard shard : shards) {
+      shard.interrupt();
+    }
+    for (Shard shard : shards) {
+      shard.join();
+    }
   }
   
   public void closeEndpoints(int waitMillis) throws Exception {
-    final Collection<E> endpoints = new HashSet<>(this.endpoints);
+    final Collection<E> endpoints = new HashSet<>(endpointsView);
     for (E endpoint : endpoints) {
       endpoint.close();
     }
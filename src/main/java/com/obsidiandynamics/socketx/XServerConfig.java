@@ -24,6 +24,7 @@ public class XServerConfig extends XEndpointConfig<XServerConfig> {
   
   {
     sslContextProvider = CompositeSSLContextProvider.getDevServerDefault();
+    compression = true;
   }
   
   public XServerConfig withPort(int port) {
@@ -55,7 +56,11 @@ public class XServerConfig extends XEndpointConfig<XServerConfig> {
   public String toString() {
     return "XServerConfig [port: " + port + ", httpsPort: " + httpsPort + ", path: " + path + ", idleTimeoutMillis: "
            + idleTimeoutMillis + ", pingIntervalMillis: " + pingIntervalMillis + ", scanIntervalMillis: "
-           + scanIntervalMillis + ", servlets: " + Arrays.toString(servlets) + ", highWaterMark: " + highWaterMark
+           + scanIntervalMillis + ", scanMode: " + scanMode + ", servlets: " + Arrays.toString(servlets) + ", highWaterMark: " + highWaterMark + ", highWaterMarkBytes: " + highWaterMarkBytes
+           + ", writeCoalesceMessages: " + writeCoalesceMessages + ", writeCoalesceDelayMicros: " + writeCoalesceDelayMicros
+           + ", maxMessageSize: " + maxMessageSize + ", compression: " + compression + ", compressionLevel: " + compressionLevel
+           + ", compressionWindowBits: " + compressionWindowBits + ", compressionContextTakeover: " + compressionContextTakeover
+           + ", compressionThreshold: " + compressionThreshold + ", subprotocols: " + Arrays.toString(subprotocols)
            + ", sslContextProvider: " + sslContextProvider + ", attributes: " + attributes + "]";
   }
 }
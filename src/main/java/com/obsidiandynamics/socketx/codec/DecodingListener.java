@@ -0,0 +1,79 @@
+package com.obsidiandynamics.socketx.codec;
+
+import java.nio.*;
+import java.util.zip.*;
+
+import com.obsidiandynamics.socketx.*;
+
+/**
+ *  Decodes the binary messages received on the endpoints where a {@link DictionaryCodec}
+ *  is in use, forwarding all other events unchanged.
+ *
+ *  @param <E> The endpoint type.
+ */
+final class DecodingListener<E extends XEndpoint> implements XEndpointListener<E> {
+  private final DictionaryCodec codec;
+  
+  private final XEndpointListener<E> delegate;
+  
+  DecodingListener(DictionaryCodec codec, XEndpointListener<E> delegate) {
+    this.codec = codec;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public void onConnect(E endpoint) {
+    delegate.onConnect(endpoint);
+  }
+
+  @Override
+  public void onText(E endpoint, String message) {
+    delegate.onText(endpoint, message);
+  }
+
+  @Override
+  public void onBinary(E endpoint, ByteBuffer message) {
+    if (codec.isNegotiated(endpoint)) {
+      final String decoded;
+      try {
+        decoded = codec.decode(message);
+      } catch (DataFormatException e) {
+        delegate.onError(endpoint, e);
+        return;
+      }
+      delegate.onText(endpoint, decoded);
+    } else {
+      delegate.onBinary(endpoint, message);
+    }
+  }
+
+  @Override
+  public void onPing(E endpoint, ByteBuffer data) {
+    delegate.onPing(endpoint, data);
+  }
+
+  @Override
+  public void onPong(E endpoint, ByteBuffer data) {
+    delegate.onPong(endpoint, data);
+  }
+
+  @Override
+  public void onDisconnect(E endpoint, int statusCode, String reason) {
+    delegate.onDisconnect(endpoint, statusCode, reason);
+  }
+
+  @Override
+  public void onClose(E endpoint) {
+    delegate.onClose(endpoint);
+  }
+
+  @Override
+  public void onError(E endpoint, Throwable cause) {
+    delegate.onError(endpoint, cause);
+  }
+
+  @Override
+  public void onWritabilityChanged(E endpoint, boolean writable) {
+    delegate.onWritabilityChanged(endpoint, writable);
+  }
+}
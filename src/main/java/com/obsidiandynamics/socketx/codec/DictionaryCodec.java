@@ -0,0 +1,177 @@
+package com.obsidiandynamics.socketx.codec;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.zip.*;
+
+import com.obsidiandynamics.socketx.*;
+
+/**
+ *  Compresses text messages with a preset deflate dictionary, shared by both parties ahead 
+ *  of time. Small messages with a common vocabulary, such as JSON documents with the same
+ *  keys, typically compress well against a dictionary, even though they are too short to 
+ *  benefit from permessage-deflate.<p>
+ *  
+ *  The use of the codec is negotiated per connection, as a subprotocol whose name embeds the
+ *  Adler-32 checksum of the dictionary; both parties must list {@link #getSubprotocol()} among
+ *  their {@link XEndpointConfig#withSubprotocols(String...) subprotocols}. On a connection where 
+ *  it has been agreed upon, each text message is compressed independently and sent as a binary
+ *  frame; on any other connection, messages are sent and received as plain text.<p>
+ *  
+ *  Instances are thread-safe; the (de)compressors are kept per thread.
+ */
+public final class DictionaryCodec {
+  /** The prefix of the subprotocol name, followed by the checksum of the dictionary. */
+  public static final String SUBPROTOCOL_PREFIX = "x-socketx-dict-";
+  
+  private static final int DEFAULT_MAX_MESSAGE_SIZE = 65_536;
+  
+  private final byte[] dictionary;
+  
+  private final int maxMessageSize;
+  
+  private final String subprotocol;
+  
+  private final ThreadLocal<Deflater> deflaters;
+  
+  private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+  
+  /**
+   *  Creates a codec with the default compression level, decoding messages of up to 64 KiB.
+   *  
+   *  @param dictionary The dictionary.
+   */
+  public DictionaryCodec(byte[] dictionary) {
+    this(dictionary, Deflater.DEFAULT_COMPRESSION, DEFAULT_MAX_MESSAGE_SIZE);
+  }
+  
+  /**
+   *  Creates a codec.
+   *  
+   *  @param dictionary The dictionary, with the most common strings towards its end.
+   *  @param level The compression level, from {@code 0} to {@code 9}.
+   *  @param maxMessageSize The maximum size of a decoded message, in bytes.
+   */
+  public DictionaryCodec(byte[] dictionary, int level, int maxMessageSize) {
+    this.dictionary = dictionary.clone();
+    this.maxMessageSize = maxMessageSize;
+    final Adler32 checksum = new Adler32();
+    checksum.update(dictionary);
+    subprotocol = SUBPROTOCOL_PREFIX + Long.toHexString(checksum.getValue());
+    deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+  }
+  
+  /**
+   *  Obtains the name of the subprotocol that signifies the use of this codec.
+   *  
+   *  @return The subprotocol name.
+   */
+  public String getSubprotocol() {
+    return subprotocol;
+  }
+  
+  /**
+   *  Determines whether the use of this codec was agreed upon for the given endpoint.
+   *  
+   *  @param endpoint The endpoint.
+   *  @return True if messages on this endpoint are to be encoded.
+   */
+  public boolean isNegotiated(XEndpoint endpoint) {
+    return subprotocol.equals(endpoint.getSubprotocol());
+  }
+  
+  /**
+   *  Compresses a text message.
+   *  
+   *  @param message The message.
+   *  @return The compressed message.
+   */
+  public ByteBuffer encode(String message) {
+    final byte[] input = message.getBytes(StandardCharsets.UTF_8);
+    final Deflater deflater = deflaters.get();
+    deflater.reset();
+    deflater.setDictionary(dictionary);
+    deflater.setInput(input);
+    deflater.finish();
+    
+    byte[] output = new byte[input.length / 2 + 64];
+    int length = 0;
+    while (! deflater.finished()) {
+      if (length == output.length) {
+        output = Arrays.copyOf(output, output.length * 2);
+      }
+      length += deflater.deflate(output, length, output.length - length);
+    }
+    return ByteBuffer.wrap(output, 0, length);
+  }
+  
+  /**
+   *  Decompresses a message produced by {@link #encode(String)}.
+   *  
+   *  @param encoded The compressed message.
+   *  @return The original text message.
+   *  @throws DataFormatException If the message is corrupt, was compressed with a different 
+   *          dictionary, or exceeds the maximum message size once decompressed.
+   */
+  public String decode(ByteBuffer encoded) throws DataFormatException {
+    final byte[] input = new byte[encoded.remaining()];
+    encoded.duplicate().get(input);
+    final Inflater inflater = inflaters.get();
+    inflater.reset();
+    inflater.setDictionary(dictionary);
+    inflater.setInput(input);
+    
+    final ByteArrayOutputStream output = new ByteArrayOutputStream(input.length * 4);
+    final byte[] chunk = new byte[4096];
+    while (! inflater.finished()) {
+      final int inflated = inflater.inflate(chunk);
+      if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+        throw new DataFormatException("Truncated message");
+      }
+      if (output.size() + inflated > maxMessageSize) {
+        throw new DataFormatException("Decoded message exceeds " + maxMessageSize + " bytes");
+      }
+      output.write(chunk, 0, inflated);
+    }
+    return new String(output.toByteArray(), StandardCharsets.UTF_8);
+  }
+  
+  /**
+   *  Asynchronously sends a text message, compressed if the use of this codec was agreed upon 
+   *  for the endpoint.
+   *  
+   *  @param endpoint The endpoint.
+   *  @param message The message.
+   *  @param callback Optional callback, invoked when the send completes (or fails).
+   */
+  public void send(XEndpoint endpoint, String message, XSendCallback callback) {
+    if (isNegotiated(endpoint)) {
+      endpoint.send(encode(message), callback);
+    } else {
+      endpoint.send(message, callback);
+    }
+  }
+  
+  /**
+   *  Wraps a listener so that, on the endpoints where the use of this codec was agreed upon,
+   *  binary messages are decoded and delivered to {@link XEndpointListener#onText}. A message 
+   *  that cannot be decoded is reported to {@link XEndpointListener#onError}.<p>
+   *  
+   *  As an encoded message can only be decoded whole, the listener may not be an 
+   *  {@link XEndpointPartialListener}, which would otherwise be handed binary messages in
+   *  fragments.
+   *  
+   *  @param <E> The endpoint type.
+   *  @param listener The listener to wrap.
+   *  @return The decoding listener.
+   *  @throws IllegalArgumentException If the listener is a partial listener.
+   */
+  public <E extends XEndpoint> XEndpointListener<E> decoding(XEndpointListener<E> listener) {
+    if (listener instanceof XEndpointPartialListener) {
+      throw new IllegalArgumentException("Partial listeners are not supported");
+    }
+    return new DecodingListener<>(this, listener);
+  }
+}
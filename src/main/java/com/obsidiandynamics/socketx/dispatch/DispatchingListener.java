@@ -0,0 +1,238 @@
+package com.obsidiandynamics.socketx.dispatch;
+
+import java.nio.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.obsidiandynamics.socketx.*;
+import com.obsidiandynamics.socketx.util.*;
+
+/**
+ *  Dispatches the events of each endpoint to a listener away from the provider's I/O threads, 
+ *  so that a listener that blocks holds up only its own endpoint, rather than every endpoint 
+ *  served by the same I/O thread. The events of an endpoint are delivered by a 
+ *  {@link SerialExecutor}, in the order that they were raised, and never concurrently; the 
+ *  events of different endpoints may be delivered in parallel.<p>
+ *  
+ *  The number of messages queued for an endpoint may be bounded, in which case the endpoint's
+ *  receives are suspended (by way of {@link XEndpoint#suspendReceives()}) once the bound is
+ *  reached, and resumed once the queue has drained to half of the bound. As messages already 
+ *  read by the provider continue to be queued, the bound may be overshot by a little; the 
+ *  backlog beyond that is held back by the remote peer. Control and lifecycle events are never
+ *  held back.<p>
+ *  
+ *  Providers may reuse or release a received buffer once the callback returns, so binary, ping
+ *  and pong payloads are copied before being dispatched. An endpoint's serial executor is 
+ *  created on connect and discarded on close; any events arriving after the close are 
+ *  dispatched without ordering.<p>
+ *  
+ *  Partial listeners are not supported, as fragments cannot be retained beyond the callback.
+ *
+ *  @param <E> The endpoint type.
+ */
+public final class DispatchingListener<E extends XEndpoint> implements XEndpointListener<E> {
+  private final XEndpointListener<E> delegate;
+  
+  private final Executor executor;
+  
+  private final int maxQueuedMessages;
+  
+  private final ConcurrentMap<E, EndpointQueue> queues = new ConcurrentHashMap<>();
+  
+  /**
+   *  The messages queued for an endpoint, tracking their number so as to suspend and resume 
+   *  the endpoint's receives.
+   */
+  private final class EndpointQueue {
+    private final E endpoint;
+    
+    private final SerialExecutor serialExecutor = new SerialExecutor(executor);
+    
+    private final AtomicInteger queued = new AtomicInteger();
+    
+    /** Only changed from within {@link #suspensionUpdater}; read on the fast path. */
+    private volatile boolean suspended;
+    
+    private final SerialUpdater suspensionUpdater = new SerialUpdater(this::updateSuspension);
+    
+    EndpointQueue(E endpoint) {
+      this.endpoint = endpoint;
+    }
+    
+    void execute(Runnable event) {
+      serialExecutor.execute(event);
+    }
+    
+    void executeMessage(Runnable message) {
+      if (queued.incrementAndGet() >= maxQueuedMessages && ! suspended) {
+        suspensionUpdater.update();
+      }
+      serialExecutor.execute(() -> {
+        try {
+          message.run();
+        } finally {
+          if (queued.decrementAndGet() <= maxQueuedMessages / 2 && suspended) {
+            suspensionUpdater.update();
+          }
+        }
+      });
+    }
+    
+    /**
+     *  Reconciles the endpoint's suspension with the number of queued messages. Serialised, so 
+     *  that the calls to the endpoint are made in the same order as the transitions. As the 
+     *  queue may drain (or fill) while the endpoint is being suspended (or resumed), and the 
+     *  fast path may have read the suspension before it changed, the count is re-read after
+     *  each transition, until the two agree.
+     */
+    private void updateSuspension() {
+      for (;;) {
+        final int queued = this.queued.get();
+        if (! suspended && queued >= maxQueuedMessages) {
+          suspended = true;
+          endpoint.suspendReceives();
+        } else if (suspended && queued <= maxQueuedMessages / 2) {
+          suspended = false;
+          endpoint.resumeReceives();
+        } else {
+          return;
+        }
+      }
+    }
+  }
+  
+  /**
+   *  Creates a listener that dispatches events on the given executor, without bounding the 
+   *  number of queued messages.
+   *  
+   *  @param delegate The listener to dispatch to.
+   *  @param executor The executor on which each endpoint's serial executor runs.
+   */
+  public DispatchingListener(XEndpointListener<E> delegate, Executor executor) {
+    this(delegate, executor, Integer.MAX_VALUE);
+  }
+  
+  /**
+   *  Creates a listener that dispatches events on the given executor, suspending the receives
+   *  of any endpoint that has the given number of messages queued.
+   *  
+   *  @param delegate The listener to dispatch to.
+   *  @param executor The executor on which each endpoint's serial executor runs, typically a 
+   *                  worker pool shared among all endpoints.
+   *  @param maxQueuedMessages The number of text and binary messages that may be queued for an 
+   *                           endpoint before its receives are suspended.
+   */
+  public DispatchingListener(XEndpointListener<E> delegate, Executor executor, int maxQueuedMessages) {
+    if (maxQueuedMessages < 1) throw new IllegalArgumentException("Maximum queued messages must be positive");
+    this.delegate = delegate;
+    this.executor = executor;
+    this.maxQueuedMessages = maxQueuedMessages;
+  }
+  
+  /**
+   *  Creates a listener that dispatches events on virtual threads, or on pooled platform threads
+   *  if the runtime predates virtual threads.
+   *  
+   *  @param <E> The endpoint type.
+   *  @param delegate The listener to dispatch to.
+   *  @return The dispatching listener.
+   */
+  public static <E extends XEndpoint> DispatchingListener<E> onVirtualThreads(XEndpointListener<E> delegate) {
+    return new DispatchingListener<>(delegate, VirtualThreads.executor());
+  }
+  
+  private void dispatch(E endpoint, Runnable event) {
+    final EndpointQueue queue = queues.get(endpoint);
+    if (queue != null) {
+      queue.execute(event);
+    } else {
+      executor.execute(event);
+    }
+  }
+  
+  private void dispatchMessage(E endpoint, Runnable message) {
+    final EndpointQueue queue = queues.get(endpoint);
+    if (queue != null) {
+      queue.executeMessage(message);
+    } else {
+      executor.execute(message);
+    }
+  }
+  
+  private static ByteBuffer copy(ByteBuffer buffer) {
+    final ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+    copy.put(buffer.duplicate());
+    copy.flip();
+    return copy;
+  }
+  
+  /**
+   *  Obtains the number of endpoints for which events may be dispatched.
+   *  
+   *  @return The number of connected endpoints.
+   */
+  public int getEndpointCount() {
+    return queues.size();
+  }
+  
+  /**
+   *  Obtains the number of text and binary messages queued for the given endpoint, including 
+   *  any that is being processed.
+   *  
+   *  @param endpoint The endpoint.
+   *  @return The number of queued messages, or {@code 0} if the endpoint isn't connected.
+   */
+  public int getQueuedMessages(E endpoint) {
+    final EndpointQueue queue = queues.get(endpoint);
+    return queue != null ? queue.queued.get() : 0;
+  }
+
+  @Override
+  public void onConnect(E endpoint) {
+    queues.computeIfAbsent(endpoint, EndpointQueue::new).execute(() -> delegate.onConnect(endpoint));
+  }
+
+  @Override
+  public void onText(E endpoint, String message) {
+    dispatchMessage(endpoint, () -> delegate.onText(endpoint, message));
+  }
+
+  @Override
+  public void onBinary(E endpoint, ByteBuffer message) {
+    final ByteBuffer copy = copy(message);
+    dispatchMessage(endpoint, () -> delegate.onBinary(endpoint, copy));
+  }
+
+  @Override
+  public void onPing(E endpoint, ByteBuffer data) {
+    final ByteBuffer copy = copy(data);
+    dispatch(endpoint, () -> delegate.onPing(endpoint, copy));
+  }
+
+  @Override
+  public void onPong(E endpoint, ByteBuffer data) {
+    final ByteBuffer copy = copy(data);
+    dispatch(endpoint, () -> delegate.onPong(endpoint, copy));
+  }
+
+  @Override
+  public void onDisconnect(E endpoint, int statusCode, String reason) {
+    dispatch(endpoint, () -> delegate.onDisconnect(endpoint, statusCode, reason));
+  }
+
+  @Override
+  public void onClose(E endpoint) {
+    dispatch(endpoint, () -> delegate.onClose(endpoint));
+    queues.remove(endpoint);
+  }
+
+  @Override
+  public void onError(E endpoint, Throwable cause) {
+    dispatch(endpoint, () -> delegate.onError(endpoint, cause));
+  }
+
+  @Override
+  public void onWritabilityChanged(E endpoint, boolean writable) {
+    dispatch(endpoint, () -> delegate.onWritabilityChanged(endpoint, writable));
+  }
+}
@@ -0,0 +1,69 @@
+package com.obsidiandynamics.socketx.dispatch;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.slf4j.*;
+
+/**
+ *  Runs tasks one at a time, in the order of their submission, on an underlying executor. 
+ *  The tasks that accumulate while one is running are drained in the same pass, so that a busy
+ *  serial executor occupies a single thread of the underlying executor rather than handing off 
+ *  each task in turn.<p>
+ *  
+ *  An exception thrown by a task is logged, and does not prevent the running of subsequent tasks.
+ */
+public final class SerialExecutor implements Executor {
+  private static final Logger log = LoggerFactory.getLogger(SerialExecutor.class);
+  
+  private final Executor executor;
+  
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  
+  /** The number of tasks yet to be run; the drain is scheduled upon a transition from zero. */
+  private final AtomicInteger pending = new AtomicInteger();
+  
+  /**
+   *  Creates a serial executor.
+   *  
+   *  @param executor The executor that runs the tasks.
+   */
+  public SerialExecutor(Executor executor) {
+    this.executor = executor;
+  }
+  
+  @Override
+  public void execute(Runnable task) {
+    tasks.add(task);
+    if (pending.getAndIncrement() == 0) {
+      executor.execute(this::drain);
+    }
+  }
+  
+  private void drain() {
+    int missed = 1;
+    for (;;) {
+      for (Runnable task; (task = tasks.poll()) != null;) {
+        try {
+          task.run();
+        } catch (Throwable e) {
+          log.warn("Error running task", e);
+        }
+      }
+      
+      missed = pending.addAndGet(-missed);
+      if (missed == 0) return;
+    }
+  }
+  
+  /**
+   *  Obtains the number of tasks that have been submitted but have yet to complete, including 
+   *  any that is running.
+   *  
+   *  @return The number of pending tasks.
+   */
+  public int getPending() {
+    return pending.get();
+  }
+}
@@ -0,0 +1,67 @@
+package com.obsidiandynamics.socketx.dispatch;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ *  Access to the virtual threads of Java 21 and later, looked up reflectively so that Socket.x
+ *  continues to run on earlier versions. Where virtual threads are unavailable, a cached pool of
+ *  daemon platform threads is used in their place.
+ */
+public final class VirtualThreads {
+  private static final String THREAD_NAME_PREFIX = "socketx-dispatch-";
+  
+  private static final ThreadFactory virtualFactory = lookupVirtualFactory();
+  
+  private static final Executor executor = virtualFactory != null ? VirtualThreads::startVirtual : newPlatformPool();
+  
+  private VirtualThreads() {}
+  
+  /**
+   *  Obtains a factory for virtual threads by way of {@code Thread.ofVirtual().name(prefix, 0).factory()}.
+   *  
+   *  @return The factory, or {@code null} if virtual threads aren't supported by this runtime.
+   */
+  private static ThreadFactory lookupVirtualFactory() {
+    try {
+      final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+      final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      final Object namedBuilder = builderType.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME_PREFIX, 0L);
+      return (ThreadFactory) builderType.getMethod("factory").invoke(namedBuilder);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return null;
+    }
+  }
+  
+  private static void startVirtual(Runnable task) {
+    virtualFactory.newThread(task).start();
+  }
+  
+  private static Executor newPlatformPool() {
+    final AtomicInteger threadNumber = new AtomicInteger();
+    return Executors.newCachedThreadPool(r -> {
+      final Thread thread = new Thread(r, THREAD_NAME_PREFIX + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+  
+  /**
+   *  Determines whether the runtime supports virtual threads.
+   *  
+   *  @return True if virtual threads are available.
+   */
+  public static boolean isAvailable() {
+    return virtualFactory != null;
+  }
+  
+  /**
+   *  Obtains a shared executor that runs each task on a new virtual thread, or, failing that, 
+   *  on a pooled daemon thread. The executor needn't be shut down.
+   *  
+   *  @return The executor.
+   */
+  public static Executor executor() {
+    return executor;
+  }
+}
@@ -4,6 +4,18 @@ import javax.net.ssl.*;
 
 import com.obsidiandynamics.yconf.*;
 
+/**
+ *  Composes an {@link SSLContext} from a {@link KeyManagerProvider} and a {@link TrustManagerProvider}.<p>
+ *  
+ *  The context is built upon the first call to {@link #getSSLContext()}, and the same instance is
+ *  returned thereafter, sparing the reloading of key and trust stores, and letting TLS sessions 
+ *  be resumed by all connections that share the provider. Call {@link #invalidate()} to have the
+ *  context rebuilt, for example, after rotating a certificate; servers and clients that have already
+ *  obtained the context continue to use it.<p>
+ *  
+ *  The size and timeout of the context's client and server session caches may be set; a value of
+ *  {@code -1} (the default) leaves the JSSE default in place.
+ */
 @Y
 public class CompositeSSLContextProvider implements SSLContextProvider {
   private static final String DEF_STORE_LOCATION = "cp://keystore-dev.jks";
@@ -15,30 +27,83 @@ public class CompositeSSLContextProvider implements SSLContextProvider {
 
   @YInject
   TrustManagerProvider trustManagerProvider = new NullTrustManagerProvider();
+  
+  /** The maximum number of cached sessions ({@code 0} for no limit), or {@code -1} for the default. */
+  @YInject
+  int sessionCacheSize = -1;
+  
+  /** The session timeout in seconds ({@code 0} for no limit), or {@code -1} for the default. */
+  @YInject
+  int sessionTimeout = -1;
+  
+  private final Object lock = new Object();
+  
+  private volatile SSLContext sslContext;
 
   public final CompositeSSLContextProvider withKeyManagerProvider(KeyManagerProvider keyManagerProvider) {
     this.keyManagerProvider = keyManagerProvider;
+    invalidate();
     return this;
   }
 
   public final CompositeSSLContextProvider withTrustManagerProvider(TrustManagerProvider trustManagerProvider) {
     this.trustManagerProvider = trustManagerProvider;
+    invalidate();
+    return this;
+  }
+
+  public final CompositeSSLContextProvider withSessionCacheSize(int sessionCacheSize) {
+    this.sessionCacheSize = sessionCacheSize;
+    invalidate();
+    return this;
+  }
+
+  public final CompositeSSLContextProvider withSessionTimeout(int sessionTimeoutSeconds) {
+    this.sessionTimeout = sessionTimeoutSeconds;
+    invalidate();
     return this;
   }
 
   @Override
   public final SSLContext getSSLContext() throws Exception {
+    final SSLContext existing = sslContext;
+    if (existing != null) return existing;
+    
+    synchronized (lock) {
+      if (sslContext == null) {
+        sslContext = createSSLContext();
+      }
+      return sslContext;
+    }
+  }
+  
+  private SSLContext createSSLContext() throws Exception {
     final SSLContext sslContext = SSLContext.getInstance("TLS");
     sslContext.init(keyManagerProvider.getKeyManagers(), 
                     trustManagerProvider.getTrustManagers(),
                     null);
+    for (SSLSessionContext sessionContext : new SSLSessionContext[] { sslContext.getClientSessionContext(), 
+                                                                      sslContext.getServerSessionContext() }) {
+      if (sessionCacheSize != -1) sessionContext.setSessionCacheSize(sessionCacheSize);
+      if (sessionTimeout != -1) sessionContext.setSessionTimeout(sessionTimeout);
+    }
     return sslContext;
   }
+  
+  /**
+   *  Discards the cached context, so that the next call to {@link #getSSLContext()} builds a new
+   *  one, reloading the key and trust managers.
+   */
+  public final void invalidate() {
+    synchronized (lock) {
+      sslContext = null;
+    }
+  }
 
   @Override
   public final String toString() {
     return CompositeSSLContextProvider.class.getSimpleName() + " [keyManagerProvider: " + keyManagerProvider + ", trustManagerProvider: "
-        + trustManagerProvider + "]";
+        + trustManagerProvider + ", sessionCacheSize: " + sessionCacheSize + ", sessionTimeout: " + sessionTimeout + "]";
   }
 
   /**
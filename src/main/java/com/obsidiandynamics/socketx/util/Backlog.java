@@ -0,0 +1,127 @@
+package com.obsidiandynamics.socketx.util;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ *  Tracks an endpoint's send backlog (messages queued for sending but yet to be confirmed),
+ *  both as a message count and as a byte count, against a pair of high-water marks.<p>
+ *  
+ *  The backlog also derives the endpoint's writability. The endpoint becomes unwritable once
+ *  either high-water mark is reached, and writable again once both counts have drained to half
+ *  of their respective high-water marks. The hysteresis stops a producer that pauses and
+ *  resumes on writability changes from flapping on every message.<p>
+ *  
+ *  The backlog may be added to and removed from by different threads. Writability is derived
+ *  from the counts by a {@link SerialUpdater}, so that it always settles on a state that agrees
+ *  with the latest counts, and the listener sees the changes one at a time, in order.
+ */
+public final class Backlog {
+  /**
+   *  Notified when the writability changes.
+   */
+  @FunctionalInterface
+  public interface WritabilityListener {
+    void onWritabilityChanged(boolean writable);
+  }
+  
+  private final AtomicLong messages = new AtomicLong();
+  
+  private final AtomicLong bytes = new AtomicLong();
+  
+  /** Only changed from within {@link #updater}. */
+  private volatile boolean writable = true;
+  
+  private final long highWaterMark;
+  
+  private final long highWaterMarkBytes;
+  
+  private final WritabilityListener listener;
+  
+  private final SerialUpdater updater = new SerialUpdater(this::updateWritability);
+  
+  /**
+   *  Creates a backlog tracker.
+   *  
+   *  @param highWaterMark The high-water mark, in messages.
+   *  @param highWaterMarkBytes The high-water mark, in bytes.
+   *  @param listener Notified of writability changes; may be {@code null}.
+   */
+  public Backlog(long highWaterMark, long highWaterMarkBytes, WritabilityListener listener) {
+    this.highWaterMark = highWaterMark;
+    this.highWaterMarkBytes = highWaterMarkBytes;
+    this.listener = listener;
+  }
+  
+  /**
+   *  Determines whether message lengths need to be tracked, which is the case when a byte-based
+   *  high-water mark has been set. If not, senders may pass a length of {@code 0}, sparing
+   *  them from having to retain the length until the send completes.
+   *  
+   *  @return True if bytes are tracked.
+   */
+  public boolean isTrackingBytes() {
+    return highWaterMarkBytes != Long.MAX_VALUE;
+  }
+  
+  /**
+   *  Determines whether another message may be queued without breaching either high-water mark.
+   *  
+   *  @return True if the backlog is below both high-water marks.
+   */
+  public boolean isBelowHighWaterMark() {
+    return messages.get() < highWaterMark && bytes.get() < highWaterMarkBytes;
+  }
+  
+  private boolean isAtOrBelowLowWaterMark() {
+    return messages.get() <= highWaterMark / 2 && bytes.get() <= highWaterMarkBytes / 2;
+  }
+  
+  /**
+   *  Adds a message to the backlog.
+   *  
+   *  @param length The message length, in bytes.
+   */
+  public void add(long length) {
+    messages.incrementAndGet();
+    bytes.addAndGet(length);
+    if (writable && ! isBelowHighWaterMark()) updater.update();
+  }
+  
+  /**
+   *  Removes a message from the backlog, once it has been sent (or has failed).
+   *  
+   *  @param length The message length, in bytes.
+   */
+  public void remove(long length) {
+    messages.decrementAndGet();
+    bytes.addAndGet(-length);
+    if (! writable && isAtOrBelowLowWaterMark()) updater.update();
+  }
+  
+  /**
+   *  Brings the writability in line with the counts. The add and remove paths only request an
+   *  update if the writability they read is due to change, and that read may be overtaken by a
+   *  change made here; the counts are therefore re-read after each change, until they agree.
+   */
+  private void updateWritability() {
+    for (;;) {
+      final boolean newWritable = writable ? isBelowHighWaterMark() : isAtOrBelowLowWaterMark();
+      if (newWritable == writable) return;
+      
+      writable = newWritable;
+      if (listener != null) listener.onWritabilityChanged(newWritable);
+    }
+  }
+  
+  public long getMessages() {
+    return messages.get();
+  }
+  
+  public long getBytes() {
+    return bytes.get();
+  }
+  
+  public boolean isWritable() {
+    return writable;
+  }
+}
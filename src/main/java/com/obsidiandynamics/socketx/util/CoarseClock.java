@@ -0,0 +1,50 @@
+package com.obsidiandynamics.socketx.util;
+
+/**
+ *  A low-resolution wall clock, advanced by a daemon ticker thread every 
+ *  {@link #RESOLUTION_MILLIS} milliseconds.<p>
+ *  
+ *  Reading the clock costs a single volatile load, and the value changes at most once per
+ *  tick, making it suitable for timestamping activity on the hot path, where the precision of
+ *  {@link System#currentTimeMillis()} isn't needed.<p>
+ *  
+ *  Endpoints stamp their last activity time from this clock, skipping the store when the
+ *  time hasn't moved since the last stamp, and otherwise storing lazily. As the clock only
+ *  ticks every few milliseconds, a busy endpoint writes the field at most once per tick,
+ *  rather than pulling its cache line between the sending and I/O threads on every message.
+ */
+public final class CoarseClock {
+  /** The interval between clock ticks. */
+  public static final int RESOLUTION_MILLIS = 10;
+  
+  private static volatile long now = System.currentTimeMillis();
+  
+  static {
+    final Thread ticker = new Thread(CoarseClock::tick, "CoarseClock");
+    ticker.setDaemon(true);
+    ticker.start();
+  }
+  
+  private CoarseClock() {}
+  
+  private static void tick() {
+    for (;;) {
+      now = System.currentTimeMillis();
+      try {
+        Thread.sleep(RESOLUTION_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+  
+  /**
+   *  Obtains the current time, which may lag the system clock by up to one tick.
+   *  
+   *  @return The current time, in epoch milliseconds.
+   */
+  public static long now() {
+    return now;
+  }
+}
@@ -0,0 +1,97 @@
+package com.obsidiandynamics.socketx.util;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ *  Coalesces the flushes of consecutive sends on an endpoint. A flush is due once the given
+ *  number of messages has accumulated since the last flush; failing that, the pending messages
+ *  are flushed by a timer once the maximum delay has elapsed since the first of them.<p>
+ *
+ *  Each send is registered in two steps: {@link #onSend()} before the message is queued,
+ *  deciding whether it should carry a flush, and {@link #onQueued()} once a message that
+ *  doesn't carry a flush has been queued. The timer only flushes messages that have been 
+ *  queued, so that a message isn't left unflushed by a timer that fires while it's being 
+ *  queued.<p>
+ *
+ *  The timer is shared among all coalescers and runs on a single daemon thread; the flush
+ *  action must not block, and should hand off any blocking work to another thread.
+ */
+public final class FlushCoalescer {
+  private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+    final Thread thread = new Thread(r, "FlushCoalescer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final int maxMessages;
+
+  private final long maxDelayMicros;
+
+  private final Runnable flusher;
+
+  private final AtomicInteger pending = new AtomicInteger();
+
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+
+  /** Set once a message has been queued without a flush, and cleared by the next flush. */
+  private final AtomicBoolean unflushed = new AtomicBoolean();
+
+  /**
+   *  Creates a coalescer.
+   *
+   *  @param maxMessages The maximum number of messages per flush.
+   *  @param maxDelayMicros The maximum time a message may be held back, in microseconds.
+   *  @param flusher Flushes the endpoint when the delay elapses.
+   */
+  public FlushCoalescer(int maxMessages, long maxDelayMicros, Runnable flusher) {
+    this.maxMessages = maxMessages;
+    this.maxDelayMicros = maxDelayMicros;
+    this.flusher = flusher;
+  }
+
+  /**
+   *  Registers a message about to be sent, determining whether the message should carry a flush.
+   *  If not, the caller must invoke {@link #onQueued()} once the message has been queued.
+   *
+   *  @return True if the message should be flushed along with any that are pending.
+   */
+  public boolean onSend() {
+    if (pending.incrementAndGet() >= maxMessages) {
+      pending.set(0);
+      // the messages queued so far will be flushed along with this one
+      unflushed.set(false);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   *  Registers the queueing of a message that doesn't carry a flush, scheduling a timed flush
+   *  unless one is already pending.
+   */
+  public void onQueued() {
+    unflushed.set(true);
+    if (scheduled.compareAndSet(false, true)) {
+      timer.schedule(this::flushPending, maxDelayMicros, TimeUnit.MICROSECONDS);
+    }
+  }
+
+  private void flushPending() {
+    // clearing the schedule first ensures that a message queued after the flag is taken gets a new timer
+    scheduled.set(false);
+    if (unflushed.getAndSet(false)) {
+      pending.set(0);
+      flusher.run();
+    }
+  }
+
+  /**
+   *  Obtains the number of messages sent since the last flush.
+   *
+   *  @return The number of pending messages.
+   */
+  public int getPending() {
+    return pending.get();
+  }
+}
@@ -0,0 +1,61 @@
+package com.obsidiandynamics.socketx.util;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ *  Reads a channel in fragments of a fixed size, reusing a single buffer. Each fragment
+ *  other than the last is filled to capacity; the last fragment holds whatever remains
+ *  and may be empty.<p>
+ *
+ *  The source should be in blocking mode. This class is not thread-safe.
+ */
+public final class FragmentReader {
+  private final ReadableByteChannel source;
+
+  private final ByteBuffer buffer;
+
+  private boolean last;
+
+  /**
+   *  Creates a reader.
+   *
+   *  @param source The channel to read from.
+   *  @param fragmentSize The size of each fragment, in bytes.
+   */
+  public FragmentReader(ReadableByteChannel source, int fragmentSize) {
+    if (fragmentSize <= 0) throw new IllegalArgumentException("Fragment size must be positive");
+    this.source = source;
+    buffer = ByteBuffer.allocate(fragmentSize);
+  }
+
+  /**
+   *  Reads the next fragment. The returned buffer is reused by subsequent calls, and so must
+   *  be consumed before calling this method again.
+   *
+   *  @return The next fragment, ready for reading.
+   *  @throws IOException If the source could not be read.
+   */
+  public ByteBuffer next() throws IOException {
+    if (last) throw new IllegalStateException("No more fragments");
+    buffer.clear();
+    while (buffer.hasRemaining()) {
+      if (source.read(buffer) == -1) {
+        last = true;
+        break;
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   *  Determines whether the most recently read fragment is the last one.
+   *
+   *  @return True if the source has been exhausted.
+   */
+  public boolean isLast() {
+    return last;
+  }
+}
@@ -0,0 +1,50 @@
+package com.obsidiandynamics.socketx.util;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ *  Runs an update action on behalf of any number of threads, one at a time and without holding
+ *  a lock, so that the action may safely call out to a listener. Rather than waiting, a thread
+ *  that requests an update while another is running leaves the running thread to repeat the
+ *  action on its behalf; the action must therefore act on the latest state rather than on the
+ *  change that prompted the request. Once all requests have been served, the action will have
+ *  run at least once since the last of them.<p>
+ *
+ *  Requests made from within the action (for example, by a listener reacting to a change) are
+ *  also served by the running thread, once the current run has returned.
+ */
+public final class SerialUpdater {
+  private final AtomicInteger requests = new AtomicInteger();
+  
+  private final Runnable action;
+  
+  /**
+   *  Creates an updater.
+   *  
+   *  @param action The update action.
+   */
+  public SerialUpdater(Runnable action) {
+    this.action = action;
+  }
+  
+  /**
+   *  Requests an update, running the action on the calling thread unless another thread is
+   *  already running it. If the action throws an exception, the outstanding requests are still
+   *  served, and the first exception is rethrown once they have been.
+   */
+  public void update() {
+    if (requests.getAndIncrement() != 0) return;
+    
+    RuntimeException error = null;
+    int missed = 1;
+    do {
+      try {
+        action.run();
+      } catch (RuntimeException e) {
+        if (error == null) error = e;
+      }
+    } while ((missed = requests.addAndGet(-missed)) != 0);
+    
+    if (error != null) throw error;
+  }
+}
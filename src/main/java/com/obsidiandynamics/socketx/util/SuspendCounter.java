@@ -0,0 +1,70 @@
+package com.obsidiandynamics.socketx.util;
+
+/**
+ *  Counts the outstanding suspensions of an endpoint's receives, so that independent parties - 
+ *  the application and a bounded {@code DispatchingListener}, say - may each suspend and resume 
+ *  receives without resuming them on another's behalf. The suspend action is taken upon the 
+ *  first suspension, and the resume action upon the release of the last.<p>
+ *  
+ *  The transitions are serialised, so that the actions are taken in the same order as the 
+ *  transitions that prompted them, and must therefore complete promptly.
+ */
+public final class SuspendCounter {
+  private final Runnable suspendAction;
+  
+  private final Runnable resumeAction;
+  
+  private int suspensions;
+  
+  private volatile boolean suspended;
+  
+  /**
+   *  Creates a counter.
+   *  
+   *  @param suspendAction Suspends receives.
+   *  @param resumeAction Resumes receives.
+   */
+  public SuspendCounter(Runnable suspendAction, Runnable resumeAction) {
+    this.suspendAction = suspendAction;
+    this.resumeAction = resumeAction;
+  }
+  
+  /**
+   *  Adds a suspension, taking the suspend action if there were none outstanding.
+   */
+  public synchronized void suspend() {
+    if (suspensions++ == 0) {
+      suspended = true;
+      suspendAction.run();
+    }
+  }
+  
+  /**
+   *  Releases a suspension, taking the resume action if it was the last one outstanding. Does
+   *  nothing if there are no outstanding suspensions.
+   */
+  public synchronized void resume() {
+    if (suspensions != 0 && --suspensions == 0) {
+      suspended = false;
+      resumeAction.run();
+    }
+  }
+  
+  /**
+   *  Determines whether there are any outstanding suspensions.
+   *  
+   *  @return True if suspended.
+   */
+  public boolean isSuspended() {
+    return suspended;
+  }
+  
+  /**
+   *  Obtains the number of outstanding suspensions.
+   *  
+   *  @return The number of suspensions.
+   */
+  public synchronized int getSuspensions() {
+    return suspensions;
+  }
+}
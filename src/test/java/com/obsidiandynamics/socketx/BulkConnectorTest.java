@@ -0,0 +1,159 @@
+package com.obsidiandynamics.socketx;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+public final class BulkConnectorTest {
+  /**
+   *  Completes each connection attempt after a short delay, tracking the number of attempts
+   *  in flight. The failing attempt either completes exceptionally or, if {@code failSynchronously}
+   *  is set, throws from {@link #connectAsync}.
+   */
+  private static final class DelayedClient implements XClient<XEndpoint> {
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(4);
+    
+    private final AtomicInteger attempts = new AtomicInteger();
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    
+    private final int failAttempt;
+    
+    private final boolean failSynchronously;
+    
+    DelayedClient(int failAttempt) {
+      this(failAttempt, false);
+    }
+    
+    DelayedClient(int failAttempt, boolean failSynchronously) {
+      this.failAttempt = failAttempt;
+      this.failSynchronously = failSynchronously;
+    }
+    
+    @Override
+    public XEndpoint connect(URI uri, XEndpointListener<? super XEndpoint> listener) {
+      throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public CompletionStage<XEndpoint> connectAsync(URI uri, XEndpointListener<? super XEndpoint> listener) {
+      final int attempt = attempts.getAndIncrement();
+      if (failSynchronously && attempt == failAttempt) {
+        throw new IllegalStateException("Boom");
+      }
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      final CompletableFuture<XEndpoint> future = new CompletableFuture<>();
+      executor.schedule(() -> {
+        inFlight.decrementAndGet();
+        if (attempt == failAttempt) {
+          future.completeExceptionally(new IOException("Boom"));
+        } else {
+          future.complete(mock(XEndpoint.class));
+        }
+      }, 1, TimeUnit.MILLISECONDS);
+      return future;
+    }
+    
+    @Override
+    public Collection<XEndpoint> getEndpoints() {
+      return Collections.emptySet();
+    }
+    
+    @Override
+    public XClientConfig getConfig() {
+      return new XClientConfig();
+    }
+    
+    @Override
+    public void close() {
+      executor.shutdown();
+    }
+  }
+  
+  private DelayedClient client;
+  
+  @After
+  public void after() {
+    if (client != null) client.close();
+  }
+  
+  private static URI uri() throws URISyntaxException {
+    return new URI("ws://localhost:8080/");
+  }
+  
+  @Test
+  public void testConnect() throws Exception {
+    client = new DelayedClient(-1);
+    final List<XEndpoint> endpoints = new BulkConnector<>(client)
+        .withMaxConcurrency(4)
+        .connect(uri(), 100, new XEndpointLambdaListener<>());
+    assertEquals(100, endpoints.size());
+    assertEquals(100, new HashSet<>(endpoints).size());
+    assertEquals(100, client.attempts.get());
+    assertEquals(0, client.inFlight.get());
+    assertTrue("maxInFlight=" + client.maxInFlight, client.maxInFlight.get() <= 4);
+  }
+  
+  @Test
+  public void testPacing() throws Exception {
+    client = new DelayedClient(-1);
+    final long start = System.nanoTime();
+    new BulkConnector<>(client)
+        .withConnectRate(1_000)
+        .connect(uri(), 50, new XEndpointLambdaListener<>());
+    final long tookMillis = (System.nanoTime() - start) / 1_000_000;
+    assertEquals(50, client.attempts.get());
+    assertTrue("tookMillis=" + tookMillis, tookMillis >= 49);
+  }
+  
+  @Test
+  public void testFailure() throws Exception {
+    client = new DelayedClient(10);
+    try {
+      new BulkConnector<>(client)
+          .withMaxConcurrency(2)
+          .connect(uri(), 100, new XEndpointLambdaListener<>());
+      fail("Expected an IOException");
+    } catch (IOException e) {
+      assertEquals("Boom", e.getMessage());
+    }
+    assertEquals(0, client.inFlight.get());
+    assertTrue("attempts=" + client.attempts, client.attempts.get() < 100);
+  }
+  
+  @Test(timeout=10_000)
+  public void testSynchronousFailure() throws Exception {
+    client = new DelayedClient(10, true);
+    try {
+      new BulkConnector<>(client)
+          .withMaxConcurrency(2)
+          .connect(uri(), 100, new XEndpointLambdaListener<>());
+      fail("Expected an IllegalStateException");
+    } catch (IllegalStateException e) {
+      assertEquals("Boom", e.getMessage());
+    }
+    assertEquals(0, client.inFlight.get());
+    assertEquals(11, client.attempts.get());
+  }
+  
+  @Test(expected=IllegalArgumentException.class)
+  public void testInvalidMaxConcurrency() {
+    client = new DelayedClient(-1);
+    new BulkConnector<>(client).withMaxConcurrency(0);
+  }
+  
+  @Test(expected=IllegalArgumentException.class)
+  public void testInvalidConnectRate() {
+    client = new DelayedClient(-1);
+    new BulkConnector<>(client).withConnectRate(-1);
+  }
+}
@@ -0,0 +1,48 @@
+package com.obsidiandynamics.socketx;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+public final class SendFutureTest {
+  @Test
+  public void testComplete() throws Exception {
+    final SendFuture future = new SendFuture();
+    future.onComplete(mock(XEndpoint.class));
+    assertTrue(future.get());
+  }
+  
+  @Test
+  public void testSkip() throws Exception {
+    final SendFuture future = new SendFuture();
+    future.onSkip(mock(XEndpoint.class));
+    assertFalse(future.get());
+  }
+  
+  @Test
+  public void testError() throws InterruptedException {
+    final SendFuture future = new SendFuture();
+    final Throwable cause = new IOException("Boom");
+    future.onError(mock(XEndpoint.class), cause);
+    try {
+      future.get();
+      fail("Expected an ExecutionException");
+    } catch (ExecutionException e) {
+      assertSame(cause, e.getCause());
+    }
+  }
+  
+  @Test
+  public void testSendAsync() throws Exception {
+    final XEndpoint endpoint = mock(XEndpoint.class, CALLS_REAL_METHODS);
+    doAnswer(invocation -> {
+      ((XSendCallback) invocation.getArguments()[1]).onComplete(endpoint);
+      return null;
+    }).when(endpoint).send(anyString(), any());
+    assertTrue(endpoint.sendAsync("test").toCompletableFuture().get());
+  }
+}
@@ -0,0 +1,89 @@
+package com.obsidiandynamics.socketx;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public final class TimingWheelTest {
+  private static final long ORIGIN = 1_000_000;
+  
+  @Test(expected=IllegalArgumentException.class)
+  public void testInvalidTick() {
+    new TimingWheel<String>(0, ORIGIN);
+  }
+  
+  @Test
+  public void testExpireInOrder() {
+    final TimingWheel<String> wheel = new TimingWheel<>(10, ORIGIN);
+    wheel.schedule("b", ORIGIN + 25);
+    wheel.schedule("a", ORIGIN + 10);
+    assertEquals(2, wheel.size());
+    
+    final List<String> expired = new ArrayList<>();
+    wheel.advance(ORIGIN + 9, expired::add);
+    assertEquals(Collections.emptyList(), expired);
+    
+    wheel.advance(ORIGIN + 10, expired::add);
+    assertEquals(Arrays.asList("a"), expired);
+    
+    // deadlines are rounded up to the next tick
+    wheel.advance(ORIGIN + 29, expired::add);
+    assertEquals(Arrays.asList("a"), expired);
+    wheel.advance(ORIGIN + 30, expired::add);
+    assertEquals(Arrays.asList("a", "b"), expired);
+    assertEquals(0, wheel.size());
+  }
+  
+  @Test
+  public void testPastDeadlineDeferredToNextTick() {
+    final TimingWheel<String> wheel = new TimingWheel<>(1, ORIGIN);
+    wheel.advance(ORIGIN + 100, item -> fail("Unexpected " + item));
+    wheel.schedule("a", ORIGIN);
+    final List<String> expired = new ArrayList<>();
+    wheel.advance(ORIGIN + 100, expired::add);
+    assertEquals(Collections.emptyList(), expired);
+    wheel.advance(ORIGIN + 101, expired::add);
+    assertEquals(Arrays.asList("a"), expired);
+  }
+  
+  @Test
+  public void testCascadeAcrossLevels() {
+    final TimingWheel<Long> wheel = new TimingWheel<>(1, ORIGIN);
+    final long[] offsets = { 1, 63, 64, 65, 4_095, 4_096, 4_097, 262_143, 262_144, 300_000, 
+                             16_777_215, 16_777_216, 20_000_000, 40_000_000 };
+    for (long offset : offsets) {
+      wheel.schedule(offset, ORIGIN + offset);
+    }
+    
+    final List<Long> expired = new ArrayList<>();
+    long now = ORIGIN;
+    for (long offset : offsets) {
+      wheel.advance(ORIGIN + offset - 1, expired::add);
+      assertFalse("offset=" + offset, expired.contains(offset));
+      wheel.advance(ORIGIN + offset, expired::add);
+      assertEquals(offset, (long) expired.get(expired.size() - 1));
+      now = ORIGIN + offset;
+    }
+    assertEquals(offsets.length, expired.size());
+    assertEquals(0, wheel.size());
+    wheel.advance(now + 1_000, item -> fail("Unexpected " + item));
+  }
+  
+  @Test
+  public void testRescheduleFromExpiry() {
+    final TimingWheel<String> wheel = new TimingWheel<>(1, ORIGIN);
+    wheel.schedule("a", ORIGIN + 5);
+    final List<Long> expiries = new ArrayList<>();
+    final long[] now = { ORIGIN };
+    for (; now[0] <= ORIGIN + 30; now[0]++) {
+      wheel.advance(now[0], item -> {
+        expiries.add(now[0] - ORIGIN);
+        wheel.schedule(item, now[0] + 10);
+      });
+    }
+    assertEquals(Arrays.asList(5L, 15L, 25L), expiries);
+    assertEquals(1, wheel.size());
+  }
+}
@@ -0,0 +1,12 @@
+package com.obsidiandynamics.socketx;
+
+import org.junit.*;
+
+import com.obsidiandynamics.assertion.*;
+
+public final class XAttsTest {
+  @Test
+  public void testConformance() throws Exception {
+    Assertions.assertUtilityClassWellDefined(XAtts.class);
+  }
+}
@@ -25,11 +25,64 @@ public final class XEndpointConfigTest {
     assertEquals(2000, new DerivedEndpointConfig().withScanInterval(2000).scanIntervalMillis);
   }
   
+  @Test
+  public void testScanMode() {
+    assertEquals(XEndpointScanner.Mode.LINEAR, new DerivedEndpointConfig().scanMode);
+    assertEquals(XEndpointScanner.Mode.WHEEL, 
+                 new DerivedEndpointConfig().withScanMode(XEndpointScanner.Mode.WHEEL).scanMode);
+  }
+  
   @Test
   public void testHighWaterMark() {
     assertEquals(1000, new DerivedEndpointConfig().withHighWaterMark(1000).highWaterMark);
   }
   
+  @Test
+  public void testHighWaterMarkBytes() {
+    assertEquals(1000, new DerivedEndpointConfig().withHighWaterMarkBytes(1000).highWaterMarkBytes);
+  }
+  
+  @Test
+  public void testWriteCoalescing() {
+    assertFalse(new DerivedEndpointConfig().hasWriteCoalescing());
+    final DerivedEndpointConfig config = new DerivedEndpointConfig()
+        .withWriteCoalesceMessages(16)
+        .withWriteCoalesceDelay(50);
+    assertTrue(config.hasWriteCoalescing());
+    assertEquals(16, config.writeCoalesceMessages);
+    assertEquals(50, config.writeCoalesceDelayMicros);
+  }
+  
+  @Test
+  public void testMaxMessageSize() {
+    assertEquals(65_536, new DerivedEndpointConfig().maxMessageSize);
+    assertEquals(1_024, new DerivedEndpointConfig().withMaxMessageSize(1_024).maxMessageSize);
+  }
+  
+  @Test
+  public void testCompression() {
+    assertFalse(new DerivedEndpointConfig().compression);
+    assertFalse(new XClientConfig().compression);
+    assertTrue(new XServerConfig().compression);
+    final DerivedEndpointConfig config = new DerivedEndpointConfig()
+        .withCompression(true)
+        .withCompressionLevel(9)
+        .withCompressionWindowBits(10)
+        .withCompressionContextTakeover(false)
+        .withCompressionThreshold(256);
+    assertTrue(config.compression);
+    assertEquals(9, config.compressionLevel);
+    assertEquals(10, config.compressionWindowBits);
+    assertFalse(config.compressionContextTakeover);
+    assertEquals(256, config.compressionThreshold);
+  }
+  
+  @Test
+  public void testSubprotocols() {
+    assertEquals(0, new DerivedEndpointConfig().subprotocols.length);
+    assertEquals(Arrays.asList("a", "b"), Arrays.asList(new DerivedEndpointConfig().withSubprotocols("a", "b").subprotocols));
+  }
+  
   @Test
   public void testSSLContextProvider() {
     class TestSSLContextProvider implements SSLContextProvider {
@@ -109,6 +109,16 @@ public final class XEndpointLambdaListenerTest {
     Mockito.verify(handler).onError(Mockito.eq(testEndpoint), Mockito.eq(error));
   }
 
+  @Test
+  public void testOnWritabilityChanged() {
+    @SuppressWarnings("unchecked")
+    final OnWritabilityChanged<XEndpoint> handler = mock(OnWritabilityChanged.class);
+    listener.onWritabilityChanged(testEndpoint, false);
+    listener.onWritabilityChanged(handler);
+    listener.onWritabilityChanged(testEndpoint, false);
+    Mockito.verify(handler).onWritabilityChanged(Mockito.eq(testEndpoint), Mockito.eq(false));
+  }
+
   private static <T> T mock(Class<T> cls) {
     return Mockito.mock(cls);
   }
@@ -6,6 +6,7 @@ import static org.mockito.Mockito.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
 
 import org.junit.*;
@@ -71,6 +72,124 @@ public final class XEndpointScannerTest {
     });
   }
   
+  @Test
+  public void testWheelUnexpectedError() {
+    scanner = new XEndpointScanner<XEndpoint>(1, 10, XEndpointScanner.Mode.WHEEL);
+    final XEndpoint endpoint = mock(XEndpoint.class);
+    when(endpoint.isOpen()).thenThrow(new RuntimeException("boom"));
+    scanner.addEndpoint(endpoint);
+    SocketUtils.await().until(() -> {
+      verify(endpoint, atLeast(2)).isOpen();
+    });
+  }
+
+  @Test
+  public void testWheelTerminateDefunct() {
+    scanner = new XEndpointScanner<XEndpoint>(1, 10, XEndpointScanner.Mode.WHEEL);
+    final XEndpoint endpoint = mock(XEndpoint.class);
+    final AtomicBoolean isOpen = new AtomicBoolean(true);
+    when(endpoint.isOpen()).thenAnswer(invocation -> isOpen.get());
+    when(endpoint.getLastActivityTime()).thenAnswer(invocation -> System.currentTimeMillis());
+    scanner.addEndpoint(endpoint);
+    TestSupport.sleep(10);
+    isOpen.set(false);
+    SocketUtils.await().until(() -> {
+      try {
+        verify(endpoint, atLeastOnce()).terminate();
+      } catch (IOException e) {
+        fail(e.getMessage());
+      }
+    });
+  }
+
+  @Test
+  public void testWheelPing() {
+    scanner = new XEndpointScanner<XEndpoint>(1, 10, XEndpointScanner.Mode.WHEEL);
+    assertEquals(XEndpointScanner.Mode.WHEEL, scanner.getMode());
+    final XEndpoint endpoint = mock(XEndpoint.class);
+    when(endpoint.isOpen()).thenReturn(true);
+    when(endpoint.getLastActivityTime()).thenReturn(System.currentTimeMillis());
+    scanner.addEndpoint(endpoint);
+    SocketUtils.await().until(() -> {
+      verify(endpoint, atLeast(2)).sendPing();
+    });
+  }
+
+  @Test
+  public void testWheelPingDeferredByActivity() {
+    scanner = new XEndpointScanner<XEndpoint>(1, 1_000, XEndpointScanner.Mode.WHEEL, 1, false);
+    final XEndpoint endpoint = mock(XEndpoint.class);
+    final AtomicLong lastActivity = new AtomicLong(System.currentTimeMillis());
+    when(endpoint.isOpen()).thenReturn(true);
+    when(endpoint.getLastActivityTime()).thenAnswer(invocation -> lastActivity.get());
+    scanner.addEndpoint(endpoint);
+    
+    final long start = lastActivity.get();
+    scanner.scan(start);
+    lastActivity.set(start + 500);
+    scanner.scan(start + 1_002);
+    verify(endpoint, never()).sendPing();
+    
+    scanner.scan(start + 1_502);
+    verify(endpoint).sendPing();
+  }
+
+  @Test
+  public void testWheelSkipsRemoved() {
+    scanner = new XEndpointScanner<XEndpoint>(1, 1_000, XEndpointScanner.Mode.WHEEL, 1, false);
+    final XEndpoint endpoint = mock(XEndpoint.class);
+    scanner.addEndpoint(endpoint);
+    final long start = System.currentTimeMillis();
+    scanner.scan(start);
+    scanner.removeEndpoint(endpoint);
+    scanner.scan(start + 5_000);
+    verify(endpoint, never()).isOpen();
+    verify(endpoint, never()).sendPing();
+  }
+  
+  @Test
+  public void testShardedPingBatchedByExecutor() {
+    scanner = new XEndpointScanner<XEndpoint>(1, 1_000, XEndpointScanner.Mode.LINEAR, 3, false);
+    assertEquals(3, scanner.getShards());
+    final List<Runnable> tasks = new ArrayList<>();
+    final Executor executor = tasks::add;
+    final long now = System.currentTimeMillis();
+    final List<XEndpoint> endpoints = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      final XEndpoint endpoint = mock(XEndpoint.class);
+      when(endpoint.isOpen()).thenReturn(true);
+      when(endpoint.getLastActivityTime()).thenReturn(now - 2_000);
+      when(endpoint.getIoExecutor()).thenReturn(i % 2 == 0 ? executor : null);
+      endpoints.add(endpoint);
+      scanner.addEndpoint(endpoint);
+    }
+    assertEquals(10, scanner.getEndpoints().size());
+    for (XEndpoint endpoint : endpoints) {
+      assertTrue(scanner.getEndpoints().contains(endpoint));
+    }
+    
+    scanner.scan(now);
+    for (int i = 0; i < 10; i++) {
+      verify(endpoints.get(i), times(i % 2 == 0 ? 0 : 1)).sendPing();
+    }
+    // endpoints sharing an executor are held by one shard, and pinged in a single task
+    assertEquals(1, tasks.size());
+    tasks.get(0).run();
+    for (XEndpoint endpoint : endpoints) {
+      verify(endpoint).sendPing();
+    }
+    
+    scanner.removeEndpoint(endpoints.get(0));
+    scanner.removeEndpoint(endpoints.get(1));
+    assertEquals(8, scanner.getEndpoints().size());
+    assertFalse(scanner.getEndpoints().contains(endpoints.get(0)));
+  }
+  
+  @Test(expected=IllegalArgumentException.class)
+  public void testInvalidShards() {
+    new XEndpointScanner<XEndpoint>(1, 1_000, XEndpointScanner.Mode.LINEAR, 0, false);
+  }
+  
   @Test
   public void testAddGetRemove() {
     scanner = new XEndpointScanner<XEndpoint>(1, 1);
@@ -0,0 +1,97 @@
+package com.obsidiandynamics.socketx.codec;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.*;
+import java.util.zip.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.socketx.*;
+
+public final class DictionaryCodecTest {
+  private static final byte[] DICTIONARY = "{\"symbol\":\"\",\"bid\":,\"ask\":,\"volume\":}".getBytes();
+  
+  private static final String MESSAGE = "{\"symbol\":\"SYM123\",\"bid\":101.25,\"ask\":101.5,\"volume\":12000}";
+  
+  @Test
+  public void testRoundTrip() throws DataFormatException {
+    final DictionaryCodec codec = new DictionaryCodec(DICTIONARY);
+    final ByteBuffer encoded = codec.encode(MESSAGE);
+    assertTrue(encoded.remaining() < MESSAGE.length());
+    assertEquals(MESSAGE, codec.decode(encoded));
+    assertEquals(MESSAGE, codec.decode(encoded));
+    assertEquals("", codec.decode(codec.encode("")));
+  }
+  
+  @Test
+  public void testSubprotocol() {
+    final String subprotocol = new DictionaryCodec(DICTIONARY).getSubprotocol();
+    assertTrue(subprotocol.startsWith(DictionaryCodec.SUBPROTOCOL_PREFIX));
+    assertEquals(subprotocol, new DictionaryCodec(DICTIONARY.clone()).getSubprotocol());
+    assertNotEquals(subprotocol, new DictionaryCodec("other".getBytes()).getSubprotocol());
+  }
+  
+  @Test(expected=DataFormatException.class)
+  public void testDecodeTooLarge() throws DataFormatException {
+    final DictionaryCodec codec = new DictionaryCodec(DICTIONARY, 9, 16);
+    codec.decode(codec.encode(MESSAGE));
+  }
+  
+  @Test(expected=DataFormatException.class)
+  public void testDecodeTruncated() throws DataFormatException {
+    final DictionaryCodec codec = new DictionaryCodec(DICTIONARY);
+    final ByteBuffer encoded = codec.encode(MESSAGE);
+    encoded.limit(encoded.limit() / 2);
+    codec.decode(encoded);
+  }
+  
+  @Test
+  public void testSend() {
+    final DictionaryCodec codec = new DictionaryCodec(DICTIONARY);
+    final XEndpoint plain = mock(XEndpoint.class);
+    codec.send(plain, MESSAGE, null);
+    verify(plain).send(eq(MESSAGE), isNull());
+    
+    final XEndpoint negotiated = mock(XEndpoint.class);
+    when(negotiated.getSubprotocol()).thenReturn(codec.getSubprotocol());
+    codec.send(negotiated, MESSAGE, null);
+    verify(negotiated).send(eq(codec.encode(MESSAGE)), isNull());
+  }
+  
+  @Test
+  public void testDecodingListener() {
+    final DictionaryCodec codec = new DictionaryCodec(DICTIONARY);
+    @SuppressWarnings("unchecked")
+    final XEndpointListener<XEndpoint> delegate = mock(XEndpointListener.class);
+    final XEndpointListener<XEndpoint> listener = codec.decoding(delegate);
+    
+    final XEndpoint plain = mock(XEndpoint.class);
+    final ByteBuffer binary = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+    listener.onBinary(plain, binary);
+    verify(delegate).onBinary(eq(plain), eq(binary));
+    
+    final XEndpoint negotiated = mock(XEndpoint.class);
+    when(negotiated.getSubprotocol()).thenReturn(codec.getSubprotocol());
+    listener.onBinary(negotiated, codec.encode(MESSAGE));
+    verify(delegate).onText(eq(negotiated), eq(MESSAGE));
+    
+    listener.onBinary(negotiated, binary);
+    verify(delegate).onError(eq(negotiated), isA(DataFormatException.class));
+    
+    listener.onText(plain, "text");
+    verify(delegate).onText(eq(plain), eq("text"));
+    listener.onWritabilityChanged(plain, false);
+    verify(delegate).onWritabilityChanged(eq(plain), eq(false));
+  }
+  
+  @Test(expected=IllegalArgumentException.class)
+  public void testDecodingPartialListener() {
+    final DictionaryCodec codec = new DictionaryCodec(DICTIONARY);
+    @SuppressWarnings("unchecked")
+    final XEndpointPartialListener<XEndpoint> delegate = mock(XEndpointPartialListener.class);
+    codec.decoding(delegate);
+  }
+}
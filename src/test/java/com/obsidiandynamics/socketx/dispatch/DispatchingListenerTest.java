@@ -0,0 +1,184 @@
+package com.obsidiandynamics.socketx.dispatch;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+import org.mockito.*;
+
+import com.obsidiandynamics.socketx.*;
+
+public final class DispatchingListenerTest {
+  private static final int TIMEOUT = 10_000;
+  
+  private XEndpointListener<XEndpoint> delegate;
+  
+  private DispatchingListener<XEndpoint> listener;
+  
+  @SuppressWarnings("unchecked")
+  @Before
+  public void before() {
+    delegate = mock(XEndpointListener.class);
+    listener = DispatchingListener.onVirtualThreads(delegate);
+  }
+  
+  @Test
+  public void testOrderedDispatch() {
+    final XEndpoint endpoint = mock(XEndpoint.class);
+    listener.onConnect(endpoint);
+    assertEquals(1, listener.getEndpointCount());
+    listener.onText(endpoint, "first");
+    listener.onText(endpoint, "second");
+    listener.onPing(endpoint, ByteBuffer.allocate(0));
+    listener.onPong(endpoint, ByteBuffer.allocate(0));
+    listener.onWritabilityChanged(endpoint, false);
+    listener.onError(endpoint, new Exception("Simulated"));
+    listener.onDisconnect(endpoint, 1000, "reason");
+    listener.onClose(endpoint);
+    assertEquals(0, listener.getEndpointCount());
+    
+    final InOrder inOrder = inOrder(delegate);
+    inOrder.verify(delegate, timeout(TIMEOUT)).onConnect(endpoint);
+    inOrder.verify(delegate, timeout(TIMEOUT)).onText(endpoint, "first");
+    inOrder.verify(delegate, timeout(TIMEOUT)).onText(endpoint, "second");
+    inOrder.verify(delegate, timeout(TIMEOUT)).onPing(eq(endpoint), notNull());
+    inOrder.verify(delegate, timeout(TIMEOUT)).onPong(eq(endpoint), notNull());
+    inOrder.verify(delegate, timeout(TIMEOUT)).onWritabilityChanged(endpoint, false);
+    inOrder.verify(delegate, timeout(TIMEOUT)).onError(eq(endpoint), isA(Exception.class));
+    inOrder.verify(delegate, timeout(TIMEOUT)).onDisconnect(endpoint, 1000, "reason");
+    inOrder.verify(delegate, timeout(TIMEOUT)).onClose(endpoint);
+  }
+  
+  @Test
+  public void testBinaryCopied() {
+    final XEndpoint endpoint = mock(XEndpoint.class);
+    final CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> release.await(TIMEOUT, TimeUnit.MILLISECONDS)).when(delegate).onConnect(any());
+    listener.onConnect(endpoint);
+    
+    final ByteBuffer message = ByteBuffer.wrap("test".getBytes());
+    listener.onBinary(endpoint, message);
+    assertEquals(0, message.position());
+    message.put(0, (byte) 'b');
+    release.countDown();
+    
+    verify(delegate, timeout(TIMEOUT)).onBinary(endpoint, ByteBuffer.wrap("test".getBytes()));
+  }
+  
+  @Test
+  public void testBlockingEndpointDoesNotHoldUpOthers() {
+    final XEndpoint blocked = mock(XEndpoint.class);
+    final XEndpoint other = mock(XEndpoint.class);
+    final CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> release.await(TIMEOUT, TimeUnit.MILLISECONDS)).when(delegate).onText(eq(blocked), any());
+    try {
+      listener.onConnect(blocked);
+      listener.onConnect(other);
+      listener.onText(blocked, "test");
+      listener.onText(other, "test");
+      verify(delegate, timeout(TIMEOUT)).onText(other, "test");
+    } finally {
+      release.countDown();
+    }
+  }
+  
+  @Test
+  public void testAfterClose() {
+    final XEndpoint endpoint = mock(XEndpoint.class);
+    listener.onConnect(endpoint);
+    listener.onClose(endpoint);
+    listener.onError(endpoint, new Exception("Simulated"));
+    verify(delegate, timeout(TIMEOUT)).onError(eq(endpoint), isA(Exception.class));
+    assertEquals(0, listener.getEndpointCount());
+  }
+  
+  @Test
+  public void testBoundedQueueSuspendsReceives() {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final DispatchingListener<XEndpoint> bounded = new DispatchingListener<>(delegate, executor, 4);
+      final XEndpoint endpoint = mock(XEndpoint.class);
+      final CountDownLatch release = new CountDownLatch(1);
+      doAnswer(invocation -> release.await(TIMEOUT, TimeUnit.MILLISECONDS)).when(delegate).onText(any(), any());
+      bounded.onConnect(endpoint);
+      for (int i = 0; i < 3; i++) {
+        bounded.onText(endpoint, "test");
+      }
+      verify(endpoint, never()).suspendReceives();
+      
+      bounded.onText(endpoint, "test");
+      bounded.onText(endpoint, "test");
+      verify(endpoint, times(1)).suspendReceives();
+      assertEquals(5, bounded.getQueuedMessages(endpoint));
+      
+      bounded.onPing(endpoint, ByteBuffer.allocate(0));
+      assertEquals(5, bounded.getQueuedMessages(endpoint));
+      verify(endpoint, never()).resumeReceives();
+      
+      release.countDown();
+      verify(endpoint, timeout(TIMEOUT).times(1)).resumeReceives();
+      verify(delegate, timeout(TIMEOUT).times(5)).onText(endpoint, "test");
+      verify(delegate, timeout(TIMEOUT)).onPing(eq(endpoint), notNull());
+      assertEquals(0, bounded.getQueuedMessages(endpoint));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+  
+  /**
+   *  Emulates an I/O thread that only reads while the endpoint's receives are resumed, against a
+   *  bound of 1 and a handler that returns straight away, so that the worker keeps draining the
+   *  queue while the endpoint is being suspended. The endpoint must never be left suspended 
+   *  with nothing queued.
+   */
+  @Test
+  public void testBoundedQueueSuspensionRace() throws Exception {
+    final int messages = 100_000;
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final AtomicInteger received = new AtomicInteger();
+      final DispatchingListener<XEndpoint> bounded = 
+          new DispatchingListener<>(new XEndpointLambdaListener<>().onText((e, m) -> received.incrementAndGet()), 
+                                    executor, 1);
+      final XEndpoint endpoint = mock(XEndpoint.class);
+      final AtomicBoolean suspended = new AtomicBoolean();
+      doAnswer(invocation -> {
+        assertTrue(suspended.compareAndSet(false, true));
+        return null;
+      }).when(endpoint).suspendReceives();
+      doAnswer(invocation -> {
+        assertTrue(suspended.compareAndSet(true, false));
+        return null;
+      }).when(endpoint).resumeReceives();
+      bounded.onConnect(endpoint);
+      
+      for (int i = 0; i < messages; i++) {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (suspended.get()) {
+          assertTrue("Stuck suspended after " + i + " messages", System.currentTimeMillis() < deadline);
+          Thread.yield();
+        }
+        bounded.onText(endpoint, "test");
+      }
+      
+      final long deadline = System.currentTimeMillis() + TIMEOUT;
+      while (received.get() != messages || suspended.get()) {
+        assertTrue("received=" + received + ", suspended=" + suspended, System.currentTimeMillis() < deadline);
+        Thread.yield();
+      }
+      assertEquals(0, bounded.getQueuedMessages(endpoint));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+  
+  @Test(expected=IllegalArgumentException.class)
+  public void testInvalidBound() {
+    new DispatchingListener<>(delegate, Runnable::run, 0);
+  }
+}
@@ -0,0 +1,76 @@
+package com.obsidiandynamics.socketx.dispatch;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.socketx.util.*;
+
+public final class SerialExecutorTest {
+  private ExecutorService executor;
+  
+  @Before
+  public void before() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+  
+  @After
+  public void after() {
+    executor.shutdownNow();
+  }
+  
+  @Test
+  public void testOrderAndExclusion() {
+    final SerialExecutor serialExecutor = new SerialExecutor(executor);
+    final List<Integer> completed = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicBoolean overlapped = new AtomicBoolean();
+    final int tasks = 10_000;
+    for (int i = 0; i < tasks; i++) {
+      final int task = i;
+      serialExecutor.execute(() -> {
+        if (running.incrementAndGet() != 1) overlapped.set(true);
+        completed.add(task);
+        running.decrementAndGet();
+      });
+    }
+    
+    SocketUtils.await().until(() -> assertEquals(tasks, completed.size()));
+    assertFalse(overlapped.get());
+    for (int i = 0; i < tasks; i++) {
+      assertEquals(i, (int) completed.get(i));
+    }
+    assertEquals(0, serialExecutor.getPending());
+  }
+  
+  @Test
+  public void testContinuesAfterError() {
+    final SerialExecutor serialExecutor = new SerialExecutor(executor);
+    final AtomicInteger completed = new AtomicInteger();
+    serialExecutor.execute(() -> {
+      throw new RuntimeException("Simulated");
+    });
+    serialExecutor.execute(completed::incrementAndGet);
+    SocketUtils.await().until(() -> assertEquals(1, completed.get()));
+  }
+  
+  @Test
+  public void testIndependentExecutorsRunInParallel() throws InterruptedException {
+    final CountDownLatch bothStarted = new CountDownLatch(2);
+    final Runnable task = () -> {
+      bothStarted.countDown();
+      try {
+        bothStarted.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    };
+    new SerialExecutor(executor).execute(task);
+    new SerialExecutor(executor).execute(task);
+    assertTrue(bothStarted.await(10, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,35 @@
+package com.obsidiandynamics.socketx.dispatch;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.assertion.*;
+
+public final class VirtualThreadsTest {
+  @Test
+  public void testConformance() throws Exception {
+    Assertions.assertUtilityClassWellDefined(VirtualThreads.class);
+  }
+  
+  @Test
+  public void testExecutor() throws InterruptedException {
+    final CountDownLatch ran = new CountDownLatch(1);
+    VirtualThreads.executor().execute(ran::countDown);
+    assertTrue(ran.await(10, TimeUnit.SECONDS));
+  }
+  
+  @Test
+  public void testAvailability() {
+    boolean supported;
+    try {
+      Thread.class.getMethod("ofVirtual");
+      supported = true;
+    } catch (NoSuchMethodException e) {
+      supported = false;
+    }
+    assertEquals(supported, VirtualThreads.isAvailable());
+  }
+}
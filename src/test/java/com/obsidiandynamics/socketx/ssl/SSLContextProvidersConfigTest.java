@@ -17,5 +17,9 @@ public final class SSLContextProvidersConfigTest {
         .map(SSLContextProvider[].class);
     assertNotNull(providers);
     assertEquals(4, providers.length);
+    
+    final CompositeSSLContextProvider jksProvider = (CompositeSSLContextProvider) providers[3];
+    assertEquals(1000, jksProvider.sessionCacheSize);
+    assertEquals(3600, jksProvider.sessionTimeout);
   }
 }
@@ -2,6 +2,8 @@ package com.obsidiandynamics.socketx.ssl;
 
 import static org.junit.Assert.*;
 
+import java.util.concurrent.atomic.*;
+
 import javax.net.ssl.*;
 
 import org.junit.*;
@@ -43,6 +45,44 @@ public final class SSLContextProvidersTest {
     assertNotNull(CompositeSSLContextProvider.getDevServerDefault());
   }
   
+  @Test
+  public void testCompositeCaching() throws Exception {
+    final AtomicInteger loads = new AtomicInteger();
+    final CompositeSSLContextProvider provider = new CompositeSSLContextProvider()
+        .withTrustManagerProvider(() -> {
+          loads.incrementAndGet();
+          return new LenientX509TrustManagerProvider().getTrustManagers();
+        });
+    final SSLContext first = provider.getSSLContext();
+    assertSame(first, provider.getSSLContext());
+    assertEquals(1, loads.get());
+    
+    provider.invalidate();
+    final SSLContext second = provider.getSSLContext();
+    assertNotSame(first, second);
+    assertSame(second, provider.getSSLContext());
+    assertEquals(2, loads.get());
+    
+    provider.withKeyManagerProvider(new NullKeyManagerProvider());
+    assertNotSame(second, provider.getSSLContext());
+    assertEquals(3, loads.get());
+  }
+  
+  @Test
+  public void testCompositeSessionCache() throws Exception {
+    final SSLContext defaultContext = new CompositeSSLContextProvider().getSSLContext();
+    final SSLContext sslContext = new CompositeSSLContextProvider()
+        .withSessionCacheSize(100)
+        .withSessionTimeout(60)
+        .getSSLContext();
+    assertEquals(100, sslContext.getClientSessionContext().getSessionCacheSize());
+    assertEquals(100, sslContext.getServerSessionContext().getSessionCacheSize());
+    assertEquals(60, sslContext.getClientSessionContext().getSessionTimeout());
+    assertEquals(60, sslContext.getServerSessionContext().getSessionTimeout());
+    assertEquals(defaultContext.getServerSessionContext().getSessionCacheSize(), 
+                 new CompositeSSLContextProvider().withSessionTimeout(60).getSSLContext().getServerSessionContext().getSessionCacheSize());
+  }
+  
   @Test
   public void testNullKey() {
     final NullKeyManagerProvider keyProvider = new NullKeyManagerProvider();
@@ -0,0 +1,133 @@
+package com.obsidiandynamics.socketx.util;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+public final class BacklogTest {
+  @Test
+  public void testMessageHighWaterMark() {
+    final List<Boolean> changes = new ArrayList<>();
+    final Backlog backlog = new Backlog(4, Long.MAX_VALUE, changes::add);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(backlog.isBelowHighWaterMark());
+      backlog.add(10);
+    }
+    assertTrue(backlog.isWritable());
+    backlog.add(10);
+    assertFalse(backlog.isBelowHighWaterMark());
+    assertFalse(backlog.isWritable());
+    assertEquals(Arrays.asList(false), changes);
+    assertEquals(4, backlog.getMessages());
+    assertEquals(40, backlog.getBytes());
+    
+    backlog.remove(10);
+    assertTrue(backlog.isBelowHighWaterMark());
+    assertFalse(backlog.isWritable());
+    backlog.remove(10);
+    assertTrue(backlog.isWritable());
+    assertEquals(Arrays.asList(false, true), changes);
+  }
+  
+  @Test
+  public void testByteHighWaterMark() {
+    final List<Boolean> changes = new ArrayList<>();
+    final Backlog backlog = new Backlog(Long.MAX_VALUE, 1_000, changes::add);
+    backlog.add(400);
+    assertTrue(backlog.isWritable());
+    backlog.add(700);
+    assertFalse(backlog.isBelowHighWaterMark());
+    assertFalse(backlog.isWritable());
+    
+    backlog.remove(700);
+    assertTrue(backlog.isWritable());
+    assertEquals(1, backlog.getMessages());
+    assertEquals(400, backlog.getBytes());
+    assertEquals(Arrays.asList(false, true), changes);
+  }
+  
+  /**
+   *  Adds from one thread and removes from another, with a high-water mark of 1, so that every
+   *  add and every drain contends to change the writability. Once the backlog has drained, it
+   *  must be writable, and the listener must have seen alternating changes, ending in writable.
+   */
+  @Test
+  public void testConcurrentAddRemove() throws Exception {
+    final int runs = 100_000;
+    final AtomicReference<Boolean> lastChange = new AtomicReference<>(true);
+    final AtomicInteger outOfOrder = new AtomicInteger();
+    final Backlog backlog = new Backlog(1, Long.MAX_VALUE, writable -> {
+      Thread.yield();
+      if (lastChange.getAndSet(writable) == writable) outOfOrder.incrementAndGet();
+    });
+    final Semaphore added = new Semaphore(0);
+    final Thread remover = new Thread(() -> {
+      for (int i = 0; i < runs; i++) {
+        added.acquireUninterruptibly();
+        backlog.remove(0);
+      }
+    }, "remover");
+    remover.start();
+    for (int i = 0; i < runs; i++) {
+      backlog.add(0);
+      added.release();
+    }
+    remover.join();
+    
+    assertEquals(0, backlog.getMessages());
+    assertTrue(backlog.isWritable());
+    assertTrue(lastChange.get());
+    assertEquals(0, outOfOrder.get());
+  }
+  
+  /**
+   *  Drains the backlog on another thread while the unwritable change is being reported. The
+   *  writable change must not overtake it, and is instead reported by the thread that reported
+   *  the unwritable change, once the listener has returned.
+   */
+  @Test
+  public void testDrainWhileReporting() throws Exception {
+    final List<String> changes = Collections.synchronizedList(new ArrayList<>());
+    final CountDownLatch drained = new CountDownLatch(1);
+    final Backlog[] backlog = new Backlog[1];
+    backlog[0] = new Backlog(1, Long.MAX_VALUE, writable -> {
+      changes.add(writable + "@" + Thread.currentThread().getName());
+      if (! writable) {
+        final Thread remover = new Thread(() -> {
+          backlog[0].remove(0);
+          drained.countDown();
+        }, "remover");
+        remover.start();
+        try {
+          assertTrue(drained.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+      }
+    });
+    
+    final String thread = Thread.currentThread().getName();
+    backlog[0].add(0);
+    assertEquals(Arrays.asList("false@" + thread, "true@" + thread), changes);
+    assertTrue(backlog[0].isWritable());
+  }
+  
+  @Test
+  public void testTrackingBytes() {
+    assertFalse(new Backlog(1, Long.MAX_VALUE, null).isTrackingBytes());
+    assertTrue(new Backlog(1, 1_000, null).isTrackingBytes());
+  }
+  
+  @Test
+  public void testNullListener() {
+    final Backlog backlog = new Backlog(1, 1, null);
+    backlog.add(1);
+    assertFalse(backlog.isWritable());
+    backlog.remove(1);
+    assertTrue(backlog.isWritable());
+  }
+}
@@ -0,0 +1,27 @@
+package com.obsidiandynamics.socketx.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import com.obsidiandynamics.assertion.*;
+
+public final class CoarseClockTest {
+  @Test
+  public void testConformance() throws Exception {
+    Assertions.assertUtilityClassWellDefined(CoarseClock.class);
+  }
+  
+  @Test
+  public void testTracksSystemClock() {
+    final long before = System.currentTimeMillis();
+    final long first = CoarseClock.now();
+    assertTrue("first=" + first + ", before=" + before, 
+               first >= before - 1_000);
+    
+    SocketUtils.await().until(() -> {
+      assertTrue(CoarseClock.now() > first);
+    });
+    assertTrue(CoarseClock.now() <= System.currentTimeMillis());
+  }
+}
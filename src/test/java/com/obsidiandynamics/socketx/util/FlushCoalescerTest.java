@@ -0,0 +1,69 @@
+package com.obsidiandynamics.socketx.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+public final class FlushCoalescerTest {
+  @Test
+  public void testFlushOnMessageCount() {
+    final AtomicInteger flushes = new AtomicInteger();
+    final FlushCoalescer coalescer = new FlushCoalescer(3, TimeUnit.HOURS.toMicros(1), flushes::incrementAndGet);
+    assertFalse(coalescer.onSend());
+    coalescer.onQueued();
+    assertFalse(coalescer.onSend());
+    coalescer.onQueued();
+    assertEquals(2, coalescer.getPending());
+    assertTrue(coalescer.onSend());
+    assertEquals(0, coalescer.getPending());
+    assertFalse(coalescer.onSend());
+    assertEquals(0, flushes.get());
+  }
+  
+  @Test
+  public void testFlushOnDelay() {
+    final AtomicInteger flushes = new AtomicInteger();
+    final FlushCoalescer coalescer = new FlushCoalescer(100, 1_000, flushes::incrementAndGet);
+    assertFalse(coalescer.onSend());
+    coalescer.onQueued();
+    assertFalse(coalescer.onSend());
+    coalescer.onQueued();
+    SocketUtils.await().until(() -> assertEquals(1, flushes.get()));
+    assertEquals(0, coalescer.getPending());
+    
+    assertFalse(coalescer.onSend());
+    coalescer.onQueued();
+    SocketUtils.await().until(() -> assertEquals(2, flushes.get()));
+  }
+  
+  @Test
+  public void testNoFlushWhenNothingPending() throws InterruptedException {
+    final AtomicInteger flushes = new AtomicInteger();
+    final FlushCoalescer coalescer = new FlushCoalescer(2, 1_000, flushes::incrementAndGet);
+    assertFalse(coalescer.onSend());
+    coalescer.onQueued();
+    assertTrue(coalescer.onSend());
+    Thread.sleep(10);
+    assertEquals(0, flushes.get());
+  }
+  
+  @Test
+  public void testFlushAfterTimerRacesWithQueueing() throws InterruptedException {
+    final AtomicInteger flushes = new AtomicInteger();
+    final FlushCoalescer coalescer = new FlushCoalescer(100, 1_000, flushes::incrementAndGet);
+    assertFalse(coalescer.onSend());
+    coalescer.onQueued();
+    
+    // the second message registers before the timer fires, but is only queued afterwards
+    assertFalse(coalescer.onSend());
+    SocketUtils.await().until(() -> assertEquals(1, flushes.get()));
+    coalescer.onQueued();
+    SocketUtils.await().until(() -> assertEquals(2, flushes.get()));
+    
+    Thread.sleep(10);
+    assertEquals(2, flushes.get());
+  }
+}
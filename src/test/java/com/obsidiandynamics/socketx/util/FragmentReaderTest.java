@@ -0,0 +1,54 @@
+package com.obsidiandynamics.socketx.util;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+import org.junit.*;
+
+public final class FragmentReaderTest {
+  private static FragmentReader readerOf(byte[] bytes, int fragmentSize) {
+    return new FragmentReader(Channels.newChannel(new ByteArrayInputStream(bytes)), fragmentSize);
+  }
+  
+  @Test
+  public void testPartialLastFragment() throws IOException {
+    final FragmentReader reader = readerOf(new byte[] {0, 1, 2, 3, 4}, 2);
+    assertEquals(ByteBuffer.wrap(new byte[] {0, 1}), reader.next());
+    assertFalse(reader.isLast());
+    assertEquals(ByteBuffer.wrap(new byte[] {2, 3}), reader.next());
+    assertFalse(reader.isLast());
+    assertEquals(ByteBuffer.wrap(new byte[] {4}), reader.next());
+    assertTrue(reader.isLast());
+  }
+  
+  @Test
+  public void testEmptyLastFragment() throws IOException {
+    final FragmentReader reader = readerOf(new byte[] {0, 1}, 2);
+    assertEquals(2, reader.next().remaining());
+    assertFalse(reader.isLast());
+    assertEquals(0, reader.next().remaining());
+    assertTrue(reader.isLast());
+  }
+  
+  @Test
+  public void testEmptySource() throws IOException {
+    final FragmentReader reader = readerOf(new byte[0], 2);
+    assertEquals(0, reader.next().remaining());
+    assertTrue(reader.isLast());
+  }
+  
+  @Test(expected=IllegalStateException.class)
+  public void testReadPastLast() throws IOException {
+    final FragmentReader reader = readerOf(new byte[0], 2);
+    reader.next();
+    reader.next();
+  }
+  
+  @Test(expected=IllegalArgumentException.class)
+  public void testInvalidFragmentSize() {
+    readerOf(new byte[0], 0);
+  }
+}
@@ -0,0 +1,89 @@
+package com.obsidiandynamics.socketx.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+public final class SerialUpdaterTest {
+  @Test
+  public void testUpdate() {
+    final AtomicInteger runs = new AtomicInteger();
+    final SerialUpdater updater = new SerialUpdater(runs::incrementAndGet);
+    updater.update();
+    updater.update();
+    assertEquals(2, runs.get());
+  }
+  
+  @Test
+  public void testReentrantUpdate() {
+    final AtomicInteger runs = new AtomicInteger();
+    final AtomicInteger depth = new AtomicInteger();
+    final AtomicInteger maxDepth = new AtomicInteger();
+    final SerialUpdater[] updater = new SerialUpdater[1];
+    updater[0] = new SerialUpdater(() -> {
+      maxDepth.accumulateAndGet(depth.incrementAndGet(), Math::max);
+      if (runs.incrementAndGet() < 3) updater[0].update();
+      depth.decrementAndGet();
+    });
+    updater[0].update();
+    assertEquals(3, runs.get());
+    assertEquals(1, maxDepth.get());
+  }
+  
+  @Test
+  public void testErrorStillServesRequests() {
+    final AtomicInteger runs = new AtomicInteger();
+    final SerialUpdater[] updater = new SerialUpdater[1];
+    updater[0] = new SerialUpdater(() -> {
+      if (runs.incrementAndGet() == 1) {
+        updater[0].update();
+        throw new IllegalStateException("Boom");
+      }
+    });
+    try {
+      updater[0].update();
+      fail("Expected an IllegalStateException");
+    } catch (IllegalStateException e) {
+      assertEquals("Boom", e.getMessage());
+    }
+    assertEquals(2, runs.get());
+    
+    updater[0].update();
+    assertEquals(3, runs.get());
+  }
+  
+  @Test
+  public void testConcurrentUpdates() throws Exception {
+    final int threads = 4;
+    final int updates = 10_000;
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger overlaps = new AtomicInteger();
+    final AtomicInteger requested = new AtomicInteger();
+    final AtomicInteger served = new AtomicInteger();
+    final SerialUpdater updater = new SerialUpdater(() -> {
+      if (running.incrementAndGet() != 1) overlaps.incrementAndGet();
+      served.set(requested.get());
+      running.decrementAndGet();
+    });
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (int t = 0; t < threads; t++) {
+        executor.submit(() -> {
+          for (int i = 0; i < updates; i++) {
+            requested.incrementAndGet();
+            updater.update();
+          }
+        });
+      }
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(0, overlaps.get());
+    assertEquals(threads * updates, served.get());
+  }
+}
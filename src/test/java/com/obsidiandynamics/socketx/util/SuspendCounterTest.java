@@ -0,0 +1,62 @@
+package com.obsidiandynamics.socketx.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+public final class SuspendCounterTest {
+  private final AtomicInteger suspends = new AtomicInteger();
+  
+  private final AtomicInteger resumes = new AtomicInteger();
+  
+  private final SuspendCounter counter = new SuspendCounter(suspends::incrementAndGet, resumes::incrementAndGet);
+  
+  @Test
+  public void testSingle() {
+    assertFalse(counter.isSuspended());
+    counter.suspend();
+    assertTrue(counter.isSuspended());
+    assertEquals(1, counter.getSuspensions());
+    assertEquals(1, suspends.get());
+    
+    counter.resume();
+    assertFalse(counter.isSuspended());
+    assertEquals(0, counter.getSuspensions());
+    assertEquals(1, resumes.get());
+  }
+  
+  @Test
+  public void testNested() {
+    counter.suspend();
+    counter.suspend();
+    assertEquals(2, counter.getSuspensions());
+    assertEquals(1, suspends.get());
+    
+    counter.resume();
+    assertTrue(counter.isSuspended());
+    assertEquals(0, resumes.get());
+    
+    counter.resume();
+    assertFalse(counter.isSuspended());
+    assertEquals(1, resumes.get());
+    
+    counter.suspend();
+    assertEquals(2, suspends.get());
+  }
+  
+  @Test
+  public void testResumeWithoutSuspend() {
+    counter.resume();
+    assertFalse(counter.isSuspended());
+    assertEquals(0, counter.getSuspensions());
+    assertEquals(0, resumes.get());
+    
+    counter.suspend();
+    counter.resume();
+    counter.resume();
+    assertEquals(0, counter.getSuspensions());
+    assertEquals(1, resumes.get());
+  }
+}
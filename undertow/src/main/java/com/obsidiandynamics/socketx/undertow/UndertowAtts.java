@@ -19,6 +19,12 @@ public final class UndertowAtts {
       .withMin(Constant.of(1))
       .withDefault(Constant.of(1024));
 
+  /** The size of the buffers used by the client for TLS packets; must hold a complete TLS record,
+   *  and so can't be smaller than the largest one (17 KiB). */
+  public static final Attribute<Integer> SSL_BUFFER_SIZE = new Attribute<Integer>("socketx.undertow.sslBufferSize")
+      .withMin(Constant.of(17 * 1024))
+      .withDefault(Constant.of(17 * 1024));
+
   public static final Attribute<Boolean> DIRECT_BUFFERS = new Attribute<Boolean>("socketx.undertow.directBuffers")
       .withDefault(Constant.of(false));
   
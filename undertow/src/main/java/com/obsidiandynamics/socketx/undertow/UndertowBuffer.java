@@ -0,0 +1,29 @@
+package com.obsidiandynamics.socketx.undertow;
+
+import java.nio.*;
+
+import com.obsidiandynamics.socketx.*;
+
+import io.undertow.connector.*;
+
+/**
+ *  An {@link XBuffer} drawn from the channel's {@link ByteBufferPool}.
+ */
+final class UndertowBuffer implements XBuffer {
+  private final PooledByteBuffer pooled;
+  
+  UndertowBuffer(PooledByteBuffer pooled, int capacity) {
+    this.pooled = pooled;
+    pooled.getBuffer().clear().limit(capacity);
+  }
+
+  @Override
+  public ByteBuffer getBuffer() {
+    return pooled.getBuffer();
+  }
+
+  @Override
+  public void release() {
+    pooled.close();
+  }
+}
@@ -3,51 +3,128 @@ package com.obsidiandynamics.socketx.undertow;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import javax.net.ssl.*;
 
+import org.slf4j.*;
 import org.xnio.*;
 import org.xnio.ssl.*;
 
 import com.obsidiandynamics.socketx.*;
 
-import io.undertow.connector.*;
 import io.undertow.protocols.ssl.*;
 import io.undertow.server.*;
+import io.undertow.websockets.*;
 import io.undertow.websockets.client.*;
 import io.undertow.websockets.client.WebSocketClient.*;
 import io.undertow.websockets.core.*;
+import io.undertow.websockets.extensions.*;
 
+/**
+ *  A client built on Undertow's {@link WebSocketClient}. The buffer pools, and the TLS wrapper
+ *  used for {@code wss} connections, are owned by the client and shared among its connections.
+ */
 public final class UndertowClient implements XClient<UndertowEndpoint> {
+  private static final Logger log = LoggerFactory.getLogger(UndertowClient.class);
+  
   private final XClientConfig config;
   
   private final XnioWorker worker;
   
   private final XEndpointScanner<UndertowEndpoint> scanner;
   
+  private final DefaultByteBufferPool bufferPool;
+  
+  private final Object sslLock = new Object();
+  
+  /** Created upon the first {@code wss} connection, as the SSL context may be costly to obtain. */
+  private DefaultByteBufferPool sslBufferPool;
+  
+  private volatile XnioSsl ssl;
+  
   private UndertowClient(XClientConfig config, XnioWorker worker) {
     this.config = config;
     this.worker = worker;
-    scanner = new XEndpointScanner<>(config.scanIntervalMillis, 0);
+    if (config.hasWriteCoalescing()) {
+      log.warn("Write coalescing is not supported; ignoring {} messages per flush", config.writeCoalesceMessages);
+    }
+    final boolean directBuffers = UndertowAtts.DIRECT_BUFFERS.get(config.attributes);
+    bufferPool = new DefaultByteBufferPool(directBuffers, UndertowAtts.BUFFER_SIZE.get(config.attributes));
+    scanner = new XEndpointScanner<>(config.scanIntervalMillis, 0, config.scanMode, 
+                                     XAtts.SCANNER_SHARDS.get(config.attributes));
   }
 
   @Override
   public UndertowEndpoint connect(URI uri, XEndpointListener<? super UndertowEndpoint> listener) throws Exception {
-    final int bufferSize = UndertowAtts.BUFFER_SIZE.get(config.attributes);
-    final boolean directBuffers = UndertowAtts.DIRECT_BUFFERS.get(config.attributes);
-    final ByteBufferPool pool = new DefaultByteBufferPool(directBuffers, bufferSize);
+    final WebSocketChannel channel = createConnectionBuilder(uri).connect().get(); 
+    return UndertowEndpoint.clientOf(scanner, channel, config, listener);
+  }
+  
+  @Override
+  public CompletionStage<UndertowEndpoint> connectAsync(URI uri, XEndpointListener<? super UndertowEndpoint> listener) {
+    final CompletableFuture<UndertowEndpoint> future = new CompletableFuture<>();
+    final IoFuture<WebSocketChannel> channel;
+    try {
+      channel = createConnectionBuilder(uri).connect();
+    } catch (Throwable e) {
+      future.completeExceptionally(e);
+      return future;
+    }
+    
+    // the notifier is invoked from an I/O thread once the handshake completes
+    channel.addNotifier((connected, attachment) -> {
+      switch (connected.getStatus()) {
+        case DONE:
+          try {
+            future.complete(UndertowEndpoint.clientOf(scanner, connected.get(), config, listener));
+          } catch (Throwable e) {
+            future.completeExceptionally(e);
+          }
+          break;
+          
+        case FAILED:
+          future.completeExceptionally(connected.getException());
+          break;
+          
+        default:
+          future.cancel(false);
+      }
+    }, null);
+    return future;
+  }
 
-    final ConnectionBuilder builder = WebSocketClient.connectionBuilder(worker, pool, uri);
+  private ConnectionBuilder createConnectionBuilder(URI uri) throws Exception {
+    final ConnectionBuilder builder = WebSocketClient.connectionBuilder(worker, bufferPool, uri);
     if (uri.getScheme().equals("wss")) {
-      final SSLContext sslContext = config.sslContextProvider.getSSLContext();
-      final ByteBufferPool sslBufferPool = new DefaultByteBufferPool(directBuffers, 320 * 1024);
-      final XnioSsl ssl = new UndertowXnioSsl(worker.getXnio(), OptionMap.EMPTY, sslBufferPool, sslContext);
-      builder.setSsl(ssl);
+      builder.setSsl(getSsl());
+    }
+    final List<WebSocketExtension> extensions = config.compression 
+        ? Collections.singletonList(new WebSocketExtension("permessage-deflate")) : Collections.emptyList();
+    if (config.subprotocols.length != 0 || ! extensions.isEmpty()) {
+      builder.setClientNegotiation(new WebSocketClientNegotiation(Arrays.asList(config.subprotocols), extensions));
+    }
+    if (config.compression) {
+      builder.setClientExtensions(Collections.singleton(new PerMessageDeflateHandshake(true, config.compressionLevel, 
+                                                                                         config.compressionContextTakeover, 
+                                                                                         config.compressionContextTakeover)));
+    }
+    return builder;
+  }
+  
+  private XnioSsl getSsl() throws Exception {
+    final XnioSsl existing = ssl;
+    if (existing != null) return existing;
+    
+    synchronized (sslLock) {
+      if (ssl == null) {
+        final SSLContext sslContext = config.sslContextProvider.getSSLContext();
+        final boolean directBuffers = UndertowAtts.DIRECT_BUFFERS.get(config.attributes);
+        sslBufferPool = new DefaultByteBufferPool(directBuffers, UndertowAtts.SSL_BUFFER_SIZE.get(config.attributes));
+        ssl = new UndertowXnioSsl(worker.getXnio(), OptionMap.EMPTY, sslBufferPool, sslContext);
+      }
+      return ssl;
     }
-
-
-    final WebSocketChannel channel = builder.connect().get(); 
-    return UndertowEndpoint.clientOf(scanner, channel, config, listener);
   }
 
   @Override
@@ -56,6 +133,12 @@ public final class UndertowClient implements XClient<UndertowEndpoint> {
     scanner.close();
     worker.shutdown();
     worker.awaitTermination();
+    bufferPool.close();
+    synchronized (sslLock) {
+      if (sslBufferPool != null) {
+        sslBufferPool.close();
+      }
+    }
   }
   
   @Override
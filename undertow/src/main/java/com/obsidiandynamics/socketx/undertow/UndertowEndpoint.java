@@ -3,22 +3,32 @@ package com.obsidiandynamics.socketx.undertow;
 import java.io.*;
 import java.net.*;
 import java.nio.*;
+import java.nio.channels.*;
 import java.util.concurrent.atomic.*;
 
+import org.xnio.*;
+
 import com.obsidiandynamics.socketx.*;
+import com.obsidiandynamics.socketx.util.*;
 
 import io.undertow.*;
+import io.undertow.connector.*;
 import io.undertow.websockets.core.*;
 
 public final class UndertowEndpoint extends AbstractReceiveListener implements XEndpoint {
+  private static final AtomicLongFieldUpdater<UndertowEndpoint> lastActivityTimeUpdater = 
+      AtomicLongFieldUpdater.newUpdater(UndertowEndpoint.class, "lastActivityTime");
+  
   private final UndertowEndpointManager manager;
   
   private final WebSocketChannel channel;
   
-  private final AtomicLong backlog = new AtomicLong();
+  private final Backlog backlog;
   
   private final AtomicBoolean closeFired = new AtomicBoolean();
   
+  private final SuspendCounter receiveSuspensions;
+  
   private volatile Object context;
   
   private volatile long lastActivityTime;
@@ -26,6 +36,11 @@ public final class UndertowEndpoint extends AbstractReceiveListener implements X
   UndertowEndpoint(UndertowEndpointManager manager, WebSocketChannel channel) {
     this.manager = manager;
     this.channel = channel;
+    final XEndpointConfig<?> config = manager.getConfig();
+    backlog = new Backlog(config.highWaterMark, config.highWaterMarkBytes, 
+                          writable -> manager.getListener().onWritabilityChanged(this, writable));
+    receiveSuspensions = new SuspendCounter(() -> channel.getIoThread().execute(channel::suspendReceives),
+                                            () -> channel.getIoThread().execute(channel::resumeReceives));
     touchLastActivityTime();
   }
   
@@ -76,6 +91,76 @@ public final class UndertowEndpoint extends AbstractReceiveListener implements X
     touchLastActivityTime();
   }
 
+  /**
+   *  Limits the size of a buffered text message. Undertow reads a message through its pooled 
+   *  buffers and rejects it as soon as the limit is exceeded, rather than upon reading the
+   *  frame header.
+   */
+  @Override
+  protected long getMaxTextBufferSize() {
+    return manager.getConfig().maxMessageSize;
+  }
+  
+  /**
+   *  Limits the size of a buffered binary message, as per {@link #getMaxTextBufferSize()}.
+   */
+  @Override
+  protected long getMaxBinaryBufferSize() {
+    return manager.getConfig().maxMessageSize;
+  }
+  
+  /**
+   *  Where the listener is a partial listener, reads the message directly from the frame 
+   *  channel rather than buffering it in full.
+   */
+  @Override
+  protected void onBinary(WebSocketChannel channel, StreamSourceFrameChannel messageChannel) throws IOException {
+    if (manager.getPartialListener() != null) {
+      readFragments(messageChannel, channel.getBufferPool().allocate());
+    } else {
+      super.onBinary(channel, messageChannel);
+    }
+  }
+  
+  /**
+   *  Delivers whatever can be read of a binary message without blocking, one pooled buffer's
+   *  worth at a time. When no more data is available, reads are resumed on the message channel,
+   *  to continue once more arrives. The end of the message is signalled by an empty fragment.
+   *  
+   *  @param messageChannel The channel of the message being received.
+   *  @param pooled The buffer to read into, released once the message has been read.
+   */
+  private void readFragments(StreamSourceFrameChannel messageChannel, PooledByteBuffer pooled) {
+    final ByteBuffer buffer = pooled.getBuffer();
+    try {
+      for (;;) {
+        buffer.clear();
+        final int read = messageChannel.read(buffer);
+        if (read == 0) {
+          messageChannel.getReadSetter().set(ch -> readFragments(messageChannel, pooled));
+          messageChannel.resumeReads();
+          return;
+        }
+        
+        buffer.flip();
+        final boolean last = read == -1;
+        if (last) {
+          messageChannel.suspendReads();
+        }
+        manager.getPartialListener().onBinaryFragment(this, buffer, last);
+        touchLastActivityTime();
+        if (last) {
+          pooled.close();
+          return;
+        }
+      }
+    } catch (IOException e) {
+      pooled.close();
+      IoUtils.safeClose(messageChannel);
+      onError(channel, e);
+    }
+  }
+
   @Override
   protected void onCloseMessage(CloseMessage message, WebSocketChannel channel) {
     super.onCloseMessage(message, channel);
@@ -93,8 +178,9 @@ public final class UndertowEndpoint extends AbstractReceiveListener implements X
   @Override
   public void send(String payload, XSendCallback callback) {
     if (isBelowHWM()) {
-      backlog.incrementAndGet();
-      WebSockets.sendText(payload, channel, wrapCallback(callback));
+      final int length = lengthOf(payload);
+      backlog.add(length);
+      WebSockets.sendText(payload, channel, wrapCallback(callback, length));
       touchLastActivityTime();
     } else if (callback != null) {
       callback.onSkip(this);
@@ -104,46 +190,136 @@ public final class UndertowEndpoint extends AbstractReceiveListener implements X
   @Override
   public void send(ByteBuffer payload, XSendCallback callback) {
     if (isBelowHWM()) {
-      backlog.incrementAndGet();
-      WebSockets.sendBinary(payload, channel, wrapCallback(callback));
+      final int length = lengthOf(payload);
+      backlog.add(length);
+      WebSockets.sendBinary(payload, channel, wrapCallback(callback, length));
       touchLastActivityTime();
     } else if (callback != null) {
       callback.onSkip(this);
     }
   }
   
-  WebSocketCallback<Void> wrapCallback(XSendCallback callback) {
-    return new WebSocketCallback<Void>() {
-      private final AtomicBoolean onceOnly = new AtomicBoolean();
-      
-      @Override public void complete(WebSocketChannel channel, Void context) {
-        if (onceOnly.compareAndSet(false, true)) {
-          backlog.decrementAndGet();
-          if (callback != null) callback.onComplete(UndertowEndpoint.this);
-        }
+  /**
+   *  Sends a text frame whose payload has already been UTF-8 encoded, saving the encoding
+   *  step when the same payload is sent to several endpoints.
+   *  
+   *  @param payload The UTF-8 encoded payload.
+   *  @param callback Optional callback, invoked when the send completes (or fails).
+   */
+  void sendText(ByteBuffer payload, XSendCallback callback) {
+    if (isBelowHWM()) {
+      final int length = lengthOf(payload);
+      backlog.add(length);
+      WebSockets.sendText(payload, channel, wrapCallback(callback, length));
+      touchLastActivityTime();
+    } else if (callback != null) {
+      callback.onSkip(this);
+    }
+  }
+  
+  /**
+   *  Allocates a buffer from the channel's buffer pool, provided that the pooled buffers are 
+   *  large enough; otherwise, the buffer is allocated on the heap. The buffer is returned to the
+   *  pool once sent.
+   */
+  @Override
+  public XBuffer allocate(int capacity) {
+    if (capacity <= channel.getBufferPool().getBufferSize()) {
+      return new UndertowBuffer(channel.getBufferPool().allocate(), capacity);
+    } else {
+      return XEndpoint.super.allocate(capacity);
+    }
+  }
+  
+  private int lengthOf(String payload) {
+    return backlog.isTrackingBytes() ? payload.length() : 0;
+  }
+  
+  private int lengthOf(ByteBuffer payload) {
+    return backlog.isTrackingBytes() ? payload.remaining() : 0;
+  }
+  
+  WebSocketCallback<Void> wrapCallback(XSendCallback callback, int length) {
+    return new SendCallback(callback, length);
+  }
+  
+  /**
+   *  Maintains the backlog and invokes the application callback at most once, as Undertow may 
+   *  report both the completion and the failure of a send. Extends {@link AtomicBoolean} for its
+   *  once-only flag, so that each send allocates a single object.
+   */
+  private final class SendCallback extends AtomicBoolean implements WebSocketCallback<Void> {
+    private static final long serialVersionUID = 1L;
+    
+    private final XSendCallback callback;
+    
+    private final int length;
+    
+    SendCallback(XSendCallback callback, int length) {
+      this.callback = callback;
+      this.length = length;
+    }
+    
+    @Override public void complete(WebSocketChannel channel, Void context) {
+      if (compareAndSet(false, true)) {
+        backlog.remove(length);
+        if (callback != null) callback.onComplete(UndertowEndpoint.this);
       }
+    }
 
-      @Override public void onError(WebSocketChannel channel, Void context, Throwable cause) {
-        if (onceOnly.compareAndSet(false, true)) {
-          backlog.decrementAndGet();
-          if (callback != null) callback.onError(UndertowEndpoint.this, cause);
-        }
+    @Override public void onError(WebSocketChannel channel, Void context, Throwable cause) {
+      if (compareAndSet(false, true)) {
+        backlog.remove(length);
+        if (callback != null) callback.onError(UndertowEndpoint.this, cause);
       }
-    };
+    }
   }
   
   private boolean isBelowHWM() {
-    return backlog.get() < manager.getConfig().highWaterMark;
+    return backlog.isBelowHighWaterMark();
   }
   
   public WebSocketChannel getChannel() {
     return channel;
   }
   
+  /**
+   *  Streams the fragments into a single frame channel, which Undertow splits into frames as
+   *  its buffers fill, blocking while the channel is unwritable.
+   */
+  @Override
+  public void sendStream(ReadableByteChannel source, int fragmentSize) throws IOException {
+    if (channel.getIoThread() == Thread.currentThread()) throw new IllegalStateException("Cannot stream from the I/O thread");
+    
+    final FragmentReader reader = new FragmentReader(source, fragmentSize);
+    final StreamSinkFrameChannel sink = channel.send(WebSocketFrameType.BINARY);
+    try {
+      do {
+        final ByteBuffer fragment = reader.next();
+        while (fragment.hasRemaining()) {
+          if (sink.write(fragment) == 0) sink.awaitWritable();
+        }
+        touchLastActivityTime();
+      } while (! reader.isLast());
+      sink.shutdownWrites();
+      while (! sink.flush()) {
+        sink.awaitWritable();
+      }
+    } catch (IOException e) {
+      IoUtils.safeClose(sink);
+      throw e;
+    }
+  }
+  
   @Override
   public void flush() {
     channel.flush();
   }
+  
+  @Override
+  public XnioIoThread getIoExecutor() {
+    return channel.getIoThread();
+  }
 
   @Override
   public void sendPing() {
@@ -195,9 +371,43 @@ public final class UndertowEndpoint extends AbstractReceiveListener implements X
     return channel.getSourceAddress();
   }
 
+  @Override
+  public String getSubprotocol() {
+    final String subprotocol = channel.getSubProtocol();
+    return subprotocol == null || subprotocol.isEmpty() ? null : subprotocol;
+  }
+
   @Override
   public long getBacklog() {
-    return backlog.get();
+    return backlog.getMessages();
+  }
+
+  @Override
+  public long getBacklogBytes() {
+    return backlog.getBytes();
+  }
+
+  @Override
+  public boolean isWritable() {
+    return backlog.isWritable();
+  }
+
+  /**
+   *  Suspends the receives of the WebSocket channel on its I/O thread.
+   */
+  @Override
+  public void suspendReceives() {
+    receiveSuspensions.suspend();
+  }
+
+  @Override
+  public void resumeReceives() {
+    receiveSuspensions.resume();
+  }
+
+  @Override
+  public boolean isReceivesSuspended() {
+    return receiveSuspensions.isSuspended();
   }
 
   @Override
@@ -210,8 +420,15 @@ public final class UndertowEndpoint extends AbstractReceiveListener implements X
     return lastActivityTime;
   }
   
+  /**
+   *  Stamps the activity time from the coarse clock, skipping the store if the time hasn't moved
+   *  since the last stamp.
+   */
   private void touchLastActivityTime() {
-    lastActivityTime = System.currentTimeMillis();
+    final long now = CoarseClock.now();
+    if (lastActivityTime != now) {
+      lastActivityTimeUpdater.lazySet(this, now);
+    }
   }
 
   @Override
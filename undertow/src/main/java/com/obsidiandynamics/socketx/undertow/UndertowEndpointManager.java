@@ -1,6 +1,8 @@
 package com.obsidiandynamics.socketx.undertow;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
 import java.util.*;
 
 import org.xnio.*;
@@ -61,6 +63,15 @@ final class UndertowEndpointManager implements WebSocketConnectionCallback, XEnd
     return listener;
   }
   
+  /**
+   *  Obtains the listener as a partial listener, if it is one.
+   *  
+   *  @return The partial listener, or {@code null} if binary messages are to be delivered whole.
+   */
+  XEndpointPartialListener<? super UndertowEndpoint> getPartialListener() {
+    return listener instanceof XEndpointPartialListener ? (XEndpointPartialListener<? super UndertowEndpoint>) listener : null;
+  }
+  
   XEndpointConfig<?> getConfig() {
     return config;
   }
@@ -70,6 +81,17 @@ final class UndertowEndpointManager implements WebSocketConnectionCallback, XEnd
     return scanner.getEndpoints();
   }
   
+  /**
+   *  Encodes the payload to UTF-8 once, sharing the encoded bytes among all recipients.
+   */
+  @Override
+  public void broadcast(Collection<? extends UndertowEndpoint> endpoints, String payload, XSendCallback callback) {
+    final ByteBuffer encoded = ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8));
+    for (UndertowEndpoint endpoint : endpoints) {
+      endpoint.sendText(encoded.duplicate(), callback);
+    }
+  }
+  
   void remove(UndertowEndpoint endpoint) {
     scanner.removeEndpoint(endpoint);
   }
@@ -1,5 +1,8 @@
 package com.obsidiandynamics.socketx.undertow;
 
+import java.util.*;
+
+import org.slf4j.*;
 import org.xnio.*;
 
 import com.obsidiandynamics.socketx.*;
@@ -8,8 +11,16 @@ import io.undertow.*;
 import io.undertow.server.handlers.*;
 import io.undertow.servlet.*;
 import io.undertow.servlet.api.*;
+import io.undertow.websockets.*;
+import io.undertow.websockets.core.protocol.*;
+import io.undertow.websockets.core.protocol.version07.*;
+import io.undertow.websockets.core.protocol.version08.*;
+import io.undertow.websockets.core.protocol.version13.*;
+import io.undertow.websockets.extensions.*;
 
 public final class UndertowServer implements XServer<UndertowEndpoint> {
+  private static final Logger log = LoggerFactory.getLogger(UndertowServer.class);
+  
   private final XServerConfig config;
   private final Undertow server;
   private final UndertowEndpointManager manager;
@@ -19,6 +30,9 @@ public final class UndertowServer implements XServer<UndertowEndpoint> {
   private UndertowServer(XServerConfig config,
                          XEndpointListener<? super UndertowEndpoint> listener) throws Exception {
     this.config = config;
+    if (config.hasWriteCoalescing()) {
+      log.warn("Write coalescing is not supported; ignoring {} messages per flush", config.writeCoalesceMessages);
+    }
     final int ioThreads = UndertowAtts.IO_THREADS.get(config.attributes);
     final int coreTaskThreads = UndertowAtts.CORE_TASK_THREADS.get(config.attributes);
     final int maxTaskThreads = UndertowAtts.MAX_TASK_THREADS.get(config.attributes);
@@ -30,7 +44,8 @@ public final class UndertowServer implements XServer<UndertowEndpoint> {
                                              .set(Options.TCP_NODELAY, true)
                                              .getMap());
 
-    scanner = new XEndpointScanner<>(config.scanIntervalMillis, config.pingIntervalMillis);
+    scanner = new XEndpointScanner<>(config.scanIntervalMillis, config.pingIntervalMillis, config.scanMode, 
+                                     XAtts.SCANNER_SHARDS.get(config.attributes));
     manager = new UndertowEndpointManager(scanner, config.idleTimeoutMillis, config, listener);
 
     final DeploymentInfo servletBuilder = Servlets.deployment()
@@ -44,9 +59,26 @@ public final class UndertowServer implements XServer<UndertowEndpoint> {
     final DeploymentManager servletManager = Servlets.defaultContainer().addDeployment(servletBuilder);
     servletManager.deploy();
 
+    // the handshake selects the first of the client's subprotocols that is supported; all of 
+    // the protocol versions accepted by default remain available
+    final Set<String> subprotocols = new HashSet<>(Arrays.asList(config.subprotocols));
+    final WebSocketProtocolHandshakeHandler websocketHandler;
+    if (! subprotocols.isEmpty()) {
+      final Set<Handshake> handshakes = new HashSet<>(Arrays.asList(new Hybi13Handshake(subprotocols, true),
+                                                                    new Hybi08Handshake(subprotocols, true),
+                                                                    new Hybi07Handshake(subprotocols, true)));
+      websocketHandler = new WebSocketProtocolHandshakeHandler(handshakes, manager);
+    } else {
+      websocketHandler = Handlers.websocket(manager);
+    }
+    if (config.compression) {
+      websocketHandler.addExtension(new PerMessageDeflateHandshake(false, config.compressionLevel, 
+                                                                   config.compressionContextTakeover, 
+                                                                   config.compressionContextTakeover));
+    }
     final PathHandler handler = Handlers.path()
         .addPrefixPath("/", servletManager.start())
-        .addPrefixPath(config.path, Handlers.websocket(manager));
+        .addPrefixPath(config.path, websocketHandler);
     
     final int bufferSize = UndertowAtts.BUFFER_SIZE.get(config.attributes);
     final boolean directBuffers = UndertowAtts.DIRECT_BUFFERS.get(config.attributes);
@@ -57,6 +89,13 @@ public final class UndertowServer implements XServer<UndertowEndpoint> {
     .setBufferSize(bufferSize)
     .setDirectBuffers(directBuffers);
     
+    // XNIO registers the listening socket with every I/O thread, and has no notion of dedicated 
+    // acceptors that the attribute could be mapped to
+    final int acceptors = XAtts.ACCEPTORS.get(config.attributes);
+    if (acceptors != 0) {
+      log.warn("Acceptors are not supported; ignoring {} acceptor(s)", acceptors);
+    }
+    
     if (config.httpsPort != 0) {
       builder.addHttpsListener(config.httpsPort, "0.0.0.0", config.sslContextProvider.getSSLContext());
     }
@@ -1,12 +1,27 @@
 package com.obsidiandynamics.socketx.undertow;
 
+import static org.junit.Assert.*;
+
+import java.util.*;
+
 import org.junit.*;
 
 import com.obsidiandynamics.assertion.*;
+import com.obsidiandynamics.socketx.attribute.Attribute.*;
 
 public final class UndertowAttsTest {
   @Test
   public void testConformance() throws Exception {
     Assertions.assertUtilityClassWellDefined(UndertowAtts.class);
   }
+  
+  @Test
+  public void testSslBufferSize() {
+    assertEquals(17 * 1024, (int) UndertowAtts.SSL_BUFFER_SIZE.get(Collections.emptyMap()));
+  }
+  
+  @Test(expected=IllegalAttributeException.class)
+  public void testSslBufferSizeBelowTlsRecord() {
+    UndertowAtts.SSL_BUFFER_SIZE.get(Collections.singletonMap(UndertowAtts.SSL_BUFFER_SIZE.toString(), 16 * 1024));
+  }
 }
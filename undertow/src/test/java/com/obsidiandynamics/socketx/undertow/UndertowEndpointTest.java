@@ -108,7 +108,7 @@ public final class UndertowEndpointTest {
     createEndpointManager();
     
     final XSendCallback callback = mock(XSendCallback.class);
-    final WebSocketCallback<Void> wsCallback = endpoint.wrapCallback(callback);
+    final WebSocketCallback<Void> wsCallback = endpoint.wrapCallback(callback, 0);
     wsCallback.complete(channel, null);
     verify(callback, times(1)).onComplete(eq(endpoint));
     wsCallback.complete(channel, null);
@@ -120,7 +120,7 @@ public final class UndertowEndpointTest {
     createEndpointManager();
     
     final XSendCallback callback = mock(XSendCallback.class);
-    final WebSocketCallback<Void> wsCallback = endpoint.wrapCallback(callback);
+    final WebSocketCallback<Void> wsCallback = endpoint.wrapCallback(callback, 0);
     final Throwable cause = new IOException("Boom");
     wsCallback.onError(channel, null, cause);
     verify(callback, times(1)).onError(eq(endpoint), eq(cause));